@@ -0,0 +1,114 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.collections;
+
+import org.exist.EXistException;
+import org.exist.Indexer;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.lock.Lock;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.GeneratedDataset;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+
+/**
+ * Benchmarks for storing XML documents, with and without
+ * replaying the SAX events spooled whilst validating
+ * instead of parsing the document a second time.
+ */
+@State(Scope.Benchmark)
+public class StoreDocumentBenchmark {
+
+    private static final XmldbURI DOC_NAME = XmldbURI.create("store.xml");
+
+    /**
+     * The spool size limit in megabytes, 0 disables spooling.
+     */
+    @Param({ "0", "16" })
+    private int spoolSizeLimit;
+
+    @Param({ "1000" })
+    private int items;
+
+    private ExistEmbeddedServer existEmbeddedServer;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws DatabaseConfigurationException, EXistException, IOException, PermissionDeniedException,
+            LockException, TriggerException {
+        existEmbeddedServer = new ExistEmbeddedServer(
+                propertiesBuilder()
+                        .put(Indexer.PROPERTY_SPOOL_SIZE_LIMIT, spoolSizeLimit)
+                        .build(),
+                true,
+                true);
+        existEmbeddedServer.startDb();
+        data = GeneratedDataset.generate(0, items).getBytes(UTF_8);
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction();
+                final Collection collection = broker.getOrCreateCollection(transaction, GeneratedDataset.COLLECTION_URI)) {
+            broker.saveCollection(transaction, collection);
+            transaction.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        existEmbeddedServer.stopDb();
+    }
+
+    /**
+     * Validate and store a document read from a stream, replacing the previous one.
+     */
+    @Benchmark
+    public DocumentImpl store() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction();
+                final Collection collection = broker.openCollection(GeneratedDataset.COLLECTION_URI, Lock.LockMode.WRITE_LOCK)) {
+
+            final InputSource source = new InputSource(new ByteArrayInputStream(data));
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, DOC_NAME, source);
+            collection.store(transaction, broker, info, source);
+
+            transaction.commit();
+            return info.getDocument();
+        }
+    }
+}
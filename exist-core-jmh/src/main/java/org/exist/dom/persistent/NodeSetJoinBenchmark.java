@@ -0,0 +1,123 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import org.exist.EXistException;
+import org.exist.dom.QName;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.test.DatasetState;
+import org.exist.xquery.Expression;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+
+/**
+ * Benchmarks for the structural joins of the array based {@link NodeSet}
+ * implementations, i.e. {@link NewArrayNodeSet} and {@link ExtArrayNodeSet}.
+ *
+ * The node sets are read from the structural index once per trial
+ * and then copied into the implementation under test.
+ */
+@State(Scope.Benchmark)
+public class NodeSetJoinBenchmark {
+
+    public enum NodeSetImplementation {
+        NEW_ARRAY,
+        EXT_ARRAY,
+        COMPACT
+    }
+
+    @Param({ "NEW_ARRAY", "EXT_ARRAY", "COMPACT" })
+    private NodeSetImplementation implementation;
+
+    private NodeSet items;
+    private NodeSet names;
+    private NodeSet paras;
+
+    @Setup(Level.Trial)
+    public void setUp(final DatasetState datasetState) throws EXistException {
+        final BrokerPool pool = datasetState.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            items = copy(pool, findElements(broker, datasetState.getDocuments(), "item"));
+            names = copy(pool, findElements(broker, datasetState.getDocuments(), "name"));
+            paras = copy(pool, findElements(broker, datasetState.getDocuments(), "para"));
+        }
+    }
+
+    private static NodeSet findElements(final DBBroker broker, final DocumentSet docs, final String localName) {
+        return broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT, docs, new QName(localName, ""), null);
+    }
+
+    private NodeSet copy(final BrokerPool pool, final NodeSet nodes) {
+        final NodeSet copy;
+        switch (implementation) {
+            case EXT_ARRAY:
+                copy = new ExtArrayNodeSet();
+                break;
+
+            case COMPACT:
+                copy = new CompactNodeSet(pool.getNodeFactory());
+                break;
+
+            case NEW_ARRAY:
+            default:
+                copy = new NewArrayNodeSet();
+                break;
+        }
+        for (final NodeProxy p : nodes) {
+            copy.add(p);
+        }
+        return copy;
+    }
+
+    /**
+     * The child axis, e.g. {@code item/name}.
+     */
+    @Benchmark
+    public NodeSet selectParentChild() {
+        return names.selectParentChild(items, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+    }
+
+    /**
+     * The descendant axis, e.g. {@code item//para}.
+     */
+    @Benchmark
+    public NodeSet selectAncestorDescendant() {
+        return paras.selectAncestorDescendant(items, NodeSet.DESCENDANT, false, Expression.NO_CONTEXT_ID, true);
+    }
+
+    /**
+     * The ancestor axis, e.g. {@code para/ancestor::item}.
+     */
+    @Benchmark
+    public NodeSet selectAncestors() {
+        return items.selectAncestors(paras, false, Expression.NO_CONTEXT_ID);
+    }
+
+    /**
+     * The parent axis, e.g. {@code name/..}.
+     */
+    @Benchmark
+    public NodeSet selectParents() {
+        return names.getParents(Expression.NO_CONTEXT_ID);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.dom.QName;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.test.BrokerState;
+import org.exist.test.DatasetState;
+import org.exist.test.GeneratedDataset;
+import org.exist.util.ValueOccurrences;
+import org.exist.xquery.Constants.Comparison;
+import org.exist.xquery.TerminatedException;
+import org.exist.xquery.XQueryContext;
+import org.exist.xquery.XQueryWatchDog;
+import org.exist.xquery.value.StringValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for lookups in the range index, i.e. the {@link NativeValueIndex}.
+ */
+@State(Scope.Benchmark)
+public class NativeValueIndexBenchmark {
+
+    private static final QName NAME = new QName("name", "");
+    private static final QName CATEGORY = new QName("category", "", ElementValue.ATTRIBUTE);
+
+    private XQueryWatchDog watchDog;
+    private int items;
+
+    private final Random random = new Random(0x5eed);
+
+    @Setup(Level.Trial)
+    public void setUp(final DatasetState datasetState) {
+        watchDog = new XQueryWatchDog(new XQueryContext(datasetState.getBrokerPool()));
+        items = datasetState.getItems();
+    }
+
+    /**
+     * Equality lookup of a single element by its unique value.
+     */
+    @Benchmark
+    public NodeSet findElementEq(final DatasetState datasetState, final BrokerState brokerState) throws TerminatedException {
+        final StringValue value = new StringValue(GeneratedDataset.itemName(random.nextInt(items)));
+        return brokerState.getBroker().getValueIndex().find(watchDog, Comparison.EQ, datasetState.getDocuments(), null,
+                NodeSet.ANCESTOR, NAME, value);
+    }
+
+    /**
+     * Equality lookup of an attribute value shared by
+     * 1/{@link GeneratedDataset#CATEGORIES} of the items.
+     */
+    @Benchmark
+    public NodeSet findAttributeEq(final DatasetState datasetState, final BrokerState brokerState) throws TerminatedException {
+        final StringValue value = new StringValue(GeneratedDataset.category(random.nextInt(GeneratedDataset.CATEGORIES)));
+        return brokerState.getBroker().getValueIndex().find(watchDog, Comparison.EQ, datasetState.getDocuments(), null,
+                NodeSet.ANCESTOR, CATEGORY, value);
+    }
+
+    /**
+     * Range lookup of the element values which sort after a value,
+     * the size of the result varies with the value.
+     */
+    @Benchmark
+    public NodeSet findElementGt(final DatasetState datasetState, final BrokerState brokerState) throws TerminatedException {
+        final StringValue value = new StringValue(GeneratedDataset.itemName(random.nextInt(items)));
+        return brokerState.getBroker().getValueIndex().find(watchDog, Comparison.GT, datasetState.getDocuments(), null,
+                NodeSet.ANCESTOR, NAME, value);
+    }
+
+    @Benchmark
+    public ValueOccurrences[] scanIndexKeys(final DatasetState datasetState, final BrokerState brokerState) {
+        final StringValue start = new StringValue(GeneratedDataset.itemName(random.nextInt(items)));
+        return brokerState.getBroker().getValueIndex().scanIndexKeys(datasetState.getDocuments(), null,
+                new QName[] { NAME }, start);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.EXistException;
+import org.exist.storage.BrokerPool;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.exist.xquery.TerminatedException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Benchmarks for inserting keys into, and range scanning, a {@link BTree}.
+ */
+@State(Scope.Benchmark)
+public class BTreeBenchmark {
+
+    private static final byte BTREE_BENCHMARK_FILE_ID = 0x7F;
+    private static final short BTREE_BENCHMARK_FILE_VERSION = Short.MIN_VALUE;
+
+    @Param({ "100000" })
+    private int keys;
+
+    @Param({ "100" })
+    private int scanLength;
+
+    private ExistEmbeddedServer existEmbeddedServer;
+    private Path dir;
+
+    /**
+     * A tree which is pre-populated with {@link #keys} keys.
+     */
+    private BTree populated;
+
+    /**
+     * An empty tree which is re-created for each iteration.
+     */
+    private BTree empty;
+    private int nextKey;
+
+    private final Random random = new Random(0x5eed);
+
+    @Setup(Level.Trial)
+    public void setUp() throws DatabaseConfigurationException, EXistException, IOException, DBException {
+        existEmbeddedServer = new ExistEmbeddedServer(true, true);
+        existEmbeddedServer.startDb();
+        dir = Files.createTempDirectory("btree-benchmark");
+
+        populated = open(dir.resolve("populated.dbx"));
+        for (int i = 0; i < keys; i++) {
+            populated.addValue(key(i), i);
+        }
+        populated.flush();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws DBException, IOException {
+        empty = open(dir.resolve("empty.dbx"));
+        nextKey = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws DBException {
+        empty.closeAndRemove();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws DBException {
+        populated.close();
+        existEmbeddedServer.stopDb();
+        FileUtils.deleteQuietly(dir);
+    }
+
+    private BTree open(final Path file) throws DBException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final BTree btree = new BTree(pool, BTREE_BENCHMARK_FILE_ID, BTREE_BENCHMARK_FILE_VERSION, false, pool.getCacheManager(), file);
+        btree.create((short) -1);
+        return btree;
+    }
+
+    private static Value key(final int i) {
+        return new Value(String.format("K%010d", i));
+    }
+
+    @Benchmark
+    public long insertSequential() throws IOException, BTreeException {
+        final int i = nextKey++;
+        return empty.addValue(key(i), i);
+    }
+
+    @Benchmark
+    public long insertRandom() throws IOException, BTreeException {
+        final int i = random.nextInt(Integer.MAX_VALUE);
+        return empty.addValue(key(i), i);
+    }
+
+    @Benchmark
+    public long find() throws IOException, BTreeException {
+        return populated.findValue(key(random.nextInt(keys)));
+    }
+
+    @Benchmark
+    public void rangeScan(final Blackhole blackhole) throws IOException, BTreeException, TerminatedException {
+        final int start = random.nextInt(keys - scanLength);
+        final IndexQuery query = new IndexQuery(IndexQuery.BW, key(start), key(start + scanLength - 1));
+        populated.query(query, (value, pointer) -> {
+            blackhole.consume(pointer);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public void prefixScan(final Blackhole blackhole) throws IOException, BTreeException, TerminatedException {
+        // keys sharing all but the last digit, i.e. a run of 10 keys
+        final String prefix = String.format("K%09d", random.nextInt(keys / 10));
+        final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, new Value(prefix));
+        populated.query(query, (value, pointer) -> {
+            blackhole.consume(pointer);
+            return true;
+        });
+    }
+}
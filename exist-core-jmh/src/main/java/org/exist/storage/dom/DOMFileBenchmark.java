@@ -0,0 +1,97 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.dom;
+
+import org.exist.EXistException;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.IStoredNode;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.test.BrokerState;
+import org.exist.test.DatasetState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Benchmarks for retrieving stored nodes from the {@link DOMFile}.
+ *
+ * Nodes are retrieved either by their storage address, which reads
+ * the node directly from its data page, or by their node id alone,
+ * which must first look up the address in the B+-tree of the DOMFile.
+ * The string value of a node is read by traversing its descendants
+ * in the DOMFile.
+ */
+@State(Scope.Benchmark)
+public class DOMFileBenchmark {
+
+    /**
+     * Proxies for the {@code name} elements of the dataset, without storage addresses.
+     */
+    private NodeProxy[] byNodeId;
+
+    /**
+     * Proxies for the {@code name} elements of the dataset, with storage addresses.
+     */
+    private NodeProxy[] byAddress;
+
+    private final Random random = new Random(0x5eed);
+
+    @Setup(Level.Trial)
+    public void setUp(final DatasetState datasetState) throws EXistException {
+        final BrokerPool pool = datasetState.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final NodeSet names = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT,
+                    datasetState.getDocuments(), new QName("name", ""), null);
+
+            byNodeId = new NodeProxy[names.getLength()];
+            byAddress = new NodeProxy[names.getLength()];
+            int i = 0;
+            for (final NodeProxy name : names) {
+                byNodeId[i] = new NodeProxy(name.getOwnerDocument(), name.getNodeId());
+                final IStoredNode node = broker.objectWith(byNodeId[i]);
+                byAddress[i] = new NodeProxy(name.getOwnerDocument(), name.getNodeId(), node.getInternalAddress());
+                i++;
+            }
+        }
+    }
+
+    @Benchmark
+    public IStoredNode retrieveByAddress(final BrokerState brokerState) {
+        return brokerState.getBroker().objectWith(byAddress[random.nextInt(byAddress.length)]);
+    }
+
+    @Benchmark
+    public IStoredNode retrieveByNodeId(final BrokerState brokerState) {
+        final NodeProxy p = byNodeId[random.nextInt(byNodeId.length)];
+        return brokerState.getBroker().objectWith(p.getOwnerDocument(), p.getNodeId());
+    }
+
+    @Benchmark
+    public String nodeValue(final BrokerState brokerState) {
+        final DBBroker broker = brokerState.getBroker();
+        final IStoredNode node = broker.objectWith(byAddress[random.nextInt(byAddress.length)]);
+        return broker.getNodeValue(node, false);
+    }
+}
@@ -19,9 +19,16 @@
  */
 package org.exist.storage.lock;
 
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
 
 public class LockTableBenchmark {
 
@@ -50,6 +57,77 @@ public class LockTableBenchmark {
         private int documentsIndex = 0;
     }
 
+    /**
+     * A LockManager with and without the read bias for the root Collection.
+     */
+    @State(Scope.Benchmark)
+    public static class LockManagerState {
+        @Param({ "true", "false" })
+        private boolean rootReadBias;
+
+        private LockManager lockManager;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            lockManager = new LockManager(Runtime.getRuntime().availableProcessors() * 2, rootReadBias);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PathsState {
+        private final XmldbURI[] dataSubCollections = new XmldbURI[DATA_SUB_COLLECTIONS + 1];
+        private final XmldbURI[] documents = new XmldbURI[DOCUMENTS + 1];
+
+        private int dataSubCollectionIndex = 0;
+        private int documentsIndex = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < dataSubCollections.length; i++) {
+                dataSubCollections[i] = XmldbURI.create("/db/apps/docs/data/" + i);
+            }
+            for (int i = 0; i < documents.length; i++) {
+                documents[i] = XmldbURI.create("/db/apps/docs/data/0/" + i);
+            }
+        }
+    }
+
+    /**
+     * Every reader takes the INTENTION_READ lock on /db, so
+     * with many threads this measures the contention on the root.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void acquireCollectionReadLock(final LockManagerState lockManagerState, final PathsState pathsState,
+            final Blackhole blackhole) throws LockException {
+        if (pathsState.dataSubCollectionIndex == pathsState.dataSubCollections.length) {
+            pathsState.dataSubCollectionIndex = 0;
+        }
+        final XmldbURI collectionUri = pathsState.dataSubCollections[pathsState.dataSubCollectionIndex++];
+        try (final ManagedCollectionLock collectionLock = lockManagerState.lockManager.acquireCollectionReadLock(collectionUri)) {
+            blackhole.consume(collectionLock);
+        }
+    }
+
+    /**
+     * As {@link #acquireCollectionReadLock(LockManagerState, PathsState, Blackhole)} but
+     * with the document read lock which is taken whilst the Collection is read locked.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void acquireCollectionAndDocumentReadLock(final LockManagerState lockManagerState, final PathsState pathsState,
+            final Blackhole blackhole) throws LockException {
+        if (pathsState.documentsIndex == pathsState.documents.length) {
+            pathsState.documentsIndex = 0;
+        }
+        final XmldbURI documentUri = pathsState.documents[pathsState.documentsIndex++];
+        try (final ManagedCollectionLock collectionLock = lockManagerState.lockManager.acquireCollectionReadLock(documentUri.removeLastSegment());
+             final ManagedDocumentLock documentLock = lockManagerState.lockManager.acquireDocumentReadLock(documentUri)) {
+            blackhole.consume(collectionLock);
+            blackhole.consume(documentLock);
+        }
+    }
+
     @Benchmark
     public void testEvent(final LockTableState lockTableState, final EventsState eventsState) {
         while (!(eventsState.collectionIntentionReads >= EVENTS_COLLECTION_INTENTION_READ_LOCK
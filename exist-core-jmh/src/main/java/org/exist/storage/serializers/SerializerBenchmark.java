@@ -0,0 +1,130 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.serializers;
+
+import org.exist.EXistException;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.test.BrokerState;
+import org.exist.test.DatasetState;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.OutputKeys;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Benchmarks for serializing stored documents and nodes with the {@link Serializer}.
+ *
+ * The output is discarded, so that only the cost of reading
+ * the nodes and producing the characters is measured.
+ */
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+    @Param({ "no", "yes" })
+    private String indent;
+
+    private DocumentImpl[] documents;
+    private NodeProxy[] items;
+
+    private final Random random = new Random(0x5eed);
+
+    @Setup(Level.Trial)
+    public void setUp(final DatasetState datasetState) throws EXistException {
+        final List<DocumentImpl> docs = new ArrayList<>();
+        for (final Iterator<DocumentImpl> it = datasetState.getDocuments().getDocumentIterator(); it.hasNext(); ) {
+            docs.add(it.next());
+        }
+        documents = docs.toArray(new DocumentImpl[0]);
+
+        final BrokerPool pool = datasetState.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final NodeSet nodes = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT,
+                    datasetState.getDocuments(), new QName("item", ""), null);
+            items = new NodeProxy[nodes.getLength()];
+            int i = 0;
+            for (final NodeProxy item : nodes) {
+                items[i++] = item;
+            }
+        }
+    }
+
+    private Serializer serializer(final BrokerState brokerState) throws SAXException {
+        final Serializer serializer = brokerState.getBroker().getSerializer();
+        serializer.reset();
+        serializer.setProperty(OutputKeys.INDENT, indent);
+        return serializer;
+    }
+
+    @Benchmark
+    public long serializeDocument(final BrokerState brokerState) throws SAXException {
+        final DiscardingWriter writer = new DiscardingWriter();
+        serializer(brokerState).serialize(documents[random.nextInt(documents.length)], writer);
+        return writer.count;
+    }
+
+    @Benchmark
+    public long serializeNode(final BrokerState brokerState) throws SAXException {
+        final DiscardingWriter writer = new DiscardingWriter();
+        serializer(brokerState).serialize(items[random.nextInt(items.length)], writer);
+        return writer.count;
+    }
+
+    /**
+     * Counts and then discards the characters which are written to it.
+     */
+    private static final class DiscardingWriter extends Writer {
+        private long count;
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(final int c) {
+            count++;
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
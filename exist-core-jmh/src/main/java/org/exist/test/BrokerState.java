@@ -0,0 +1,55 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.test;
+
+import org.exist.EXistException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+
+/**
+ * Benchmark state holding a broker for each benchmark thread.
+ *
+ * Brokers are bound to the thread which acquired them, so the
+ * broker is acquired and released by the benchmark thread itself
+ * around each iteration, rather than around each invocation.
+ */
+@State(Scope.Thread)
+public class BrokerState {
+
+    private DBBroker broker;
+
+    @Setup(Level.Iteration)
+    public void setUp(final DatasetState datasetState) throws EXistException {
+        final BrokerPool pool = datasetState.getBrokerPool();
+        broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        broker.close();
+    }
+
+    public DBBroker getBroker() {
+        return broker;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.test;
+
+import org.exist.EXistException;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.dom.persistent.MutableDocumentSet;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+/**
+ * Benchmark state holding an embedded database with temporary
+ * storage, into which the {@link GeneratedDataset} has been stored.
+ *
+ * The database is started and the dataset stored once per trial.
+ */
+@State(Scope.Benchmark)
+public class DatasetState {
+
+    @Param({ "10" })
+    private int documents;
+
+    @Param({ "1000" })
+    private int itemsPerDocument;
+
+    private ExistEmbeddedServer existEmbeddedServer;
+    private MutableDocumentSet docs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws DatabaseConfigurationException, EXistException, IOException, PermissionDeniedException,
+            SAXException, LockException, CollectionConfigurationException {
+        existEmbeddedServer = new ExistEmbeddedServer(true, true);
+        existEmbeddedServer.startDb();
+        docs = GeneratedDataset.store(existEmbeddedServer.getBrokerPool(), documents, itemsPerDocument);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        existEmbeddedServer.stopDb();
+    }
+
+    public BrokerPool getBrokerPool() {
+        return existEmbeddedServer.getBrokerPool();
+    }
+
+    /**
+     * @return the stored documents of the dataset
+     */
+    public MutableDocumentSet getDocuments() {
+        return docs;
+    }
+
+    /**
+     * @return the total number of items in the dataset
+     */
+    public int getItems() {
+        return documents * itemsPerDocument;
+    }
+}
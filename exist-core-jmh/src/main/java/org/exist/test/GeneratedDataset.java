@@ -0,0 +1,188 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.test;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.persistent.DefaultDocumentSet;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.MutableDocumentSet;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.Txn;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Generates a reproducible dataset of XML documents and stores
+ * it into an embedded database for use by the benchmarks.
+ *
+ * Each document has the form:
+ *
+ * <pre>{@code
+ * <items>
+ *     <item id="..." category="...">
+ *         <name>...</name>
+ *         <price>...</price>
+ *         <description>
+ *             <para>...</para>
+ *             ...
+ *         </description>
+ *     </item>
+ *     ...
+ * </items>
+ * }</pre>
+ *
+ * A range index is configured on {@code name} and {@code @category}.
+ */
+public class GeneratedDataset {
+
+    public static final XmldbURI COLLECTION_URI = TestConstants.TEST_COLLECTION_URI.append("benchmark");
+
+    public static final String COLLECTION_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "    <index>" +
+            "        <create qname=\"name\" type=\"xs:string\"/>" +
+            "        <create qname=\"@category\" type=\"xs:string\"/>" +
+            "    </index>" +
+            "</collection>";
+
+    public static final int CATEGORIES = 16;
+    private static final int MAX_PARAS = 4;
+    private static final long SEED = 0x5eed;
+
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit",
+            "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore",
+            "magna", "aliqua", "enim", "ad", "minim", "veniam", "quis", "nostrud"
+    };
+
+    private GeneratedDataset() {
+    }
+
+    /**
+     * Get the name of an item.
+     *
+     * @param item the number of the item
+     *
+     * @return the content of the item's name element
+     */
+    public static String itemName(final int item) {
+        return "Item " + item;
+    }
+
+    /**
+     * Get the category of an item.
+     *
+     * @param item the number of the item
+     *
+     * @return the value of the item's category attribute
+     */
+    public static String category(final int item) {
+        return "category-" + (item % CATEGORIES);
+    }
+
+    /**
+     * Generate a document.
+     *
+     * @param firstItem the number of the first item in the document
+     * @param items the number of items in the document
+     *
+     * @return the serialized document
+     */
+    public static String generate(final int firstItem, final int items) {
+        final Random random = new Random(SEED + firstItem);
+        final StringBuilder builder = new StringBuilder(items * 256);
+        builder.append("<items>");
+        for (int i = firstItem; i < firstItem + items; i++) {
+            builder.append("<item id=\"").append(i).append("\" category=\"").append(category(i)).append("\">");
+            builder.append("<name>").append(itemName(i)).append("</name>");
+            builder.append("<price>").append(random.nextInt(100_000) / 100.0).append("</price>");
+            builder.append("<description>");
+            final int paras = 1 + random.nextInt(MAX_PARAS);
+            for (int j = 0; j < paras; j++) {
+                builder.append("<para>");
+                final int words = 4 + random.nextInt(16);
+                for (int k = 0; k < words; k++) {
+                    if (k > 0) {
+                        builder.append(' ');
+                    }
+                    builder.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                builder.append("</para>");
+            }
+            builder.append("</description>");
+            builder.append("</item>");
+        }
+        builder.append("</items>");
+        return builder.toString();
+    }
+
+    /**
+     * Store the dataset into {@link #COLLECTION_URI}.
+     *
+     * @param pool the database
+     * @param documents the number of documents to store
+     * @param itemsPerDocument the number of items in each document
+     *
+     * @return the stored documents
+     */
+    public static MutableDocumentSet store(final BrokerPool pool, final int documents, final int itemsPerDocument)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException,
+            CollectionConfigurationException {
+        final MutableDocumentSet docs = new DefaultDocumentSet();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction();
+                final Collection collection = broker.getOrCreateCollection(transaction, COLLECTION_URI)) {
+
+            broker.saveCollection(transaction, collection);
+            pool.getConfigurationManager().addConfiguration(transaction, broker, collection, COLLECTION_CONFIG);
+
+            for (int i = 0; i < documents; i++) {
+                final String xml = generate(i * itemsPerDocument, itemsPerDocument);
+                final IndexInfo info = collection.validateXMLResource(transaction, broker, XmldbURI.create("items-" + i + ".xml"), xml);
+                collection.store(transaction, broker, info, xml);
+                docs.add(info.getDocument());
+            }
+
+            transaction.commit();
+        }
+        return docs;
+    }
+
+    /**
+     * Get the first document of the dataset.
+     *
+     * @param docs the dataset as returned by {@link #store(BrokerPool, int, int)}
+     *
+     * @return the first document
+     */
+    public static DocumentImpl firstDocument(final MutableDocumentSet docs) {
+        return docs.getDocumentIterator().next();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.EXistException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.test.BrokerState;
+import org.exist.test.DatasetState;
+import org.exist.test.GeneratedDataset;
+import org.exist.xquery.value.Sequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+
+/**
+ * End-to-end benchmarks for evaluating XQuery against
+ * the {@link GeneratedDataset} in an embedded database.
+ */
+@State(Scope.Benchmark)
+public class XQueryBenchmark {
+
+    private static final String COLLECTION = "collection('" + GeneratedDataset.COLLECTION_URI + "')";
+
+    public enum Query {
+        /**
+         * Path expression with a predicate, answered by the range index.
+         */
+        PATH_PREDICATE(COLLECTION + "//item[@category = 'category-3']/name"),
+
+        /**
+         * Equality lookup of a single element, answered by the range index.
+         */
+        VALUE_LOOKUP(COLLECTION + "//item[name = 'Item 42']"),
+
+        /**
+         * Predicate which is not supported by an index.
+         */
+        CONTAINS("count(" + COLLECTION + "//para[contains(., 'magna aliqua')])"),
+
+        /**
+         * Filtering and ordering in a FLWOR expression.
+         */
+        FLWOR("for $item in " + COLLECTION + "//item" +
+                " where xs:double($item/price) > 900" +
+                " order by xs:double($item/price) descending" +
+                " return $item/name"),
+
+        /**
+         * Aggregation over all items.
+         */
+        AGGREGATE("sum(" + COLLECTION + "//price ! xs:double(.))"),
+
+        /**
+         * Construction of new nodes from stored nodes.
+         */
+        CONSTRUCT("<result>{ for $item in " + COLLECTION + "//item[@category = 'category-7']" +
+                " return <entry id='{$item/@id}'>{ $item/name/text() }</entry> }</result>");
+
+        private final String xquery;
+
+        Query(final String xquery) {
+            this.xquery = xquery;
+        }
+    }
+
+    @Param({ "PATH_PREDICATE", "VALUE_LOOKUP", "CONTAINS", "FLWOR", "AGGREGATE", "CONSTRUCT" })
+    private Query query;
+
+    private CompiledXQuery compiled;
+
+    @Setup(Level.Trial)
+    public void setUp(final DatasetState datasetState) throws EXistException, XPathException, PermissionDeniedException {
+        final BrokerPool pool = datasetState.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQueryContext context = new XQueryContext(pool);
+            compiled = pool.getXQueryService().compile(broker, context, query.xquery);
+        }
+    }
+
+    /**
+     * Compiles and then executes the query.
+     */
+    @Benchmark
+    public int compileAndExecute(final DatasetState datasetState, final BrokerState brokerState) throws XPathException, PermissionDeniedException {
+        final DBBroker broker = brokerState.getBroker();
+        final Sequence result = datasetState.getBrokerPool().getXQueryService().execute(broker, query.xquery, null);
+        return result.getItemCount();
+    }
+
+    /**
+     * Executes the query which was compiled once for the trial.
+     */
+    @Benchmark
+    public int execute(final DatasetState datasetState, final BrokerState brokerState) throws XPathException, PermissionDeniedException {
+        final DBBroker broker = brokerState.getBroker();
+        final Sequence result = datasetState.getBrokerPool().getXQueryService().execute(broker, compiled, null);
+        return result.getItemCount();
+    }
+}
@@ -81,10 +81,19 @@ public class Indexer implements ContentHandler, LexicalHandler, ErrorHandler {
     public static final String CONFIGURATION_INDEX_ELEMENT_NAME = "index";
     public static final String SUPPRESS_WHITESPACE_ATTRIBUTE = "suppress-whitespace";
     public static final String PRESERVE_WS_MIXED_CONTENT_ATTRIBUTE = "preserve-whitespace-mixed-content";
+    public static final String SPOOL_SIZE_LIMIT_ATTRIBUTE = "spool-size-limit";
 
     public static final String PROPERTY_INDEXER_CONFIG = "indexer.config";
     public final static String PROPERTY_SUPPRESS_WHITESPACE = "indexer.suppress-whitespace";
     public static final String PROPERTY_PRESERVE_WS_MIXED_CONTENT = "indexer.preserve-whitespace-mixed-content";
+    public static final String PROPERTY_SPOOL_SIZE_LIMIT = "indexer.spool-size-limit";
+
+    /**
+     * Default maximum size in megabytes of the SAX events spooled
+     * from the validation phase, to be replayed when storing the document.
+     * Spooling is disabled by default.
+     */
+    public static final int DEFAULT_SPOOL_SIZE_LIMIT = 0;
 
     private final DBBroker broker;
     private final Txn transaction;
@@ -185,7 +194,7 @@ public class Indexer implements ContentHandler, LexicalHandler, ErrorHandler {
 
     public void setValidating(final boolean validate) {
         this.validate = validate;
-        if (!validate) {
+        if (!validate && !broker.isIndexingDeferred()) {
             this.indexListener = broker.getIndexController()
                 .getStreamListener(document, ReindexMode.STORE);
         }
@@ -19,6 +19,7 @@
  */
 package org.exist.backup;
 
+import org.exist.EXistException;
 import org.exist.collections.Collection;
 import org.exist.dom.persistent.*;
 import org.exist.management.Agent;
@@ -30,6 +31,7 @@ import org.exist.security.Permission;
 import org.exist.security.PermissionDeniedException;
 import org.exist.security.internal.AccountImpl;
 import org.exist.stax.EmbeddedXMLStreamReader;
+import org.exist.storage.BrokerPool;
 import org.exist.storage.DBBroker;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.StorageAddress;
@@ -39,6 +41,7 @@ import org.exist.storage.dom.DOMFile;
 import org.exist.storage.dom.DOMTransaction;
 import org.exist.storage.index.CollectionStore;
 import org.exist.storage.io.VariableByteInput;
+import org.exist.storage.lock.Lock.LockMode;
 import org.exist.storage.txn.Txn;
 import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.TerminatedException;
@@ -49,6 +52,11 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class ConsistencyCheck {
@@ -112,6 +120,266 @@ public class ConsistencyCheck {
         }
     }
 
+    /**
+     * Runs the same tests as {@link #checkAll(ProgressCallback)}, but without requiring exclusive
+     * access to the database, so that other transactions may continue whilst the check runs.
+     *
+     * The collection tree is walked from /db, holding a read lock on only one collection at a time.
+     * The documents of the collections are then checked by the calling thread and up to threads - 1 worker
+     * threads (see {@link BrokerPool#getWorkerExecutor()}), each with a broker of its own, holding a read lock
+     * on only the document being checked. A worker which cannot get a broker without waiting does not check
+     * any documents, see {@link BrokerPool#tryGet(Optional)}. Each collection and document
+     * is therefore checked in a consistent state, though not the database as a whole at a single point in time;
+     * collections and documents which are removed whilst the check runs are skipped.
+     *
+     * @param callback the callback object to report to, which may be called concurrently by several threads
+     * @param threads the maximum number of threads for checking documents
+     * @return a list of {@link ErrorReport} objects or an empty list if no errors were found
+     * @throws TerminatedException if a signal was received that operations should be aborted
+     * @throws EXistException if a broker for checking documents cannot be obtained
+     */
+    public List<ErrorReport> checkAllOnline(@Nullable final ProgressCallback callback, final int threads)
+            throws TerminatedException, EXistException {
+        AccountImpl.getSecurityProperties().enableCheckPasswords(false);
+        try {
+            final List<ErrorReport> errors = Collections.synchronizedList(new ArrayList<>());
+            final List<XmldbURI> collections = new ArrayList<>();
+            final int documentCount = checkCollectionTreeOnline(collections, errors, callback);
+            checkDocumentsOnline(collections, documentCount, threads, errors, callback);
+            return errors;
+        } finally {
+            AccountImpl.getSecurityProperties().enableCheckPasswords(true);
+        }
+    }
+
+    /**
+     * Walks the collection tree, locking one collection at a time.
+     *
+     * @return the number of documents in the collections
+     */
+    private int checkCollectionTreeOnline(final List<XmldbURI> collections, final List<ErrorReport> errors,
+            @Nullable final ProgressCallback callback) throws TerminatedException {
+        int documentCount = 0;
+        final Set<Integer> visited = new HashSet<>();
+        final Deque<XmldbURI[]> pending = new ArrayDeque<>();
+        pending.push(new XmldbURI[] { null, XmldbURI.ROOT_COLLECTION_URI });
+        while (!pending.isEmpty()) {
+            final XmldbURI[] next = pending.pop();
+            final XmldbURI parentUri = next[0];
+            final XmldbURI uri = next[1];
+            final List<XmldbURI> children = new ArrayList<>();
+
+            try (final Collection collection = broker.openCollection(uri, LockMode.READ_LOCK)) {
+                if (collection == null) {
+                    if (parentUri != null && isChildCollection(parentUri, uri)) {
+                        final ErrorReport.CollectionError error = new ErrorReport.CollectionError(
+                                ErrorReport.CHILD_COLLECTION,
+                                "Child collection not found: " + uri.lastSegment() + ", parent is " + parentUri);
+                        error.setCollectionURI(uri.lastSegment());
+                        reportError(error, errors, callback);
+                    }
+                    // otherwise the collection was removed since its parent was checked
+                    continue;
+                }
+                if (!visited.add(collection.getId())) {
+                    continue;
+                }
+
+                if (callback != null) {
+                    callback.startCollection(uri.toString());
+                }
+                checkPermissions(collection, errors);
+                documentCount += collection.getDocumentCountNoLock(broker);
+                for (final Iterator<XmldbURI> i = collection.collectionIteratorNoLock(broker); i.hasNext(); ) {
+                    children.add(uri.append(i.next()));
+                }
+                collections.add(uri);
+            } catch (final TerminatedException e) {
+                throw e;
+            } catch (final Exception e) {
+                final ErrorReport.CollectionError error = new ErrorReport.CollectionError(
+                        ErrorReport.CHILD_COLLECTION,
+                        "Error while loading collection: " + uri + ", parent is " + parentUri);
+                error.setCollectionURI(uri);
+                reportError(error, errors, callback);
+                continue;
+            }
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(new XmldbURI[] { uri, children.get(i) });
+            }
+        }
+        return documentCount;
+    }
+
+    /**
+     * Checks if a child collection which could not be loaded is still listed by its parent,
+     * i.e. it was not just removed concurrently.
+     */
+    private boolean isChildCollection(final XmldbURI parentUri, final XmldbURI uri) {
+        try (final Collection parent = broker.openCollection(parentUri, LockMode.READ_LOCK)) {
+            return parent != null && parent.hasChildCollectionNoLock(broker, uri.lastSegment());
+        } catch (final PermissionDeniedException e) {
+            return true;
+        }
+    }
+
+    private void checkDocumentsOnline(final List<XmldbURI> collections, final int documentCount, final int threads,
+            final List<ErrorReport> errors, @Nullable final ProgressCallback callback)
+            throws TerminatedException, EXistException {
+        final BrokerPool pool = broker.getBrokerPool();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger current = new AtomicInteger();
+
+        final int workers = Math.min(threads, collections.size()) - 1;
+        final ExecutorService executor = pool.getWorkerExecutor();
+        final List<Future<Void>> futures = new ArrayList<>(Math.max(0, workers));
+        // set by whichever of a worker or the calling thread comes first, so that
+        // a worker which has not started once all collections are checked never runs
+        final List<AtomicBoolean> claims = new ArrayList<>(Math.max(0, workers));
+        for (int i = 0; i < workers; i++) {
+            final AtomicBoolean claimed = new AtomicBoolean();
+            claims.add(claimed);
+            futures.add(executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                // never wait for a broker, whilst the calling thread holds one and waits for this worker.
+                // Without a broker, the collections of this worker are checked by the calling thread
+                final Optional<DBBroker> leased = pool.tryGet(Optional.of(broker.getCurrentSubject()));
+                if (leased.isPresent()) {
+                    try (final DBBroker workerBroker = leased.get()) {
+                        new ConsistencyCheck(workerBroker, transaction, false, checkDocs)
+                                .checkDocumentsOnline(collections, next, current, documentCount, errors, callback);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        Throwable primary = null;
+        try {
+            checkDocumentsOnline(collections, next, current, documentCount, errors, callback);
+        } catch (final Throwable t) {
+            primary = t;
+            throw t;
+        } finally {
+            // stop the workers from taking any more collections, e.g. after the check was terminated
+            next.set(collections.size());
+
+            boolean interrupted = false;
+            Exception failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                if (claims.get(i).compareAndSet(false, true)) {
+                    // never started
+                    futures.get(i).cancel(false);
+                    continue;
+                }
+                // a running worker has to finish before the errors are reported
+                while (true) {
+                    try {
+                        futures.get(i).get();
+                        break;
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
+                    } catch (final ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof TerminatedException || e.getCause() instanceof EXistException
+                                    ? (Exception) e.getCause()
+                                    : new EXistException("Error while checking documents: " + e.getCause().getMessage(), e.getCause());
+                        }
+                        break;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null && primary != null) {
+                primary.addSuppressed(failure);
+            } else if (failure instanceof TerminatedException) {
+                throw (TerminatedException) failure;
+            } else if (failure != null) {
+                throw (EXistException) failure;
+            }
+        }
+    }
+
+    /**
+     * Take collections until there are none left, and check their documents.
+     */
+    private void checkDocumentsOnline(final List<XmldbURI> collections, final AtomicInteger next,
+            final AtomicInteger current, final int documentCount, final List<ErrorReport> errors,
+            @Nullable final ProgressCallback callback) throws TerminatedException {
+        int i;
+        while ((i = next.getAndIncrement()) < collections.size()) {
+            final XmldbURI uri = collections.get(i);
+
+            // take the documents of the collection, in the order of their storage pages
+            final List<DocumentImpl> documents = new ArrayList<>();
+            try (final Collection collection = broker.openCollection(uri, LockMode.READ_LOCK)) {
+                if (collection == null) {
+                    // removed since the collection tree was walked
+                    continue;
+                }
+                for (final Iterator<DocumentImpl> j = collection.iteratorNoLock(broker); j.hasNext(); ) {
+                    documents.add(j.next());
+                }
+            } catch (final PermissionDeniedException e) {
+                final ErrorReport.CollectionError error = new ErrorReport.CollectionError(
+                        ErrorReport.RESOURCE_ACCESS_FAILED,
+                        "Error while loading documents of collection: " + uri, e);
+                error.setCollectionURI(uri);
+                reportError(error, errors, callback);
+                continue;
+            }
+            documents.sort(Comparator.comparingLong(doc -> StorageAddress.pageFromPointer(doc.getFirstChildAddress())));
+
+            for (final DocumentImpl document : documents) {
+                final XmldbURI docUri = uri.append(document.getFileURI());
+                try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                    if (lockedDoc == null) {
+                        // removed since the collection was read
+                        continue;
+                    }
+                    final DocumentImpl doc = lockedDoc.getDocument();
+                    if (callback != null) {
+                        callback.startDocument(doc.getFileURI().toString(), current.incrementAndGet(), documentCount);
+                    }
+
+                    ErrorReport report = checkPermissions(doc);
+                    if (report == null && doc.getResourceType() == DocumentImpl.XML_FILE) {
+                        if (checkDocs) {
+                            report = checkXMLTree(doc);
+                        } else {
+                            report = checkDocument(doc);
+                        }
+                    }
+                    if (report != null) {
+                        if (report instanceof ErrorReport.ResourceError) {
+                            ((ErrorReport.ResourceError) report).setDocumentId(doc.getDocId());
+                        }
+                        reportError(report, errors, callback);
+                    }
+                } catch (final PermissionDeniedException e) {
+                    final ErrorReport.ResourceError error = new ErrorReport.ResourceError(
+                            ErrorReport.RESOURCE_ACCESS_FAILED,
+                            "Error while loading document: " + docUri, e);
+                    error.setDocumentId(document.getDocId());
+                    reportError(error, errors, callback);
+                }
+            }
+        }
+    }
+
+    private static void reportError(final ErrorReport error, final List<ErrorReport> errors,
+            @Nullable final ProgressCallback callback) {
+        errors.add(error);
+        if (callback != null) {
+            callback.error(error);
+        }
+    }
+
     private void checkCollection(final Collection collection, final List<ErrorReport> errors,
                                  final ProgressCallback callback) throws TerminatedException {
         final XmldbURI uri = collection.getURI();
@@ -280,7 +548,7 @@ public class ConsistencyCheck {
      */
     public ErrorReport checkDocument(final DocumentImpl doc) {
         final DOMFile domDb = ((NativeBroker) broker).getDOMFile();
-        return (ErrorReport) new DOMTransaction(this, domDb, () -> broker.getBrokerPool().getLockManager().acquireBtreeWriteLock(domDb.getLockName()), doc) {
+        return (ErrorReport) new DOMTransaction(this, domDb, () -> broker.getBrokerPool().getLockManager().acquireBtreeReadLock(domDb.getLockName()), doc) {
             public Object start() {
                 try {
                     final ElementImpl root = (ElementImpl) doc.getDocumentElement();
@@ -310,7 +578,7 @@ public class ConsistencyCheck {
      */
     public ErrorReport checkXMLTree(final DocumentImpl doc) {
         final DOMFile domDb = ((NativeBroker) broker).getDOMFile();
-        return (ErrorReport) new DOMTransaction(this, domDb, () -> broker.getBrokerPool().getLockManager().acquireBtreeWriteLock(domDb.getLockName()), doc) {
+        return (ErrorReport) new DOMTransaction(this, domDb, () -> broker.getBrokerPool().getLockManager().acquireBtreeReadLock(domDb.getLockName()), doc) {
             public Object start() {
                 EmbeddedXMLStreamReader reader = null;
                 try {
@@ -0,0 +1,264 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.backup;
+
+import org.exist.EXistException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DataBackup;
+import org.exist.storage.journal.Journal;
+import org.exist.storage.journal.Lsn;
+import org.exist.storage.recovery.JournalReplay;
+import org.exist.util.Configuration;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.exist.util.SystemExitCodes;
+import se.softhouse.jargo.Argument;
+import se.softhouse.jargo.ArgumentException;
+import se.softhouse.jargo.CommandLineParser;
+import se.softhouse.jargo.ParsedArguments;
+
+import javax.annotation.Nullable;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.exist.util.ArgumentUtil.getOpt;
+import static se.softhouse.jargo.Arguments.*;
+
+/**
+ * Restores the database from a snapshot of the data files, created by the
+ * {@link DataBackup} system task, and the journal files archived since, see the
+ * journal-archive-dir attribute of the recovery configuration.
+ *
+ * The data files are replaced by those of the snapshot, and the archived journal
+ * is then replayed up to a chosen LSN or point in time, by starting the database.
+ * The database must not be running.
+ */
+public class JournalRestoreMain {
+
+    /* general arguments */
+    private static final Argument<?> helpArg = helpArgument("-h", "--help");
+
+    /* restore parameters */
+    private static final Argument<File> configArg = fileArgument("-c", "--config")
+            .description("the database configuration (conf.xml) file to use for launching the db.")
+            .build();
+    private static final Argument<File> snapshotArg = fileArgument("-s", "--snapshot")
+            .description("the ZIP file of the data files written by the DataBackup system task.")
+            .required()
+            .build();
+    private static final Argument<File> archiveDirArg = fileArgument("-a", "--archive")
+            .description("the directory of the archived journal files, defaults to the configured journal-archive-dir.")
+            .build();
+    private static final Argument<String> lsnArg = stringArgument("-l", "--lsn")
+            .description("replay the journal up to and including the entry with this LSN, given as fileNumber:offset.")
+            .build();
+    private static final Argument<String> timeArg = stringArgument("-t", "--time")
+            .description("replay the journal up to the last checkpoint at or before this xs:dateTime, e.g. 2019-06-01T12:00:00Z.")
+            .build();
+
+    public static void main(final String[] args) {
+        try {
+            final ParsedArguments arguments = CommandLineParser
+                    .withArguments(configArg, snapshotArg, archiveDirArg, lsnArg, timeArg)
+                    .andArguments(helpArg)
+                    .parse(args);
+
+            System.exit(process(arguments));
+        } catch (final ArgumentException e) {
+            System.out.println(e.getMessageAndUsage());
+            System.exit(SystemExitCodes.INVALID_ARGUMENT_EXIT_CODE);
+        }
+    }
+
+    private static int process(final ParsedArguments arguments) {
+        final Optional<Path> configFile = getOpt(arguments, configArg).map(File::toPath);
+        final Path snapshot = arguments.get(snapshotArg).toPath();
+
+        final Configuration config;
+        try {
+            if (configFile.isPresent()) {
+                config = new Configuration(configFile.get().toAbsolutePath().toString(), Optional.empty());
+            } else {
+                config = new Configuration();
+            }
+        } catch (final DatabaseConfigurationException e) {
+            System.err.println("ERROR: Failed to read the database configuration: " + e.getMessage());
+            return SystemExitCodes.CATCH_ALL_GENERAL_ERROR_EXIT_CODE;
+        }
+
+        final Optional<Path> archiveDir = Optional.ofNullable(getOpt(arguments, archiveDirArg).map(File::toPath)
+                .orElse((Path) config.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR)));
+        if (!archiveDir.isPresent() || !Files.isDirectory(archiveDir.get())) {
+            System.err.println("ERROR: No journal archive directory found, use --archive.");
+            return SystemExitCodes.INVALID_ARGUMENT_EXIT_CODE;
+        }
+
+        final Lsn targetLsn;
+        final long targetTimestamp;
+        try {
+            targetLsn = getOpt(arguments, lsnArg).map(JournalRestoreMain::parseLsn).orElse(null);
+            targetTimestamp = getOpt(arguments, timeArg).map(JournalRestoreMain::parseTime).orElse(-1L);
+        } catch (final IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            return SystemExitCodes.INVALID_ARGUMENT_EXIT_CODE;
+        }
+        if (targetLsn != null && targetTimestamp >= 0) {
+            System.err.println("ERROR: Only one of --lsn or --time may be given.");
+            return SystemExitCodes.INVALID_ARGUMENT_EXIT_CODE;
+        }
+
+        final Path dataDir = (Path) config.getProperty(BrokerPool.PROPERTY_DATA_DIR);
+        final Path journalDir = (Path) Optional.ofNullable(config.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR))
+                .orElse(dataDir);
+
+        try {
+            System.out.println("Restoring data files from snapshot " + snapshot.toAbsolutePath().toString() + " ...");
+            restore(snapshot, dataDir, journalDir, archiveDir.get(), targetLsn, targetTimestamp);
+        } catch (final IOException e) {
+            System.err.println("ERROR: Failed to restore the snapshot: " + e.getMessage());
+            return SystemExitCodes.IO_ERROR_EXIT_CODE;
+        }
+
+        // starting the database replays the journal
+        System.out.println("Replaying archived journal from " + archiveDir.get().toAbsolutePath().toString() + " ...");
+        try {
+            BrokerPool.configure(1, 5, config);
+            BrokerPool.getInstance();
+        } catch (final EXistException | DatabaseConfigurationException e) {
+            System.err.println("ERROR: Failed to replay the journal: " + e.getMessage());
+            return SystemExitCodes.CATCH_ALL_GENERAL_ERROR_EXIT_CODE;
+        } finally {
+            BrokerPool.stopAll(false);
+        }
+
+        System.out.println("Restore completed.");
+        return SystemExitCodes.OK_EXIT_CODE;
+    }
+
+    /**
+     * Replaces the data files by those of a snapshot, and requests the archived journal
+     * to be replayed on top of them when the database is next started.
+     *
+     * @param snapshot the ZIP file of the data files written by the {@link DataBackup} system task
+     * @param dataDir the data directory of the database
+     * @param journalDir the journal directory of the database
+     * @param archiveDir the directory of the archived journal files
+     * @param targetLsn the LSN of the last journal entry to replay, or null
+     * @param targetTimestamp the time of the last checkpoint to replay up to, or -1
+     *
+     * @throws IOException if the snapshot cannot be restored
+     */
+    public static void restore(final Path snapshot, final Path dataDir, final Path journalDir, final Path archiveDir,
+            @Nullable final Lsn targetLsn, final long targetTimestamp) throws IOException {
+        final Lsn start = extractSnapshot(snapshot, dataDir);
+        removeJournalFiles(journalDir);
+        new JournalReplay(archiveDir, start, targetLsn, targetTimestamp).write(dataDir);
+    }
+
+    /**
+     * Extracts the data files of the snapshot into the data directory.
+     *
+     * @return the LSN of the checkpoint at which the snapshot was taken
+     */
+    private static Lsn extractSnapshot(final Path snapshot, final Path dataDir) throws IOException {
+        Lsn start = null;
+        try (final ZipInputStream zis = new ZipInputStream(Files.newInputStream(snapshot))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (DataBackup.JOURNAL_POSITION_ENTRY.equals(entry.getName())) {
+                    start = readJournalPosition(zis);
+                } else if (!entry.isDirectory()) {
+                    final Path file = dataDir.resolve(entry.getName()).normalize();
+                    if (!file.startsWith(dataDir.normalize())) {
+                        throw new IOException("Snapshot entry is outside of the data directory: " + entry.getName());
+                    }
+                    Files.createDirectories(file.getParent());
+                    Files.copy(zis, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                zis.closeEntry();
+            }
+        }
+
+        if (start == null) {
+            throw new IOException("The snapshot does not record its position in the journal, it was either " +
+                    "created by an older version or with journalling disabled.");
+        }
+        return start;
+    }
+
+    private static Lsn readJournalPosition(final InputStream is) throws IOException {
+        final Properties position = new Properties();
+        position.load(is);
+        try {
+            return new Lsn(Short.parseShort(position.getProperty(DataBackup.JOURNAL_POSITION_FILE)),
+                    Long.parseLong(position.getProperty(DataBackup.JOURNAL_POSITION_OFFSET)));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid journal position in snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes the journal files of the replaced data files, which must not be recovered.
+     */
+    private static void removeJournalFiles(final Path journalDir) throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return;
+        }
+        try (final Stream<Path> files = Files.list(journalDir)) {
+            files.filter(path -> FileUtils.fileName(path).matches("[0-9a-f]{10}\\." + Journal.LOG_FILE_SUFFIX))
+                    .forEach(FileUtils::deleteQuietly);
+        }
+    }
+
+    private static Lsn parseLsn(final String lsn) {
+        final int idx = lsn.indexOf(':');
+        try {
+            if (idx > 0) {
+                return new Lsn(Short.parseShort(lsn.substring(0, idx).trim()),
+                        Long.parseLong(lsn.substring(idx + 1).trim()));
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid LSN, expected fileNumber:offset but was: " + lsn);
+    }
+
+    private static long parseTime(final String time) {
+        try {
+            return DatatypeFactory.newInstance().newXMLGregorianCalendar(time)
+                    .toGregorianCalendar().getTimeInMillis();
+        } catch (final DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid time, expected an xs:dateTime but was: " + time);
+        }
+    }
+}
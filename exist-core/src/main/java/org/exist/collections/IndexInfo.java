@@ -27,6 +27,7 @@ import org.exist.security.Permission;
 import org.exist.storage.DBBroker;
 import org.exist.storage.lock.ManagedDocumentLock;
 import org.exist.storage.txn.Txn;
+import org.exist.util.sax.event.SAXEventBuffer;
 import org.exist.util.serializer.DOMStreamer;
 import org.exist.xmldb.XmldbURI;
 import org.xml.sax.ContentHandler;
@@ -50,6 +51,7 @@ public class IndexInfo {
     private final ManagedDocumentLock documentLock;
 
     private DOMStreamer streamer;
+    private SAXEventBuffer spooledEvents;
     private DocumentTriggers docTriggers;
     private boolean creating = false;
     private Permission oldDocPermissions = null;
@@ -101,6 +103,51 @@ public class IndexInfo {
         reader.setErrorHandler(indexer);
     }
 
+    /**
+     * Set the reader as for {@link #setReader(XMLReader, EntityResolver)}, and
+     * additionally spool the events reported by the reader so that they may
+     * be replayed by {@link #replaySpooledEvents()} instead of parsing the document again.
+     *
+     * @param reader the reader
+     * @param maxSize the maximum size in bytes of the spooled events, if it is exceeded
+     *     the events are discarded and the document will have to be parsed again.
+     *
+     * @throws SAXException if the reader cannot be configured
+     */
+    void setSpoolingReader(final XMLReader reader, final long maxSize) throws SAXException {
+        final LexicalHandler lexicalHandler = docTriggers == null ? indexer : docTriggers;
+        final ContentHandler contentHandler = docTriggers == null ? indexer : docTriggers;
+        this.spooledEvents = new SAXEventBuffer(contentHandler, lexicalHandler, maxSize);
+        reader.setProperty(Namespaces.SAX_LEXICAL_HANDLER, spooledEvents);
+        reader.setContentHandler(spooledEvents);
+        reader.setErrorHandler(indexer);
+    }
+
+    /**
+     * Returns true if all of the events of the document were spooled whilst validating.
+     *
+     * @return true if {@link #replaySpooledEvents()} may be called.
+     */
+    boolean hasSpooledEvents() {
+        return spooledEvents != null && spooledEvents.isComplete();
+    }
+
+    /**
+     * Replays the events spooled whilst validating. The spooled
+     * events are released, so may only be replayed once.
+     *
+     * @throws SAXException if the indexer or a trigger raises an error
+     */
+    void replaySpooledEvents() throws SAXException {
+        final SAXEventBuffer events = spooledEvents;
+        spooledEvents = null;
+        if (docTriggers == null) {
+            events.replay(indexer, indexer);
+        } else {
+            events.replay(docTriggers, docTriggers);
+        }
+    }
+
     void setDOMStreamer(final DOMStreamer streamer) {
         this.streamer = streamer;
         if (docTriggers == null) {
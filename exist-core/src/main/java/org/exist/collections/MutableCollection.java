@@ -34,6 +34,7 @@ import org.apache.logging.log4j.Logger;
 import org.exist.Database;
 import org.exist.EXistException;
 import org.exist.Indexer;
+import org.exist.Namespaces;
 import org.exist.collections.triggers.*;
 import org.exist.indexing.IndexController;
 import org.exist.indexing.StreamListener;
@@ -62,6 +63,8 @@ import org.exist.xquery.Constants;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.XMLReader;
 
 import javax.annotation.Nullable;
@@ -1115,6 +1118,11 @@ public class MutableCollection implements Collection {
     @Override
     public void store(final Txn transaction, final DBBroker broker, final IndexInfo info, final InputSource source)
             throws EXistException, PermissionDeniedException, TriggerException, SAXException, LockException {
+        if(info.hasSpooledEvents()) {
+            storeXMLInternal(transaction, broker, info, IndexInfo::replaySpooledEvents);
+            return;
+        }
+
         final XMLReader reader = getReader(broker, false, info.getCollectionConfig());
         try {
             store(transaction, broker, info, source, reader);
@@ -1127,6 +1135,11 @@ public class MutableCollection implements Collection {
     public void store(final Txn transaction, final DBBroker broker, final IndexInfo info, final InputSource source, final XMLReader reader)
             throws EXistException, PermissionDeniedException, TriggerException, SAXException, LockException {
         storeXMLInternal(transaction, broker, info, storeInfo -> {
+            if(storeInfo.hasSpooledEvents()) {
+                storeInfo.replaySpooledEvents();
+                return;
+            }
+
             try {
                 final InputStream is = source.getByteStream();
                 if(is != null && is.markSupported()) {
@@ -1154,6 +1167,11 @@ public class MutableCollection implements Collection {
     public void store(final Txn transaction, final DBBroker broker, final IndexInfo info, final String data)
             throws EXistException, PermissionDeniedException, TriggerException, SAXException, LockException {
         storeXMLInternal(transaction, broker, info, storeInfo -> {
+            if(storeInfo.hasSpooledEvents()) {
+                storeInfo.replaySpooledEvents();
+                return;
+            }
+
             final CollectionConfiguration colconf = storeInfo.getDocument().getCollection().getConfiguration(broker);
             final XMLReader reader = getReader(broker, false, colconf);
             storeInfo.setReader(reader, null);
@@ -1314,8 +1332,13 @@ public class MutableCollection implements Collection {
     }
 
     private IndexInfo validateXMLResource(final Txn transaction, final DBBroker broker, final XmldbURI name, final CollectionConfiguration colconf, final InputSource source, final XMLReader reader) throws EXistException, PermissionDeniedException, TriggerException, SAXException, LockException, IOException {
+        final long spoolSizeLimit = getSpoolSizeLimit(broker, reader);
         return validateXMLResourceInternal(transaction, broker, name, colconf, (info) -> {
-            info.setReader(reader, null);
+            if(spoolSizeLimit > 0) {
+                info.setSpoolingReader(reader, spoolSizeLimit);
+            } else {
+                info.setReader(reader, null);
+            }
             try {
 
                 /*
@@ -1335,6 +1358,35 @@ public class MutableCollection implements Collection {
         });
     }
     
+    /**
+     * Get the maximum size of the SAX events which may be spooled whilst validating a document,
+     * so that the document does not have to be parsed a second time when it is stored.
+     *
+     * Events are only spooled when the reader does not validate, as the reader used for storing
+     * never validates, and a validating reader may report different events, e.g. default attributes.
+     *
+     * @param broker The database broker
+     * @param reader The reader which will be used for validating the document
+     *
+     * @return the maximum size in bytes, or 0 if events should not be spooled
+     */
+    private long getSpoolSizeLimit(final DBBroker broker, final XMLReader reader) {
+        final Integer spoolSizeLimit = (Integer) broker.getConfiguration().getProperty(Indexer.PROPERTY_SPOOL_SIZE_LIMIT);
+        final long limit = (spoolSizeLimit != null ? spoolSizeLimit : Indexer.DEFAULT_SPOOL_SIZE_LIMIT) * 1024L * 1024L;
+        if(limit <= 0) {
+            return 0;
+        }
+
+        try {
+            if(reader.getFeature(Namespaces.SAX_VALIDATION)) {
+                return 0;
+            }
+        } catch(final SAXNotRecognizedException | SAXNotSupportedException e) {
+            return 0;
+        }
+        return limit;
+    }
+
     //stops streams on the input source from being closed
     private InputSource closeShieldInputSource(final InputSource source) {
         final InputSource protectedInputSource = new InputSource();
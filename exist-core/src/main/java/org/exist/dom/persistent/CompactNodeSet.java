@@ -0,0 +1,1155 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.exist.dom.persistent;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.exist.collections.Collection;
+import org.exist.collections.ManagedLocks;
+import org.exist.dom.QName;
+import org.exist.numbering.DLNBase;
+import org.exist.numbering.NodeId;
+import org.exist.numbering.NodeIdFactory;
+import org.exist.storage.DBBroker;
+import org.exist.storage.lock.LockManager;
+import org.exist.storage.lock.ManagedDocumentLock;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.Constants;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.SequenceIterator;
+import org.w3c.dom.Node;
+
+import java.util.*;
+
+/**
+ * A memory efficient node set which stores its nodes in packed primitive
+ * arrays rather than as {@link NodeProxy} objects.
+ *
+ * For every node only the document id, the bits of the node id, the node type and
+ * the storage address are kept. The node ids of all nodes share a single byte array.
+ * A {@link NodeProxy} is only created when a node leaves the set, e.g. through
+ * {@link #get(int)}, an iterator, or because it is selected by one of the structural
+ * joins ({@link #selectParentChild(NodeSet, int, int)},
+ * {@link #selectAncestorDescendant(NodeSet, int, boolean, int, boolean)}). The joins
+ * compare node ids on their packed representation, so nodes which do not match are
+ * never materialized.
+ *
+ * Nodes which carry information that cannot be packed, i.e. context items or matches,
+ * are additionally kept as {@link NodeProxy} and are returned as-is. A node handed out
+ * by {@link #get(int)}, {@link #get(DocumentImpl, NodeId)}, {@link #parentWithChild(DocumentImpl, NodeId, boolean, boolean)}
+ * or an iterator is kept as well, because callers attach matches and context nodes to it
+ * and expect to find them on the next access. The joins only materialize the nodes they
+ * add to their result, which is a different set. Use this class for large node sets which
+ * are mostly joined rather than iterated, such as the nodes read from the structural index.
+ * Otherwise use {@link NewArrayNodeSet}.
+ *
+ * Like {@link NewArrayNodeSet}, nodes are appended in arbitrary order and the set
+ * is sorted and duplicates removed on first access.
+ */
+public class CompactNodeSet extends AbstractArrayNodeSet implements ExtNodeSet, DocumentSet {
+
+    private final NodeIdFactory nodeIdFactory;
+
+    private Set<Collection> cachedCollections = null;
+
+    private final Int2ObjectMap<DocumentImpl> documents;
+
+    /**
+     * The QName shared by all nodes in the set, or null if the
+     * nodes have different, or unknown, names.
+     */
+    private QName qname = null;
+    private boolean mixedQNames = false;
+
+    private int documentCount = 0;
+
+    /**
+     * An array of Document IDs of length {@link #documentCount}
+     */
+    private int documentIds[] = new int[16];
+
+    /**
+     * An array of offsets into the node arrays,
+     * the index is the index from {@link #documentIds}.
+     */
+    private int documentNodesOffset[] = new int[16];
+
+    /**
+     * An array of the node count for each document,
+     * the index is the index from {@link #documentIds}.
+     */
+    private int documentNodesCount[] = new int[16];
+
+    /**
+     * The document id of each node.
+     */
+    private int nodeDocIds[];
+
+    /**
+     * The number of bits ({@link NodeId#units()}) of the node id of each node.
+     */
+    private int nodeIdUnits[];
+
+    /**
+     * The offset of the node id of each node in {@link #nodeIdData}.
+     */
+    private int nodeIdOffsets[];
+
+    private short nodeTypes[];
+
+    private long addresses[];
+
+    /**
+     * The serialized node ids of all nodes.
+     */
+    private byte nodeIdData[];
+    private int nodeIdDataLength = 0;
+
+    /**
+     * Nodes which could not be packed because they carry
+     * a context or matches. Allocated on first use.
+     */
+    private NodeProxy proxies[] = null;
+
+    public CompactNodeSet(final NodeIdFactory nodeIdFactory) {
+        this.nodeIdFactory = nodeIdFactory;
+        this.documents = new Int2ObjectOpenHashMap<>();
+        this.nodeDocIds = new int[INITIAL_SIZE];
+        this.nodeIdUnits = new int[INITIAL_SIZE];
+        this.nodeIdOffsets = new int[INITIAL_SIZE];
+        this.nodeTypes = new short[INITIAL_SIZE];
+        this.addresses = new long[INITIAL_SIZE];
+        this.nodeIdData = new byte[INITIAL_SIZE * 4];
+    }
+
+    public CompactNodeSet(final CompactNodeSet other) {
+        this.nodeIdFactory = other.nodeIdFactory;
+        this.documents = new Int2ObjectOpenHashMap<>(other.documents);
+        size = other.size;
+        isSorted = other.isSorted;
+        hasOne = other.hasOne;
+        itemType = other.itemType;
+        qname = other.qname;
+        mixedQNames = other.mixedQNames;
+        documentCount = other.documentCount;
+        documentIds = Arrays.copyOf(other.documentIds, other.documentIds.length);
+        documentNodesOffset = Arrays.copyOf(other.documentNodesOffset, other.documentNodesOffset.length);
+        documentNodesCount = Arrays.copyOf(other.documentNodesCount, other.documentNodesCount.length);
+        nodeDocIds = Arrays.copyOf(other.nodeDocIds, other.nodeDocIds.length);
+        nodeIdUnits = Arrays.copyOf(other.nodeIdUnits, other.nodeIdUnits.length);
+        nodeIdOffsets = Arrays.copyOf(other.nodeIdOffsets, other.nodeIdOffsets.length);
+        nodeTypes = Arrays.copyOf(other.nodeTypes, other.nodeTypes.length);
+        addresses = Arrays.copyOf(other.addresses, other.addresses.length);
+        nodeIdData = Arrays.copyOf(other.nodeIdData, other.nodeIdData.length);
+        nodeIdDataLength = other.nodeIdDataLength;
+        if(other.proxies != null) {
+            proxies = Arrays.copyOf(other.proxies, other.proxies.length);
+        }
+    }
+
+    @Override
+    public NodeSet copy() {
+        return new CompactNodeSet(this);
+    }
+
+    @Override
+    public void reset() {
+        documents.clear();
+        cachedCollections = null;
+        qname = null;
+        mixedQNames = false;
+        documentCount = 0;
+        nodeIdDataLength = 0;
+        proxies = null;
+        size = 0;
+        isSorted = false;
+        state = 0;
+    }
+
+    /**
+     * Add a node to the set, without creating a {@link NodeProxy}
+     * or {@link NodeId} for it.
+     *
+     * @param doc the document of the node
+     * @param data the array containing the serialized node id
+     * @param offset the offset of the node id in data
+     * @param units the number of bits of the node id, see {@link NodeId#units()}
+     * @param nodeType the DOM type of the node
+     * @param address the storage address of the node
+     * @param qname the name of the node, or null if unknown
+     */
+    public void add(final DocumentImpl doc, final byte[] data, final int offset, final int units,
+            final short nodeType, final long address, final QName qname) {
+        final int len = bytes(units);
+        ensureCapacity();
+        ensureDataCapacity(len);
+        System.arraycopy(data, offset, nodeIdData, nodeIdDataLength, len);
+        append(doc, units, nodeType, address);
+        if(proxies != null) {
+            proxies[size - 1] = null;
+        }
+
+        if(!mixedQNames) {
+            if(qname == null || (this.qname != null && !this.qname.equals(qname))) {
+                this.qname = null;
+                this.mixedQNames = true;
+            } else {
+                this.qname = qname;
+            }
+        }
+        added(NodeProxy.nodeType2XQuery(nodeType));
+    }
+
+    @Override
+    public void add(final NodeProxy proxy, final int sizeHint) {
+        addInternal(proxy, sizeHint);
+        // the name of a proxy is not known without loading the node
+        this.qname = null;
+        this.mixedQNames = true;
+        added(proxy.getType());
+    }
+
+    @Override
+    protected final void addInternal(final NodeProxy proxy, final int sizeHint) {
+        final NodeId nodeId = proxy.getNodeId();
+        ensureCapacity();
+        ensureDataCapacity(nodeId.size());
+        nodeId.serialize(nodeIdData, nodeIdDataLength);
+        append(proxy.getOwnerDocument(), nodeId.units(), proxy.getNodeType(), proxy.getInternalAddress());
+
+        // keep the proxy if it carries information which we cannot pack. Document
+        // nodes are kept too, as NodeId.DOCUMENT_NODE is compared by identity
+        if(proxy.getContext() != null || proxy.getMatches() != null || nodeId == NodeId.DOCUMENT_NODE) {
+            ensureProxies();
+            proxies[size - 1] = proxy;
+        } else if(proxies != null) {
+            proxies[size - 1] = null;
+        }
+    }
+
+    private void append(final DocumentImpl doc, final int units, final short nodeType, final long address) {
+        final int docId = doc.getDocId();
+        if(!documents.containsKey(docId)) {
+            documents.put(docId, doc);
+            cachedCollections = null;
+        }
+        nodeDocIds[size] = docId;
+        nodeIdUnits[size] = units;
+        nodeIdOffsets[size] = nodeIdDataLength;
+        nodeTypes[size] = nodeType;
+        addresses[size] = address;
+        nodeIdDataLength += bytes(units);
+        size++;
+    }
+
+    private void added(final int type) {
+        if(size == 1) {
+            this.hasOne = true;
+        } else if(hasOne) {
+            this.hasOne = compare(size - 2, size - 1) == 0;
+        }
+        this.isSorted = false;
+        setHasChanged();
+        checkItemType(type);
+    }
+
+    private static int bytes(final int units) {
+        return (units + 7) >>> 3;
+    }
+
+    private void ensureCapacity() {
+        if(size == nodeDocIds.length) {
+            final int nsize = size << 1;
+            nodeDocIds = Arrays.copyOf(nodeDocIds, nsize);
+            nodeIdUnits = Arrays.copyOf(nodeIdUnits, nsize);
+            nodeIdOffsets = Arrays.copyOf(nodeIdOffsets, nsize);
+            nodeTypes = Arrays.copyOf(nodeTypes, nsize);
+            addresses = Arrays.copyOf(addresses, nsize);
+            if(proxies != null) {
+                proxies = Arrays.copyOf(proxies, nsize);
+            }
+        }
+    }
+
+    private void ensureDataCapacity(final int len) {
+        if(nodeIdDataLength + len > nodeIdData.length) {
+            nodeIdData = Arrays.copyOf(nodeIdData, Math.max(nodeIdData.length << 1, nodeIdDataLength + len));
+        }
+    }
+
+    private void ensureProxies() {
+        if(proxies == null) {
+            proxies = new NodeProxy[nodeDocIds.length];
+        }
+    }
+
+    /**
+     * Create a {@link NodeProxy} for the node at the given position.
+     */
+    private NodeProxy materialize(final int pos) {
+        if(proxies != null && proxies[pos] != null) {
+            return proxies[pos];
+        }
+        final NodeProxy p = new NodeProxy(documents.get(nodeDocIds[pos]), nodeId(pos), nodeTypes[pos], addresses[pos]);
+        if(qname != null) {
+            p.setQName(qname);
+        }
+        return p;
+    }
+
+    /**
+     * Create a {@link NodeProxy} for the node at the given position and
+     * keep it in the set, so that changes made to it are retained.
+     */
+    private NodeProxy retain(final int pos) {
+        final NodeProxy p = materialize(pos);
+        ensureProxies();
+        proxies[pos] = p;
+        return p;
+    }
+
+    private NodeId nodeId(final int pos) {
+        if(proxies != null && proxies[pos] != null) {
+            return proxies[pos].getNodeId();
+        }
+        return nodeIdFactory.createFromData(nodeIdUnits[pos], nodeIdData, nodeIdOffsets[pos]);
+    }
+
+    private boolean isDocumentNode(final int pos) {
+        return proxies != null && proxies[pos] != null && proxies[pos].getNodeId() == NodeId.DOCUMENT_NODE;
+    }
+
+    private static byte[] serialize(final NodeId nodeId) {
+        final byte[] data = new byte[nodeId.size()];
+        nodeId.serialize(data, 0);
+        final int len = bytes(nodeId.units());
+        return len == data.length ? data : Arrays.copyOf(data, len);
+    }
+
+    /**
+     * Compare two nodes in the set in document order.
+     */
+    private int compare(final int pos1, final int pos2) {
+        final int diff = nodeDocIds[pos1] - nodeDocIds[pos2];
+        if(diff != Constants.EQUAL) {
+            return diff;
+        }
+        return compareNodeId(pos1, nodeIdData, nodeIdOffsets[pos2], bytes(nodeIdUnits[pos2]));
+    }
+
+    /**
+     * Compare the node id of a node in the set with a serialized node id.
+     * Same as {@link NodeId#compareTo(NodeId)}.
+     */
+    private int compareNodeId(final int pos, final byte[] other, final int otherOffset, final int otherLen) {
+        final int offset = nodeIdOffsets[pos];
+        final int len = bytes(nodeIdUnits[pos]);
+        final int limit = len <= otherLen ? len : otherLen;
+        for(int i = 0; i < limit; i++) {
+            final byte b1 = nodeIdData[offset + i];
+            final byte b2 = other[otherOffset + i];
+            if(b1 != b2) {
+                return (b1 & 0xFF) - (b2 & 0xFF);
+            }
+        }
+        return len - otherLen;
+    }
+
+    /**
+     * Check if the node id of the node at the given position is
+     * a descendant-or-self of the given serialized node id. Same as
+     * {@link NodeId#isDescendantOrSelfOf(NodeId)}.
+     *
+     * @return {@link NodeId#IS_SELF}, {@link NodeId#IS_DESCENDANT} or -1. Children are
+     * reported as {@link NodeId#IS_DESCENDANT}.
+     */
+    private int relation(final int pos, final byte[] ancestor, final int ancestorUnits) {
+        final int units = nodeIdUnits[pos];
+        if(ancestorUnits > units) {
+            return -1;
+        }
+        final int offset = nodeIdOffsets[pos];
+        final int lastBit = ancestorUnits - 1;
+        final int bytes = lastBit >>> 3;
+        final int remaining = lastBit & 7;
+        for(int i = 0; i < bytes; i++) {
+            if(nodeIdData[offset + i] != ancestor[i]) {
+                return -1;
+            }
+        }
+        if((nodeIdData[offset + bytes] & DLNBase.BIT_MASK[remaining]) != (ancestor[bytes] & DLNBase.BIT_MASK[remaining])) {
+            return -1;
+        }
+        if(units == ancestorUnits) {
+            return NodeId.IS_SELF;
+        }
+        // the bit following the ancestor's id has to be a level separator
+        return (nodeIdData[offset + (ancestorUnits >>> 3)] & (1 << (7 - (ancestorUnits & 7)))) == 0 ? NodeId.IS_DESCENDANT : -1;
+    }
+
+    /**
+     * Find the first node of the document which is not before the given node id.
+     */
+    private int lowerBound(final int docIdx, final byte[] nodeId) {
+        int low = documentNodesOffset[docIdx];
+        int high = low + documentNodesCount[docIdx];
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(compareNodeId(mid, nodeId, 0, nodeId.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int findDoc(final DocumentImpl doc) {
+        return findDoc(doc.getDocId());
+    }
+
+    private int findDoc(final int docId) {
+        int low = 0;
+        int high = documentCount - 1;
+        while(low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midVal = documentIds[mid];
+            if(midVal < docId) {
+                low = mid + 1;
+            } else if(midVal > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            } // key found
+        }
+        return -(low + 1);  // key not found.
+    }
+
+    private int find(final int docIdx, final NodeId nodeId) {
+        final byte[] data = serialize(nodeId);
+        final int pos = lowerBound(docIdx, data);
+        if(pos < documentNodesOffset[docIdx] + documentNodesCount[docIdx]
+                && compareNodeId(pos, data, 0, data.length) == 0) {
+            return pos;
+        }
+        return -1;
+    }
+
+    @Override
+    public int getSizeHint(final DocumentImpl doc) {
+        if(!isSorted()) {
+            sort();
+        }
+        final int idx = findDoc(doc);
+        return idx < 0 ? Constants.NO_SIZE_HINT : documentNodesCount[idx];
+    }
+
+    @Override
+    public NodeSetIterator iterator() {
+        if(!isSorted()) {
+            sort();
+        }
+        return new CompactIterator();
+    }
+
+    @Override
+    public SequenceIterator iterate() {
+        sortInDocumentOrder();
+        return new CompactIterator();
+    }
+
+    @Override
+    public SequenceIterator unorderedIterator() {
+        if(!isSorted()) {
+            sort();
+        }
+        return new CompactIterator();
+    }
+
+    @Override
+    public boolean contains(final NodeProxy proxy) {
+        sort();
+        final int idx = findDoc(proxy.getOwnerDocument());
+        return idx > -1 && find(idx, proxy.getNodeId()) > -1;
+    }
+
+    @Override
+    public NodeProxy get(final int pos) {
+        if(pos < 0 || pos >= size) {
+            return null;
+        }
+        return retain(pos);
+    }
+
+    @Override
+    public NodeProxy get(final NodeProxy proxy) {
+        return get(proxy.getOwnerDocument(), proxy.getNodeId());
+    }
+
+    @Override
+    public NodeProxy get(final DocumentImpl doc, final NodeId nodeId) {
+        sort();
+        final int idx = findDoc(doc);
+        if(idx < 0) {
+            return null;
+        }
+        final int pos = find(idx, nodeId);
+        return pos < 0 ? null : retain(pos);
+    }
+
+    @Override
+    protected final NodeSet getDescendantsInSet(final NodeSet al, final boolean childOnly,
+            final boolean includeSelf, final int mode, final int contextId, final boolean copyMatches) {
+        sort();
+        final NodeSet result = new NewArrayNodeSet();
+        int docIdx;
+        for(final NodeProxy node : al) {
+            docIdx = findDoc(node.getOwnerDocument());
+            if(docIdx > -1) {
+                getDescendantsInSet(docIdx, result, node, childOnly, includeSelf,
+                    mode, contextId, copyMatches);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find all nodes in the current set being children or descendants of
+     * the given parent node.
+     *
+     * @param result      the node set to which matching nodes will be appended.
+     * @param parent      the parent node to search for.
+     * @param childOnly   only include child nodes, not descendant nodes
+     * @param includeSelf include the self:: axis
+     * @param mode
+     * @param contextId
+     */
+    private void getDescendantsInSet(final int docIdx, final NodeSet result, final NodeProxy parent,
+            final boolean childOnly, final boolean includeSelf, final int mode, final int contextId,
+            final boolean copyMatches) {
+        final NodeId parentId = parent.getNodeId();
+        final int end = documentNodesOffset[docIdx] + documentNodesCount[docIdx];
+        // document nodes are treated specially
+        if(parentId == NodeId.DOCUMENT_NODE) {
+            for(int i = documentNodesOffset[docIdx]; i < end; i++) {
+                final boolean add;
+                if(childOnly) {
+                    add = !isDocumentNode(i) && nodeId(i).getTreeLevel() == 1;
+                } else if(includeSelf) {
+                    add = true;
+                } else {
+                    add = !isDocumentNode(i);
+                }
+                if(add) {
+                    addJoined(result, i, parent, mode, contextId, copyMatches);
+                }
+            }
+        } else {
+            final byte[] parentData = serialize(parentId);
+            final int parentUnits = parentId.units();
+            // descendants directly follow their ancestor in document order
+            for(int i = lowerBound(docIdx, parentData); i < end; i++) {
+                final int relation = relation(i, parentData, parentUnits);
+                if(relation < 0) {
+                    break;
+                }
+                final boolean add;
+                if(relation == NodeId.IS_SELF) {
+                    add = includeSelf && !childOnly;
+                } else if(childOnly) {
+                    add = nodeId(i).computeRelation(parentId) == NodeId.IS_CHILD;
+                } else {
+                    add = true;
+                }
+                if(add) {
+                    addJoined(result, i, parent, mode, contextId, copyMatches);
+                }
+            }
+        }
+    }
+
+    private void addJoined(final NodeSet result, final int pos, final NodeProxy parent, final int mode,
+            final int contextId, final boolean copyMatches) {
+        final NodeProxy node = materialize(pos);
+        switch(mode) {
+            case NodeSet.DESCENDANT:
+                if(Expression.NO_CONTEXT_ID != contextId) {
+                    node.deepCopyContext(parent, contextId);
+                } else {
+                    node.copyContext(parent);
+                }
+                if(copyMatches) {
+                    node.addMatches(parent);
+                }
+                result.add(node);
+                break;
+            case NodeSet.ANCESTOR:
+                if(Expression.NO_CONTEXT_ID != contextId) {
+                    parent.deepCopyContext(node, contextId);
+                } else {
+                    parent.copyContext(node);
+                }
+                if(copyMatches) {
+                    parent.addMatches(node);
+                }
+                result.add(parent, 1);
+                break;
+        }
+    }
+
+    @Override
+    public NodeProxy hasDescendantsInSet(final DocumentImpl doc, final NodeId ancestorId,
+            final boolean includeSelf, final int contextId, final boolean copyMatches) {
+        sort();
+        final int docIdx = findDoc(doc);
+        if(docIdx < 0) {
+            return null;
+        }
+        final byte[] ancestorData = serialize(ancestorId);
+        final int ancestorUnits = ancestorId.units();
+        final int end = documentNodesOffset[docIdx] + documentNodesCount[docIdx];
+        final NodeProxy ancestor = new NodeProxy(doc, ancestorId, Node.ELEMENT_NODE);
+        boolean foundOne = false;
+        for(int i = lowerBound(docIdx, ancestorData); i < end; i++) {
+            final int relation = relation(i, ancestorData, ancestorUnits);
+            if(relation < 0) {
+                break;
+            }
+            if(relation == NodeId.IS_SELF && !includeSelf) {
+                continue;
+            }
+            final NodeProxy node = materialize(i);
+            if(Expression.NO_CONTEXT_ID != contextId) {
+                ancestor.deepCopyContext(node, contextId);
+            } else {
+                ancestor.copyContext(node);
+            }
+            if(copyMatches) {
+                ancestor.addMatches(node);
+            }
+            foundOne = true;
+        }
+        return foundOne ? ancestor : null;
+    }
+
+    @Override
+    public NodeProxy parentWithChild(final DocumentImpl doc, final NodeId nodeId, final boolean directParent,
+            final boolean includeSelf) {
+        sort();
+        final int docIdx = findDoc(doc);
+        if(docIdx < 0) {
+            return null;
+        }
+        int pos;
+        if(includeSelf && (pos = find(docIdx, nodeId)) > -1) {
+            return retain(pos);
+        }
+        NodeId parentNodeId = nodeId.getParentId();
+        while(parentNodeId != null) {
+            if((pos = find(docIdx, parentNodeId)) > -1) {
+                return retain(pos);
+            } else if(directParent) {
+                return null;
+            }
+            parentNodeId = parentNodeId.getParentId();
+        }
+        return null;
+    }
+
+    @Override
+    public NodeSet selectFollowing(final NodeSet pl, final int position, final int contextId)
+            throws XPathException {
+        sort();
+        final NodeSet result = new NewArrayNodeSet();
+        for(final NodeProxy reference : pl) {
+            final int idx = findDoc(reference.getOwnerDocument());
+            if(idx < 0) {
+                continue;
+            }
+            final NodeId refId = reference.getNodeId();
+            final byte[] refData = serialize(refId);
+            final int refUnits = refId.units();
+            final int end = documentNodesOffset[idx] + documentNodesCount[idx];
+            // skip the reference node and its descendants
+            int i = lowerBound(idx, refData);
+            while(i < end && relation(i, refData, refUnits) > -1) {
+                i++;
+            }
+            int n = 0;
+            for(int j = i; j < end; j++) {
+                if(position < 0 || ++n == position) {
+                    addFollowingOrPreceding(result, j, reference, contextId);
+                }
+                if(n == position) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeSet selectPreceding(final NodeSet pl, final int position, final int contextId)
+            throws XPathException {
+        sort();
+        final NodeSet result = new NewArrayNodeSet();
+        for(final NodeProxy reference : pl) {
+            final int idx = findDoc(reference.getOwnerDocument());
+            if(idx < 0) {
+                continue;
+            }
+            final NodeId refId = reference.getNodeId();
+            final int start = documentNodesOffset[idx];
+            int n = 0;
+            for(int j = lowerBound(idx, serialize(refId)) - 1; j >= start; j--) {
+                // skip the ancestors of the reference node
+                if(!isDocumentNode(j) && !refId.isDescendantOf(nodeId(j))) {
+                    if(position < 0 || ++n == position) {
+                        addFollowingOrPreceding(result, j, reference, contextId);
+                    }
+                    if(n == position) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addFollowingOrPreceding(final NodeSet result, final int pos, final NodeProxy reference,
+            final int contextId) {
+        final NodeProxy node = materialize(pos);
+        if(contextId != Expression.IGNORE_CONTEXT
+                && node.getContext() != null
+                && reference.getContext() != null
+                && node.getContext().getContextId() == reference.getContext().getContextId()) {
+            return;
+        }
+        if(Expression.IGNORE_CONTEXT != contextId) {
+            if(Expression.NO_CONTEXT_ID == contextId) {
+                node.copyContext(reference);
+            } else {
+                node.addContextNode(contextId, reference);
+            }
+        }
+        result.add(node);
+    }
+
+    @Override
+    public void sort(final boolean mergeContexts) {
+        if(isSorted) {
+            return;
+        }
+        if(size > 1) {
+            if(!hasOne) {
+                it.unimi.dsi.fastutil.Arrays.quickSort(0, size, this::compare, this::swap);
+            }
+            removeDuplicates(mergeContexts);
+            compactData();
+        }
+        updateDocs();
+        isSorted = true;
+    }
+
+    private void swap(final int pos1, final int pos2) {
+        final int docId = nodeDocIds[pos1];
+        nodeDocIds[pos1] = nodeDocIds[pos2];
+        nodeDocIds[pos2] = docId;
+        final int units = nodeIdUnits[pos1];
+        nodeIdUnits[pos1] = nodeIdUnits[pos2];
+        nodeIdUnits[pos2] = units;
+        final int offset = nodeIdOffsets[pos1];
+        nodeIdOffsets[pos1] = nodeIdOffsets[pos2];
+        nodeIdOffsets[pos2] = offset;
+        final short nodeType = nodeTypes[pos1];
+        nodeTypes[pos1] = nodeTypes[pos2];
+        nodeTypes[pos2] = nodeType;
+        final long address = addresses[pos1];
+        addresses[pos1] = addresses[pos2];
+        addresses[pos2] = address;
+        if(proxies != null) {
+            final NodeProxy proxy = proxies[pos1];
+            proxies[pos1] = proxies[pos2];
+            proxies[pos2] = proxy;
+        }
+    }
+
+    private void move(final int from, final int to) {
+        nodeDocIds[to] = nodeDocIds[from];
+        nodeIdUnits[to] = nodeIdUnits[from];
+        nodeIdOffsets[to] = nodeIdOffsets[from];
+        nodeTypes[to] = nodeTypes[from];
+        addresses[to] = addresses[from];
+        if(proxies != null) {
+            proxies[to] = proxies[from];
+        }
+    }
+
+    /**
+     * Remove all duplicate nodes from this set.
+     *
+     * @param mergeContext a <code>boolean</code> value
+     */
+    private void removeDuplicates(final boolean mergeContext) {
+        int j = 0;
+        for(int i = 1; i < size; i++) {
+            if(compare(i, j) != 0) {
+                if(i != ++j) {
+                    move(i, j);
+                }
+            } else if(proxies != null && proxies[i] != null) {
+                // only retained proxies carry a context or matches
+                final NodeProxy duplicate = proxies[i];
+                final NodeProxy node = retain(j);
+                if(mergeContext) {
+                    node.addContext(duplicate);
+                }
+                node.addMatches(duplicate);
+            }
+        }
+        if(proxies != null) {
+            Arrays.fill(proxies, j + 1, size, null);
+        }
+        size = ++j;
+    }
+
+    /**
+     * Rewrite the node ids in document order, dropping
+     * those of removed duplicates.
+     */
+    private void compactData() {
+        final int[] offsets = new int[nodeIdOffsets.length];
+        int length = 0;
+        for(int i = 0; i < size; i++) {
+            offsets[i] = length;
+            length += bytes(nodeIdUnits[i]);
+        }
+        final byte[] data = new byte[Math.max(length, INITIAL_SIZE)];
+        for(int i = 0; i < size; i++) {
+            System.arraycopy(nodeIdData, nodeIdOffsets[i], data, offsets[i], bytes(nodeIdUnits[i]));
+        }
+        nodeIdData = data;
+        nodeIdOffsets = offsets;
+        nodeIdDataLength = length;
+    }
+
+    private void updateDocs() {
+        documentCount = 0;
+        for(int i = 0; i < size; i++) {
+            if(documentCount == 0 || documentIds[documentCount - 1] != nodeDocIds[i]) {
+                // new document
+                ensureDocCapacity();
+                documentIds[documentCount] = nodeDocIds[i];
+                documentNodesOffset[documentCount] = i;
+                documentNodesCount[documentCount++] = 1;
+            } else {
+                // node belongs to same document as previous node
+                ++documentNodesCount[documentCount - 1];
+            }
+        }
+    }
+
+    private void ensureDocCapacity() {
+        if(documentCount == documentIds.length) {
+            final int nlen = documentCount << 1;
+            documentIds = Arrays.copyOf(documentIds, nlen);
+            documentNodesOffset = Arrays.copyOf(documentNodesOffset, nlen);
+            documentNodesCount = Arrays.copyOf(documentNodesCount, nlen);
+        }
+    }
+
+    @Override
+    public void setSelfAsContext(final int contextId) throws XPathException {
+        for(int i = 0; i < size; i++) {
+            final NodeProxy node = retain(i);
+            node.addContextNode(contextId, node);
+        }
+    }
+
+    @Override
+    public void clearContext(final int contextId) throws XPathException {
+        if(proxies != null) {
+            for(int i = 0; i < size; i++) {
+                if(proxies[i] != null) {
+                    proxies[i].clearContext(contextId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void nodeMoved(final NodeId oldNodeId, final NodeHandle newNode) {
+        sort();
+        final int docIdx = findDoc(newNode.getOwnerDocument());
+        if(docIdx < 0) {
+            return;
+        }
+        final int pos = find(docIdx, oldNodeId);
+        if(pos < 0) {
+            return;
+        }
+        final NodeProxy node = retain(pos);
+        node.nodeMoved(oldNodeId, newNode);
+
+        final NodeId nodeId = node.getNodeId();
+        ensureDataCapacity(nodeId.size());
+        nodeId.serialize(nodeIdData, nodeIdDataLength);
+        nodeIdOffsets[pos] = nodeIdDataLength;
+        nodeIdUnits[pos] = nodeId.units();
+        addresses[pos] = node.getInternalAddress();
+        nodeIdDataLength += bytes(nodeId.units());
+    }
+
+    @Override
+    public boolean equalDocs(final DocumentSet other) {
+        if(this == other) {
+            return true;
+        }
+
+        sort();
+        if(documentCount != other.getDocumentCount()) {
+            return false;
+        } else {
+            for(int i = 0; i < documentCount; i++) {
+                if(!other.contains(documentIds[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public Iterator<Collection> getCollectionIterator() {
+        sort();
+        if(cachedCollections == null) {
+            cachedCollections = new HashSet<>();
+            for(int i = 0; i < documentCount; i++) {
+                cachedCollections.add(documents.get(documentIds[i]).getCollection());
+            }
+        }
+        return cachedCollections.iterator();
+    }
+
+    @Override
+    public Iterator<DocumentImpl> getDocumentIterator() {
+        sort();
+        return new DocumentIterator();
+    }
+
+    @Override
+    public int getDocumentCount() {
+        sort();
+        return documentCount;
+    }
+
+    @Override
+    public DocumentImpl getDoc(final int docId) {
+        sort();
+        return findDoc(docId) < 0 ? null : documents.get(docId);
+    }
+
+    @Override
+    public XmldbURI[] getNames() {
+        sort();
+        final XmldbURI[] uris = new XmldbURI[documentCount];
+        for(int i = 0; i < documentCount; i++) {
+            uris[i] = documents.get(documentIds[i]).getURI();
+        }
+        return uris;
+    }
+
+    @Override
+    public DocumentSet intersection(final DocumentSet other) {
+        sort();
+        final DefaultDocumentSet set = new DefaultDocumentSet();
+
+        //left
+        for(int i = 0; i < documentCount; i++) {
+            final DocumentImpl doc = documents.get(documentIds[i]);
+            if(other.contains(doc.getDocId())) {
+                set.add(doc);
+            }
+        }
+
+        //right
+        for(final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            final DocumentImpl doc = i.next();
+            if(contains(doc.getDocId()) && (!set.contains(doc.getDocId()))) {
+                set.add(doc);
+            }
+        }
+
+        return set;
+    }
+
+    @Override
+    public boolean contains(final DocumentSet other) {
+        sort();
+        if(other.getDocumentCount() > documentCount) {
+            return false;
+        }
+
+        for(final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            final DocumentImpl doc = i.next();
+            if(!contains(doc.getDocId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final int docId) {
+        sort();
+        return findDoc(docId) > -1;
+    }
+
+    @Override
+    public NodeSet docsToNodeSet() {
+        sort();
+        final NodeSet result = new NewArrayNodeSet();
+        for(int i = 0; i < documentCount; i++) {
+            final DocumentImpl doc = documents.get(documentIds[i]);
+            if(doc.getResourceType() == DocumentImpl.XML_FILE) { // skip binary resources
+                result.add(new NodeProxy(doc, NodeId.DOCUMENT_NODE));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ManagedLocks<ManagedDocumentLock> lock(final DBBroker broker, final boolean exclusive) throws LockException {
+        sort();
+        final LockManager lockManager = broker.getBrokerPool().getLockManager();
+        final ManagedDocumentLock[] managedDocumentLocks = new ManagedDocumentLock[documentCount];
+        try {
+            for (int idx = 0; idx < documentCount; idx++) {
+                final DocumentImpl doc = documents.get(documentIds[idx]);
+                final ManagedDocumentLock managedDocumentLock;
+                if (exclusive) {
+                    managedDocumentLock = lockManager.acquireDocumentWriteLock(doc.getURI());
+                } else {
+                    managedDocumentLock = lockManager.acquireDocumentReadLock(doc.getURI());
+                }
+                managedDocumentLocks[idx] = managedDocumentLock;
+            }
+            return new ManagedLocks<>(managedDocumentLocks);
+        } catch (final LockException e) {
+            // unlock any previously locked documents
+            new ManagedLocks<>(managedDocumentLocks).close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompactNodeSet#" + super.toString();
+    }
+
+    private class DocumentIterator implements Iterator<DocumentImpl> {
+
+        private int currentDoc = 0;
+
+        @Override
+        public final boolean hasNext() {
+            return currentDoc < documentCount;
+        }
+
+        @Override
+        public final DocumentImpl next() {
+            if(currentDoc == documentCount) {
+                throw new NoSuchElementException();
+            } else {
+                return documents.get(documentIds[currentDoc++]);
+            }
+        }
+
+        @Override
+        public final void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected class CompactIterator implements NodeSetIterator, SequenceIterator {
+        private int pos = 0;
+
+        @Override
+        public final boolean hasNext() {
+            return pos < size && pos > -1;
+        }
+
+        @Override
+        public final NodeProxy next() {
+            if(pos == size || pos < 0) {
+                pos = -1;
+                throw new NoSuchElementException();
+            }
+            return retain(pos++);
+        }
+
+        @Override
+        public long skippable() {
+            if (pos == -1) {
+                return 0;
+            }
+            return size - pos;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skip = Math.min(n, pos == -1 ? 0 : size - pos);
+            pos += skip;
+            return skip;
+        }
+
+        @Override
+        public final void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public final NodeProxy peekNode() {
+            if(pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return retain(pos);
+        }
+
+        @Override
+        public final Item nextItem() {
+            if(pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return retain(pos++);
+        }
+
+        @Override
+        public void setPosition(final NodeProxy proxy) {
+            final int docIdx = findDoc(proxy.getOwnerDocument());
+            pos = docIdx < 0 ? -1 : find(docIdx, proxy.getNodeId());
+        }
+    }
+}
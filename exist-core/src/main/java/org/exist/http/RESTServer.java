@@ -40,6 +40,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.function.BiFunction;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.XMLConstants;
@@ -98,7 +99,10 @@ import org.exist.xmldb.XmldbURI;
 import org.exist.xqj.Marshaller;
 import org.exist.xquery.CompiledXQuery;
 import org.exist.xquery.Constants;
+import org.exist.xquery.Expression;
+import org.exist.xquery.ForExpr;
 import org.exist.xquery.NameTest;
+import org.exist.xquery.PathExpr;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQuery;
 import org.exist.xquery.XQueryContext;
@@ -305,6 +309,7 @@ public class RESTServer {
         boolean wrap = true;
         boolean source = false;
         boolean cache = false;
+        boolean stream = false;
         final Properties outputProperties = new Properties(defaultOutputKeysProperties);
 
         String query = null;
@@ -356,6 +361,9 @@ public class RESTServer {
         if ((option = getParameter(request, Cache)) != null) {
             cache = "yes".equals(option);
         }
+        if ((option = getParameter(request, Stream)) != null) {
+            stream = "yes".equals(option);
+        }
         if ((option = getParameter(request, Indent)) != null) {
             outputProperties.setProperty(OutputKeys.INDENT, option);
         }
@@ -392,7 +400,7 @@ public class RESTServer {
             // query parameter specified, search method does all the rest of the work
             try {
                 search(broker, transaction, query, path, namespaces, variables, howmany, start, typed, outputProperties,
-                        wrap, cache, request, response);
+                        wrap, cache, stream, request, response);
 
             } catch (final XPathException e) {
                 if (MimeType.XML_TYPE.getName().equals(mimeType)) {
@@ -862,7 +870,7 @@ public class RESTServer {
                         try {
                             search(broker, transaction, query, path, nsExtractor.getNamespaces(), variables,
                                     howmany, start, typed, outputProperties,
-                                    enclose, cache, request, response);
+                                    enclose, cache, false, request, response);
                         } catch (final XPathException e) {
                             if (MimeType.XML_TYPE.getName().equals(mimeType)) {
                                 writeXPathException(response, HttpServletResponse.SC_BAD_REQUEST,
@@ -1279,7 +1287,7 @@ public class RESTServer {
         final String path, final List<Namespace> namespaces,
         final ElementImpl variables, final int howmany, final int start,
         final boolean typed, final Properties outputProperties,
-        final boolean wrap, final boolean cache,
+        final boolean wrap, final boolean cache, final boolean stream,
         final HttpServletRequest request,
         final HttpServletResponse response) throws BadRequestException,
         PermissionDeniedException, XPathException {
@@ -1350,6 +1358,40 @@ public class RESTServer {
 
             try {
                 final long executeStart = System.currentTimeMillis();
+
+                final ForExpr streamable = stream && !cache ? getStreamableExpression(compiled, outputProperties) : null;
+                if (streamable != null) {
+                    final ResultStreamer streamer = new ResultStreamer(response, broker, context, howmany, start,
+                            typed, outputProperties, wrap);
+                    try {
+                        streamable.setResultConsumer(streamer);
+                        try {
+                            xquery.execute(broker, compiled, null, outputProperties);
+                        } catch (final XPathException e) {
+                            if (!response.isCommitted()) {
+                                // nothing has been sent yet, so the usual error response can be written
+                                response.resetBuffer();
+                                throw e;
+                            }
+                            // the status code has been sent already, so no error response can be written
+                            LOG.warn("Error whilst streaming results, the response is incomplete: " + e.getMessage(), e);
+                            streamer.abort(e);
+                            return;
+                        }
+                        streamer.finish();
+                    } finally {
+                        // the compiled query is returned to the pool
+                        streamable.setResultConsumer(null);
+                        streamer.release();
+                    }
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Streamed " + streamer.getItemCount() + " items in " +
+                                (System.currentTimeMillis() - executeStart) + "ms.");
+                    }
+                    return;
+                }
+
                 final Sequence resultSequence = xquery.execute(broker, compiled, null, outputProperties);
                 final long executionTime = System.currentTimeMillis() - executeStart;
 
@@ -1380,6 +1422,40 @@ public class RESTServer {
         }
     }
 
+    /**
+     * Get the for-expression of the query whose results may be written to the response
+     * one iteration at a time. Only a for-expression which is the body of the query
+     * itself qualifies, as the results of nested expressions may be processed further.
+     *
+     * @param compiled the compiled query
+     * @param outputProperties the serialization properties
+     *
+     * @return the for-expression, or null if the results cannot be streamed
+     */
+    private @Nullable ForExpr getStreamableExpression(final CompiledXQuery compiled,
+            final Properties outputProperties) throws XPathException {
+        if (!(compiled instanceof PathExpr)) {
+            return null;
+        }
+
+        // serialization options declared in the prolog
+        compiled.getContext().checkOptions(outputProperties);
+        final String method = outputProperties.getProperty(SERIALIZATION_METHOD_PROPERTY, "xml");
+        final String outputMethod = outputProperties.getProperty(OutputKeys.METHOD, "xml");
+        if ("json".equals(method) || "json".equals(outputMethod) || "adaptive".equals(outputMethod)) {
+            return null;
+        }
+
+        Expression expr = (PathExpr) compiled;
+        while (expr.getClass() == PathExpr.class && ((PathExpr) expr).getLength() == 1) {
+            expr = ((PathExpr) expr).getExpression(0);
+        }
+        if (expr instanceof ForExpr && ((ForExpr) expr).canStreamResults()) {
+            return (ForExpr) expr;
+        }
+        return null;
+    }
+
     private void declareNamespaces(final XQueryContext context,
         final List<Namespace> namespaces) throws XPathException {
         
@@ -2105,6 +2181,182 @@ public class RESTServer {
 
     }
 
+    private String setResultContentType(final HttpServletResponse response, final Properties outputProperties,
+            final boolean wrap) {
+        final String encoding = outputProperties.getProperty(OutputKeys.ENCODING);
+        if (!response.containsHeader("Content-Type")) {
+            String mimeType = outputProperties.getProperty(OutputKeys.MEDIA_TYPE);
+            if (mimeType != null) {
+                final int semicolon = mimeType.indexOf(';');
+                if (semicolon != Constants.STRING_NOT_FOUND) {
+                    mimeType = mimeType.substring(0, semicolon);
+                }
+                if (wrap) {
+                    mimeType = "application/xml";
+                }
+                response.setContentType(mimeType + "; charset=" + encoding);
+            }
+        }
+        if (wrap) {
+            outputProperties.setProperty("method", "xml");
+        }
+        return encoding;
+    }
+
+    /**
+     * Writes the results of the iterations of a streamed query to the response
+     * whilst the query is still being evaluated, see {@link RESTServerParameter#Stream}.
+     *
+     * Only the items within the requested window are serialized. The response is
+     * flushed every {@link #FLUSH_INTERVAL} items, so the servlet container sends
+     * them using chunked transfer encoding. As writing blocks whilst the client is
+     * not reading, the evaluation of the query is held back accordingly. Once the
+     * window is full, the evaluation of the remaining iterations is stopped.
+     *
+     * The streamer is set as the result consumer of the for-expression of a compiled
+     * query borrowed from the pool, and has to be unset before the query is returned.
+     */
+    private class ResultStreamer implements ForExpr.ResultConsumer {
+        private static final int FLUSH_INTERVAL = 100;
+        private static final String ERROR_MARKER = "exist:error";
+
+        private final HttpServletResponse response;
+        private final DBBroker broker;
+        private final XQueryContext context;
+        private final int howmany;
+        private final int start;
+        private final boolean typed;
+        private final Properties outputProperties;
+        private final boolean wrap;
+
+        private int position = 0;
+        private int written = 0;
+        private boolean started = false;
+        private boolean discard = false;
+        private Writer writer = null;
+        private XQuerySerializer serializer = null;
+
+        ResultStreamer(final HttpServletResponse response, final DBBroker broker, final XQueryContext context,
+                final int howmany, final int start, final boolean typed, final Properties outputProperties,
+                final boolean wrap) {
+            this.response = response;
+            this.broker = broker;
+            this.context = context;
+            this.howmany = howmany;
+            this.start = start;
+            this.typed = typed;
+            this.outputProperties = outputProperties;
+            this.wrap = wrap;
+        }
+
+        @Override
+        public boolean accept(final Sequence result) throws XPathException {
+            try {
+                for (final SequenceIterator i = result.iterate(); i.hasNext(); ) {
+                    final Item item = i.nextItem();
+                    if (isWindowFull()) {
+                        break;
+                    }
+                    position++;
+                    if (position < start) {
+                        continue;
+                    }
+                    if (!started) {
+                        begin();
+                    }
+                    if (discard) {
+                        continue;
+                    }
+                    serializer.serializeItem(item, typed, wrap);
+                    if (++written % FLUSH_INTERVAL == 0) {
+                        writer.flush();
+                        response.flushBuffer();
+                    }
+                }
+            } catch (final IOException | SAXException e) {
+                throw new XPathException("Error while streaming results: " + e.getMessage(), e);
+            }
+            return !isWindowFull();
+        }
+
+        private boolean isWindowFull() {
+            return howmany > 0 && position >= start + howmany - 1;
+        }
+
+        private void begin() throws XPathException, IOException, SAXException {
+            started = true;
+
+            // some xquery functions can write directly to the output stream
+            // (response:stream-binary() etc...)
+            // so if output is already written then dont overwrite here
+            if (response.isCommitted()) {
+                discard = true;
+                return;
+            }
+
+            // serialization options declared whilst evaluating the query
+            context.checkOptions(outputProperties);
+            // the same serialization as for the results which are not streamed, see writeResultXML
+            outputProperties.setProperty(Serializer.GENERATE_DOC_EVENTS, "false");
+            final String encoding = setResultContentType(response, outputProperties, wrap);
+
+            writer = new OutputStreamWriter(response.getOutputStream(), encoding);
+            serializer = new XQuerySerializer(broker, outputProperties, writer);
+            serializer.startSequence(start, wrap);
+        }
+
+        /**
+         * Complete the response once the query has been evaluated.
+         */
+        void finish() throws BadRequestException {
+            try {
+                if (!started) {
+                    begin();
+                }
+                if (!discard) {
+                    serializer.endSequence(wrap);
+                    writer.flush();
+                    writer.close();
+                }
+            } catch (final XPathException | IOException | SAXException e) {
+                LOG.warn(e.getMessage(), e);
+                throw new BadRequestException("Error while serializing xml: " + e.toString(), e);
+            }
+        }
+
+        /**
+         * End the response after the query raised an error once the response
+         * was committed. As the status code has been sent already, the results
+         * written so far are followed by a trailing error marker, a comment
+         * starting with {@link #ERROR_MARKER}, instead of being completed.
+         *
+         * @param error the error raised by the query
+         */
+        void abort(final XPathException error) {
+            if (!started || discard) {
+                // the response was written by the query itself
+                return;
+            }
+            try {
+                writer.write("\n<!--" + ERROR_MARKER + ' ' + String.valueOf(error.getMessage()).replace("--", "- -") + " -->\n");
+                writer.flush();
+                writer.close();
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the error marker to the response: " + e.getMessage(), e);
+            }
+        }
+
+        void release() {
+            if (serializer != null) {
+                serializer.release();
+            }
+        }
+
+        int getItemCount() {
+            return position;
+        }
+    }
+
     private void writeResultXML(final HttpServletResponse response,
         final DBBroker broker, final Sequence results, final int howmany,
         final int start, final boolean typed, final Properties outputProperties,
@@ -2115,23 +2367,7 @@ public class RESTServer {
         try {
 
             // set output headers
-            final String encoding = outputProperties.getProperty(OutputKeys.ENCODING);
-            if (!response.containsHeader("Content-Type")) {
-                String mimeType = outputProperties.getProperty(OutputKeys.MEDIA_TYPE);
-                if (mimeType != null) {
-                    final int semicolon = mimeType.indexOf(';');
-                    if (semicolon != Constants.STRING_NOT_FOUND) {
-                        mimeType = mimeType.substring(0, semicolon);
-                    }
-                    if (wrap) {
-                        mimeType = "application/xml";
-                    }
-                    response.setContentType(mimeType + "; charset=" + encoding);
-                }
-            }
-            if (wrap) {
-                outputProperties.setProperty("method", "xml");
-            }
+            final String encoding = setResultContentType(response, outputProperties, wrap);
             final Writer writer = new OutputStreamWriter(response.getOutputStream(), encoding);
             final XQuerySerializer serializer = new XQuerySerializer(broker, outputProperties, writer);
 
@@ -224,6 +224,40 @@ enum RESTServerParameter {
      */
     Cache,
 
+    /**
+     * Can be used in the Query String of a GET request when supplying
+     * an XPath or XQuery, it causes the results of the query to be
+     * written to the response whilst the query is still being evaluated,
+     * instead of once the whole result sequence is known.
+     * 
+     * This is only possible if the body of the query is a single FLWOR
+     * expression with a for clause at the top level and without an order by
+     * or group by clause, in which case the result of each iteration is
+     * serialized and flushed using chunked transfer encoding. For any other
+     * query, e.g. a for clause nested in another expression, or if combined
+     * with Cache or the "json" serialization method, the parameter is ignored.
+     * 
+     * The evaluation of the query stops as soon as the window given by the
+     * Start and HowMany parameters has been filled, so the remaining
+     * iterations, and any side effects they would have, are not evaluated.
+     * 
+     * If the Wrap parameter is used, the exist:result element only
+     * has the start attribute, as the number of hits is not known
+     * when it is written.
+     * 
+     * If the query raises an error before the first results have been
+     * flushed, the usual error response is sent. Once results have been
+     * flushed the status code has already been sent, so instead the
+     * results are not completed, i.e. the exist:result element is not
+     * closed, and the body ends with a trailing error marker, the comment
+     * {@code <!--exist:error message -->}.
+     * 
+     * Contexts: GET
+     * 
+     * The value of the parameter should be either "yes" or "no".
+     */
+    Stream,
+
     /**
      * Can be used in the Query String of a GET request
      * to indicate that an XML result should be indented.
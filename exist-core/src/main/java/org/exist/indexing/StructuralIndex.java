@@ -52,9 +52,63 @@ public interface StructuralIndex {
     public NodeSet findDescendantsByTagName(byte type, QName qname, int axis,
                                             DocumentSet docs, NodeSet contextSet,  int contextId, Expression parent);
 
+    /**
+     * Find the first descendants of the context set matching the given name. The index lookup
+     * stops as soon as limit nodes are found, so this is only useful if the caller needs
+     * no more than the first limit nodes of the result in document order.
+     *
+     * @param type node type
+     * @param qname the name to match
+     * @param axis the xpath axis. The limit only applies to the descendant and descendant-or-self
+     *     axes, all matches are returned on other axes
+     * @param docs the docs to execute the test against
+     * @param contextSet the NodeSet contextSet, iterating in document order
+     * @param contextId the context id
+     * @param parent the expression to check for termination, may be null
+     * @param limit the maximum number of nodes to find, or -1 for all
+     * @return the matching nodes, at least the first limit nodes in document order
+     */
+    public NodeSet findDescendantsByTagName(byte type, QName qname, int axis,
+                                            DocumentSet docs, NodeSet contextSet, int contextId, Expression parent, int limit);
+
     public NodeSet findAncestorsByTagName(byte type, QName qname, int axis,
             DocumentSet docs, NodeSet contextSet, int contextId);
 
+    /**
+     * Find all children or descendants of the context set matching the given name, by scanning
+     * the index once in document order alongside the context set. Preferable to
+     * {@link #findElementsByTagName(byte, DocumentSet, QName, NodeSelector, Expression)} with a
+     * selector if the context set is large.
+     *
+     * @param type node type
+     * @param qname the name to match
+     * @param axis the xpath axis: child, descendant or descendant-or-self
+     * @param docs the docs to execute the test against
+     * @param contextSet the NodeSet contextSet
+     * @param contextId the context id
+     * @param parent the expression to check for termination, may be null
+     * @return the matching nodes in document order
+     */
+    public NodeSet joinDescendantsByTagName(byte type, QName qname, int axis,
+            DocumentSet docs, NodeSet contextSet, int contextId, Expression parent);
+
+    /**
+     * Like {@link #joinDescendantsByTagName(byte, QName, int, DocumentSet, NodeSet, int, Expression)},
+     * but stops scanning the index as soon as limit nodes are found.
+     *
+     * @param type node type
+     * @param qname the name to match
+     * @param axis the xpath axis: child, descendant or descendant-or-self
+     * @param docs the docs to execute the test against
+     * @param contextSet the NodeSet contextSet
+     * @param contextId the context id
+     * @param parent the expression to check for termination, may be null
+     * @param limit the maximum number of nodes to find, or -1 for all
+     * @return the first matching nodes in document order
+     */
+    public NodeSet joinDescendantsByTagName(byte type, QName qname, int axis,
+            DocumentSet docs, NodeSet contextSet, int contextId, Expression parent, int limit);
+
     /**
      * Find all nodes matching a given node test, axis and type. Used to evaluate wildcard
      * expressions like //*, //pfx:*.
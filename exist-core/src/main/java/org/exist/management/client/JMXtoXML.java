@@ -103,6 +103,7 @@ public class JMXtoXML {
         putCategory("binarystreamcaches", BinaryValues.getAllInstancesQuery());
         putCategory("processes", ProcessReport.getAllInstancesQuery());
         putCategory("sanity", SanityReport.getAllInstancesQuery());
+        putCategory("journal", Journal.getAllInstancesQuery());
 
         // Jetty
         putCategory("jetty.threads", "org.eclipse.jetty.util.thread:type=queuedthreadpool,*");
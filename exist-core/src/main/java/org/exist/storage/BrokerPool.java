@@ -57,6 +57,7 @@ import org.exist.security.internal.SecurityManagerImpl;
 import org.exist.storage.blob.BlobStore;
 import org.exist.storage.blob.BlobStoreImplService;
 import org.exist.storage.blob.BlobStoreService;
+import org.exist.storage.btree.PageIOMode;
 import org.exist.storage.journal.JournalManager;
 import org.exist.storage.lock.FileLockService;
 import org.exist.storage.lock.LockManager;
@@ -85,6 +86,10 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -210,6 +215,12 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      */
     private final Map<Thread, DBBroker> activeBrokers = new ConcurrentHashMap<>();
 
+    /**
+     * The executor for worker threads, see {@link #getWorkerExecutor()}. Created on first use.
+     */
+    private volatile ExecutorService workerExecutor = null;
+    private final Object workerExecutorLock = new Object();
+
 
     /**
      * Used when TRACE level logging is enabled
@@ -248,6 +259,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     @ConfigurationFieldAsAttribute("pageSize")
     private final int pageSize;
 
+    private final PageIOMode pageIOMode;
+
     private FileLockService dataLock;
 
     /**
@@ -414,6 +427,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         this.diskSpaceMin = 1024L * 1024L * conf.getProperty(BrokerPool.DISK_SPACE_MIN_PROPERTY, DEFAULT_DISK_SPACE_MIN);
 
         this.pageSize = conf.getProperty(PROPERTY_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+        this.pageIOMode = conf.getProperty(PROPERTY_PAGE_IO_MODE, DEFAULT_PAGE_IO_MODE);
+        LOG.info("database instance '" + instanceName + "' will use " + pageIOMode.getConfigValue() + " page I/O");
 
         //Configuration is valid, save it
         this.conf = conf;
@@ -632,6 +647,11 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                             }
                         }
 
+                        //Index the documents of any interrupted bulk loads
+                        if(!exportOnly && !isReadOnly()) {
+                            BulkLoader.indexPending(systemBroker, isRecoveryEnabled() && recovered);
+                        }
+
                         //OK : the DB is repaired; let's make a few RW operations
                         statusReporter.setStatus(SIGNAL_WRITABLE);
 
@@ -783,7 +803,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
             LOG.debug("ForceRestart = " + forceRestart);
         }
         if(journalManager.isPresent()) {
-            final RecoveryManager recovery = new RecoveryManager(broker, journalManager.get(), forceRestart);
+            final int redoThreads = conf.getProperty(PROPERTY_RECOVERY_REDO_THREADS, DEFAULT_RECOVERY_REDO_THREADS);
+            final RecoveryManager recovery = new RecoveryManager(broker, journalManager.get(), forceRestart, redoThreads);
             return recovery.recover();
         } else {
             throw new IllegalStateException("Cannot run recovery without a JournalManager");
@@ -798,6 +819,16 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         return pageSize;
     }
 
+    /**
+     * Get the strategy used for reading and writing
+     * pages of the paged database files.
+     *
+     * @return the page I/O mode
+     */
+    public PageIOMode getPageIOMode() {
+        return pageIOMode;
+    }
+
     /**
      * Returns the class loader used when this BrokerPool was configured.
      *
@@ -1271,6 +1302,66 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         }
     }
 
+    /**
+     * Returns an active broker for the database instance, but only if one is available
+     * without waiting. Used by worker threads which evaluate a part of a task, whilst the
+     * thread which started the task holds its own broker and waits for them: if the workers
+     * waited for a broker instead, all brokers could end up held by threads waiting on each other.
+     * The part of a worker which does not get a broker should be done by the thread which
+     * started the task instead.
+     *
+     * @param subject Optionally a subject to set on the broker, see {@link #get(Optional)}
+     * @return The broker, or empty if none is available
+     * @throws EXistException If the instance is not available (stopped or not configured)
+     */
+    public Optional<DBBroker> tryGet(final Optional<Subject> subject) throws EXistException {
+        Objects.requireNonNull(subject, "Subject cannot be null, use BrokerPool#getBroker() instead");
+
+        if(!isInstanceConfigured()) {
+            throw new EXistException("database instance '" + instanceName + "' is not available");
+        }
+
+        if(activeBrokers.containsKey(Thread.currentThread())) {
+            return Optional.of(get(subject));
+        }
+
+        synchronized(this) {
+            if(serviceModeUser != null && subject.isPresent() && !subject.equals(Optional.ofNullable(serviceModeUser))) {
+                return Optional.empty();
+            }
+            if(inactiveBrokers.isEmpty() && brokersCount >= maxBrokers) {
+                return Optional.empty();
+            }
+            // get will not wait
+            return Optional.of(get(subject));
+        }
+    }
+
+    /**
+     * Returns the executor which is shared by all tasks that evaluate parts of their work
+     * concurrently, e.g. the exist:parallel pragma. It has at most as many threads as
+     * there are brokers, as every worker needs its own broker, see {@link #tryGet(Optional)}.
+     * Tasks which are submitted whilst all threads are busy are queued.
+     *
+     * @return The executor for worker threads
+     */
+    public ExecutorService getWorkerExecutor() {
+        ExecutorService executor = workerExecutor;
+        if(executor == null) {
+            synchronized(workerExecutorLock) {
+                executor = workerExecutor;
+                if(executor == null) {
+                    final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxBrokers, maxBrokers,
+                            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(this, "worker"));
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+                    executor = threadPoolExecutor;
+                    workerExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * Releases a broker for the database instance. If it is no more used, make if invactive.
      * If there are pending system maintenance tasks,
@@ -1536,7 +1627,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     /**
      * Schedules a system maintenance task for the database instance. If the database is idle,
      * the task will be run immediately. Otherwise, the task will be deferred
-     * until all running threads have returned.
+     * until all running threads have returned. A task which does not require exclusive
+     * access is run immediately by the calling thread, see {@link SystemTask#requiresExclusiveAccess()}.
      *
      * @param task The task
      */
@@ -1596,6 +1688,13 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
             //Shutdown the scheduler
             scheduler.shutdown(true);
 
+            synchronized(workerExecutorLock) {
+                if(workerExecutor != null) {
+                    workerExecutor.shutdownNow();
+                    workerExecutor = null;
+                }
+            }
+
             try {
                 statusReporter = new StatusReporter(SIGNAL_SHUTDOWN);
                 statusObservers.forEach(statusReporter::addObserver);
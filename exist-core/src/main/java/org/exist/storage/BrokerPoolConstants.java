@@ -19,6 +19,8 @@
  */
 package org.exist.storage;
 
+import org.exist.storage.btree.PageIOMode;
+
 /**
  * Just static Constants used by {@link BrokerPool}
  *
@@ -84,8 +86,14 @@ public interface BrokerPoolConstants {
     String RECOVERY_GROUP_COMMIT_ATTRIBUTE = "group-commit";
     String PROPERTY_RECOVERY_FORCE_RESTART = "db-connection.recovery.force-restart";
     String RECOVERY_FORCE_RESTART_ATTRIBUTE = "force-restart";
+    String PROPERTY_RECOVERY_REDO_THREADS = "db-connection.recovery.redo-threads";
+    String RECOVERY_REDO_THREADS_ATTRIBUTE = "redo-threads";
+    int DEFAULT_RECOVERY_REDO_THREADS = 1;
 
     String PROPERTY_PAGE_SIZE = "db-connection.page-size";
+    String PROPERTY_PAGE_IO_MODE = "db-connection.page-io";
+    String PROPERTY_COMPRESS_OVERFLOW = "db-connection.compress-overflow";
+    String PROPERTY_COMPRESS_PAGES = "db-connection.compress-pages";
 
     /**
      * Default values
@@ -95,5 +103,8 @@ public interface BrokerPoolConstants {
     //TODO : move this default setting to org.exist.collections.CollectionCache ?
     int DEFAULT_COLLECTION_BUFFER_SIZE = 64;
     int DEFAULT_PAGE_SIZE = 4096;
+    PageIOMode DEFAULT_PAGE_IO_MODE = PageIOMode.RANDOM_ACCESS;
+    boolean DEFAULT_COMPRESS_OVERFLOW = false;
+    boolean DEFAULT_COMPRESS_PAGES = false;
     short DEFAULT_DISK_SPACE_MIN = 64; // 64 MB
 }
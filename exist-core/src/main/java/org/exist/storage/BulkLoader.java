@@ -0,0 +1,573 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.security.Subject;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.structural.NativeStructuralIndex;
+import org.exist.storage.structural.NativeStructuralIndexWorker;
+import org.exist.storage.sync.Sync;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.util.FileInputSource;
+import org.exist.util.FileUtils;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.util.URIUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads a large number of XML files into a collection.
+ *
+ * The files are parsed and stored by the calling thread and several worker
+ * threads (see {@link BrokerPool#getWorkerExecutor()}), each with its own broker
+ * and a transaction per document. A worker which cannot get a broker without
+ * waiting does not store any files, see {@link BrokerPool#tryGet(Optional)}.
+ * Whilst loading, indexing is deferred (see {@link DBBroker#setIndexingDeferred(boolean)}),
+ * so only the DOM storage is written. Once all files have been stored, or the
+ * load has failed, the stored documents are indexed in a single pass, in which
+ * the keys of the structural index are added to its btree as sorted runs, see
+ * {@link NativeStructuralIndexWorker#startBatch()}.
+ *
+ * The collection is recorded in {@link #PENDING_FILE} in the data directory
+ * until its documents have been indexed, so that it is reindexed when the
+ * database is next started if the load is interrupted, see {@link #indexPending(DBBroker, boolean)}.
+ *
+ * Queries on the collection will not see complete index entries until the
+ * load has finished.
+ */
+public class BulkLoader {
+
+    private static final Logger LOG = LogManager.getLogger(BulkLoader.class);
+
+    /**
+     * The file in the data directory which lists the collections
+     * whose documents have been stored but not yet indexed.
+     */
+    public static final String PENDING_FILE = "bulk-load.pending";
+
+    private static final Object PENDING_LOCK = new Object();
+
+    private final BrokerPool pool;
+    private final Subject subject;
+    private final XmldbURI collectionUri;
+    private final int threads;
+
+    /**
+     * @param pool the database instance
+     * @param subject the subject to load the files as
+     * @param collectionUri the collection to load the files into, it is created if it does not exist
+     * @param threads the maximum number of worker threads
+     */
+    public BulkLoader(final BrokerPool pool, final Subject subject, final XmldbURI collectionUri, final int threads) {
+        this.pool = pool;
+        this.subject = subject;
+        this.collectionUri = collectionUri;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Store the files under their file names and then build the indexes of the stored documents.
+     *
+     * @param files the XML files to store, no two of them may have the same file name
+     *
+     * @return the outcome of the load
+     *
+     * @throws EXistException if a broker or transaction cannot be obtained, or two files have the same name
+     * @throws PermissionDeniedException if the subject may not write to the collection
+     * @throws IOException if the collection cannot be created
+     * @throws LockException if the collection cannot be locked
+     * @throws TriggerException if a trigger rejects the creation of the collection
+     *
+     * @see #load(Path, List)
+     */
+    public Result load(final List<Path> files) throws EXistException, PermissionDeniedException, IOException,
+            LockException, TriggerException {
+        final Map<XmldbURI, Path> targets = new LinkedHashMap<>();
+        for (final Path file : files) {
+            addTarget(targets, collectionUri.append(URIUtils.urlEncodeUtf8(FileUtils.fileName(file))), file);
+        }
+        return load(targets);
+    }
+
+    /**
+     * Store the files and then build the indexes of the stored documents.
+     *
+     * Each file is stored under its path relative to the base directory, the
+     * sub-collections for its parent directories are created as needed.
+     *
+     * A file which cannot be stored does not stop the load,
+     * it is reported in the result instead.
+     *
+     * @param baseDir the directory which contains the files
+     * @param files the XML files to store
+     *
+     * @return the outcome of the load
+     *
+     * @throws EXistException if a broker or transaction cannot be obtained, or a file is not within the base directory
+     * @throws PermissionDeniedException if the subject may not write to the collection
+     * @throws IOException if the collections cannot be created
+     * @throws LockException if a collection cannot be locked
+     * @throws TriggerException if a trigger rejects the creation of a collection
+     */
+    public Result load(final Path baseDir, final List<Path> files) throws EXistException, PermissionDeniedException,
+            IOException, LockException, TriggerException {
+        final Path base = baseDir.toAbsolutePath().normalize();
+        final Map<XmldbURI, Path> targets = new LinkedHashMap<>();
+        for (final Path file : files) {
+            final Path relative = base.relativize(file.toAbsolutePath().normalize());
+            if (relative.getNameCount() == 0 || relative.startsWith("..")) {
+                throw new EXistException("File " + file.toAbsolutePath() + " is not within " + base);
+            }
+            final StringBuilder path = new StringBuilder();
+            for (final Path name : relative) {
+                if (path.length() > 0) {
+                    path.append('/');
+                }
+                path.append(URIUtils.urlEncodeUtf8(name.toString()));
+            }
+            addTarget(targets, collectionUri.append(path.toString()), file);
+        }
+        return load(targets);
+    }
+
+    private void addTarget(final Map<XmldbURI, Path> targets, final XmldbURI docUri, final Path file)
+            throws EXistException {
+        final Path previous = targets.putIfAbsent(docUri, file);
+        if (previous != null && !previous.toAbsolutePath().normalize().equals(file.toAbsolutePath().normalize())) {
+            throw new EXistException("Files " + previous.toAbsolutePath() + " and " + file.toAbsolutePath() +
+                    " would both be stored as " + docUri);
+        }
+    }
+
+    private Result load(final Map<XmldbURI, Path> targets) throws EXistException, PermissionDeniedException,
+            IOException, LockException, TriggerException {
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(subject));
+                final Txn transaction = transact.beginTransaction()) {
+            final Set<XmldbURI> collectionUris = new LinkedHashSet<>();
+            collectionUris.add(collectionUri);
+            for (final XmldbURI docUri : targets.keySet()) {
+                collectionUris.add(docUri.removeLastSegment());
+            }
+            for (final XmldbURI uri : collectionUris) {
+                try (final Collection collection = broker.getOrCreateCollection(transaction, uri)) {
+                    broker.saveCollection(transaction, collection);
+                }
+            }
+            transaction.commit();
+        }
+
+        addPending(pool, collectionUri);
+
+        final Result result = new Result();
+        try {
+            storeFiles(new ArrayList<>(targets.entrySet()), result);
+        } catch (final Throwable t) {
+            // also after a failure, so the documents which have been stored are indexed
+            try {
+                index(result.getStored());
+            } catch (final EXistException | RuntimeException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
+        index(result.getStored());
+        return result;
+    }
+
+    /**
+     * Store the files using the calling thread and the worker threads. Returns
+     * only once none of the workers are storing files any more.
+     */
+    private void storeFiles(final List<Map.Entry<XmldbURI, Path>> files, final Result result)
+            throws EXistException {
+        final long start = System.currentTimeMillis();
+        final AtomicInteger next = new AtomicInteger();
+        final int workers = Math.min(threads, files.size()) - 1;
+        final List<Worker> started = new ArrayList<>(Math.max(0, workers));
+        Throwable failure = null;
+        try {
+            final ExecutorService executor = pool.getWorkerExecutor();
+            for (int i = 0; i < workers; i++) {
+                final Worker worker = new Worker(files, next, result);
+                worker.future = executor.submit(worker);
+                started.add(worker);
+            }
+
+            try (final DBBroker broker = pool.get(Optional.of(subject))) {
+                loadFiles(broker, files, next, result);
+            }
+        } catch (final Throwable t) {
+            failure = t;
+            // stop the workers from taking any more files
+            next.set(files.size());
+            throw t;
+        } finally {
+            for (final Worker worker : started) {
+                try {
+                    worker.join();
+                } catch (final EXistException e) {
+                    if (failure == null) {
+                        failure = e;
+                        next.set(files.size());
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            LOG.info("Stored {} documents into {} in {} ms, {} failed.", result.stored.size(), collectionUri,
+                    System.currentTimeMillis() - start, result.failed.size());
+        }
+        if (failure != null) {
+            throw (EXistException) failure;
+        }
+    }
+
+    /**
+     * Stores files on a worker thread.
+     */
+    private class Worker implements Callable<Void> {
+        private final List<Map.Entry<XmldbURI, Path>> files;
+        private final AtomicInteger next;
+        private final Result result;
+
+        /**
+         * Set by whichever of the worker or {@link #join()} comes first, so that a
+         * worker which has not started when the files have been stored never runs.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<Void> future;
+
+        Worker(final List<Map.Entry<XmldbURI, Path>> files, final AtomicInteger next, final Result result) {
+            this.files = files;
+            this.next = next;
+            this.result = result;
+        }
+
+        @Override
+        public Void call() throws EXistException {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            // never wait for a broker, the files of this worker are then stored by the calling thread
+            final Optional<DBBroker> leased = pool.tryGet(Optional.of(subject));
+            if (leased.isPresent()) {
+                try (final DBBroker broker = leased.get()) {
+                    loadFiles(broker, files, next, result);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Wait until the worker has finished, unless it has not started yet.
+         */
+        void join() throws EXistException {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+                return;
+            }
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        future.get();
+                        return;
+                    } catch (final InterruptedException e) {
+                        // the worker has to finish before the stored documents are indexed
+                        interrupted = true;
+                    } catch (final ExecutionException e) {
+                        if (e.getCause() instanceof EXistException) {
+                            throw (EXistException) e.getCause();
+                        }
+                        throw new EXistException("Error while bulk loading into " + collectionUri + ": " +
+                                e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take files until there are none left.
+     */
+    private void loadFiles(final DBBroker broker, final List<Map.Entry<XmldbURI, Path>> files,
+            final AtomicInteger next, final Result result) throws EXistException {
+        final boolean indexingDeferred = broker.isIndexingDeferred();
+        try {
+            broker.setIndexingDeferred(true);
+            int i;
+            while ((i = next.getAndIncrement()) < files.size()) {
+                final XmldbURI docUri = files.get(i).getKey();
+                final Path file = files.get(i).getValue();
+                try {
+                    result.addStored(store(broker, docUri, file));
+                } catch (final PermissionDeniedException | IOException | SAXException | LockException e) {
+                    LOG.error("Could not store file {}: {}", file.toAbsolutePath(), e.getMessage());
+                    result.addFailed(file, e);
+                }
+            }
+        } finally {
+            broker.setIndexingDeferred(indexingDeferred);
+        }
+    }
+
+    /**
+     * Build the indexes of the stored documents, with a transaction per document.
+     * The other documents of the collection are indexed already, so they are not reindexed.
+     * Once the indexes have been written to disk, the collection is removed from the
+     * {@link #PENDING_FILE}.
+     */
+    private void index(final List<XmldbURI> docUris) throws EXistException {
+        final long start = System.currentTimeMillis();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(subject))) {
+            final List<DocumentImpl> docs = new ArrayList<>(docUris.size());
+            for (final XmldbURI docUri : docUris) {
+                try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                    // may have been removed since
+                    if (lockedDoc != null) {
+                        docs.add(lockedDoc.getDocument());
+                    }
+                } catch (final PermissionDeniedException e) {
+                    throw new EXistException("Unable to index " + docUri + ": " + e.getMessage(), e);
+                }
+            }
+            // the keys of the structural index are then ascending from one document to the next
+            docs.sort(Comparator.comparingInt(DocumentImpl::getDocId));
+
+            final NativeStructuralIndexWorker structuralIndex = (NativeStructuralIndexWorker)
+                    broker.getIndexController().getWorkerByIndexId(NativeStructuralIndex.ID);
+            structuralIndex.startBatch();
+            try {
+                for (final DocumentImpl doc : docs) {
+                    try (final Txn transaction = transact.beginTransaction();
+                            final LockedDocument lockedDoc = broker.getXMLResource(doc.getURI(), LockMode.WRITE_LOCK)) {
+                        if (lockedDoc != null) {
+                            broker.reindexXMLResource(transaction, lockedDoc.getDocument(), DBBroker.IndexMode.STORE);
+                        }
+                        transaction.commit();
+                    } catch (final PermissionDeniedException e) {
+                        throw new EXistException("Unable to index " + doc.getURI() + ": " + e.getMessage(), e);
+                    }
+                }
+            } finally {
+                structuralIndex.endBatch();
+            }
+            broker.sync(Sync.MAJOR);
+        }
+        removePending(pool, collectionUri);
+        LOG.info("Indexed {} documents in {} in {} ms.", docUris.size(), collectionUri,
+                System.currentTimeMillis() - start);
+    }
+
+    private XmldbURI store(final DBBroker broker, final XmldbURI docUri, final Path file) throws EXistException,
+            PermissionDeniedException, IOException, SAXException, LockException {
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final Txn transaction = transact.beginTransaction();
+                // NOTE: validateXMLResource and store lock the collection and document themselves
+                final Collection collection = broker.openCollection(docUri.removeLastSegment(), LockMode.NO_LOCK)) {
+            if (collection == null) {
+                throw new IOException("Collection " + docUri.removeLastSegment() + " not found");
+            }
+            final InputSource source = new FileInputSource(file);
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, docUri.lastSegment(), source);
+            collection.store(transaction, broker, info, source);
+            transaction.commit();
+            return info.getDocument().getURI();
+        }
+    }
+
+    /**
+     * Index the documents of the collections in the {@link #PENDING_FILE}, i.e. of
+     * the bulk loads which were interrupted before their documents had been indexed.
+     * Called when the database is started.
+     *
+     * @param broker the system broker
+     * @param reindexed true if the whole database has been reindexed already, e.g. after a recovery
+     *
+     * @throws EXistException if the pending collections cannot be read or reindexed
+     */
+    public static void indexPending(final DBBroker broker, final boolean reindexed) throws EXistException {
+        final BrokerPool pool = broker.getBrokerPool();
+        final List<XmldbURI> pending = readPending(pool);
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (!reindexed) {
+            final TransactionManager transact = pool.getTransactionManager();
+            for (final XmldbURI uri : new LinkedHashSet<>(pending)) {
+                LOG.info("Indexing the documents of the interrupted bulk load into {}", uri);
+                try (final Txn transaction = transact.beginTransaction()) {
+                    if (broker.getCollection(uri) != null) {
+                        broker.reindexCollection(transaction, uri);
+                    }
+                    transaction.commit();
+                } catch (final PermissionDeniedException | IOException | LockException e) {
+                    throw new EXistException("Unable to index the documents of the interrupted bulk load into " +
+                            uri + ": " + e.getMessage(), e);
+                }
+            }
+            broker.sync(Sync.MAJOR);
+        }
+        synchronized (PENDING_LOCK) {
+            writePending(pool, Collections.emptyList());
+        }
+    }
+
+    private static void addPending(final BrokerPool pool, final XmldbURI uri) throws EXistException {
+        synchronized (PENDING_LOCK) {
+            final List<XmldbURI> pending = readPending(pool);
+            pending.add(uri);
+            writePending(pool, pending);
+        }
+    }
+
+    private static void removePending(final BrokerPool pool, final XmldbURI uri) throws EXistException {
+        synchronized (PENDING_LOCK) {
+            // another load into the same collection may still be pending
+            final List<XmldbURI> pending = readPending(pool);
+            pending.remove(uri);
+            writePending(pool, pending);
+        }
+    }
+
+    private static Path getPendingFile(final BrokerPool pool) {
+        return ((Path) pool.getConfiguration().getProperty(BrokerPool.PROPERTY_DATA_DIR)).resolve(PENDING_FILE);
+    }
+
+    private static List<XmldbURI> readPending(final BrokerPool pool) throws EXistException {
+        final Path file = getPendingFile(pool);
+        final List<XmldbURI> pending = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return pending;
+        }
+        try {
+            for (final String line : Files.readAllLines(file, UTF_8)) {
+                if (!line.isEmpty()) {
+                    pending.add(XmldbURI.create(line));
+                }
+            }
+        } catch (final IOException e) {
+            throw new EXistException("Unable to read " + file.toAbsolutePath() + ": " + e.getMessage(), e);
+        }
+        return pending;
+    }
+
+    /**
+     * Replace the pending file, or delete it if there are no pending collections.
+     * The new file is forced to disk before it replaces the previous one.
+     */
+    private static void writePending(final BrokerPool pool, final List<XmldbURI> pending) throws EXistException {
+        final Path file = getPendingFile(pool);
+        try {
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            final Path tmp = file.resolveSibling(PENDING_FILE + ".tmp");
+            try (final FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final StringBuilder lines = new StringBuilder();
+                for (final XmldbURI uri : pending) {
+                    lines.append(uri.toString()).append('\n');
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new EXistException("Unable to write " + file.toAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The outcome of a bulk load.
+     */
+    public static class Result {
+        private final List<XmldbURI> stored = new ArrayList<>();
+        private final Map<Path, Exception> failed = new LinkedHashMap<>();
+
+        private synchronized void addStored(final XmldbURI docUri) {
+            stored.add(docUri);
+        }
+
+        private synchronized void addFailed(final Path file, final Exception e) {
+            failed.put(file, e);
+        }
+
+        /**
+         * @return the URIs of the stored documents
+         */
+        public synchronized List<XmldbURI> getStored() {
+            return Collections.unmodifiableList(new ArrayList<>(stored));
+        }
+
+        /**
+         * @return the files which could not be stored, and why
+         */
+        public synchronized Map<Path, Exception> getFailed() {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+        }
+    }
+}
@@ -21,6 +21,7 @@
  */
 package org.exist.storage;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
@@ -56,6 +57,8 @@ public class ConsistencyCheckTask implements SystemTask {
     private boolean incremental = false;
     private boolean incrementalCheck = false;
     private boolean checkDocs = false;
+    private boolean online = false;
+    private int threads = 1;
     private int maxInc = -1;
 
     private Path lastExportedBackup = null;
@@ -69,6 +72,8 @@ public class ConsistencyCheckTask implements SystemTask {
     public final static String INCREMENTAL_CHECK_PROP_NAME = "incremental-check";
     public final static String MAX_PROP_NAME = "max";
     public final static String CHECK_DOCS_PROP_NAME = "check-documents";
+    public final static String ONLINE_PROP_NAME = "online";
+    public final static String THREADS_PROP_NAME = "threads";
 
     private final static LoggingCallback logCallback = new LoggingCallback();
     
@@ -77,6 +82,11 @@ public class ConsistencyCheckTask implements SystemTask {
     	return false;
     }
 
+    @Override
+    public boolean requiresExclusiveAccess() {
+        return !online;
+    }
+
     @Override
     public String getName() {
         return "Consistency Check Task";
@@ -123,6 +133,17 @@ public class ConsistencyCheckTask implements SystemTask {
 
         final String check = properties.getProperty(CHECK_DOCS_PROP_NAME, "no");
         checkDocs = check.equalsIgnoreCase("YES");
+
+        final String onl = properties.getProperty(ONLINE_PROP_NAME, "no");
+        online = onl.equalsIgnoreCase("YES");
+
+        final String thr = properties.getProperty(THREADS_PROP_NAME,
+                Integer.toString(Runtime.getRuntime().availableProcessors()));
+        try {
+            threads = Integer.parseInt(thr);
+        } catch (final NumberFormatException e) {
+            throw new EXistException("Parameter 'threads' has to be an integer");
+        }
     }
 
     @Override
@@ -155,7 +176,11 @@ public class ConsistencyCheckTask implements SystemTask {
 
                 final ConsistencyCheck check = new ConsistencyCheck(broker, transaction, false, checkDocs);
                 agentInstance.changeStatus(brokerPool, new TaskStatus(TaskStatus.Status.RUNNING_CHECK));
-                errors = check.checkAll(cb);
+                if (online) {
+                    errors = check.checkAllOnline(cb, threads);
+                } else {
+                    errors = check.checkAll(cb);
+                }
                 
                 if (!errors.isEmpty()) {
                     endStatus.setStatus(TaskStatus.Status.STOPPED_ERROR);
@@ -175,17 +200,13 @@ public class ConsistencyCheckTask implements SystemTask {
             }
 
             if (doBackup) {
-                LOG.info("Starting backup...");
-
-                final SystemExport sysexport = new SystemExport(broker, transaction, logCallback, monitor, false);
-                lastExportedBackup = sysexport.export(exportDir, incremental, maxInc, createZip, errors);
-                agentInstance.changeStatus(brokerPool, new TaskStatus(TaskStatus.Status.RUNNING_BACKUP));
-
-                if (lastExportedBackup != null) {
-                    LOG.info("Created backup to file: " + lastExportedBackup.toAbsolutePath().toString());
+                if (online) {
+                    // the export reads the data files directly, so it still requires exclusive access
+                    LOG.info("Scheduling backup...");
+                    brokerPool.triggerSystemTask(new ExportTask(errors));
+                } else {
+                    export(broker, transaction, errors);
                 }
-                
-                LOG.info("Finished backup");
             }
 
         } catch (final TerminatedException | PermissionDeniedException e) {
@@ -200,6 +221,20 @@ public class ConsistencyCheckTask implements SystemTask {
         }
     }
 
+    private void export(final DBBroker broker, final Txn transaction, @Nullable final List<ErrorReport> errors) {
+        LOG.info("Starting backup...");
+
+        final SystemExport sysexport = new SystemExport(broker, transaction, logCallback, monitor, false);
+        lastExportedBackup = sysexport.export(exportDir, incremental, maxInc, createZip, errors);
+        AgentFactory.getInstance().changeStatus(broker.getBrokerPool(), new TaskStatus(TaskStatus.Status.RUNNING_BACKUP));
+
+        if (lastExportedBackup != null) {
+            LOG.info("Created backup to file: " + lastExportedBackup.toAbsolutePath().toString());
+        }
+
+        LOG.info("Finished backup");
+    }
+
     /**
      * Gets the last exported backup
      *
@@ -233,6 +268,42 @@ public class ConsistencyCheckTask implements SystemTask {
         }
     }
 
+    /**
+     * Exports the database after an online consistency check,
+     * with exclusive access to the database.
+     */
+    private class ExportTask implements SystemTask {
+        @Nullable private final List<ErrorReport> errors;
+
+        private ExportTask(@Nullable final List<ErrorReport> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public String getName() {
+            return "Consistency Check Export Task";
+        }
+
+        @Override
+        public void configure(final Configuration config, final Properties properties) {
+        }
+
+        @Override
+        public void execute(final DBBroker broker, final Txn transaction) {
+            broker.getBrokerPool().getProcessMonitor().startJob(ProcessMonitor.ACTION_BACKUP, null, monitor);
+            try {
+                export(broker, transaction, errors);
+            } finally {
+                broker.getBrokerPool().getProcessMonitor().endJob();
+            }
+        }
+
+        @Override
+        public boolean afterCheckpoint() {
+            return false;
+        }
+    }
+
     private static class LoggingCallback implements SystemExport.StatusCallback {
 
         @Override
@@ -260,7 +331,7 @@ public class ConsistencyCheckTask implements SystemTask {
         }
 
         @Override
-        public void startDocument(final String name, final int current, final int count) throws TerminatedException {
+        public synchronized void startDocument(final String name, final int current, final int count) throws TerminatedException {
             if (!monitor.proceed()) {
                 throw new TerminatedException("consistency check terminated");
             }
@@ -275,7 +346,7 @@ public class ConsistencyCheckTask implements SystemTask {
         }
 
         @Override
-        public void startCollection(final String path) throws TerminatedException {
+        public synchronized void startCollection(final String path) throws TerminatedException {
             if (!monitor.proceed()) {
                 throw new TerminatedException("consistency check terminated");
             }
@@ -290,7 +361,7 @@ public class ConsistencyCheckTask implements SystemTask {
         }
 
         @Override
-        public void error(final ErrorReport error) {
+        public synchronized void error(final ErrorReport error) {
             log.write("----------------------------------------------\n");
             log.write(error.toString());
             log.write('\n');
@@ -298,7 +369,7 @@ public class ConsistencyCheckTask implements SystemTask {
         }
 
         @Override
-        public void error(final String message, final Throwable exception) {
+        public synchronized void error(final String message, final Throwable exception) {
             log.write("----------------------------------------------\n");
             log.write("EXPORT ERROR: ");
             log.write(message);
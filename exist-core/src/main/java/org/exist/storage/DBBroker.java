@@ -133,6 +133,8 @@ public abstract class DBBroker implements AutoCloseable {
 
     private boolean triggersEnabled = true;
 
+    private boolean indexingDeferred = false;
+
     public DBBroker(final BrokerPool pool, final Configuration config) {
         this.config = config;
         final Boolean temp = (Boolean) config.getProperty(NativeValueIndex.PROPERTY_INDEX_CASE_SENSITIVE);
@@ -1216,6 +1218,28 @@ public abstract class DBBroker implements AutoCloseable {
         this.triggersEnabled = triggersEnabled;
     }
 
+    /**
+     * Returns true if secondary index updates are deferred for the
+     * documents stored by this broker, see {@link #setIndexingDeferred(boolean)}.
+     *
+     * @return true if indexing is deferred
+     */
+    public boolean isIndexingDeferred() {
+        return indexingDeferred;
+    }
+
+    /**
+     * When indexing is deferred, documents stored by this broker
+     * are only written to the DOM storage; neither the range index
+     * nor the modular indexes are updated. The caller is then responsible
+     * for reindexing the affected collections, e.g. {@link org.exist.storage.BulkLoader}.
+     *
+     * @param indexingDeferred true to defer indexing
+     */
+    public void setIndexingDeferred(final boolean indexingDeferred) {
+        this.indexingDeferred = indexingDeferred;
+    }
+
     /**
      * Represents a {@link Subject} change
      * made to a broker
@@ -27,6 +27,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.EXistException;
 import org.exist.backup.RawDataBackup;
+import org.exist.storage.journal.JournalManager;
+import org.exist.storage.journal.Lsn;
 import org.exist.storage.txn.Txn;
 import org.exist.util.Configuration;
 
@@ -43,11 +45,23 @@ import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * System task which writes a snapshot of the raw data files into a ZIP file.
+ *
+ * The task runs directly after a checkpoint. The position of the checkpoint
+ * in the journal is stored in the {@link #JOURNAL_POSITION_ENTRY} of the ZIP file,
+ * so that the journal files archived after the snapshot was taken can be replayed
+ * on top of it, see {@link org.exist.backup.JournalRestoreMain}.
+ */
 public class DataBackup implements SystemTask {
 
     private final static Logger LOG = LogManager.getLogger(DataBackup.class);
 
     public static final String DATE_FORMAT_PICTURE = "yyyyMMddHHmmssS";
+
+    public static final String JOURNAL_POSITION_ENTRY = "journal-position.properties";
+    public static final String JOURNAL_POSITION_FILE = "lsn.file";
+    public static final String JOURNAL_POSITION_OFFSET = "lsn.offset";
     private final SimpleDateFormat creationDateFormat = new SimpleDateFormat(DATE_FORMAT_PICTURE);
 
 	private Path dest;
@@ -109,12 +123,35 @@ public class DataBackup implements SystemTask {
             out.setLevel(Deflater.NO_COMPRESSION);
             final Callback cb = new Callback(out);
             broker.backupToArchive(cb);
+            writeJournalPosition(broker, out);
             // close the zip file
 		} catch (final IOException e) {
 			LOG.error("An IO error occurred while backing up data files: " + e.getMessage(), e);
 		}
 	}
 
+    /**
+     * Records the position of the checkpoint which precedes the snapshot.
+     */
+    private void writeJournalPosition(final DBBroker broker, final ZipOutputStream out) throws IOException {
+        final Optional<JournalManager> journalManager = broker.getBrokerPool().getJournalManager();
+        if (!journalManager.isPresent()) {
+            return;
+        }
+
+        final Lsn lsn = journalManager.get().lastWrittenLsn();
+        if (Lsn.LSN_INVALID.equals(lsn)) {
+            return;
+        }
+
+        final Properties position = new Properties();
+        position.setProperty(JOURNAL_POSITION_FILE, Long.toString(lsn.getFileNumber()));
+        position.setProperty(JOURNAL_POSITION_OFFSET, Long.toString(lsn.getOffset()));
+        out.putNextEntry(new ZipEntry(JOURNAL_POSITION_ENTRY));
+        position.store(out, "Journal position of the checkpoint preceding the snapshot");
+        out.closeEntry();
+    }
+
     public Optional<Path> getLastBackup() {
         return lastBackup;
     }
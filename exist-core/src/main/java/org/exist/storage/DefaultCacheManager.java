@@ -26,7 +26,13 @@ import org.apache.logging.log4j.Logger;
 
 import org.exist.management.Agent;
 import org.exist.management.AgentFactory;
+import org.exist.storage.cache.BTreeCache;
+import org.exist.storage.cache.BTreeCacheable;
 import org.exist.storage.cache.Cache;
+import org.exist.storage.cache.CachePolicy;
+import org.exist.storage.cache.Cacheable;
+import org.exist.storage.cache.LRUCache;
+import org.exist.storage.cache.SegmentedLRUCache;
 import org.exist.util.Configuration;
 import org.exist.util.DatabaseConfigurationException;
 
@@ -74,6 +80,12 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
     public static final String  CACHE_CHECK_MAX_SIZE_ATTRIBUTE 			= "checkMaxCacheSize";
     public static final String  PROPERTY_CACHE_CHECK_MAX_SIZE				= "db-connection.check-max-cache-size";
 
+    public static final String  BTREE_CACHE_POLICY_ATTRIBUTE             = "btreeCachePolicy";
+    public static final String  PROPERTY_BTREE_CACHE_POLICY              = "db-connection.btree-cache-policy";
+    public static final String  DATA_CACHE_POLICY_ATTRIBUTE              = "dataCachePolicy";
+    public static final String  PROPERTY_DATA_CACHE_POLICY               = "db-connection.data-cache-policy";
+    public static final CachePolicy DEFAULT_CACHE_POLICY                 = CachePolicy.LRU;
+
     public static final String  SHRINK_THRESHOLD_ATTRIBUTE     		 	= "cacheShrinkThreshold";
     public static final String  SHRINK_THRESHOLD_PROPERTY      			= "db-connection.cache-shrink-threshold";
 
@@ -108,6 +120,12 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
     private String              instanceName;
 
+    /** The replacement policy for caches of B+-tree pages. */
+    private final CachePolicy   btreeCachePolicy;
+
+    /** The replacement policy for caches of data pages. */
+    private final CachePolicy   dataCachePolicy;
+
     public DefaultCacheManager( BrokerPool pool )
     {
         this.instanceName = pool.getId();
@@ -126,6 +144,9 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
         shrinkThreshold = configuration.getInteger( SHRINK_THRESHOLD_PROPERTY );
 
+        btreeCachePolicy = configuration.getProperty( PROPERTY_BTREE_CACHE_POLICY, DEFAULT_CACHE_POLICY );
+        dataCachePolicy  = configuration.getProperty( PROPERTY_DATA_CACHE_POLICY, DEFAULT_CACHE_POLICY );
+
         totalMem        = cacheSize * 1024L * 1024L;
 
         final Boolean checkMaxCache = (Boolean)configuration.getProperty( PROPERTY_CACHE_CHECK_MAX_SIZE );
@@ -154,12 +175,66 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
         LOG.info( "Cache settings: " + nf.format( totalMem / 1024L ) + "k; totalPages: " + nf.format( totalPageCount ) +
                 "; maxCacheSize: " + nf.format( maxCacheSize ) +
-                "; cacheShrinkThreshold: " + nf.format( shrinkThreshold )
+                "; cacheShrinkThreshold: " + nf.format( shrinkThreshold ) +
+                "; btreeCachePolicy: " + btreeCachePolicy.getConfigValue() +
+                "; dataCachePolicy: " + dataCachePolicy.getConfigValue()
         );
 
         registerMBean();
     }
 
+    /**
+     * Creates a new cache for B+-tree pages, using the
+     * configured replacement policy for {@link Cache.CacheType#BTREE}.
+     *
+     * The cache is not registered with this cache manager.
+     *
+     * @param <T> the type of the cached pages
+     * @param name the name of the cache
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache should grow, see {@link Cache#getGrowthFactor()}
+     * @param growthThreshold the amount of thrashing which triggers a resize
+     *
+     * @return the new cache
+     */
+    public <T extends BTreeCacheable> Cache<T> newBTreeCache( final String name, final int size, final double growthFactor, final double growthThreshold )
+    {
+        switch( btreeCachePolicy ) {
+            case SLRU:
+                return new SegmentedLRUCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.BTREE );
+
+            case LRU:
+            default:
+                return new BTreeCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.BTREE );
+        }
+    }
+
+    /**
+     * Creates a new cache for data pages, using the
+     * configured replacement policy for {@link Cache.CacheType#DATA}.
+     *
+     * The cache is not registered with this cache manager.
+     *
+     * @param <T> the type of the cached pages
+     * @param name the name of the cache
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache should grow, see {@link Cache#getGrowthFactor()}
+     * @param growthThreshold the amount of thrashing which triggers a resize
+     *
+     * @return the new cache
+     */
+    public <T extends Cacheable> Cache<T> newDataCache( final String name, final int size, final double growthFactor, final double growthThreshold )
+    {
+        switch( dataCachePolicy ) {
+            case SLRU:
+                return new SegmentedLRUCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.DATA );
+
+            case LRU:
+            default:
+                return new LRUCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.DATA );
+        }
+    }
+
     @Override
     public void registerCache( Cache cache )
     {
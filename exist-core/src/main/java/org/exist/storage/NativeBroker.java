@@ -124,6 +124,9 @@ public class NativeBroker extends DBBroker {
     //Note : no ID for symbols ? Too bad...
 
     public static final String PAGE_SIZE_ATTRIBUTE = "pageSize";
+    public static final String PAGE_IO_ATTRIBUTE = "pageIO";
+    public static final String COMPRESS_OVERFLOW_ATTRIBUTE = "compressOverflow";
+    public static final String COMPRESS_PAGES_ATTRIBUTE = "compressPages";
     public static final String INDEX_DEPTH_ATTRIBUTE = "index-depth";
 
     public static final String PROPERTY_INDEX_DEPTH = "indexer.index-depth";
@@ -349,6 +352,10 @@ public class NativeBroker extends DBBroker {
      */
     @Override
     public <T extends IStoredNode> void endElement(final IStoredNode<T> node, final NodePath currentPath, String content, final boolean remove) {
+        if(isIndexingDeferred() && !remove) {
+            // the range index is rebuilt once the bulk load has completed
+            return;
+        }
         final int indexType = ((ElementImpl) node).getIndexType();
         //TODO : do not care about the current code redundancy : this will move in the (near) future
         // TODO : move to NativeValueIndex
@@ -3866,12 +3873,14 @@ public class NativeBroker extends DBBroker {
                     //TODO : let indexers OR it themselves
                     //we'd need to notify the ElementIndexer at the very end then...
                     indexType = RangeIndexSpec.NO_INDEX;
+                    // the range index is rebuilt once the bulk load has completed
+                    final boolean deferred = indexMode == IndexMode.STORE && isIndexingDeferred();
                     if(idxSpec != null) {
                         final RangeIndexSpec rangeSpec = idxSpec.getIndexByPath(currentPath);
                         if(rangeSpec != null) {
                             indexType |= rangeSpec.getIndexType();
                         }
-                        if(rangeSpec != null) {
+                        if(rangeSpec != null && !deferred) {
                             valueIndex.setDocument(node.getOwnerDocument());
                             //Oh dear : is it the right semantics then ?
                             valueIndex.storeAttribute((AttrImpl) node, currentPath,
@@ -3883,36 +3892,40 @@ public class NativeBroker extends DBBroker {
                             if(!RangeIndexSpec.hasRangeIndex(indexType)) {
                                 indexType |= qnIdx.getIndexType();
                             }
-                            valueIndex.setDocument(node.getOwnerDocument());
-                            //Oh dear : is it the right semantics then ?
-                            valueIndex.storeAttribute((AttrImpl) node, currentPath,
-                                qnIdx, indexMode == IndexMode.REMOVE);
+                            if(!deferred) {
+                                valueIndex.setDocument(node.getOwnerDocument());
+                                //Oh dear : is it the right semantics then ?
+                                valueIndex.storeAttribute((AttrImpl) node, currentPath,
+                                    qnIdx, indexMode == IndexMode.REMOVE);
+                            }
                         }
                     }
                     node.setQName(new QName(qname, ElementValue.ATTRIBUTE));
                     final AttrImpl attr = (AttrImpl) node;
                     attr.setIndexType(indexType);
-                    switch(attr.getType()) {
-                        case AttrImpl.ID:
-                            valueIndex.setDocument(doc);
-                            valueIndex.storeAttribute(attr, attr.getValue(), Type.ID, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
-                            break;
-
-                        case AttrImpl.IDREF:
-                            valueIndex.setDocument(doc);
-                            valueIndex.storeAttribute(attr, attr.getValue(), Type.IDREF, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
-                            break;
-
-                        case AttrImpl.IDREFS:
-                            valueIndex.setDocument(doc);
-                            final StringTokenizer tokenizer = new StringTokenizer(attr.getValue(), " ");
-                            while(tokenizer.hasMoreTokens()) {
-                                valueIndex.storeAttribute(attr, tokenizer.nextToken(), Type.IDREF, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
-                            }
-                            break;
-
-                        default:
-                            // do nothing special
+                    if(!deferred) {
+                        switch(attr.getType()) {
+                            case AttrImpl.ID:
+                                valueIndex.setDocument(doc);
+                                valueIndex.storeAttribute(attr, attr.getValue(), Type.ID, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
+                                break;
+
+                            case AttrImpl.IDREF:
+                                valueIndex.setDocument(doc);
+                                valueIndex.storeAttribute(attr, attr.getValue(), Type.IDREF, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
+                                break;
+
+                            case AttrImpl.IDREFS:
+                                valueIndex.setDocument(doc);
+                                final StringTokenizer tokenizer = new StringTokenizer(attr.getValue(), " ");
+                                while(tokenizer.hasMoreTokens()) {
+                                    valueIndex.storeAttribute(attr, tokenizer.nextToken(), Type.IDREF, NativeValueIndex.IndexType.GENERIC, indexMode == IndexMode.REMOVE);
+                                }
+                                break;
+
+                            default:
+                                // do nothing special
+                        }
                     }
                     if(currentPath != null) {
                         currentPath.removeLastComponent();
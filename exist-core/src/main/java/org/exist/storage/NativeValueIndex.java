@@ -1252,7 +1252,7 @@ public class NativeValueIndex implements ContentLoadingObserver {
                 LOG.error(e.getMessage(), e);
             }
 
-            return false;
+            return true;
         }
     }
 
@@ -1310,7 +1310,7 @@ public class NativeValueIndex implements ContentLoadingObserver {
                 }
 
                 if (atomic.getType() != type) {
-                    return false;
+                    return true;
                 }
             } catch (final EXistException e) {
                 LOG.error(e.getMessage(), e);
@@ -45,6 +45,11 @@ import org.exist.util.Configuration;
  * The system task runs in a privileged mode. Locking collections
  * and resources is not required as no other transactions will be
  * taking place.
+ *
+ * Tasks which only read from the database may instead declare that they
+ * do not require exclusive access, see {@link #requiresExclusiveAccess()}.
+ * Such tasks run concurrently with other transactions, and must lock the
+ * collections and resources they access.
  * 
  * @author wolf
  */
@@ -69,4 +74,14 @@ public interface SystemTask {
 	 * runs. A checkpoint guarantees that all changes were written to disk.
 	 */
 	boolean afterCheckpoint();
+
+	/**
+	 * @return true if all other database operations should be stopped whilst
+	 * this system task runs, false if the task may run concurrently with them.
+	 * A task which runs concurrently is executed by the triggering thread, and
+	 * {@link #afterCheckpoint()} is not taken into account for it.
+	 */
+	default boolean requiresExclusiveAccess() {
+		return true;
+	}
 }
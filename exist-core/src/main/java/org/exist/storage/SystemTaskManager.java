@@ -95,6 +95,33 @@ public class SystemTaskManager implements BrokerPoolService {
         }
     }
 
+    /**
+     * Run a system task which does not require exclusive access
+     * to the database, see {@link SystemTask#requiresExclusiveAccess()}.
+     *
+     * The task is run by the calling thread, with a broker running as
+     * the SYSTEM subject and a transaction of its own.
+     *
+     * @param task the system task
+     */
+    public void runConcurrentTask(final SystemTask task) {
+        if (pool.isShuttingDown()) {
+            LOG.info("Skipping SystemTask: '" + task.getName() + "' as database is shutting down...");
+            return;
+        } else if (pool.isShutDown()) {
+            LOG.warn("Unable to execute SystemTask: '" + task.getName() + "' as database is shut down!");
+            return;
+        }
+
+        try (final DBBroker systemBroker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            runSystemTask(task, systemBroker, transaction);
+            transaction.commit();
+        } catch (final Exception e) {
+            LOG.error("System maintenance task reported error: " + e.getMessage(), e);
+        }
+    }
+
     private void runSystemTask(final SystemTask task, final DBBroker broker, final Txn transaction) throws EXistException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Running system maintenance task: " + task.getClass().getName());
@@ -24,6 +24,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.TimeUnit;
 
+import antlr.collections.AST;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import net.jcip.annotations.ThreadSafe;
@@ -36,6 +37,8 @@ import org.exist.util.Configuration;
 import org.exist.util.Holder;
 import org.exist.xquery.*;
 
+import javax.annotation.Nullable;
+
 /**
  * Global pool for compiled XQuery expressions.
  *
@@ -48,6 +51,13 @@ import org.exist.xquery.*;
  * used for a pre-defined timeout (default is {@link #DEFAULT_TIMEOUT}); these
  * settings can be configured in conf.xml.
  *
+ * The pool also holds the syntax trees of the library modules imported by
+ * the queries, which are shared by all queries importing a module, see
+ * {@link #getModuleAST(DBBroker, Source)}. The same size and timeout apply.
+ * This only saves lexing and parsing a module again: each query still compiles
+ * and analyzes the modules it imports in its own context, and holds its own
+ * compiled copy of them.
+ *
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
 @ThreadSafe
@@ -77,6 +87,11 @@ public class XQueryPool implements BrokerPoolService {
      */
     private Cache<Source, Deque<CompiledXQuery>> cache;
 
+    /**
+     * Source -> Syntax tree of a library module, not the compiled module
+     */
+    private Cache<Source, ModuleAST> moduleCache;
+
     @Override
     public void configure(final Configuration configuration) {
         final Integer maxStSz = (Integer) configuration.getProperty(PROPERTY_MAX_STACK_SIZE);
@@ -107,6 +122,11 @@ public class XQueryPool implements BrokerPoolService {
                 .expireAfterAccess(timeout, TimeUnit.MILLISECONDS)
                 .build();
 
+        this.moduleCache = Caffeine.newBuilder()
+                .maximumSize(maxPoolSize)
+                .expireAfterAccess(timeout, TimeUnit.MILLISECONDS)
+                .build();
+
         LOG.info("QueryPool: " + "size = " + nf.format(maxPoolSize) + "; "
                 + "maxQueryStackSize = " + nf.format(maxQueryStackSize) + "; "
                 + "timeout = " + nf.format(timeout) + "; ");
@@ -192,6 +212,55 @@ public class XQueryPool implements BrokerPoolService {
         return borrowedCompiledQuery.value;
     }
 
+    /**
+     * Adds the syntax tree of a library module to the XQuery pool.
+     *
+     * The tree must not be modified afterwards, as it is shared by all the
+     * queries which import the module.
+     *
+     * @param source The source of the library module.
+     * @param ast The syntax tree parsed from the source.
+     */
+    public void putModuleAST(final Source source, final AST ast) {
+        if (ast == null) {
+            return;
+        }
+        moduleCache.put(source, new ModuleAST(source, ast));
+    }
+
+    /**
+     * Gets the syntax tree of a library module from the XQuery pool.
+     *
+     * The syntax tree only depends on the text of the module, the modules
+     * which it imports are resolved when the tree is compiled. It is therefore
+     * valid for as long as the source of the module itself is unchanged.
+     *
+     * @param broker A database broker.
+     * @param source The source of the library module.
+     *
+     * @return The syntax tree of the module, or null if there is no valid
+     *     syntax tree for the source in the XQuery pool.
+     */
+    public @Nullable AST getModuleAST(final DBBroker broker, final Source source) {
+        if (broker == null || source == null) {
+            return null;
+        }
+
+        final ModuleAST moduleAST = moduleCache.asMap().computeIfPresent(source, (key, value) -> {
+            if (!isSourceValid(broker, source, value.source)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(source.getKey() + " is invalid, removing module from XQuery Pool...");
+                }
+
+                // module is invalid, returning null will remove the entry from the cache
+                return null;
+            }
+            return value;
+        });
+
+        return moduleAST == null ? null : moduleAST.ast;
+    }
+
     /**
      * Determines if a compiled XQuery is still valid.
      *
@@ -203,13 +272,7 @@ public class XQueryPool implements BrokerPoolService {
      */
     private static boolean isCompiledQueryValid(final DBBroker broker, final Source source,
             final CompiledXQuery compiledXQuery) {
-        final Source cachedSource = compiledXQuery.getSource();
-        Source.Validity validity = cachedSource.isValid(broker);
-        if (validity == Source.Validity.UNKNOWN) {
-            validity = cachedSource.isValid(source);
-        }
-
-        if (validity == Source.Validity.INVALID || validity == Source.Validity.UNKNOWN) {
+        if (!isSourceValid(broker, source, compiledXQuery.getSource())) {
             return false;    // returning null will remove the entry from the cache
         }
 
@@ -222,10 +285,41 @@ public class XQueryPool implements BrokerPoolService {
         return true;
     }
 
+    /**
+     * Determines if a cached source is still valid.
+     *
+     * @param broker the database broker
+     * @param source the current source
+     * @param cachedSource the source from which the cached entry was created
+     *
+     * @return true if the cached source is still valid, false otherwise.
+     */
+    private static boolean isSourceValid(final DBBroker broker, final Source source, final Source cachedSource) {
+        Source.Validity validity = cachedSource.isValid(broker);
+        if (validity == Source.Validity.UNKNOWN) {
+            validity = cachedSource.isValid(source);
+        }
+        return validity == Source.Validity.VALID;
+    }
+
     /**
      * Removes all entries from the XQuery Pool.
      */
     public void clear() {
         cache.invalidateAll();
+        moduleCache.invalidateAll();
+    }
+
+    /**
+     * The syntax tree of a library module, and the source it was parsed from.
+     */
+    private static final class ModuleAST {
+        final Source source;
+        final AST ast;
+
+        ModuleAST(final Source source, final AST ast) {
+            this.source = source;
+            this.ast = ast;
+        }
     }
 }
@@ -48,6 +48,15 @@ public abstract class BTAbstractLoggable extends AbstractLoggable {
         return broker.getStorage(fileId);
     }
 
+    public byte getFileId() {
+        return fileId;
+    }
+
+    @Override
+    public int getRedoFileId() {
+        return fileId & 0xFF;
+    }
+
     @Override
     public void read(final ByteBuffer in) {
         fileId = in.get();
@@ -223,8 +223,7 @@ public class BTree extends Paged implements Lockable {
     }
 
     protected void initCache() {
-        this.cache = new BTreeCache<>(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5,
-            0, Cache.CacheType.BTREE);
+        this.cache = cacheManager.newBTreeCache(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5, 0);
         cacheManager.registerCache(cache);
     }
 
@@ -255,6 +254,24 @@ public class BTree extends Paged implements Lockable {
         return getRootNode().addValue(transaction, value, pointer);
     }
 
+    /**
+     * Start adding keys in ascending order, see {@link BulkInsert}.
+     *
+     * @param transaction the database transaction, or null to write the pages
+     *     without journaling them, in which case the caller should flush the file
+     *     once the bulk insert has been closed
+     * @param fillFactor the fraction of a leaf page which is filled before a new
+     *     leaf page is started, must be &gt; 0 and &lt;= 1
+     *
+     * @return the bulk insert, which must be closed
+     */
+    public BulkInsert bulkInsert(final Txn transaction, final double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1.0) {
+            throw new IllegalArgumentException("fillFactor should be <= 1 > 0");
+        }
+        return new BulkInsert(transaction, fillFactor);
+    }
+
     /**
      * removeValue removes a Value from the BTree and returns the associated
      * pointer for it.
@@ -281,7 +298,8 @@ public class BTree extends Paged implements Lockable {
     /**
      * Search for keys matching the given {@link IndexQuery} and
      * remove them from the node. Every match is reported 
-     * to the specified {@link BTreeCallback}.
+     * to the specified {@link BTreeCallback}. If the callback returns
+     * false, the reported key is still removed but no further keys are.
      *
      * @param transaction the database transaction.
      * @param query the query
@@ -304,7 +322,7 @@ public class BTree extends Paged implements Lockable {
         getRootNode().remove(transaction, query, callback);
     }
 
-    protected void removeSequential(final Txn transaction, final BTreeNode page, final IndexQuery query,
+    protected boolean removeSequential(final Txn transaction, final BTreeNode page, final IndexQuery query,
             final BTreeCallback callback) throws TerminatedException {
         long next = page.pageHeader.getNextPage();
         while (next != Page.NO_PAGE) {
@@ -312,7 +330,7 @@ public class BTree extends Paged implements Lockable {
             for (int i = 0; i < nextPage.nKeys; i++) {
                 final boolean test = query.testValue(nextPage.keys[i]);
                 if (query.getOperator() != IndexQuery.NEQ && !test) {
-                    return;
+                    return true;
                 }
                 if (test) {
                     if (transaction != null && isRecoveryEnabled() && nextPage.pageHeader.getStatus() == LEAF) {
@@ -320,17 +338,19 @@ public class BTree extends Paged implements Lockable {
                             fileId, nextPage.page.getPageNum(), i, nextPage.keys[i], nextPage.ptrs[i]);
                         writeToLog(log, nextPage);
                     }
-                    if (callback != null) {
-                        callback.indexInfo(nextPage.keys[i], nextPage.ptrs[i]);
-                    }
+                    final boolean more = callback == null || callback.indexInfo(nextPage.keys[i], nextPage.ptrs[i]);
                     nextPage.removeKey(i);
                     nextPage.removePointer(i);
                     nextPage.recalculateDataLen();
+                    if (!more) {
+                        return false;
+                    }
                     --i;
                 }
             }
             next = nextPage.pageHeader.getNextPage();
         }
+        return true;
     }
 
     /**
@@ -348,7 +368,8 @@ public class BTree extends Paged implements Lockable {
 
     /**
      * query performs a query against the BTree and performs callback
-     * operations to report the search results.
+     * operations to report the search results. The traversal stops as soon
+     * as the callback returns false.
      *
      * @param  query               The IndexQuery to use (or null for everything)
      * @param  callback            The callback instance
@@ -388,18 +409,20 @@ public class BTree extends Paged implements Lockable {
         getRootNode().query(query, prefix, callback);
     }
 
-    protected void scanSequential(BTreeNode page, final IndexQuery query, final Value keyPrefix, final BTreeCallback callback) throws TerminatedException {
+    protected boolean scanSequential(BTreeNode page, final IndexQuery query, final Value keyPrefix, final BTreeCallback callback) throws TerminatedException {
         while (page != null) {
             for (int i = 0; i < page.nKeys; i++) {
                 if (keyPrefix != null && page.keys[i].comparePrefix(keyPrefix) > 0) {
-                    return;
+                    return true;
                 }
                 final boolean test = query.testValue(page.keys[i]);
                 if (query.getOperator() != IndexQuery.NEQ && !test) {
-                    return;
+                    return true;
                 }
                 if (test) {
-                    callback.indexInfo(page.keys[i], page.ptrs[i]);
+                    if (!callback.indexInfo(page.keys[i], page.ptrs[i])) {
+                        return false;
+                    }
                 }
             }
             final long next = page.pageHeader.getNextPage();
@@ -409,6 +432,7 @@ public class BTree extends Paged implements Lockable {
                 page = null;
             }
         }
+        return true;
     }
 
     /**
@@ -645,7 +669,9 @@ public class BTree extends Paged implements Lockable {
         while (pageNum != Page.NO_PAGE) {
             out.print(pageNum + " ");
             final BTreeNode node = getBTreeNode(pageNum);
-            node.scanRaw(null, callback);
+            if (!node.scanRaw(null, callback)) {
+                break;
+            }
             pageNum = node.pageHeader.getNextPage();
         }
         out.println();
@@ -883,6 +909,205 @@ public class BTree extends Paged implements Lockable {
         }
     }
 
+    /**
+     * Adds keys which are supplied in ascending order, e.g. the sorted
+     * keys of a document which is reindexed.
+     *
+     * Instead of descending from the root for every key, consecutive keys are
+     * added to the same leaf page for as long as they belong to it. When a key
+     * would be appended to a leaf which is already filled up to the fill factor,
+     * a new leaf is started to its right and the key is promoted into the parent.
+     * Leaf pages are thus filled bottom-up, from left to right, without being
+     * split. A key which goes between the existing keys of a full leaf still
+     * splits it, as {@link #addValue(Txn, Value, long)} would.
+     *
+     * Rather than one log record per key, the contents of a leaf are journaled
+     * in a single record once no more keys will be added to it. An interrupted
+     * bulk insert can be redone but not undone, so it should only be used for
+     * data which can be rebuilt, like indexes.
+     *
+     * The caller must hold the write lock on the file until the bulk insert
+     * has been closed.
+     */
+    public final class BulkInsert implements AutoCloseable {
+        private final Txn transaction;
+        private final int fillLimit;
+
+        /** the leaf to which keys are added, it is kept in the cache until released */
+        private BTreeNode leaf = null;
+
+        /** the smallest key of the leaf's right sibling, null if the leaf is the last one */
+        private Value upperBound = null;
+
+        /** true if the leaf has changes which are not yet journaled */
+        private boolean modified = false;
+
+        private Value lastKey = null;
+
+        private BulkInsert(final Txn transaction, final double fillFactor) {
+            this.transaction = transaction;
+            this.fillLimit = (int) (fileHeader.getWorkSize() * fillFactor);
+        }
+
+        /**
+         * Add a key and associate a pointer with it. If the key
+         * is already in the tree, its pointer is overwritten.
+         *
+         * @param key the key, it must be greater than the previously added key
+         * @param pointer the pointer to associate with the key
+         *
+         * @throws IOException if an I/O error occurs
+         * @throws BTreeException if the key is not in ascending order, or an error occurs with the tree
+         */
+        public void add(final Value key, final long pointer) throws IOException, BTreeException {
+            if (lastKey != null && key.compareTo(lastKey) <= 0) {
+                throw new BTreeException("Keys must be added in ascending order, " + key + " follows " + lastKey);
+            }
+            lastKey = key;
+
+            if (leaf == null || (upperBound != null && key.compareTo(upperBound) >= 0)) {
+                releaseLeaf();
+                findLeaf(key);
+            }
+
+            int idx = leaf.searchKey(key);
+            if (idx >= 0) {
+                leaf.ptrs[idx] = pointer;
+                leaf.saved = false;
+                modified = true;
+                return;
+            }
+
+            idx = -(idx + 1);
+            leaf.insertKey(key, idx);
+            leaf.insertPointer(pointer, idx);
+            leaf.adjustDataLen(idx);
+            modified = true;
+
+            if (idx == leaf.nKeys - 1 && leaf.nKeys > 1 && leaf.getDataLen() > fillLimit) {
+                // the key was appended to a full leaf, move it into a new leaf instead
+                leaf.removeKey(idx);
+                leaf.removePointer(idx);
+                leaf.recalculateDataLen();
+                appendLeaf(key, pointer);
+            } else if (leaf.mustSplit()) {
+                // the split journals the new contents of both pages
+                final BTreeNode node = leaf;
+                modified = false;
+                releaseLeaf();
+                node.split(transaction);
+            }
+        }
+
+        /**
+         * Locate the leaf to which the key belongs.
+         */
+        private void findLeaf(final Value key) throws IOException {
+            upperBound = null;
+            BTreeNode node = getRootNode();
+            while (node.pageHeader.getStatus() == BRANCH) {
+                int idx = node.searchKey(key);
+                idx = idx < 0 ? -(idx + 1) : idx + 1;
+                if (idx < node.nKeys) {
+                    // the separator of the right sibling, including the common prefix of the branch
+                    final Value separator = node.keys[idx];
+                    final byte[] t = new byte[node.prefix.getLength() + separator.getLength()];
+                    System.arraycopy(node.prefix.data(), node.prefix.start(), t, 0, node.prefix.getLength());
+                    System.arraycopy(separator.data(), separator.start(), t, node.prefix.getLength(), separator.getLength());
+                    upperBound = new Value(t);
+                }
+                final BTreeNode child = node.getChildNode(idx);
+                if (child == null) {
+                    throw new IOException("Child " + idx + " not found in page " + node.page.getPageNum());
+                }
+                node = child;
+            }
+            leaf = node;
+            leaf.allowUnload = false;
+        }
+
+        /**
+         * Start a new leaf to the right of the current one, containing only the key.
+         */
+        private void appendLeaf(final Value key, final long pointer) throws IOException, BTreeException {
+            final BTreeNode left = leaf;
+            BTreeNode parent = left.getParent();
+            final BTreeNode right;
+            if (parent == null) {
+                // the leaf is the root, add a new root above it
+                parent = createBTreeNode(transaction, BRANCH, null, false);
+                if (transaction != null && isRecoveryEnabled()) {
+                    final Loggable log = new SetParentLoggable(transaction, fileId, left.page.getPageNum(),
+                        parent.page.getPageNum());
+                    writeToLog(log, left);
+                }
+                left.setParent(parent);
+                right = createBTreeNode(transaction, LEAF, parent, false);
+                right.allowUnload = false;
+                cache.add(right);
+                linkLeaf(left, right);
+                parent.prefix = key;
+                parent.setValues(new Value[] { Value.EMPTY_VALUE });
+                parent.setPointers(new long[] { left.page.getPageNum(), right.page.getPageNum() });
+                parent.recalculateDataLen();
+                cache.add(parent);
+                setRootNode(parent);
+            } else {
+                right = createBTreeNode(transaction, LEAF, parent, false);
+                right.allowUnload = false;
+                linkLeaf(left, right);
+                parent.promoteValue(transaction, key, right);
+            }
+
+            releaseLeaf();
+            leaf = right;
+            leaf.insertKey(key, 0);
+            leaf.insertPointer(pointer, 0);
+            leaf.recalculateDataLen();
+            modified = true;
+        }
+
+        private void linkLeaf(final BTreeNode left, final BTreeNode right) {
+            if (transaction != null && isRecoveryEnabled()) {
+                Loggable log = new SetPageLinkLoggable(transaction, fileId,
+                    right.page.getPageNum(), left.pageHeader.getNextPage());
+                writeToLog(log, right);
+                log = new SetPageLinkLoggable(transaction, fileId,
+                    left.page.getPageNum(), right.page.getPageNum());
+                writeToLog(log, left);
+            }
+            right.pageHeader.setNextPage(left.pageHeader.getNextPage());
+            left.pageHeader.setNextPage(right.page.getPageNum());
+            left.saved = false;
+        }
+
+        /**
+         * Journal the contents of the leaf and allow it to be unloaded from the cache.
+         */
+        private void releaseLeaf() {
+            if (leaf == null) {
+                return;
+            }
+            if (modified && transaction != null && isRecoveryEnabled()) {
+                final Loggable log = new UpdatePageLoggable(transaction, fileId, leaf.page.getPageNum(),
+                    leaf.prefix, leaf.keys, leaf.nKeys, leaf.ptrs, leaf.nPtrs);
+                writeToLog(log, leaf);
+            }
+            leaf.allowUnload = true;
+            cache.add(leaf);
+            leaf = null;
+            modified = false;
+        }
+
+        /**
+         * Journal the last leaf.
+         */
+        @Override
+        public void close() {
+            releaseLeaf();
+        }
+    }
+
     /**
      * A node in the B+-tree. Every node is backed by a Page for
      * storing the node's data. Both, branch and leaf nodes are represented
@@ -1766,7 +1991,7 @@ public class BTree extends Paged implements Lockable {
          * @throws BTreeException if an error occurs with the tree
          * @throws TerminatedException if the callback is terminated
          */
-        private void query(final IndexQuery query, final BTreeCallback callback)
+        private boolean query(final IndexQuery query, final BTreeCallback callback)
                 throws IOException, BTreeException, TerminatedException {
             if (query != null
                     && query.getOperator() != IndexQuery.ANY
@@ -1791,7 +2016,9 @@ public class BTree extends Paged implements Lockable {
                                 case IndexQuery.RANGE :
                                     for (int i = 0; i < nPtrs; i++)
                                         if ((i >= leftIdx && i <= rightIdx) == pos) {
-                                            getChildNode(i).query(query, callback);
+                                            if (!getChildNode(i).query(query, callback)) {
+                                                return false;
+                                            }
                                             if (query.getOperator() == IndexQuery.TRUNC_RIGHT ||
                                                 query.getOperator() == IndexQuery.RANGE) {
 
@@ -1800,33 +2027,45 @@ public class BTree extends Paged implements Lockable {
                                         }
                                     break;
                                 case IndexQuery.NEQ :
-                                    getChildNode(0).query(query, callback);
+                                    if (!getChildNode(0).query(query, callback)) {
+                                        return false;
+                                    }
                                     break;
                                 case IndexQuery.EQ :
-                                    getChildNode(leftIdx).query(query, callback);
+                                    if (!getChildNode(leftIdx).query(query, callback)) {
+                                        return false;
+                                    }
                                     break;
                                 case IndexQuery.LT :
                                     for (int i = 0; i < nPtrs; i++) {
                                         if ((pos && (i <= leftIdx)) || (!pos && (i >= leftIdx))) {
-                                            getChildNode(i).query(query, callback);
+                                            if (!getChildNode(i).query(query, callback)) {
+                                                return false;
+                                            }
                                         }
                                     }
                                     break;
                                 case IndexQuery.GEQ :
                                 case IndexQuery.GT :
-                                    getChildNode(leftIdx).query(query, callback);
+                                    if (!getChildNode(leftIdx).query(query, callback)) {
+                                        return false;
+                                    }
                                     break;
                                 case IndexQuery.LEQ :
                                     for (int i = 0; i < nPtrs; i++) {
                                         if ((pos && (i >= leftIdx)) || (!pos && (i <= leftIdx))) {
-                                            getChildNode(i).query(query, callback);
+                                            if (!getChildNode(i).query(query, callback)) {
+                                                return false;
+                                            }
                                         }
                                     }
                                     break;
                                 default :
                                     // If it's not implemented, we walk the tree
                                     for (int i = 0; i < nPtrs; i++) {
-                                        getChildNode(i).query(query, callback);
+                                        if (!getChildNode(i).query(query, callback)) {
+                                            return false;
+                                        }
                                     }
                                     break;
                             }
@@ -1835,16 +2074,22 @@ public class BTree extends Paged implements Lockable {
                             switch (query.getOperator()) {
                                 case IndexQuery.EQ :
                                     if (leftIdx >= 0) {
-                                        callback.indexInfo(keys[leftIdx], ptrs[leftIdx]);
+                                        if (!callback.indexInfo(keys[leftIdx], ptrs[leftIdx])) {
+                                            return false;
+                                        }
                                     }
                                     break;
                                 case IndexQuery.NEQ :
                                     for (int i = 0; i < nPtrs; i++) {
                                         if (i != leftIdx) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
+                                            if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                return false;
+                                            }
                                         }
                                     }
-                                    scanNextPage(query, null, callback);
+                                    if (!scanNextPage(query, null, callback)) {
+                                        return false;
+                                    }
                                     break;
                                 case IndexQuery.BWX :
                                 case IndexQuery.NBWX :
@@ -1860,7 +2105,9 @@ public class BTree extends Paged implements Lockable {
                                         if ((pos && (i >= leftIdx && i <= rightIdx))
                                             || (!pos && (i <= leftIdx || i >= rightIdx))) {
                                             if (query.testValue(keys[i])) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
+                                                if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                    return false;
+                                                }
                                             }
                                         }
                                     }
@@ -1875,11 +2122,15 @@ public class BTree extends Paged implements Lockable {
                                     }
                                     for (int i = leftIdx; i < rightIdx && i < nPtrs; i++) {
                                         if (query.testValue(keys[i])) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
+                                            if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                return false;
+                                            }
                                         }
                                     }
                                     if (rightIdx >= nPtrs) {
-                                        scanNextPage(query, null, callback);
+                                        if (!scanNextPage(query, null, callback)) {
+                                            return false;
+                                        }
                                     }
                                     break;
                                 case IndexQuery.IN :
@@ -1893,7 +2144,9 @@ public class BTree extends Paged implements Lockable {
                                     for (int i = 0; i < nPtrs; i++) {
                                         if (!pos || (i >= leftIdx && i <= rightIdx)) {
                                             if (query.testValue(keys[i])) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
+                                                if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                    return false;
+                                                }
                                             }
                                         }
                                     }
@@ -1905,7 +2158,9 @@ public class BTree extends Paged implements Lockable {
                                     for (int i = 0; i < nPtrs; i++) {
                                         if ((pos && (i <= leftIdx)) || (!pos && (i >= leftIdx))) {
                                             if (query.testValue(keys[i])) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
+                                                if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                    return false;
+                                                }
                                             }
                                         }
                                     }
@@ -1917,10 +2172,14 @@ public class BTree extends Paged implements Lockable {
                                     }
                                     for (int i = leftIdx; i < nPtrs; i++) {
                                         if (query.testValue(keys[i])) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
+                                            if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                return false;
+                                            }
                                         }
                                     }
-                                    scanNextPage(query, null, callback);
+                                    if (!scanNextPage(query, null, callback)) {
+                                        return false;
+                                    }
                                     break;
                                 case IndexQuery.LEQ :
                                     if (leftIdx < 0) {
@@ -1929,7 +2188,9 @@ public class BTree extends Paged implements Lockable {
                                     for (int i = 0; i < nPtrs; i++) {
                                         if ((pos && (i >= leftIdx)) || (!pos && (i <= leftIdx))) {
                                             if (query.testValue(keys[i])) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
+                                                if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                    return false;
+                                                }
                                             } else if (query.getOperator() == IndexQuery.TRUNC_RIGHT) {
                                                 break;
                                             }
@@ -1940,7 +2201,9 @@ public class BTree extends Paged implements Lockable {
                                     // If it's not implemented, it falls right through
                                     for (int i = 0; i < nPtrs; i++) {
                                         if (query.testValue(keys[i])) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
+                                            if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                                return false;
+                                            }
                                         }
                                     }
                                     break;
@@ -1954,14 +2217,18 @@ public class BTree extends Paged implements Lockable {
                 switch (pageHeader.getStatus()) {
                 case BRANCH :
                     for (int i = 0; i < nPtrs; i++) {
-                        getChildNode(i).query(query, callback);
+                        if (!getChildNode(i).query(query, callback)) {
+                            return false;
+                        }
                     }
                     break;
                 case LEAF :
                     for (int i = 0; i < nKeys; i++) {
                         if (query == null || query.getOperator() != IndexQuery.TRUNC_LEFT
                                 || query.testValue(keys[i])) {
-                            callback.indexInfo(keys[i], ptrs[i]);
+                            if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                return false;
+                            }
                         }
                     }
                     break;
@@ -1969,6 +2236,7 @@ public class BTree extends Paged implements Lockable {
                     throw new BTreeException("Invalid Page Type In query");
                 }
             }
+            return true;
         }
 
         /**
@@ -1983,7 +2251,7 @@ public class BTree extends Paged implements Lockable {
          * @throws BTreeException if an error occurs with the tree
          * @throws TerminatedException if the callback is terminated
          */
-        private void query(final IndexQuery query, final Value keyPrefix, final BTreeCallback callback)
+        private boolean query(final IndexQuery query, final Value keyPrefix, final BTreeCallback callback)
                 throws IOException, BTreeException, TerminatedException {
             if (query != null
                     && query.getOperator() != IndexQuery.ANY
@@ -1997,24 +2265,34 @@ public class BTree extends Paged implements Lockable {
                         pfxIdx = pfxIdx < 0 ? - (pfxIdx + 1) : pfxIdx + 1;
                         switch (query.getOperator()) {
                             case IndexQuery.EQ :
-                                getChildNode(leftIdx).query(query, keyPrefix, callback);
+                                if (!getChildNode(leftIdx).query(query, keyPrefix, callback)) {
+                                    return false;
+                                }
                                 break;
                             case IndexQuery.NEQ :
-                                getChildNode(pfxIdx).query(query, keyPrefix, callback);
+                                if (!getChildNode(pfxIdx).query(query, keyPrefix, callback)) {
+                                    return false;
+                                }
                                 break;
                             case IndexQuery.LT :
                                 for (int i = pfxIdx; i <= leftIdx && i < nPtrs; i++) {
-                                    getChildNode(i).query(query, keyPrefix, callback);
+                                    if (!getChildNode(i).query(query, keyPrefix, callback)) {
+                                        return false;
+                                    }
                                 }
                                 break;
                             case IndexQuery.LEQ :
                                 for (int i = pfxIdx; i <= leftIdx && i < nPtrs; i++) {
-                                    getChildNode(i).query(query, keyPrefix, callback);
+                                    if (!getChildNode(i).query(query, keyPrefix, callback)) {
+                                        return false;
+                                    }
                                 }
                                 break;
                             case IndexQuery.GEQ :
                             case IndexQuery.GT :
-                                getChildNode(leftIdx).query(query, keyPrefix, callback);
+                                if (!getChildNode(leftIdx).query(query, keyPrefix, callback)) {
+                                    return false;
+                                }
                                 break;
                         }
                         break;
@@ -2023,7 +2301,9 @@ public class BTree extends Paged implements Lockable {
                         switch (query.getOperator()) {
                             case IndexQuery.EQ :
                                 if (leftIdx >= 0) {
-                                    callback.indexInfo(keys[leftIdx], ptrs[leftIdx]);
+                                    if (!callback.indexInfo(keys[leftIdx], ptrs[leftIdx])) {
+                                        return false;
+                                    }
                                 }
                                 break;
                             case IndexQuery.NEQ :
@@ -2032,10 +2312,14 @@ public class BTree extends Paged implements Lockable {
                                         break;
                                     }
                                     if (i != leftIdx) {
-                                        callback.indexInfo(keys[i], ptrs[i]);
+                                        if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                            return false;
+                                        }
                                     }
                                 }
-                                scanNextPage(query, keyPrefix, callback);
+                                if (!scanNextPage(query, keyPrefix, callback)) {
+                                    return false;
+                                }
                                 break;
                             case IndexQuery.LT :
                                 if (leftIdx < 0) {
@@ -2043,7 +2327,9 @@ public class BTree extends Paged implements Lockable {
                                 }
                                 for (int i = pfxIdx; i < leftIdx; i++) {
                                     if (query.testValue(keys[i])) {
-                                        callback.indexInfo(keys[i], ptrs[i]);
+                                        if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                            return false;
+                                        }
                                     }
                                 }
                                 break;
@@ -2053,7 +2339,9 @@ public class BTree extends Paged implements Lockable {
                                 }
                                 for (int i = pfxIdx; i <= leftIdx && i < nPtrs; i++) {
                                     if (query.testValue(keys[i])) {
-                                        callback.indexInfo(keys[i], ptrs[i]);
+                                        if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                            return false;
+                                        }
                                     }
                                 }
                                 break;
@@ -2064,13 +2352,17 @@ public class BTree extends Paged implements Lockable {
                                 }
                                 for (int i = leftIdx; i < nPtrs; i++) {
                                     if (keys[i].comparePrefix(keyPrefix) > 0) {
-                                        return;
+                                        return true;
                                     }
                                     if (query.testValue(keys[i])) {
-                                        callback.indexInfo(keys[i], ptrs[i]);
+                                        if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                            return false;
+                                        }
                                     }
                                 }
-                                scanNextPage(query, keyPrefix, callback);
+                                if (!scanNextPage(query, keyPrefix, callback)) {
+                                    return false;
+                                }
                                 break;
                         }
                         break;
@@ -2082,13 +2374,17 @@ public class BTree extends Paged implements Lockable {
                 switch (pageHeader.getStatus()) {
                     case BRANCH :
                         for (int i = 0; i < nPtrs; i++) {
-                            getChildNode(i).query(query, callback);
+                            if (!getChildNode(i).query(query, callback)) {
+                                return false;
+                            }
                         }
                         break;
                     case LEAF :
                         for (int i = 0; i < nKeys; i++) {
                             if (query.getOperator() != IndexQuery.TRUNC_LEFT || query.testValue(keys[i])) {
-                                callback.indexInfo(keys[i], ptrs[i]);
+                                if (!callback.indexInfo(keys[i], ptrs[i])) {
+                                    return false;
+                                }
                             }
                         }
                         break;
@@ -2096,22 +2392,27 @@ public class BTree extends Paged implements Lockable {
                         throw new BTreeException("Invalid Page Type In query");
                 }
             }
+            return true;
         }
 
-        protected void scanRaw(final IndexQuery query, final BTreeCallback callback) throws TerminatedException {
+        protected boolean scanRaw(final IndexQuery query, final BTreeCallback callback) throws TerminatedException {
             for (int i = 0; i < nKeys; i++) {
                 if (query == null || query.testValue(keys[i])) {
-                    callback.indexInfo(keys[i], ptrs[i]);
+                    if (!callback.indexInfo(keys[i], ptrs[i])) {
+                        return false;
+                    }
                 }
             }
+            return true;
         }
 
-        protected void scanNextPage(final IndexQuery query, final Value keyPrefix, final BTreeCallback callback) throws TerminatedException {
+        protected boolean scanNextPage(final IndexQuery query, final Value keyPrefix, final BTreeCallback callback) throws TerminatedException {
             final long next = pageHeader.getNextPage();
             if (next != Page.NO_PAGE) {
                 final BTreeNode nextPage = getBTreeNode(next);
-                scanSequential(nextPage, query, keyPrefix, callback);
+                return scanSequential(nextPage, query, keyPrefix, callback);
             }
+            return true;
         }
 
         /**
@@ -2127,7 +2428,7 @@ public class BTree extends Paged implements Lockable {
          * @throws BTreeException if an error occurs with the tree
          * @throws TerminatedException if the callback is terminated
          */
-        private void remove(final Txn transaction, final IndexQuery query, final BTreeCallback callback)
+        private boolean remove(final Txn transaction, final IndexQuery query, final BTreeCallback callback)
                 throws IOException, BTreeException, TerminatedException {
             if (query != null && query.getOperator() != IndexQuery.ANY
                     && query.getOperator() != IndexQuery.TRUNC_LEFT) {
@@ -2151,7 +2452,9 @@ public class BTree extends Paged implements Lockable {
                             case IndexQuery.RANGE :
                                 for (int i = 0; i < nPtrs; i++) {
                                     if ((i >= leftIdx && i <= rightIdx) == pos) {
-                                        getChildNode(i).remove(transaction, query, callback);
+                                        if (!getChildNode(i).remove(transaction, query, callback)) {
+                                            return false;
+                                        }
                                         if (query.getOperator() == IndexQuery.TRUNC_RIGHT) {
                                             break;
                                         }
@@ -2162,14 +2465,18 @@ public class BTree extends Paged implements Lockable {
                             case IndexQuery.NEQ :
                                 for (int i = 0; i < nPtrs; i++) {
                                     if (!pos || i == leftIdx) {
-                                        getChildNode(i).remove(transaction, query, callback);
+                                        if (!getChildNode(i).remove(transaction, query, callback)) {
+                                            return false;
+                                        }
                                     }
                                 }
                             case IndexQuery.LT :
                             case IndexQuery.GEQ :
                                 for (int i = 0; i < nPtrs; i++){
                                     if ((pos && (i <= leftIdx)) || (!pos && (i >= leftIdx))) {
-                                        getChildNode(i).remove(transaction, query, callback);
+                                        if (!getChildNode(i).remove(transaction, query, callback)) {
+                                            return false;
+                                        }
                                     }
                                 }
                                 break;
@@ -2177,14 +2484,18 @@ public class BTree extends Paged implements Lockable {
                             case IndexQuery.LEQ :
                                 for (int i = 0; i < nPtrs; i++) {
                                     if ((pos && (i >= leftIdx)) || (!pos && (i <= leftIdx))) {
-                                        getChildNode(i).remove(transaction, query, callback);
+                                        if (!getChildNode(i).remove(transaction, query, callback)) {
+                                            return false;
+                                        }
                                     }
                                 }
                                 break;
                             default :
                                 // If it's not implemented, we walk the tree
                                 for (int i = 0; i < nPtrs; i++) {
-                                    getChildNode(i).remove(transaction, query, callback);
+                                    if (!getChildNode(i).remove(transaction, query, callback)) {
+                                        return false;
+                                    }
                                 }
                                 break;
                         }
@@ -2200,12 +2511,13 @@ public class BTree extends Paged implements Lockable {
                                             fileId, page.getPageNum(), leftIdx, keys[leftIdx], ptrs[leftIdx]);
                                         writeToLog(log, this);
                                     }
-                                    if (callback != null) {
-                                        callback.indexInfo(keys[leftIdx], ptrs[leftIdx]);
-                                    }
+                                    final boolean more = callback == null || callback.indexInfo(keys[leftIdx], ptrs[leftIdx]);
                                     removeKey(leftIdx);
                                     removePointer(leftIdx);
                                     recalculateDataLen();
+                                    if (!more) {
+                                        return false;
+                                    }
                                 }
                                 break;
                             case IndexQuery.NEQ :
@@ -2216,12 +2528,13 @@ public class BTree extends Paged implements Lockable {
                                                 fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                             writeToLog(log, this);
                                         }
-                                        if (callback != null) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
-                                        }
+                                        final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                         removeKey(i);
                                         removePointer(i);
                                         recalculateDataLen();
+                                        if (!more) {
+                                            return false;
+                                        }
                                     }
                                 }
                                 break;
@@ -2245,12 +2558,13 @@ public class BTree extends Paged implements Lockable {
                                                     fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                                 writeToLog(log, this);
                                             }
-                                            if (callback != null) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
-                                            }
+                                            final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                             removeKey(i);
                                             removePointer(i);
                                             recalculateDataLen();
+                                            if (!more) {
+                                                return false;
+                                            }
                                             --i;
                                         }
                                     }
@@ -2270,17 +2584,20 @@ public class BTree extends Paged implements Lockable {
                                                 fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                             writeToLog(log, this);
                                         }
-                                        if (callback != null) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
-                                        }
+                                        final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                         removeKey(i);
                                         removePointer(i);
                                         recalculateDataLen();
+                                        if (!more) {
+                                            return false;
+                                        }
                                         --i;
                                     }
                                 }
                                 if (rightIdx >= nPtrs) {
-                                    removeSequential(transaction, this, query, callback);
+                                    if (!removeSequential(transaction, this, query, callback)) {
+                                        return false;
+                                    }
                                 }
                                 break;
                             case IndexQuery.IN :
@@ -2299,12 +2616,13 @@ public class BTree extends Paged implements Lockable {
                                                     fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                                     writeToLog(log, this);
                                             }
-                                            if (callback != null) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
-                                            }
+                                            final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                             removeKey(i);
                                             removePointer(i);
                                             recalculateDataLen();
+                                            if (!more) {
+                                                return false;
+                                            }
                                             --i;
                                         }
                                     }
@@ -2323,12 +2641,13 @@ public class BTree extends Paged implements Lockable {
                                                     fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                                     writeToLog(log, this);
                                             }
-                                            if (callback != null) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
-                                            }
+                                            final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                             removeKey(i);
                                             removePointer(i);
                                             recalculateDataLen();
+                                            if (!more) {
+                                                return false;
+                                            }
                                             --i;
                                         }
                                     }
@@ -2347,12 +2666,13 @@ public class BTree extends Paged implements Lockable {
                                                     fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                                 writeToLog(log, this);
                                             }
-                                            if (callback != null) {
-                                                callback.indexInfo(keys[i], ptrs[i]);
-                                            }
+                                            final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                             removeKey(i);
                                             removePointer(i);
                                             recalculateDataLen();
+                                            if (!more) {
+                                                return false;
+                                            }
                                             --i;
                                         } else if (query.getOperator() == IndexQuery.TRUNC_RIGHT) {
                                             break;
@@ -2369,12 +2689,13 @@ public class BTree extends Paged implements Lockable {
                                                 fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                                 writeToLog(log, this);
                                         }
-                                        if (callback != null) {
-                                            callback.indexInfo(keys[i], ptrs[i]);
-                                        }
+                                        final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                         removeKey(i);
                                         removePointer(i);
                                         recalculateDataLen();
+                                        if (!more) {
+                                            return false;
+                                        }
                                         --i;
                                     }
                                 }
@@ -2398,12 +2719,13 @@ public class BTree extends Paged implements Lockable {
                                         fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                 writeToLog(log, this);
                             }
-                            if (callback != null) {
-                                callback.indexInfo(keys[i], ptrs[i]);
-                            }
+                            final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                             removeKey(i);
                             removePointer(i);
                             recalculateDataLen();
+                            if (!more) {
+                                return false;
+                            }
                             --i;
                         }
                         break;
@@ -2416,12 +2738,13 @@ public class BTree extends Paged implements Lockable {
                                         fileId, page.getPageNum(), i, keys[i], ptrs[i]);
                                     writeToLog(log, this);
                                 }
-                                if (callback != null) {
-                                    callback.indexInfo(keys[i], ptrs[i]);
-                                }
+                                final boolean more = callback == null || callback.indexInfo(keys[i], ptrs[i]);
                                 removeKey(i);
                                 removePointer(i);
                                 recalculateDataLen();
+                                if (!more) {
+                                    return false;
+                                }
                                 --i;
                             }
                         }
@@ -2430,6 +2753,7 @@ public class BTree extends Paged implements Lockable {
                         throw new BTreeException("Invalid Page Type In query");
                 }
             }
+            return true;
         }
 
         private void growPrefix() {
@@ -0,0 +1,78 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import javax.annotation.Nullable;
+
+/**
+ * The strategy used by {@link Paged} for transferring pages
+ * between its caches and the underlying database file.
+ *
+ * Selected by the <code>pageIO</code> attribute of
+ * <code>db-connection</code> in conf.xml.
+ */
+public enum PageIOMode {
+
+    /**
+     * Seek and read/write through a {@link java.io.RandomAccessFile}.
+     * This is the historic behaviour.
+     */
+    RANDOM_ACCESS("random-access"),
+
+    /**
+     * Positional reads and writes through a {@link java.nio.channels.FileChannel},
+     * avoiding the separate seek system call for every page.
+     */
+    CHANNEL("channel"),
+
+    /**
+     * Pages are read from memory-mapped regions of the file, writes
+     * are made with positional writes through the {@link java.nio.channels.FileChannel}.
+     * Pages which lie outside of a mapped region (e.g. the tail of a growing file)
+     * fall back to positional reads.
+     */
+    MMAP("mmap");
+
+    private final String configValue;
+
+    PageIOMode(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    public String getConfigValue() {
+        return configValue;
+    }
+
+    /**
+     * Get the mode for a configuration value.
+     *
+     * @param configValue the value from conf.xml
+     *
+     * @return the mode, or null if the value is unknown
+     */
+    public static @Nullable PageIOMode fromConfigValue(final String configValue) {
+        for (final PageIOMode mode : values()) {
+            if (mode.configValue.equalsIgnoreCase(configValue)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
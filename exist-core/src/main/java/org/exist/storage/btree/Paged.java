@@ -84,6 +84,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.NonWritableChannelException;
@@ -91,6 +93,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 
+import javax.annotation.Nullable;
+
 /**
  *  Paged is a paged file foundation that is used by the BTree class and
  *  its subclasses.
@@ -128,12 +132,25 @@ public abstract class Paged implements AutoCloseable {
 
     protected static int PAGE_SIZE = 4096;
 
+    /**
+     * Size of a single memory-mapped region when operating in {@link PageIOMode#MMAP}.
+     * Regions are only mapped once the file has grown to cover them entirely.
+     *
+     * Tests may use smaller regions, see {@link #setMappedRegionSize(int)}.
+     */
+    static final int MMAP_REGION_SIZE = 64 * 1024 * 1024;  // 64 MB
+
     protected final short fileVersion;
     private final FileHeader fileHeader;
     private final byte[] tempPageData;
     private final byte[] tempHeaderData;
+    private final PageIOMode ioMode;
 
     private RandomAccessFile raf;
+    private FileChannel channel;
+    private final Object mappedRegionsLock = new Object();
+    private volatile MappedByteBuffer[] mappedRegions = new MappedByteBuffer[0];
+    private int mappedRegionSize = MMAP_REGION_SIZE;
     private Path file;
     private boolean readOnly = false;
     private boolean fileIsNew = false;
@@ -143,6 +160,7 @@ public abstract class Paged implements AutoCloseable {
         this.fileHeader = createFileHeader(pool.getPageSize());
         this.tempPageData = new byte[fileHeader.pageSize];
         this.tempHeaderData = new byte[fileHeader.pageHeaderSize];
+        this.ioMode = pool.getPageIOMode();
     }
 
     public final static void setPageSize(final int pageSize) {
@@ -157,6 +175,25 @@ public abstract class Paged implements AutoCloseable {
         return readOnly;
     }
 
+    public final PageIOMode getPageIOMode() {
+        return ioMode;
+    }
+
+    /**
+     * Sets the size of the memory-mapped regions, so that tests
+     * can span several regions with little data.
+     *
+     * Must be called before the file is first read.
+     *
+     * @param mappedRegionSize the size of a region in bytes
+     */
+    final void setMappedRegionSize(final int mappedRegionSize) {
+        if (mappedRegions.length > 0) {
+            throw new IllegalStateException("Regions of the file have already been mapped");
+        }
+        this.mappedRegionSize = mappedRegionSize;
+    }
+
     /**
      * Close the underlying files.
      *
@@ -165,6 +202,8 @@ public abstract class Paged implements AutoCloseable {
     @Override
     public void close() throws DBException {
         try {
+            // mapped regions are released by the GC once unreachable
+            mappedRegions = new MappedByteBuffer[0];
             raf.close();
         } catch (final IOException e) {
             throw new DBException("An error occurred whilst closing the database file '"
@@ -398,7 +437,7 @@ public abstract class Paged implements AutoCloseable {
             if ((!Files.exists(file)) || Files.isWritable(file)) {
                 try {
                     raf = new RandomAccessFile(file.toFile(), "rw");
-                    final FileChannel channel = raf.getChannel();   
+                    channel = raf.getChannel();
                     final FileLock lock = channel.tryLock();
                     if (lock == null) {
                         readOnly = true;
@@ -408,11 +447,13 @@ public abstract class Paged implements AutoCloseable {
                     //No way : switch to read-only mode
                     readOnly = true;
                     raf = new RandomAccessFile(file.toFile(), "r");
+                    channel = raf.getChannel();
                     LOG.warn(e);
                 }
             } else {
                 readOnly = true;
                 raf = new RandomAccessFile(file.toFile(), "r");
+                channel = raf.getChannel();
             }
         } catch (final IOException e) {
             LOG.warn("An exception occurred while opening database file " +
@@ -552,6 +593,139 @@ public abstract class Paged implements AutoCloseable {
         writeValue(getPage(page), value);
     }
 
+    /**
+     * Reads len bytes from the file at the given position
+     * using the configured {@link PageIOMode}.
+     *
+     * Reading beyond the end of the file is not an error,
+     * in which case the remaining bytes of buf are left untouched.
+     *
+     * @param position the position in the file to read from
+     * @param buf the buffer to read into
+     * @param off the offset in buf at which to start
+     * @param len the number of bytes to read
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void readAt(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        switch (ioMode) {
+            case MMAP:
+                final MappedByteBuffer region = getMappedRegion(position, len);
+                if (region != null) {
+                    final ByteBuffer view = region.duplicate();
+                    view.position((int) (position % region.capacity()));
+                    view.get(buf, off, len);
+                    break;
+                }
+                // fall through: region is not (yet) mapped
+
+            case CHANNEL:
+                final ByteBuffer dst = ByteBuffer.wrap(buf, off, len);
+                long pos = position;
+                while (dst.hasRemaining()) {
+                    final int read = channel.read(dst, pos);
+                    if (read < 0) {
+                        break;  // EOF
+                    }
+                    pos += read;
+                }
+                break;
+
+            case RANDOM_ACCESS:
+            default:
+                if (raf.getFilePointer() != position) {
+                    raf.seek(position);
+                }
+                raf.read(buf, off, len);
+        }
+    }
+
+    /**
+     * Writes len bytes to the file at the given position
+     * using the configured {@link PageIOMode}.
+     *
+     * In {@link PageIOMode#MMAP} writes are made through the
+     * file channel, the operating system's unified page cache
+     * makes them visible through the mapped regions.
+     *
+     * @param position the position in the file to write to
+     * @param buf the buffer to write from
+     * @param off the offset in buf at which to start
+     * @param len the number of bytes to write
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeAt(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        switch (ioMode) {
+            case MMAP:
+            case CHANNEL:
+                final ByteBuffer src = ByteBuffer.wrap(buf, off, len);
+                long pos = position;
+                while (src.hasRemaining()) {
+                    pos += channel.write(src, pos);
+                }
+                break;
+
+            case RANDOM_ACCESS:
+            default:
+                if (raf.getFilePointer() != position) {
+                    raf.seek(position);
+                }
+                raf.write(buf, off, len);
+        }
+    }
+
+    /**
+     * Gets the mapped region which contains the range [position, position + len).
+     *
+     * Regions are mapped read-only and lazily, and only
+     * once the file is large enough to cover the entire region, so
+     * that we never touch a mapping beyond the end of the file.
+     *
+     * @param position the position in the file
+     * @param len the number of bytes required
+     *
+     * @return the mapped region, or null if the range is not covered by a single mappable region
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private @Nullable MappedByteBuffer getMappedRegion(final long position, final int len) throws IOException {
+        final int regionSize = mappedRegionSize;
+        final long regionIdx = position / regionSize;
+        if (regionIdx > Integer.MAX_VALUE - 1 || (position + len - 1) / regionSize != regionIdx) {
+            // range spans two regions
+            return null;
+        }
+
+        MappedByteBuffer[] regions = mappedRegions;
+        if (regionIdx < regions.length && regions[(int) regionIdx] != null) {
+            return regions[(int) regionIdx];
+        }
+
+        synchronized (mappedRegionsLock) {
+            regions = mappedRegions;
+            if (regionIdx < regions.length && regions[(int) regionIdx] != null) {
+                return regions[(int) regionIdx];
+            }
+
+            final long regionStart = regionIdx * regionSize;
+            if (channel.size() < regionStart + regionSize) {
+                // tail of the file, not yet mappable
+                return null;
+            }
+
+            final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+            if (regionIdx >= regions.length) {
+                regions = Arrays.copyOf(regions, (int) regionIdx + 1);
+            } else {
+                regions = regions.clone();
+            }
+            regions[(int) regionIdx] = region;
+            mappedRegions = regions;
+            return region;
+        }
+    }
+
     /**
      * FileHeader
      *
@@ -709,8 +883,7 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void read() throws IOException {
-            raf.seek(0);
-            raf.read(buf);
+            readAt(0, buf, 0, buf.length);
             read(buf);
             calculateWorkSize();
             dirty = false;
@@ -846,9 +1019,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void write() throws IOException {
-            raf.seek(0);
             write(buf);
-            raf.write(buf);
+            writeAt(0, buf, 0, buf.length);
             dirty = false;
         }
     }
@@ -942,16 +1114,13 @@ public abstract class Paged implements AutoCloseable {
 
         public byte[] read() throws IOException {
             try {
-                if (raf.getFilePointer() != offset) {
-                    raf.seek(offset);
-                }
                 Arrays.fill(tempHeaderData, (byte)0);
-                raf.read(tempHeaderData);
+                readAt(offset, tempHeaderData, 0, tempHeaderData.length);
                 // Read in the header
                 header.read(tempHeaderData, 0);
                 // Read the working data
                 final byte[] workData = new byte[header.dataLen];
-                raf.read(workData);
+                readAt(offset + tempHeaderData.length, workData, 0, workData.length);
                 return workData;
             } catch(final Exception e) {
                 LOG.warn("error while reading page: " + getPageInfo(), e);
@@ -984,10 +1153,7 @@ public abstract class Paged implements AutoCloseable {
                     System.arraycopy(data, 0, tempPageData, fileHeader.pageHeaderSize, data.length);
                 }
             }
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
-            raf.write(tempPageData);
+            writeAt(offset, tempPageData, 0, tempPageData.length);
         }
 
         @Override
@@ -1007,11 +1173,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public void dumpPage() throws IOException {
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
             final byte[] data = new byte[fileHeader.pageSize];
-            raf.read(data);
+            readAt(offset, data, 0, data.length);
             LOG.debug("Contents of page " + pageNum + ": " + hexDump(data));
         }
     }
@@ -0,0 +1,66 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.exist.storage.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * The replacement policies which may be configured
+ * for each {@link Cache.CacheType} of page cache.
+ */
+public enum CachePolicy {
+
+    /**
+     * Least Recently Used, i.e. {@link LRUCache} for data pages
+     * and {@link BTreeCache} for B+-tree pages.
+     */
+    LRU("lru"),
+
+    /**
+     * Scan-resistant Segmented LRU with lock-striping, i.e. {@link SegmentedLRUCache}.
+     */
+    SLRU("slru");
+
+    private final String configValue;
+
+    CachePolicy(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    public String getConfigValue() {
+        return configValue;
+    }
+
+    /**
+     * Get the policy for a configuration value.
+     *
+     * @param configValue the value from conf.xml
+     *
+     * @return the policy, or null if the value is unknown
+     */
+    public static @Nullable CachePolicy fromConfigValue(final String configValue) {
+        for (final CachePolicy policy : values()) {
+            if (policy.configValue.equalsIgnoreCase(configValue)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
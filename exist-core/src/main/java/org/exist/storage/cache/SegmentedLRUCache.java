@@ -0,0 +1,456 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.exist.storage.cache;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.storage.CacheManager;
+import org.exist.util.hashtable.SequencedLongHashMap;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A scan-resistant, lock-striped cache implementing a Segmented LRU policy.
+ *
+ * Items enter the cache in a <i>probationary</i> segment, and are only
+ * promoted to the <i>protected</i> segment when they are added again
+ * (i.e. accessed a second time) whilst still cached. Replacement always
+ * takes place from the probationary segment first, so that a scan
+ * over many pages which are each accessed only once (e.g. a full collection
+ * scan) cannot displace the frequently used pages, such as the inner pages of
+ * a B+-tree. When the protected segment overflows, its least recently used
+ * item is demoted back to the probationary segment.
+ *
+ * Like {@link BTreeCache}, leaf pages of a B+-tree are preferred for replacement
+ * over inner pages.
+ *
+ * The key space is partitioned across a number of independently locked stripes,
+ * each of which implements the above policy for its share of the capacity, so that
+ * concurrent access to different pages does not serialize on a single lock.
+ *
+ * @param <T> The type that implements {@link Cacheable}
+ */
+@ThreadSafe
+public class SegmentedLRUCache<T extends Cacheable> implements Cache<T> {
+    private final static Logger LOG = LogManager.getLogger(SegmentedLRUCache.class);
+
+    /**
+     * The default number of stripes, must be a power of 2.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * The fraction of the capacity of each stripe used for the protected segment.
+     */
+    public static final double PROTECTED_RATIO = 0.8;
+
+    private final String name;
+    private final double growthFactor;
+    private final CacheType type;
+    private final Stripe<T>[] stripes;
+
+    private volatile int max;
+    private volatile CacheManager cacheManager = null;
+    private int hitsOld = -1;
+
+    public SegmentedLRUCache(final String name, final int size, final double growthFactor, final double growthThreshold, final CacheType type) {
+        this(name, size, growthFactor, growthThreshold, type, DEFAULT_STRIPES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SegmentedLRUCache(final String name, final int size, final double growthFactor, final double growthThreshold, final CacheType type, final int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of 2");
+        }
+        this.name = name;
+        this.max = size;
+        this.growthFactor = growthFactor;
+        this.type = type;
+        this.stripes = new Stripe[stripes];
+        final int stripeCapacity = stripeCapacity(size, stripes);
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe<>(stripeCapacity, growthThreshold);
+        }
+    }
+
+    private static int stripeCapacity(final int size, final int stripes) {
+        return Math.max(1, (size + stripes - 1) / stripes);
+    }
+
+    private Stripe<T> stripeFor(final long key) {
+        int h = (int) (key ^ (key >>> 32));
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CacheType getType() {
+        return type;
+    }
+
+    @Override
+    public void add(final T item) {
+        final Stripe<T> stripe = stripeFor(item.getKey());
+        final boolean resizeNeeded;
+        stripe.lock.lock();
+        try {
+            resizeNeeded = stripe.add(item) && growthFactor > 1.0;
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        // NOTE: must not hold the lock of a stripe whilst requesting memory, as the cache manager may resize us
+        final CacheManager manager = cacheManager;
+        if (resizeNeeded && manager != null) {
+            manager.requestMem(this);
+        }
+    }
+
+    @Override
+    public void add(final T item, final int initialRefCount) {
+        add(item);
+    }
+
+    @Override
+    public T get(final T item) {
+        return get(item.getKey());
+    }
+
+    @Override
+    public T get(final long key) {
+        final Stripe<T> stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            T obj = stripe.protectedSegment.get(key);
+            if (obj == null) {
+                obj = stripe.probationarySegment.get(key);
+            }
+            if (obj == null) {
+                stripe.accounting.missesIncrement();
+            } else {
+                stripe.accounting.hitIncrement();
+            }
+            return obj;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(final T item) {
+        final Stripe<T> stripe = stripeFor(item.getKey());
+        stripe.lock.lock();
+        try {
+            if (stripe.protectedSegment.remove(item.getKey()) == null) {
+                stripe.probationarySegment.remove(item.getKey());
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasDirtyItems() {
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (hasDirtyItems(stripe.protectedSegment) || hasDirtyItems(stripe.probationarySegment)) {
+                    return true;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    private static <T extends Cacheable> boolean hasDirtyItems(final SequencedLongHashMap<T> segment) {
+        for (SequencedLongHashMap.Entry<T> next = segment.getFirstEntry(); next != null; next = next.getNext()) {
+            if (next.getValue().isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean flush() {
+        boolean flushed = false;
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                flushed = flushed | flush(stripe.protectedSegment);
+                flushed = flushed | flush(stripe.probationarySegment);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return flushed;
+    }
+
+    private static <T extends Cacheable> boolean flush(final SequencedLongHashMap<T> segment) {
+        boolean flushed = false;
+        for (SequencedLongHashMap.Entry<T> next = segment.getFirstEntry(); next != null; next = next.getNext()) {
+            final T cacheable = next.getValue();
+            if (cacheable.isDirty()) {
+                flushed = flushed | cacheable.sync(false);
+            }
+        }
+        return flushed;
+    }
+
+    @Override
+    public int getBuffers() {
+        return max;
+    }
+
+    @Override
+    public int getUsedBuffers() {
+        int used = 0;
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                used += stripe.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return used;
+    }
+
+    @Override
+    public int getHits() {
+        int hits = 0;
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                hits += stripe.accounting.getHits();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int getFails() {
+        int misses = 0;
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                misses += stripe.accounting.getMisses();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return misses;
+    }
+
+    public int getThrashing() {
+        int thrashing = 0;
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                thrashing += stripe.accounting.getThrashing();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return thrashing;
+    }
+
+    @Override
+    public double getGrowthFactor() {
+        return growthFactor;
+    }
+
+    @Override
+    public void setCacheManager(final CacheManager manager) {
+        this.cacheManager = manager;
+    }
+
+    @Override
+    public void resize(final int newSize) {
+        final int stripeCapacity = stripeCapacity(newSize, stripes.length);
+
+        // NOTE: stripes are always locked in the same order
+        for (final Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (final Stripe<T> stripe : stripes) {
+                stripe.resize(stripeCapacity);
+            }
+            max = newSize;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int getLoad() {
+        final int hits = getHits();
+        if (hitsOld == 0) {
+            hitsOld = hits;
+            return Integer.MAX_VALUE;
+        }
+        final int load = hits - hitsOld;
+        hitsOld = hits;
+        return load;
+    }
+
+    /**
+     * A stripe of the cache, which is responsible for
+     * a partition of the key space.
+     */
+    private static final class Stripe<T extends Cacheable> {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        @GuardedBy("lock") private final Accounting accounting;
+        @GuardedBy("lock") private SequencedLongHashMap<T> probationarySegment;
+        @GuardedBy("lock") private SequencedLongHashMap<T> protectedSegment;
+        @GuardedBy("lock") private int capacity;
+        @GuardedBy("lock") private int protectedCapacity;
+
+        Stripe(final int capacity, final double growthThreshold) {
+            this.accounting = new Accounting(growthThreshold);
+            this.probationarySegment = new SequencedLongHashMap<>(capacity * 2);
+            this.protectedSegment = new SequencedLongHashMap<>(capacity * 2);
+            setCapacity(capacity);
+        }
+
+        private void setCapacity(final int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = (int) (capacity * PROTECTED_RATIO);
+            accounting.setTotalSize(capacity);
+        }
+
+        int size() {
+            return probationarySegment.size() + protectedSegment.size();
+        }
+
+        /**
+         * Adds an item to the stripe.
+         *
+         * @param item the item to add
+         *
+         * @return true if a page was replaced and the cache should be grown
+         */
+        boolean add(final T item) {
+            final long key = item.getKey();
+
+            if (protectedSegment.get(key) != null) {
+                // move to the most recently used position
+                protectedSegment.put(key, item);
+                return false;
+            }
+
+            if (probationarySegment.get(key) != null) {
+                // accessed again whilst on probation: promote
+                probationarySegment.remove(key);
+                protectedSegment.put(key, item);
+                while (protectedSegment.size() > protectedCapacity) {
+                    // demote the least recently used protected item
+                    final SequencedLongHashMap.Entry<T> demoted = protectedSegment.removeFirst();
+                    probationarySegment.put(demoted.getKey(), demoted.getValue());
+                }
+                return false;
+            }
+
+            probationarySegment.put(key, item);
+            if (size() > capacity && removeOne(key)) {
+                accounting.replacedPage(item);
+                return accounting.resizeNeeded();
+            }
+            return false;
+        }
+
+        /**
+         * Replace an item, preferring the least recently used item on probation.
+         *
+         * @param exceptKey the key of the item which must not be removed
+         *
+         * @return true if an item was removed, false if no item could be unloaded
+         */
+        private boolean removeOne(final long exceptKey) {
+            // first try leaf pages, then any page
+            for (final boolean allowInner : new boolean[] { false, true }) {
+                if (removeOne(probationarySegment, exceptKey, allowInner)
+                        || removeOne(protectedSegment, exceptKey, allowInner)) {
+                    return true;
+                }
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to remove entry, no cached item may be unloaded");
+            }
+            return false;
+        }
+
+        private static <T extends Cacheable> boolean removeOne(final SequencedLongHashMap<T> segment, final long exceptKey, final boolean allowInner) {
+            for (SequencedLongHashMap.Entry<T> next = segment.getFirstEntry(); next != null; next = next.getNext()) {
+                final T cached = next.getValue();
+                if (cached.getKey() != exceptKey && cached.allowUnload()
+                        && (allowInner || !(cached instanceof BTreeCacheable) || !((BTreeCacheable) cached).isInnerPage())) {
+                    cached.sync(true);
+                    segment.remove(next.getKey());
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void resize(final int newCapacity) {
+            if (newCapacity > capacity) {
+                // the hash tables do not grow by themselves
+                probationarySegment = copy(probationarySegment, newCapacity * 2);
+                protectedSegment = copy(protectedSegment, newCapacity * 2);
+            }
+            setCapacity(newCapacity);
+            while (protectedSegment.size() > protectedCapacity) {
+                final SequencedLongHashMap.Entry<T> demoted = protectedSegment.removeFirst();
+                probationarySegment.put(demoted.getKey(), demoted.getValue());
+            }
+            while (size() > capacity) {
+                if (!removeOne(Long.MIN_VALUE)) {
+                    break;
+                }
+            }
+            accounting.reset();
+        }
+
+        private static <T extends Cacheable> SequencedLongHashMap<T> copy(final SequencedLongHashMap<T> segment, final int tableSize) {
+            final SequencedLongHashMap<T> newSegment = new SequencedLongHashMap<>(tableSize);
+            for (SequencedLongHashMap.Entry<T> next = segment.getFirstEntry(); next != null; next = next.getNext()) {
+                newSegment.put(next.getKey(), next.getValue());
+            }
+            return newSegment;
+        }
+    }
+}
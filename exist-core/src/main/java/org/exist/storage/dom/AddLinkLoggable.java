@@ -78,6 +78,11 @@ public class AddLinkLoggable extends AbstractLoggable {
         domDb.undoAddLink(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - created link on page: " + pageNum + " for tid: " + tid;
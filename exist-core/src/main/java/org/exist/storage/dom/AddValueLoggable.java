@@ -101,6 +101,11 @@ public class AddValueLoggable extends AbstractLoggable {
         domDb.undoAddValue(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - added value; tid = " + tid + " to page " + pageNum;
@@ -86,6 +86,11 @@ public class CreatePageLoggable extends AbstractLoggable {
         domDb.undoCreatePage(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - new page created: " + newPage + "; prev. page: " + prevPage + "; next page: " + nextPage;
@@ -28,6 +28,7 @@ import java.io.Writer;
 import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -37,6 +38,8 @@ import static org.exist.storage.btree.Paged.Page.NO_PAGE;
 
 import it.unimi.dsi.fastutil.objects.Reference2LongMap;
 import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.dom.persistent.AttrImpl;
@@ -64,7 +67,6 @@ import org.exist.storage.btree.IndexQuery;
 import org.exist.storage.btree.Value;
 import org.exist.storage.cache.Cache;
 import org.exist.storage.cache.Cacheable;
-import org.exist.storage.cache.LRUCache;
 import org.exist.storage.journal.JournalException;
 import org.exist.storage.journal.LogEntryTypes;
 import org.exist.storage.journal.Loggable;
@@ -112,6 +114,25 @@ import org.w3c.dom.Node;
  * The upper two bits of the tuple id are used to indicate the type of the record
  * (see {@link org.exist.storage.dom.ItemId}).
  * 
+ * Records which do not fit into a page are written to a chain of overflow pages,
+ * and replaced by the address of the first overflow page. If compressOverflow is
+ * enabled in the db-connection configuration, such records are compressed with LZ4
+ * before they are written, see {@link #compressOverflowValue(byte[])}. The journal
+ * then logs the compressed chunks, which are written to the overflow pages as is.
+ * 
+ * If compressPages is enabled, the data pages filled by {@link #add(Txn, byte[])} are
+ * packed: they may hold up to {@link #PACKED_PAGE_FACTOR} times as many record bytes as
+ * the work size, as long as the records still fit into the physical page after they
+ * are compressed with LZ4, in chunks of the work size. A page is packed if the data
+ * length in its header exceeds the work size. The data cache and the journal only see
+ * the uncompressed records, at the same offsets, so a page is compressed when it is
+ * written and decompressed when it is loaded. Packed pages only grow by appending
+ * records, and their buffer only grows as records are appended, so a packed page in
+ * the data cache holds up to {@link #PACKED_PAGE_FACTOR} times the memory of a page.
+ * Before a record on a packed page is modified, the page is split until it fits
+ * uncompressed, see {@link #unpackPage(Txn, DOMPage)}. A packed page which does not
+ * fit when it is written is an error, it is never written truncated or dropped.
+ * 
  * @author <a href="mailto:wolfgang@exist-db.org">Wolfgang Meier</a>
  */
 public class DOMFile extends BTree implements Lockable {
@@ -174,6 +195,29 @@ public class DOMFile extends BTree implements Lockable {
     //Data length for overflow pages
     public final static short OVERFLOW = 0;
 
+    /**
+     * Marks a compressed overflow value. The first byte of a record is the
+     * signature of the node, in which the node type bits are never all set.
+     */
+    private final static byte COMPRESSED_OVERFLOW = (byte) 0xFF;
+    //The marker followed by the length of the uncompressed value
+    private final static int LENGTH_COMPRESSED_OVERFLOW_HEADER = 1 + 4;
+
+    private final static LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    /**
+     * Compresses the chunks of packed pages. The Java implementation always yields the
+     * same length for the same chunk, so a page which was accepted by
+     * {@link DOMPage#canAppend(short, byte[])} still fits when it is written, also
+     * after it has been redone by recovery.
+     */
+    private final static LZ4Compressor PAGE_COMPRESSOR = LZ4Factory.fastestJavaInstance().fastCompressor();
+
+    //A packed page holds up to this many times the work size
+    private final static int PACKED_PAGE_FACTOR = 4;
+    //The length of a compressed chunk of a packed page
+    private final static int LENGTH_CHUNK_LENGTH = 2; //sizeof short
+
     public final static long DATA_SYNC_PERIOD = 4200;
 
     private final Cache<DOMPage> dataCache;
@@ -188,15 +232,23 @@ public class DOMFile extends BTree implements Lockable {
 
     private final AddValueLoggable addValueLog = new AddValueLoggable();
 
+    private final boolean compressOverflow;
+
+    private final boolean compressPages;
+
     public DOMFile(final BrokerPool pool, final byte id, final Path dataDir, final Configuration config) throws DBException {
         super(pool, id, FILE_FORMAT_VERSION_ID, true, pool.getCacheManager());
         this.lockManager = pool.getLockManager();
+        this.compressOverflow = config.getProperty(BrokerPool.PROPERTY_COMPRESS_OVERFLOW,
+                BrokerPool.DEFAULT_COMPRESS_OVERFLOW);
+        this.compressPages = config.getProperty(BrokerPool.PROPERTY_COMPRESS_PAGES,
+                BrokerPool.DEFAULT_COMPRESS_PAGES);
         this.pages = new Reference2LongOpenHashMap<>(64);
         this.pages.defaultReturnValue(NO_PAGE);
         fileHeader = (BTreeFileHeader)getFileHeader();
         fileHeader.setPageCount(0);
         fileHeader.setTotalCount(0);
-        dataCache = new LRUCache<>(getFileName(), 256, 0.0, 1.0, Cache.CacheType.DATA);
+        dataCache = cacheManager.newDataCache(getFileName(), 256, 0.0, 1.0);
         cacheManager.registerCache(dataCache);
         final Path file = dataDir.resolve(getFileName());
         setFile(file);
@@ -345,7 +397,7 @@ public class DOMFile extends BTree implements Lockable {
                 LOG.debug("Creating overflow page");
             }
             final OverflowDOMPage overflowPage = new OverflowDOMPage();
-            overflowPage.write(transaction, value);
+            overflowPage.write(transaction, compressOverflowValue(value));
             final byte[] pageNum = ByteConversion.longToByte(overflowPage.getPageNum());
             return add(transaction, pageNum, true);
         } else {
@@ -371,7 +423,7 @@ public class DOMFile extends BTree implements Lockable {
         //Always append data to the end of the file
         DOMPage currentPage = getCurrentPage(transaction);
         //Does the value fit into current data page?
-        if (currentPage.len + LENGTH_TID + LENGTH_DATA_LENGTH + valueLength > currentPage.data.length) {
+        if (!currentPage.canAppend(overflowPage ? OVERFLOW : (short) valueLength, value)) {
             final DOMPage newPage = new DOMPage();
             final DOMFilePageHeader currentPageHeader = currentPage.getPageHeader();
             if (transaction != null && isRecoveryEnabled()) {
@@ -400,6 +452,7 @@ public class DOMFile extends BTree implements Lockable {
                 addValueLog.clear(transaction, currentPage.getPageNum(), tupleID, value, overflowPage);
             writeToLog(addValueLog, currentPage.page);
         }
+        currentPage.ensureCapacity(currentPage.len + LENGTH_TID + LENGTH_DATA_LENGTH + valueLength);
         //Save tuple identifier
         ByteConversion.shortToByte(tupleID, currentPage.data, currentPage.len);
         currentPage.len += LENGTH_TID;
@@ -479,7 +532,7 @@ public class DOMFile extends BTree implements Lockable {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLocked(getLockName())) {
             LOG.debug("The file doesn't own a lock");
         }
-        return getOverflowValue(pageNum);
+        return readOverflowValue(pageNum);
     }
 
     public void readBinary(final long pageNum, final OutputStream os) {
@@ -547,12 +600,12 @@ public class DOMFile extends BTree implements Lockable {
         if (LENGTH_TID + LENGTH_DATA_LENGTH + value.length > fileHeader.getWorkSize()) {
             final OverflowDOMPage overflowPage = new OverflowDOMPage();
             LOG.debug("Creating overflow page: " + overflowPage.getPageNum());
-            overflowPage.write(transaction, value);
+            overflowPage.write(transaction, compressOverflowValue(value));
             value = ByteConversion.longToByte(overflowPage.getPageNum());
             isOverflow = true;
         }
         // locate the node to insert after
-        RecordPos rec = findRecord(address);
+        RecordPos rec = findRecordForUpdate(transaction, address, true);
         if (rec == null) {
             SanityCheck.TRACE("Page not found");
             return KEY_NOT_FOUND;
@@ -1587,6 +1640,10 @@ public class DOMFile extends BTree implements Lockable {
 
 
     protected byte[] getOverflowValue(final long pointer) {
+        return decompressOverflowValue(readOverflowValue(pointer));
+    }
+
+    private byte[] readOverflowValue(final long pointer) {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLocked(getLockName())) {
             LOG.debug("The file doesn't own a lock");
         }
@@ -1600,6 +1657,111 @@ public class DOMFile extends BTree implements Lockable {
         }
     }
 
+    /**
+     * Compress a record which is written to overflow pages, if compressOverflow is enabled.
+     * The compressed value starts with {@link #COMPRESSED_OVERFLOW} and the length of the
+     * uncompressed value. Values which do not get smaller are stored uncompressed.
+     *
+     * @param value the record
+     * @return the compressed record, or the record itself
+     */
+    private byte[] compressOverflowValue(final byte[] value) {
+        if (!compressOverflow) {
+            return value;
+        }
+        final LZ4Compressor compressor = LZ4.fastCompressor();
+        final int maxLength = compressor.maxCompressedLength(value.length);
+        final byte[] data = new byte[LENGTH_COMPRESSED_OVERFLOW_HEADER + maxLength];
+        data[0] = COMPRESSED_OVERFLOW;
+        ByteConversion.intToByte(value.length, data, 1);
+        final int length = compressor.compress(value, 0, value.length, data, LENGTH_COMPRESSED_OVERFLOW_HEADER, maxLength);
+        if (LENGTH_COMPRESSED_OVERFLOW_HEADER + length >= value.length) {
+            return value;
+        }
+        return Arrays.copyOf(data, LENGTH_COMPRESSED_OVERFLOW_HEADER + length);
+    }
+
+    /**
+     * The maximum data length of a packed page.
+     *
+     * @return the maximum data length, which still fits the offsets logged by the journal
+     */
+    private int getPackedPageLength() {
+        return Math.min(fileHeader.getWorkSize() * PACKED_PAGE_FACTOR, Short.MAX_VALUE);
+    }
+
+    private int compressedChunkLength(final byte[] data, final int offset, final int length) {
+        final byte[] chunk = new byte[PAGE_COMPRESSOR.maxCompressedLength(length)];
+        return PAGE_COMPRESSOR.compress(data, offset, length, chunk, 0, chunk.length);
+    }
+
+    /**
+     * Compress the data of a packed page into the work size of a physical page. Each
+     * chunk of the work size is compressed separately and written after its compressed
+     * length.
+     *
+     * @param data the uncompressed data of the page
+     * @param length the data length of the page
+     * @return the compressed data of the page
+     * @throws IllegalStateException if the compressed data does not fit into the page
+     */
+    private byte[] compressPage(final byte[] data, final int length) {
+        final int workSize = fileHeader.getWorkSize();
+        final byte[] packed = new byte[workSize];
+        final byte[] chunk = new byte[PAGE_COMPRESSOR.maxCompressedLength(workSize)];
+        int pos = 0;
+        for (int start = 0; start < length; start += workSize) {
+            final int chunkLength = PAGE_COMPRESSOR.compress(data, start, Math.min(workSize, length - start),
+                chunk, 0, chunk.length);
+            if (pos + LENGTH_CHUNK_LENGTH + chunkLength > workSize) {
+                throw new IllegalStateException("Packed page too large: " + length);
+            }
+            ByteConversion.shortToByte((short) chunkLength, packed, pos);
+            pos += LENGTH_CHUNK_LENGTH;
+            System.arraycopy(chunk, 0, packed, pos, chunkLength);
+            pos += chunkLength;
+        }
+        return packed;
+    }
+
+    /**
+     * Decompress the data of a packed page, see {@link #compressPage(byte[], int)}. Packed
+     * pages are always decompressed, whether or not compressPages is enabled, so that it
+     * can be disabled again later.
+     *
+     * @param packed the data of the page as stored
+     * @param length the data length of the page
+     * @return the uncompressed data of the page
+     */
+    private byte[] decompressPage(final byte[] packed, final int length) {
+        final int workSize = fileHeader.getWorkSize();
+        final byte[] data = new byte[length];
+        int pos = 0;
+        for (int start = 0; start < length; start += workSize) {
+            final int chunkLength = ByteConversion.byteToShort(packed, pos);
+            pos += LENGTH_CHUNK_LENGTH;
+            LZ4.fastDecompressor().decompress(packed, pos, data, start, Math.min(workSize, length - start));
+            pos += chunkLength;
+        }
+        return data;
+    }
+
+    /**
+     * Decompress a record read from overflow pages. Records are always decompressed, whether or
+     * not compressOverflow is enabled, so that it can be disabled again later.
+     *
+     * @param data the record as stored
+     * @return the uncompressed record
+     */
+    private byte[] decompressOverflowValue(final byte[] data) {
+        if (data == null || data.length < LENGTH_COMPRESSED_OVERFLOW_HEADER || data[0] != COMPRESSED_OVERFLOW) {
+            return data;
+        }
+        final byte[] value = new byte[ByteConversion.byteToInt(data, 1)];
+        LZ4.fastDecompressor().decompress(data, LENGTH_COMPRESSED_OVERFLOW_HEADER, value, 0, value.length);
+        return value;
+    }
+
     /**
      * Remove the overflow value.
      * 
@@ -1625,7 +1787,7 @@ public class DOMFile extends BTree implements Lockable {
      * @param pointer The pointer to the value
      */
     private void removeLink(final Txn transaction, final long pointer) {
-        final RecordPos rec = findRecord(pointer, false);
+        final RecordPos rec = findRecordForUpdate(transaction, pointer, false);
         final DOMFilePageHeader pageHeader = rec.getPage().getPageHeader();
         if (transaction != null && isRecoveryEnabled()) {
             final byte[] data = new byte[LENGTH_LINK];
@@ -1674,7 +1836,7 @@ public class DOMFile extends BTree implements Lockable {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
-        final RecordPos rec = findRecord(pointer);
+        final RecordPos rec = findRecordForUpdate(transaction, pointer, true);
         //Position the stream at the very beginning of the record
         final int startOffset = rec.offset - LENGTH_TID;
         final DOMFilePageHeader pageHeader = rec.getPage().getPageHeader();
@@ -1911,7 +2073,7 @@ public class DOMFile extends BTree implements Lockable {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
-        final RecordPos recordPos = findRecord(pointer);
+        final RecordPos recordPos = findRecordForUpdate(transaction, pointer, true);
         final short valueLength = ByteConversion.byteToShort(recordPos.getPage().data, recordPos.offset);
         recordPos.offset += LENGTH_DATA_LENGTH;
         if (ItemId.isRelocated(recordPos.getTupleID())) {
@@ -2202,6 +2364,82 @@ public class DOMFile extends BTree implements Lockable {
         return null;
     }
 
+    /**
+     * Find a record which is about to be modified. If the record is stored on a packed
+     * page, the page is unpacked first.
+     *
+     * @param transaction the database transaction
+     * @param pointer the pointer to the record
+     * @param skipLinks true if links should be skipped, false otherwise
+     * @return The record position in the page
+     */
+    private RecordPos findRecordForUpdate(final Txn transaction, final long pointer, final boolean skipLinks) {
+        final RecordPos rec = findRecord(pointer, skipLinks);
+        if (rec == null || rec.getPage().len <= fileHeader.getWorkSize()) {
+            return rec;
+        }
+        unpackPage(transaction, rec.getPage());
+        return findRecord(pointer, skipLinks);
+    }
+
+    /**
+     * Split a packed page, so that the records which remain on the page and the links
+     * to the records which are moved to the split pages fit into the page uncompressed.
+     * {@link DOMPage#canAppend(short, byte[])} limits the number of records on a packed
+     * page, so that there is always room for the links. If the page is the current page,
+     * values are appended to the last split page from now on, to keep the records in
+     * document order.
+     *
+     * @param transaction the database transaction
+     * @param page the packed page
+     */
+    private void unpackPage(final Txn transaction, final DOMPage page) {
+        final short records = countRecordsInPage(page);
+        final int[] offsets = new int[records];
+        final int[] linkLengths = new int[records];
+        for (int i = 0, pos = 0; i < records; i++) {
+            offsets[i] = pos;
+            final short tupleID = ByteConversion.byteToShort(page.data, pos);
+            pos += LENGTH_TID;
+            if (ItemId.isLink(tupleID)) {
+                pos += LENGTH_FORWARD_LOCATION;
+                linkLengths[i] = LENGTH_TID + LENGTH_FORWARD_LOCATION;
+            } else {
+                final short vlen = ByteConversion.byteToShort(page.data, pos);
+                pos += LENGTH_DATA_LENGTH;
+                if (ItemId.isRelocated(tupleID)) {
+                    //A relocated record is moved without leaving a link
+                    pos += LENGTH_ORIGINAL_LOCATION;
+                } else {
+                    linkLengths[i] = LENGTH_TID + LENGTH_FORWARD_LOCATION;
+                }
+                pos += vlen == OVERFLOW ? LENGTH_OVERFLOW_LOCATION : vlen;
+            }
+        }
+        //Split at the last record which leaves room for the links
+        int split = 0;
+        for (int i = records - 1, linksLength = 0; i > 0; i--) {
+            linksLength += linkLengths[i];
+            if (offsets[i] + linksLength <= fileHeader.getWorkSize()) {
+                split = i;
+                break;
+            }
+        }
+        LOG.debug("Unpacking page " + page.getPageNum() + " at " + offsets[split]);
+        final boolean isCurrentPage = pages.getLong(owner) == page.getPageNum();
+        final long nextPageNum = page.getPageHeader().getNextDataPage();
+        splitDataPage(transaction, new RecordPos(offsets[split], page,
+            ByteConversion.byteToShort(page.data, offsets[split])));
+        if (isCurrentPage) {
+            DOMPage lastPage = getDOMPage(page.getPageNum());
+            while (lastPage.getPageHeader().getNextDataPage() != nextPageNum &&
+                    lastPage.getPageHeader().getNextDataPage() != NO_PAGE) {
+                lastPage = getDOMPage(lastPage.getPageHeader().getNextDataPage());
+            }
+            setCurrentPage(lastPage);
+        }
+    }
+
     @Override
     public String getLockName() {
         return getFileName();
@@ -2290,6 +2528,7 @@ public class DOMFile extends BTree implements Lockable {
         final DOMFilePageHeader pageHeader = page.getPageHeader();
         if ((!pageHeader.getLsn().equals(Lsn.LSN_INVALID)) && requiresRedo(loggable, page)) {
             try {
+                page.ensureCapacity(page.len + LENGTH_TID + LENGTH_DATA_LENGTH + loggable.value.length);
                 ByteConversion.shortToByte(loggable.tid, page.data, page.len);
                 page.len += LENGTH_TID;
                 // save data length
@@ -2567,6 +2806,7 @@ public class DOMFile extends BTree implements Lockable {
             pageHeader.setNextTupleID(ItemId.getId(loggable.oldTid));
             pageHeader.setRecordCount(loggable.oldRecCnt);
             pageHeader.setDataLength(loggable.oldLen);
+            page.ensureCapacity(loggable.oldLen);
             System.arraycopy(loggable.oldData, 0, page.data, 0, loggable.oldLen);
             page.len = loggable.oldLen;
             page.setDirty(true);
@@ -3013,7 +3253,7 @@ public class DOMFile extends BTree implements Lockable {
         }
 
         public void setDataLength(final int dataLength) {
-            if (dataLength > fileHeader.getWorkSize()) {
+            if (dataLength > getPackedPageLength()) {
                 LOG.error("data too long for file header !");
                 //TODO  :throw exception ? -pb
             }
@@ -3057,6 +3297,11 @@ public class DOMFile extends BTree implements Lockable {
         // set to true if the page has been removed from the cache
         boolean invalidated = false;
 
+        // the compressed lengths of the complete chunks of a packed page, see canAppend()
+        int[] chunkLengths = null;
+
+        int knownChunks = 0;
+
         public DOMPage() {
             this.page = createNewPage();
             pageHeader = (DOMFilePageHeader) page.getPageHeader();
@@ -3207,6 +3452,9 @@ public class DOMFile extends BTree implements Lockable {
                     len = 0;
                     return;
                 }
+                if (len > fileHeader.getWorkSize()) {
+                    data = decompressPage(data, len);
+                }
             } catch (final IOException ioe) {
                 LOG.error(ioe);
                 ioe.printStackTrace();
@@ -3219,12 +3467,22 @@ public class DOMFile extends BTree implements Lockable {
                 return;
             }
 
+            if (!pageHeader.isDirty()) {
+                return;
+            }
+            pageHeader.setDataLength(len);
+            //A packed page which does not fit must neither be written nor dropped, so that
+            //the error reaches the caller while the page is still dirty in the cache
+            final byte[] stored;
+            if (len > fileHeader.getWorkSize()) {
+                stored = compressPage(data, len);
+            } else if (data.length > fileHeader.getWorkSize()) {
+                stored = Arrays.copyOf(data, fileHeader.getWorkSize());
+            } else {
+                stored = data;
+            }
             try {
-                if (!pageHeader.isDirty()) {
-                    return;
-                }
-                pageHeader.setDataLength(len);
-                writeValue(page, data);
+                writeValue(page, stored);
                 setDirty(false);
             } catch (final IOException ioe) {
                 LOG.error(ioe);
@@ -3232,6 +3490,86 @@ public class DOMFile extends BTree implements Lockable {
             }
         }
 
+        /**
+         * Check if a value can be appended to the page by {@link DOMFile#add(Txn, byte[])}.
+         * If compressPages is enabled, the page may grow beyond the work size, as long as
+         * the number of records leaves room for a link to each record in a physical page,
+         * see {@link DOMFile#unpackPage(Txn, DOMPage)}, and the compressed chunks still fit
+         * into the physical page. To compute their length, the chunks which are not known
+         * yet are copied together with the record, the page itself only grows once the
+         * record is actually appended, see {@link #ensureCapacity(int)}.
+         *
+         * @param valueLength the length to store with the value
+         * @param value the value
+         * @return true if the value fits into the page
+         */
+        boolean canAppend(final short valueLength, final byte[] value) {
+            final int workSize = fileHeader.getWorkSize();
+            final int newLen = len + LENGTH_TID + LENGTH_DATA_LENGTH + value.length;
+            if (len <= workSize || knownChunks * workSize > len) {
+                knownChunks = 0;
+            }
+            if (newLen <= workSize) {
+                return true;
+            }
+            if (newLen > getPackedPageLength() ||
+                    (pageHeader.getRecordCount() + 1) * (LENGTH_TID + LENGTH_FORWARD_LOCATION) > workSize) {
+                return false;
+            }
+            if (chunkLengths == null) {
+                chunkLengths = new int[(getPackedPageLength() + workSize - 1) / workSize];
+            }
+            //Try the maximum length of the chunks which are not known yet first
+            int packedLength = 0;
+            for (int chunk = 0, start = 0; start < newLen; chunk++, start += workSize) {
+                packedLength += LENGTH_CHUNK_LENGTH + (chunk < knownChunks ? chunkLengths[chunk] :
+                    PAGE_COMPRESSOR.maxCompressedLength(Math.min(workSize, newLen - start)));
+            }
+            if (packedLength <= workSize) {
+                return true;
+            }
+            //The chunks which are not known yet, followed by the record
+            final int tailStart = knownChunks * workSize;
+            final byte[] tail = new byte[newLen - tailStart];
+            System.arraycopy(data, tailStart, tail, 0, len - tailStart);
+            int pos = len - tailStart;
+            ByteConversion.shortToByte((short) (pageHeader.getCurrentTupleID() + 1), tail, pos);
+            pos += LENGTH_TID;
+            ByteConversion.shortToByte(valueLength, tail, pos);
+            pos += LENGTH_DATA_LENGTH;
+            System.arraycopy(value, 0, tail, pos, value.length);
+            packedLength = 0;
+            for (int chunk = 0, start = 0; start < newLen; chunk++, start += workSize) {
+                if (chunk < knownChunks) {
+                    packedLength += LENGTH_CHUNK_LENGTH + chunkLengths[chunk];
+                    continue;
+                }
+                final int chunkLength = compressedChunkLength(tail, start - tailStart,
+                    Math.min(workSize, newLen - start));
+                //Remember the chunks which are complete without the new record
+                if (chunk == knownChunks && start + workSize <= len) {
+                    chunkLengths[knownChunks++] = chunkLength;
+                }
+                packedLength += LENGTH_CHUNK_LENGTH + chunkLength;
+            }
+            return packedLength <= workSize;
+        }
+
+        /**
+         * Make sure that the page can hold the given length, which exceeds the work size
+         * if a record is appended to a packed page, or a packed page is restored by
+         * recovery. The page grows by one work size at a time, so that it only holds
+         * about as much memory as its data needs.
+         *
+         * @param length the length of the data
+         */
+        void ensureCapacity(final int length) {
+            if (length > data.length) {
+                data = Arrays.copyOf(data, Math.max(length,
+                    Math.min(data.length + fileHeader.getWorkSize(), getPackedPageLength())));
+            }
+        }
+
         public String dumpPage() {
             return "Contents of page " + page.getPageNum() + ": " + hexDump(data);
         }
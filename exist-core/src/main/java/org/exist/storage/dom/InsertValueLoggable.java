@@ -94,6 +94,11 @@ public class InsertValueLoggable extends AbstractLoggable {
         domDb.undoInsertValue(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - inserted value; tid = " + tid + " in page " + pageNum +
@@ -78,6 +78,11 @@ public class RemoveEmptyPageLoggable extends AbstractLoggable {
         domDb.undoRemoveEmptyPage(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - removed page " + pageNum;
@@ -82,6 +82,11 @@ public class RemoveOverflowLoggable extends AbstractLoggable {
         domDb.undoRemoveOverflow(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - removed overflow page " + pageNum;
@@ -97,6 +97,11 @@ public class RemovePageLoggable extends AbstractLoggable {
         domDb.undoRemovePage(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - removed page " + pageNum;
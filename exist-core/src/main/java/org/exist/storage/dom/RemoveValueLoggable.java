@@ -98,6 +98,11 @@ public class RemoveValueLoggable extends AbstractLoggable {
         domDb.undoRemoveValue(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - removed value; tid = " + ItemId.getId(tid) + " from page " + pageNum + " at " + offset +
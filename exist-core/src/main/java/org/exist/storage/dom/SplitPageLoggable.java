@@ -67,7 +67,7 @@ public class SplitPageLoggable extends AbstractLoggable implements Loggable {
         pageNum = in.getInt();
         splitOffset = in.getInt();
         oldLen = in.getShort();
-        oldData = new byte[domDb.getFileHeader().getWorkSize()];
+        oldData = new byte[Math.max(domDb.getFileHeader().getWorkSize(), oldLen)];
         in.get(oldData, 0, oldLen);
     }
 
@@ -86,6 +86,11 @@ public class SplitPageLoggable extends AbstractLoggable implements Loggable {
         domDb.undoSplitPage(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - page split: " + pageNum + " at offset: " + splitOffset;
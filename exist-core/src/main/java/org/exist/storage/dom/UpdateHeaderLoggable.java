@@ -87,6 +87,11 @@ public class UpdateHeaderLoggable extends AbstractLoggable {
         domDb.undoUpdateHeader(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - update header of page " + pageNum + ": prev = " + prevPage +
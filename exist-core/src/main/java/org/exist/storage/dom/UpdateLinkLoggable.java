@@ -79,6 +79,11 @@ public class UpdateLinkLoggable extends AbstractLoggable {
         domDb.undoUpdateLink(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - updated link on page: " + pageNum + " at offset: " + offset;
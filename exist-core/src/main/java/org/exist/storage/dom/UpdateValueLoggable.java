@@ -90,6 +90,11 @@ public class UpdateValueLoggable extends AbstractLoggable {
         domDb.undoUpdateValue(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - updated value; tid = " + ItemId.getId(tid) + " to page " + pageNum;
@@ -83,6 +83,11 @@ public class WriteOverflowPageLoggable extends AbstractLoggable {
         domDb.undoWriteOverflow(this);
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NativeBroker.DOM_DBX_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - writing overflow page " + pageNum + "; next: " + nextPage;
@@ -28,9 +28,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
+import net.jcip.annotations.GuardedBy;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
 import org.apache.logging.log4j.LogManager;
@@ -41,6 +48,8 @@ import org.exist.config.annotation.ConfigurationFieldAsAttribute;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.lock.FileLock;
 import org.exist.storage.txn.Checkpoint;
+import org.exist.storage.txn.TxnAbort;
+import org.exist.storage.txn.TxnCommit;
 import org.exist.storage.txn.TxnStart;
 import org.exist.util.ByteConversion;
 import org.exist.util.FileUtils;
@@ -61,6 +70,9 @@ import static org.exist.util.ThreadUtils.newInstanceThread;
  * A buffer is used to temporarily buffer journal entries. To guarantee consistency, the buffer will be flushed
  * and the journal is synced after every commit or whenever a db page is written to disk.
  *
+ * When group commit is enabled, see {@link #groupCommit(Lsn)}, concurrently committing transactions
+ * share a single flush and sync of the journal.
+ *
  * Each journal file has the following format:
  *
  * <pre>{@code
@@ -94,6 +106,11 @@ import static org.exist.util.ThreadUtils.newInstanceThread;
  * {@code transactionId}    8 bytes (java.lang.long) the id of the transaction that created the record.
  * {@code dataLength}       2 bytes (java.lang.short) the length of the log entry {@code data}.
  *
+ * If a journal archive directory is configured, journal files which are no longer needed for
+ * recovery are moved to the archive instead of being deleted. Together with a snapshot
+ * of the data files, see {@link org.exist.storage.DataBackup}, the archived journal can be replayed
+ * to restore the database to a later point in time, see {@link org.exist.storage.recovery.JournalReplay}.
+ *
  * @author wolf
  * @author aretter
  */
@@ -116,12 +133,16 @@ public final class Journal implements Closeable {
 
     public static final String RECOVERY_SYNC_ON_COMMIT_ATTRIBUTE = "sync-on-commit";
     public static final String RECOVERY_JOURNAL_DIR_ATTRIBUTE = "journal-dir";
+    public static final String RECOVERY_JOURNAL_ARCHIVE_DIR_ATTRIBUTE = "journal-archive-dir";
     public static final String RECOVERY_SIZE_LIMIT_ATTRIBUTE = "size";
+    public static final String RECOVERY_GROUP_COMMIT_DELAY_ATTRIBUTE = "group-commit-delay";
 
     public static final String PROPERTY_RECOVERY_SIZE_MIN = "db-connection.recovery.size-min";
     public static final String PROPERTY_RECOVERY_SIZE_LIMIT = "db-connection.recovery.size-limit";
     public static final String PROPERTY_RECOVERY_JOURNAL_DIR = "db-connection.recovery.journal-dir";
+    public static final String PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR = "db-connection.recovery.journal-archive-dir";
     public static final String PROPERTY_RECOVERY_SYNC_ON_COMMIT = "db-connection.recovery.sync-on-commit";
+    public static final String PROPERTY_RECOVERY_GROUP_COMMIT_DELAY = "db-connection.recovery.group-commit-delay";
 
     public static final String LOG_FILE_SUFFIX = "log";
     public static final String BAK_FILE_SUFFIX = ".bak";
@@ -202,6 +223,19 @@ public final class Journal implements Closeable {
     //TODO: conf.xml refactoring <recovery journal-dir=""> => <journal dir="">
     private final Path dir;
 
+    /**
+     * the directory where journal files are archived to, or null
+     * if journal files are deleted when no longer needed
+     */
+    @ConfigurationFieldAsAttribute("journal-archive-dir")
+    private final @Nullable Path archiveDir;
+
+    /**
+     * journal files which could not be moved to the archive directory, in the order of their file numbers
+     */
+    @GuardedBy("itself")
+    private final Deque<Path> unarchivedFiles = new ArrayDeque<>();
+
     private FileLock fileLock;
 
     /**
@@ -247,6 +281,37 @@ public final class Journal implements Closeable {
     private final static boolean DEFAULT_SYNC_ON_COMMIT = true;
     private final boolean syncOnCommit;
 
+    /**
+     * the maximum time in milliseconds that the leader of a group commit
+     * waits for further commits to join the group before flushing
+     */
+    private final static int DEFAULT_GROUP_COMMIT_DELAY = 0;
+    @ConfigurationFieldAsAttribute("group-commit-delay")
+    private final int groupCommitDelay;
+    private final long groupCommitDelayNanos;
+
+    /**
+     * monitor used to coordinate the leader and followers of a group commit
+     */
+    private final Object groupCommitMonitor = new Object();
+
+    /**
+     * true whilst a group commit leader is flushing the journal
+     */
+    @GuardedBy("groupCommitMonitor") private boolean groupCommitInProgress = false;
+
+    /**
+     * the last LSN flushed by a group commit
+     */
+    @GuardedBy("groupCommitMonitor") private Lsn lastGroupCommitLsn = Lsn.LSN_INVALID;
+
+    /**
+     * number of commit (or abort) records written since the last sync
+     */
+    private long commitsSinceSync = 0;
+
+    private final JournalStatistics statistics = new JournalStatistics();
+
     private final Path fsJournalDir;
 
     private volatile boolean initialised = false;
@@ -296,8 +361,23 @@ public final class Journal implements Closeable {
             LOG.debug("Using directory for the journal: " + dir.toAbsolutePath().toString());
         }
 
+        this.archiveDir = (Path) pool.getConfiguration().getProperty(PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR);
+        if (archiveDir != null) {
+            try {
+                Files.createDirectories(archiveDir);
+            } catch (final IOException | SecurityException e) {
+                throw new EXistException("Failed to create journal archive directory: " + archiveDir.toAbsolutePath().toString());
+            }
+            if (!Files.isWritable(archiveDir)) {
+                throw new EXistException("Cannot write to journal archive directory: " + archiveDir.toAbsolutePath().toString());
+            }
+            LOG.info("Archiving journal files to: " + archiveDir.toAbsolutePath().toString());
+        }
+
         this.journalSizeMin = 1024 * 1024 * pool.getConfiguration().getProperty(PROPERTY_RECOVERY_SIZE_MIN, DEFAULT_MIN_SIZE);
         this.journalSizeLimit = 1024 * 1024 * pool.getConfiguration().getProperty(PROPERTY_RECOVERY_SIZE_LIMIT, DEFAULT_MAX_SIZE);
+        this.groupCommitDelay = pool.getConfiguration().getProperty(PROPERTY_RECOVERY_GROUP_COMMIT_DELAY, DEFAULT_GROUP_COMMIT_DELAY);
+        this.groupCommitDelayNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitDelay);
     }
 
     public void initialize() throws EXistException, ReadOnlyException {
@@ -368,12 +448,89 @@ public final class Journal implements Closeable {
             throw new JournalException("Buffer overflow while writing log record: " + entry.dump(), e);
         }
 
+        if (entry instanceof TxnCommit || entry instanceof TxnAbort) {
+            commitsSinceSync++;
+        }
+
         // NOTE: we don't track operations on txnStart or checkpoints!
         if (!(entry instanceof TxnStart || entry instanceof Checkpoint)) {
             pool.getTransactionManager().trackOperation(entry.getTransactionId());
         }
     }
 
+    /**
+     * Waits until the journal has been flushed (and synced, if sync-on-commit is enabled)
+     * at least up to the given LSN.
+     *
+     * The first caller to arrive becomes the leader of a group: it optionally waits for
+     * up to {@link #groupCommitDelayNanos} for further commits to arrive, and then flushes
+     * and syncs the journal once on behalf of every commit record that has been written
+     * so far. Callers arriving whilst the leader is flushing wait, and either find that
+     * their commit record has already been flushed by the leader or lead the next group.
+     *
+     * The caller must not hold the monitor of this journal.
+     *
+     * @param lsn the LSN of the commit record which must be made durable
+     * @throws JournalException if the database has been shut down
+     */
+    public void groupCommit(final Lsn lsn) throws JournalException {
+        synchronized (groupCommitMonitor) {
+            while (true) {
+                if (lsn.compareTo(lastGroupCommitLsn) <= 0) {
+                    // our commit record was flushed by the leader of an earlier group
+                    return;
+                }
+
+                if (!groupCommitInProgress) {
+                    // lead the next group
+                    groupCommitInProgress = true;
+                    break;
+                }
+
+                try {
+                    groupCommitMonitor.wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JournalException("Interrupted whilst waiting for group commit", e);
+                }
+            }
+        }
+
+        Lsn flushedLsn = Lsn.LSN_INVALID;
+        try {
+            if (groupCommitDelayNanos > 0) {
+                // give other transactions a chance to join this group
+                LockSupport.parkNanos(groupCommitDelayNanos);
+            }
+
+            synchronized (this) {
+                if (currentBuffer == null) {
+                    throw new JournalException("Database is shut down.");
+                }
+                flushedLsn = currentLsn;
+                flushToLog(true);
+            }
+        } finally {
+            synchronized (groupCommitMonitor) {
+                if (flushedLsn.compareTo(lastGroupCommitLsn) > 0) {
+                    lastGroupCommitLsn = flushedLsn;
+                }
+                groupCommitInProgress = false;
+                groupCommitMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of the journal's
+     * syncs and commit batches.
+     *
+     * @return the journal statistics
+     */
+    public JournalStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Returns the last LSN physically written to the journal.
      *
@@ -409,7 +566,10 @@ public final class Journal implements Closeable {
 
         try {
             if (forceSync || (fsync && syncOnCommit && currentLsn.compareTo(lastSyncLsn) > 0)) {
+                final long start = System.nanoTime();
                 sync();
+                statistics.recordSync(System.nanoTime() - start, commitsSinceSync);
+                commitsSinceSync = 0;
                 lastSyncLsn = currentLsn;
             }
         } catch (final IOException e) {
@@ -467,11 +627,12 @@ public final class Journal implements Closeable {
     public void checkpoint(final long txnId, final boolean switchLogFiles) throws JournalException {
         LOG.debug("Checkpoint reached");
         writeToLog(new Checkpoint(txnId));
-        if (switchLogFiles) {
+        if (switchLogFiles && archiveDir == null) {
             // if we switch files, we don't need to sync.
             // the file will be removed anyway.
             flushBuffer();
         } else {
+            // an archived file is replayed later on, so it has to be complete
             flushToLog(true, true);
         }
         try {
@@ -517,6 +678,63 @@ public final class Journal implements Closeable {
         }
     }
 
+    /**
+     * Remove a journal file which is no longer needed for recovery.
+     *
+     * If a journal archive directory is configured, the file is moved to it. An archived
+     * file with the same name, e.g. from before the database was restored to an earlier
+     * point in time, is first renamed to a backup file. A file which cannot be archived is
+     * never deleted, as a gap in the archive would break every later replay of it. It is kept
+     * in the journal directory instead, and archiving it is retried when the next file
+     * is removed, i.e. at the next checkpoint which switches files.
+     *
+     * @param file the journal file
+     */
+    public void removeFile(final Path file) {
+        if (archiveDir == null) {
+            FileUtils.deleteQuietly(file);
+            return;
+        }
+
+        synchronized (unarchivedFiles) {
+            // keep the order of the archive, earlier files first
+            while (!unarchivedFiles.isEmpty()) {
+                final Path unarchived = unarchivedFiles.peekFirst();
+                if (Files.exists(unarchived) && !archiveFile(unarchived)) {
+                    break;
+                }
+                unarchivedFiles.removeFirst();
+            }
+            if (!unarchivedFiles.isEmpty() || !archiveFile(file)) {
+                unarchivedFiles.addLast(file);
+            }
+        }
+    }
+
+    /**
+     * Move a journal file to the archive directory.
+     *
+     * @param file the journal file
+     * @return true if the file was archived, false if it is kept in the journal directory
+     */
+    private boolean archiveFile(final Path file) {
+        final Path archived = archiveDir.resolve(FileUtils.fileName(file));
+        try {
+            if (Files.exists(archived)) {
+                final Path renamed = Files.move(archived, archived.resolveSibling(FileUtils.fileName(archived) + '.' + System.currentTimeMillis() + BAK_FILE_SUFFIX));
+                LOG.warn("Journal archive already contains '" + FileUtils.fileName(file) + "', renamed it to '" + renamed.toAbsolutePath().toString() + "'");
+            }
+            Files.move(file, archived);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Archived journal file '" + file.toAbsolutePath().toString() + "' to '" + archived.toAbsolutePath().toString() + "'");
+            }
+            return true;
+        } catch (final IOException e) {
+            LOG.error("Unable to archive journal file '" + file.toAbsolutePath().toString() + "', it is kept and will be archived at the next checkpoint: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Create a new journal with a larger file number
      * than the previous file.
@@ -591,7 +809,13 @@ public final class Journal implements Closeable {
         }
     }
 
-    private static int journalFileNum(final Path path) {
+    /**
+     * Translate the name of a journal file into its file number.
+     *
+     * @param path the journal file
+     * @return The file number
+     */
+    public static int journalFileNum(final Path path) {
         final String fileName = FileUtils.fileName(path);
         final int p = fileName.indexOf('.');
         final String baseName = fileName.substring(0, p);
@@ -703,7 +927,7 @@ public final class Journal implements Closeable {
         return hex + '.' + LOG_FILE_SUFFIX;
     }
 
-    private static class RemoveRunnable implements Runnable {
+    private class RemoveRunnable implements Runnable {
         private final SeekableByteChannel channel;
         private final Path path;
 
@@ -721,7 +945,7 @@ public final class Journal implements Closeable {
             } catch (final IOException e) {
                 LOG.warn("Exception while closing journal file: " + e.getMessage(), e);
             }
-            FileUtils.deleteQuietly(path);
+            removeFile(path);
         }
     }
 }
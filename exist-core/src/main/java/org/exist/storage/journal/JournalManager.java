@@ -92,20 +92,34 @@ public class JournalManager implements BrokerPoolService {
     }
 
     /**
-     * Write a group of entrys to the journal
+     * Write the final entry of a group of entries (i.e. a transaction commit or abort)
+     * to the journal, and wait for the journal to be flushed.
+     *
+     * If group commits are enabled, the flush is shared with
+     * any other concurrently committing transactions.
      *
      * @see Journal#writeToLog(Loggable)
      * @see Journal#flushToLog(boolean)
+     * @see Journal#groupCommit(Lsn)
      *
      * @param loggable The entry to write in the journalGroup
      *
      * @throws JournalException of the journal group cannot be written
      */
-    public synchronized void journalGroup(final Loggable loggable) throws JournalException {
+    public void journalGroup(final Loggable loggable) throws JournalException {
         if(!journallingDisabled) {
-            journal.writeToLog(loggable);
-            if (!groupCommits) {
-                journal.flushToLog(true);
+            if (groupCommits) {
+                synchronized (this) {
+                    journal.writeToLog(loggable);
+                }
+
+                // NOTE: must not hold our monitor whilst waiting for the group to be flushed
+                journal.groupCommit(loggable.getLsn());
+            } else {
+                synchronized (this) {
+                    journal.writeToLog(loggable);
+                    journal.flushToLog(true);
+                }
             }
         }
     }
@@ -177,12 +191,22 @@ public class JournalManager implements BrokerPoolService {
         return journal.lastWrittenLsn();
     }
 
+    /**
+     * @see Journal#getStatistics()
+     *
+     * @return the statistics of the journal, or empty if journalling is disabled
+     */
+    public Optional<JournalStatistics> getStatistics() {
+        return Optional.ofNullable(journal).map(Journal::getStatistics);
+    }
+
 
 
     public RecoveryManager.JournalRecoveryAccessor getRecoveryAccessor(final RecoveryManager recoveryManager) {
         return recoveryManager.new JournalRecoveryAccessor(
                 journal::setInRecovery, journal::getFiles, journal::getFile, journal::setCurrentFileNum,
-                () -> { journal.switchFiles(); return null; }, () -> { journal.clearBackupFiles(); return null; });
+                () -> { journal.switchFiles(); return null; }, () -> { journal.clearBackupFiles(); return null; },
+                journal::removeFile);
     }
 
     /**
@@ -0,0 +1,106 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.exist.storage.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the syncs of the {@link Journal}, and for the
+ * number of transaction commits which each sync made durable
+ * (i.e. the size of each commit batch).
+ *
+ * With group commit disabled, the batch size is usually 1.
+ */
+public class JournalStatistics {
+
+    private final LongAdder syncCount = new LongAdder();
+    private final LongAdder syncTimeNanos = new LongAdder();
+    private final AtomicLong maxSyncTimeNanos = new AtomicLong();
+
+    private final LongAdder batchedCommits = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    /**
+     * Record a sync of the journal.
+     *
+     * @param latencyNanos the time taken by the sync in nanoseconds
+     * @param commits the number of commit records made durable by the sync
+     */
+    void recordSync(final long latencyNanos, final long commits) {
+        syncCount.increment();
+        syncTimeNanos.add(latencyNanos);
+        maxSyncTimeNanos.accumulateAndGet(latencyNanos, Math::max);
+
+        batchedCommits.add(commits);
+        maxBatchSize.accumulateAndGet(commits, Math::max);
+    }
+
+    /**
+     * @return the number of syncs of the journal
+     */
+    public long getSyncCount() {
+        return syncCount.sum();
+    }
+
+    /**
+     * @return the total time spent syncing the journal, in nanoseconds
+     */
+    public long getTotalSyncTime() {
+        return syncTimeNanos.sum();
+    }
+
+    /**
+     * @return the average time of a sync of the journal, in nanoseconds
+     */
+    public long getAverageSyncTime() {
+        final long count = syncCount.sum();
+        return count == 0 ? 0 : syncTimeNanos.sum() / count;
+    }
+
+    /**
+     * @return the longest time taken by a sync of the journal, in nanoseconds
+     */
+    public long getMaxSyncTime() {
+        return maxSyncTimeNanos.get();
+    }
+
+    /**
+     * @return the number of commit records made durable by syncs of the journal
+     */
+    public long getBatchedCommits() {
+        return batchedCommits.sum();
+    }
+
+    /**
+     * @return the average number of commit records made durable by a single sync
+     */
+    public double getAverageBatchSize() {
+        final long count = syncCount.sum();
+        return count == 0 ? 0 : batchedCommits.sum() / (double) count;
+    }
+
+    /**
+     * @return the largest number of commit records made durable by a single sync
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+}
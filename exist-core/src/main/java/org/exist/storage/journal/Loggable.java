@@ -30,6 +30,18 @@ import java.nio.ByteBuffer;
  * @author wolf
  */
 public interface Loggable {
+
+    /**
+     * Returned by {@link #getRedoFileId()} when the file(s)
+     * modified by the entry are not known.
+     */
+    int UNKNOWN_FILE_ID = -1;
+
+    /**
+     * Returned by {@link #getRedoFileId()} when redoing the
+     * entry does not modify any file, e.g. transaction markers.
+     */
+    int NO_FILE_ID = -2;
     
 	/**
 	 * Returns the type id of the log entry. This is the type registered
@@ -100,6 +112,22 @@ public interface Loggable {
      * @throws LogException if the operation cannot be undone
      */
     void undo() throws LogException;
+
+    /**
+     * Returns the id of the storage file which is modified when
+     * this entry is redone.
+     *
+     * During recovery, the entries for different files may be
+     * redone concurrently, whilst the entries for the same file
+     * are always redone in the order in which they were logged.
+     * An entry for which the file is not known is only redone
+     * once all of the preceding entries have been redone.
+     *
+     * @return the id of the file, {@link #UNKNOWN_FILE_ID} or {@link #NO_FILE_ID}
+     */
+    default int getRedoFileId() {
+        return UNKNOWN_FILE_ID;
+    }
     
     /**
      * Returns a description of the entry for debugging purposes.
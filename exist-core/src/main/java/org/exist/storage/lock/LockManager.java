@@ -29,6 +29,7 @@ import org.exist.util.WeakLazyStripes;
 import org.exist.xmldb.XmldbURI;
 import uk.ac.ic.doc.slurp.multilock.MultiLock;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -66,6 +67,7 @@ public class LockManager {
     public final static String CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE = "lock-manager.warn-wait-on-read-for-write";
     public final static String CONFIGURATION_PATH_LOCKS_FOR_DOCUMENTS = "lock-manager.document.use-path-locks";
     public final static String CONFIGURATION_PATHS_MULTI_WRITER = "lock-manager.paths-multi-writer";
+    public final static String CONFIGURATION_ROOT_READ_BIAS = "lock-manager.root-read-bias";
 
     //TODO(AR) remove eventually!
     // legacy properties for overriding the config
@@ -99,6 +101,13 @@ public class LockManager {
      */
     private final boolean warnWaitOnReadForWrite;
 
+    /**
+     * When not null, INTENTION_READ locks on the root Collection
+     * are taken through the read bias rather than through
+     * the root MultiLock, see {@link ReadBias}.
+     */
+    @Nullable private final ReadBias rootReadBias;
+
 
     private final LockTable lockTable;
     private final WeakLazyStripes<String, MultiLock> pathLocks;
@@ -110,12 +119,28 @@ public class LockManager {
      * @param concurrencyLevel Concurrency Level of the lock table.
      */
     public LockManager(final Configuration configuration, final int concurrencyLevel) {
+        this(configuration, concurrencyLevel, getConfigPropertyBool(configuration, CONFIGURATION_ROOT_READ_BIAS, false));
+    }
+
+    /**
+     * @param configuration database configuration
+     * @param concurrencyLevel Concurrency Level of the lock table.
+     * @param rootReadBias true to enable the read bias for the root Collection.
+     */
+    private LockManager(final Configuration configuration, final int concurrencyLevel, final boolean rootReadBias) {
         // set configuration
         this.usePathLocksForDocuments = getConfigPropertyBool(configuration, CONFIGURATION_PATH_LOCKS_FOR_DOCUMENTS, false);
         this.pathsMultiWriter = getLegacySystemPropertyOrConfigPropertyBool(PROP_ENABLE_PATHS_MULTI_WRITER, configuration, CONFIGURATION_PATHS_MULTI_WRITER, false);
         this.upgradeCheck = getLegacySystemPropertyOrConfigPropertyBool(PROP_UPGRADE_CHECK, configuration, CONFIGURATION_UPGRADE_CHECK, false);
         this.warnWaitOnReadForWrite = getLegacySystemPropertyOrConfigPropertyBool(PROP_WARN_WAIT_ON_READ_FOR_WRITE, configuration, CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE, false);
 
+        // the diagnostic checks inspect the hold counts of the MultiLock, so they require every lock to be taken on it
+        if (rootReadBias && !upgradeCheck && !warnWaitOnReadForWrite) {
+            this.rootReadBias = new ReadBias(concurrencyLevel);
+        } else {
+            this.rootReadBias = null;
+        }
+
         this.lockTable = new LockTable(configuration);
         this.pathLocks = new WeakLazyStripes<>(concurrencyLevel, LockManager::createCollectionLock);
         if (!usePathLocksForDocuments) {
@@ -125,7 +150,7 @@ public class LockManager {
         }
         this.btreeLocks = new WeakLazyStripes<>(concurrencyLevel, LockManager::createBtreeLock);
 
-        LOG.info("Configured LockManager with concurrencyLevel={} use-path-locks-for-documents={} paths-multi-writer={}", concurrencyLevel, usePathLocksForDocuments, pathsMultiWriter);
+        LOG.info("Configured LockManager with concurrencyLevel={} use-path-locks-for-documents={} paths-multi-writer={} root-read-bias={}", concurrencyLevel, usePathLocksForDocuments, pathsMultiWriter, this.rootReadBias != null);
     }
 
     /**
@@ -137,6 +162,16 @@ public class LockManager {
         this(null, concurrencyLevel);
     }
 
+    /**
+     * Reserved for testing!
+     *
+     * @param concurrencyLevel Concurrency Level of the lock table.
+     * @param rootReadBias true to enable the read bias for the root Collection.
+     */
+    LockManager(final int concurrencyLevel, final boolean rootReadBias) {
+        this(null, concurrencyLevel, rootReadBias);
+    }
+
     /**
      * Get the lock table.
      *
@@ -207,7 +242,7 @@ public class LockManager {
         return new ManagedCollectionLock(
                 collectionPath,
                 Arrays.stream(lockGroup.locks).map(Tuple3::get_1).toArray(MultiLock[]::new),
-                () -> unlockAll(lockGroup.locks, l -> lockTable.released(lockGroup.groupId, l._3, LockType.COLLECTION, l._2))
+                () -> unlockAll(lockGroup, l -> lockTable.released(lockGroup.groupId, l._3, LockType.COLLECTION, l._2))
         );
     }
 
@@ -215,9 +250,18 @@ public class LockManager {
         final long groupId;
         final Tuple3<MultiLock, Lock.LockMode, String>[] locks;
 
-        private LockGroup(final long groupId, final Tuple3<MultiLock, Lock.LockMode, String>[] locks) {
+        /**
+         * True if the first lock of the group, i.e. the root, was taken
+         * through the {@link LockManager#rootReadBias}. For an INTENTION_READ lock the
+         * bias is held instead of the MultiLock, for a WRITE_LOCK the bias
+         * was revoked before taking the MultiLock.
+         */
+        final boolean rootBiased;
+
+        private LockGroup(final long groupId, final Tuple3<MultiLock, Lock.LockMode, String>[] locks, final boolean rootBiased) {
             this.groupId = groupId;
             this.locks = locks;
+            this.rootBiased = rootBiased;
         }
     }
 
@@ -238,6 +282,7 @@ public class LockManager {
 
         String pathStr = "";
         final Tuple3<MultiLock, Lock.LockMode, String>[] locked = new Tuple3[segments.length];
+        boolean rootBiased = false;
         for (int i = 0; i < segments.length; i++) {
             pathStr += '/' + segments[i].toString();
 
@@ -251,19 +296,24 @@ public class LockManager {
             final MultiLock lock = getPathLock(pathStr);
 
             lockTable.attempt(groupId, pathStr, lockType, lockMode);
-            if (lock(lock, lockMode)) {
+            if (i == 0 && lockMode == Lock.LockMode.INTENTION_READ && rootReadBias != null && rootReadBias.tryAcquire()) {
+                // fast path, the root is the ancestor of every path so we avoid contending on its MultiLock
+                rootBiased = true;
+                locked[i] = new Tuple3<>(lock, lockMode, pathStr);
+                lockTable.acquired(groupId, pathStr, lockType, lockMode);
+            } else if (lock(lock, lockMode)) {
                 locked[i] = new Tuple3<>(lock, lockMode, pathStr);
                 lockTable.acquired(groupId, pathStr, lockType, lockMode);
             } else {
                 lockTable.attemptFailed(groupId, pathStr, lockType, lockMode);
 
-                unlockAll(locked, l -> lockTable.released(groupId, l._3, lockType, l._2));
+                unlockAll(locked, rootBiased, l -> lockTable.released(groupId, l._3, lockType, l._2));
 
                 throw new LockException("Unable to acquire " + lockType + " " + lockMode + " for: " + pathStr);
             }
         }
 
-        return new LockGroup(groupId, locked);
+        return new LockGroup(groupId, locked, rootBiased);
     }
 
     /**
@@ -299,17 +349,37 @@ public class LockManager {
         return true;  //TODO(AR) switch to lock interruptibly above!
     }
 
+    /**
+     * Releases the locks of a lock group for the modes with which they were locked
+     *
+     * @param lockGroup The lock group
+     */
+    private void unlockAll(final LockGroup lockGroup, final Consumer<Tuple3<MultiLock, Lock.LockMode, String>> unlockListener) {
+        unlockAll(lockGroup.locks, lockGroup.rootBiased, unlockListener);
+    }
+
     /**
      * Releases an array of locked locks for the modes with which they were locked
      *
      * Locks are released in the opposite to their acquisition order
      *
      * @param locked An array of locks in acquisition order
+     * @param rootBiased true if the first lock was taken through the {@link #rootReadBias}
      */
-    private void unlockAll(final Tuple3<MultiLock, Lock.LockMode, String>[] locked, final Consumer<Tuple3<MultiLock, Lock.LockMode, String>> unlockListener) {
+    private void unlockAll(final Tuple3<MultiLock, Lock.LockMode, String>[] locked, final boolean rootBiased,
+            final Consumer<Tuple3<MultiLock, Lock.LockMode, String>> unlockListener) {
         for(int i = locked.length - 1; i >= 0; i--) {
             final Tuple3<MultiLock, Lock.LockMode, String> lock = locked[i];
-            unlock(lock._1, lock._2);
+            if (i == 0 && rootBiased) {
+                if (lock._2 == Lock.LockMode.INTENTION_READ) {
+                    rootReadBias.release();
+                } else {
+                    unlock(lock._1, lock._2);
+                    rootReadBias.restore();
+                }
+            } else {
+                unlock(lock._1, lock._2);
+            }
             unlockListener.accept(lock);
         }
     }
@@ -368,7 +438,7 @@ public class LockManager {
         return new ManagedCollectionLock(
                 collectionPath,
                 Arrays.stream(lockGroup.locks).map(Tuple3::get_1).toArray(MultiLock[]::new),
-                () -> unlockAll(lockGroup.locks, l -> lockTable.released(lockGroup.groupId, l._3, LockType.COLLECTION, l._2))
+                () -> unlockAll(lockGroup, l -> lockTable.released(lockGroup.groupId, l._3, LockType.COLLECTION, l._2))
         );
     }
 
@@ -388,6 +458,7 @@ public class LockManager {
 
         String pathStr = "";
         final Tuple3<MultiLock, Lock.LockMode, String>[] locked = new Tuple3[segments.length];
+        boolean rootBiased = false;
         for (int i = 0; i < segments.length; i++) {
             pathStr += '/' + segments[i].toString();
 
@@ -423,19 +494,31 @@ public class LockManager {
             }
 
             lockTable.attempt(groupId, pathStr, lockType, lockMode);
+
+            if (i == 0 && lockMode == Lock.LockMode.WRITE_LOCK && rootReadBias != null) {
+                // WRITE_LOCK is the only mode which conflicts with INTENTION_READ, so wait for any biased readers
+                rootReadBias.revoke();
+                rootBiased = true;
+            }
+
             if (lock(lock, lockMode)) {
                 locked[i] = new Tuple3<>(lock, lockMode, pathStr);
                 lockTable.acquired(groupId, pathStr, lockType, lockMode);
             } else {
                 lockTable.attemptFailed(groupId, pathStr, lockType, lockMode);
 
-                unlockAll(locked, l -> lockTable.released(groupId, l._3, lockType, l._2));
+                if (i == 0 && rootBiased) {
+                    rootReadBias.restore();
+                    rootBiased = false;
+                }
+
+                unlockAll(locked, rootBiased, l -> lockTable.released(groupId, l._3, lockType, l._2));
 
                 throw new LockException("Unable to acquire " + lockType + " " + lockMode + " for: " + pathStr);
             }
         }
 
-        return new LockGroup(groupId, locked);
+        return new LockGroup(groupId, locked, rootBiased);
     }
 
     /**
@@ -493,7 +576,7 @@ public class LockManager {
             return new ManagedDocumentLock(
                     documentPath,
                     Arrays.stream(lockGroup.locks).map(Tuple3::get_1).toArray(MultiLock[]::new),
-                    () -> unlockAll(lockGroup.locks, l -> lockTable.released(lockGroup.groupId, l._3, LockType.DOCUMENT, l._2))
+                    () -> unlockAll(lockGroup, l -> lockTable.released(lockGroup.groupId, l._3, LockType.DOCUMENT, l._2))
             );
         } else {
             final long groupId = System.nanoTime();
@@ -532,7 +615,7 @@ public class LockManager {
             return new ManagedDocumentLock(
                     documentPath,
                     Arrays.stream(lockGroup.locks).map(Tuple3::get_1).toArray(MultiLock[]::new),
-                    () -> unlockAll(lockGroup.locks, l -> lockTable.released(lockGroup.groupId, l._3, LockType.DOCUMENT, l._2))
+                    () -> unlockAll(lockGroup, l -> lockTable.released(lockGroup.groupId, l._3, LockType.DOCUMENT, l._2))
             );
         } else {
             final long groupId = System.nanoTime();
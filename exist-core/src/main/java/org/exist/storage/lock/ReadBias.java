@@ -0,0 +1,151 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.lock;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A read-biased fast path for INTENTION_READ locks.
+ *
+ * Every read of a Collection or Document path takes an INTENTION_READ lock
+ * on each ancestor, so under a read-heavy workload the lock of the root
+ * Collection is acquired and released by every thread. Even though
+ * INTENTION_READ locks are compatible with one another, each acquisition
+ * updates the shared state of the {@link uk.ac.ic.doc.slurp.multilock.MultiLock},
+ * and the cache line holding it bounces between all of the CPU cores.
+ *
+ * Instead readers may register in one of a number of counters which are
+ * padded onto separate cache lines and chosen by thread, so that readers
+ * only ever write to their own cache line. The only mode which conflicts with
+ * INTENTION_READ is WRITE_LOCK; a writer must first {@link #revoke()} the
+ * bias, which waits for any biased readers to drain, after which new readers
+ * fall back to the pessimistic lock until the writer {@link #restore()}s the bias.
+ *
+ * Readers publish their count before checking for a revocation and writers
+ * publish their revocation before checking for readers, so that either the
+ * reader observes the revocation or the writer observes the reader.
+ */
+@ThreadSafe
+final class ReadBias {
+
+    /**
+     * Number of longs which span two cache lines, this also
+     * avoids false sharing caused by adjacent line prefetching.
+     */
+    private static final int PADDING = 16;
+
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int mask;
+    private final AtomicLongArray readers;
+
+    /**
+     * Number of writers which have revoked the bias, only written by writers.
+     */
+    private final AtomicInteger revocations = new AtomicInteger();
+
+    /**
+     * @param concurrencyLevel the expected number of concurrent reader threads,
+     *     rounded up to a power of two to give the number of counters.
+     */
+    ReadBias(final int concurrencyLevel) {
+        final int stripes = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+        this.mask = stripes - 1;
+        // one extra padding on either side keeps the counters clear of the array header and neighbouring objects
+        this.readers = new AtomicLongArray((stripes + 2) * PADDING);
+    }
+
+    /**
+     * Attempts to register the current thread as a biased reader.
+     *
+     * @return true if the bias was taken and must later be released
+     *     by {@link #release()}, false if the bias is revoked and the
+     *     caller should acquire the pessimistic lock instead.
+     */
+    boolean tryAcquire() {
+        if (revocations.get() != 0) {
+            return false;
+        }
+
+        final int index = index();
+        readers.getAndIncrement(index);
+        if (revocations.get() != 0) {
+            // raced with a writer, back out
+            readers.getAndDecrement(index);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a bias previously taken by the current thread
+     * through {@link #tryAcquire()}.
+     */
+    void release() {
+        readers.getAndDecrement(index());
+    }
+
+    /**
+     * Revokes the bias and waits until all biased readers have released.
+     *
+     * Must be followed by a call to {@link #restore()} once the
+     * writer has released its conflicting lock.
+     */
+    void revoke() {
+        revocations.incrementAndGet();
+
+        long parkNanos = MIN_PARK_NANOS;
+        while (readerCount() > 0) {
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Restores the bias after a previous {@link #revoke()}.
+     */
+    void restore() {
+        revocations.decrementAndGet();
+    }
+
+    /**
+     * Get the number of readers which currently hold the bias.
+     *
+     * @return the number of biased readers.
+     */
+    long readerCount() {
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            count += readers.get((i + 1) * PADDING);
+        }
+        return count;
+    }
+
+    private int index() {
+        final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (((int) (id ^ (id >>> 32))) & mask) * PADDING + PADDING;
+    }
+}
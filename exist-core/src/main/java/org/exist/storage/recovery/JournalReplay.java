@@ -0,0 +1,169 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.recovery;
+
+import org.exist.storage.journal.LogException;
+import org.exist.storage.journal.Lsn;
+import org.exist.util.FileUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * A request to replay archived journal files on top of a snapshot
+ * of the data files, see {@link org.exist.storage.journal.Journal#removeFile(Path)}.
+ *
+ * The request is stored in the data directory by {@link org.exist.backup.JournalRestoreMain},
+ * and carried out by the {@link RecoveryManager} when the database is next started.
+ * The journal is replayed from the checkpoint at which the snapshot was taken, up to
+ * either a target LSN or the last checkpoint written at or before a target time. Without
+ * a target, all of the archived journal is replayed.
+ */
+public class JournalReplay {
+
+    public static final String FILE_NAME = "journal-replay.properties";
+
+    private static final String ARCHIVE_DIR = "archive-dir";
+    private static final String START_FILE = "start.file";
+    private static final String START_OFFSET = "start.offset";
+    private static final String TARGET_FILE = "target.file";
+    private static final String TARGET_OFFSET = "target.offset";
+    private static final String TARGET_TIMESTAMP = "target.timestamp";
+
+    private final Path archiveDir;
+    private final Lsn start;
+    @Nullable private final Lsn targetLsn;
+    private final long targetTimestamp;
+
+    /**
+     * @param archiveDir the directory containing the archived journal files
+     * @param start the LSN of the checkpoint at which the snapshot was taken
+     * @param targetLsn the LSN of the last journal entry to replay, or null
+     * @param targetTimestamp the time of the last checkpoint to replay up to, or -1
+     */
+    public JournalReplay(final Path archiveDir, final Lsn start, @Nullable final Lsn targetLsn,
+            final long targetTimestamp) {
+        this.archiveDir = archiveDir;
+        this.start = start;
+        this.targetLsn = targetLsn;
+        this.targetTimestamp = targetTimestamp;
+    }
+
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    public Lsn getStart() {
+        return start;
+    }
+
+    public Optional<Lsn> getTargetLsn() {
+        return Optional.ofNullable(targetLsn);
+    }
+
+    public Optional<Long> getTargetTimestamp() {
+        return targetTimestamp < 0 ? Optional.empty() : Optional.of(targetTimestamp);
+    }
+
+    /**
+     * Store the request in the data directory.
+     *
+     * @param dataDir the data directory of the database
+     *
+     * @throws IOException if the request cannot be written
+     */
+    public void write(final Path dataDir) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(ARCHIVE_DIR, archiveDir.toAbsolutePath().toString());
+        properties.setProperty(START_FILE, Long.toString(start.getFileNumber()));
+        properties.setProperty(START_OFFSET, Long.toString(start.getOffset()));
+        if (targetLsn != null) {
+            properties.setProperty(TARGET_FILE, Long.toString(targetLsn.getFileNumber()));
+            properties.setProperty(TARGET_OFFSET, Long.toString(targetLsn.getOffset()));
+        }
+        if (targetTimestamp >= 0) {
+            properties.setProperty(TARGET_TIMESTAMP, Long.toString(targetTimestamp));
+        }
+
+        try (final OutputStream os = Files.newOutputStream(dataDir.resolve(FILE_NAME))) {
+            properties.store(os, "Archived journal to replay on the next start of the database");
+        }
+    }
+
+    /**
+     * Read the request from the data directory.
+     *
+     * @param dataDir the data directory of the database
+     *
+     * @return the request, or empty if no replay was requested
+     *
+     * @throws LogException if the request cannot be read
+     */
+    public static Optional<JournalReplay> read(final Path dataDir) throws LogException {
+        final Path file = dataDir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        final Properties properties = new Properties();
+        try (final InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (final IOException e) {
+            throw new LogException("Unable to read journal replay request: " + file.toAbsolutePath().toString(), e);
+        }
+
+        try {
+            final Path archiveDir = Paths.get(getRequired(properties, ARCHIVE_DIR));
+            final Lsn start = new Lsn(Short.parseShort(getRequired(properties, START_FILE)),
+                    Long.parseLong(getRequired(properties, START_OFFSET)));
+            final Lsn targetLsn = properties.containsKey(TARGET_FILE) ?
+                    new Lsn(Short.parseShort(getRequired(properties, TARGET_FILE)),
+                            Long.parseLong(getRequired(properties, TARGET_OFFSET))) : null;
+            final long targetTimestamp = Long.parseLong(properties.getProperty(TARGET_TIMESTAMP, "-1"));
+            return Optional.of(new JournalReplay(archiveDir, start, targetLsn, targetTimestamp));
+        } catch (final NumberFormatException e) {
+            throw new LogException("Invalid journal replay request: " + file.toAbsolutePath().toString(), e);
+        }
+    }
+
+    /**
+     * Remove the request from the data directory, once it has been carried out.
+     *
+     * @param dataDir the data directory of the database
+     */
+    public static void remove(final Path dataDir) {
+        FileUtils.deleteQuietly(dataDir.resolve(FILE_NAME));
+    }
+
+    private static String getRequired(final Properties properties, final String key) throws LogException {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            throw new LogException("Journal replay request is missing: " + key);
+        }
+        return value;
+    }
+}
@@ -23,8 +23,17 @@ package org.exist.storage.recovery;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -35,6 +44,7 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.Database;
 import org.exist.storage.DBBroker;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.blob.BlobStore;
@@ -42,10 +52,13 @@ import org.exist.storage.journal.*;
 import org.exist.storage.sync.Sync;
 import org.exist.storage.txn.Checkpoint;
 import org.exist.util.FileUtils;
+import org.exist.util.NamedThreadFactory;
 import org.exist.util.ProgressBar;
 import com.evolvedbinary.j8fu.function.SupplierE;
 import org.exist.util.sanity.SanityCheck;
 
+import javax.annotation.Nullable;
+
 /**
  * Database recovery. This class is used once during startup to check
  * if the database is in a consistent state. If not, the class attempts to recover
@@ -60,11 +73,27 @@ public class RecoveryManager {
     private final DBBroker broker;
     private final JournalRecoveryAccessor journalRecovery;
     private final boolean restartOnError;
+    private final int redoThreads;
 
     public RecoveryManager(final DBBroker broker, final JournalManager journalManager, final boolean restartOnError) {
+        this(broker, journalManager, restartOnError, 1);
+    }
+
+    /**
+     * @param broker the broker to use for the recovery
+     * @param journalManager the journal manager
+     * @param restartOnError true if the database should be brought up even if recovery fails
+     * @param redoThreads the number of threads to use for redoing the journal,
+     *     the entries for different storage files are redone concurrently
+     *     (see {@link Loggable#getRedoFileId()}). 1 redoes all entries
+     *     sequentially on the calling thread.
+     */
+    public RecoveryManager(final DBBroker broker, final JournalManager journalManager, final boolean restartOnError,
+            final int redoThreads) {
         this.broker = broker;
         this.journalRecovery = journalManager.getRecoveryAccessor(this);
         this.restartOnError = restartOnError;
+        this.redoThreads = Math.max(1, redoThreads);
 	}
 
 	/**
@@ -74,6 +103,9 @@ public class RecoveryManager {
 	 * record. If the checkpoint record is the last record in the file,
 	 * the database was closed cleanly and is in a consistent state. If not, a
 	 * recovery run is started beginning at the last checkpoint found.
+	 *
+	 * If a {@link JournalReplay} was requested, the archived journal files are
+	 * replayed beforehand.
 	 *  
 	 * @throws LogException Reading of journal failed.
      * @return if recover was successful
@@ -88,6 +120,20 @@ public class RecoveryManager {
         }
         // find the last log file in the data directory
 		final int lastNum = Journal.findLastFile(files.stream());
+
+        int replayedNum = -1;
+        final Path dataDir = (Path) broker.getConfiguration().getProperty(BrokerPool.PROPERTY_DATA_DIR);
+        final Optional<JournalReplay> replay = JournalReplay.read(dataDir);
+        if (replay.isPresent()) {
+            if (-1 < lastNum) {
+                throw new LogException("Cannot replay the archived journal, the journal directory still contains " +
+                        "journal files which would be recovered on top of it.");
+            }
+            replayedNum = replay(replay.get());
+            JournalReplay.remove(dataDir);
+            recoveryRun = true;
+        }
+
 		if (-1 < lastNum) {
             // load the last log file
 			final Path last = journalRecovery.getFile.apply(lastNum);
@@ -123,7 +169,7 @@ public class RecoveryManager {
 	    			Lsn lastLsn = Lsn.LSN_INVALID;
 	                Loggable next;
 	                try {
-						final ProgressBar progress = new ProgressBar("Scanning journal ", FileUtils.sizeQuietly(last));
+						final RecoveryProgress progress = new RecoveryProgress("Scanning journal", FileUtils.sizeQuietly(last));
 	        			while ((next = reader.nextEntry()) != null) {
 //	                        LOG.debug(next.dump());
 							progress.set(next.getLsn().getOffset());
@@ -197,15 +243,16 @@ public class RecoveryManager {
                 reader.close();
                 // remove .log files from directory even if recovery failed.
                 // Re-applying them on a second start up attempt would definitely damage the db, so we better
-                // delete them before user tries to launch again.
-                cleanDirectory(files.stream());
+                // delete (or archive) them before user tries to launch again.
+                files.forEach(journalRecovery.removeFile);
                 if (recoveryRun) {
                     broker.repairPrimary();
                     broker.sync(Sync.MAJOR);
                 }
             }
 		}
-        journalRecovery.setCurrentFileNum.accept(lastNum);
+        // continue the numbering after any replayed files, so that the files of the archive are not reused
+        journalRecovery.setCurrentFileNum.accept(Math.max(lastNum, replayedNum));
         journalRecovery.switchFiles.get();
         journalRecovery.clearBackupFiles.get();
 
@@ -219,18 +266,20 @@ public class RecoveryManager {
         final Consumer<Integer> setCurrentFileNum;
         final SupplierE<Void, LogException> switchFiles;
         final Supplier<Void> clearBackupFiles;
+        final Consumer<Path> removeFile;
 
 
         public JournalRecoveryAccessor(final Consumer<Boolean> setInRecovery,
                 final SupplierE<Stream<Path>, IOException> getFiles, final Function<Integer, Path> getFile,
                 final Consumer<Integer> setCurrentFileNum, final SupplierE<Void, LogException> switchFiles,
-                final Supplier<Void> clearBackupFiles) {
+                final Supplier<Void> clearBackupFiles, final Consumer<Path> removeFile) {
             this.setInRecovery = setInRecovery;
             this.getFiles = getFiles;
             this.getFile = getFile;
             this.setCurrentFileNum = setCurrentFileNum;
             this.switchFiles = switchFiles;
             this.clearBackupFiles = clearBackupFiles;
+            this.removeFile = removeFile;
         }
     }
 
@@ -256,11 +305,11 @@ public class RecoveryManager {
 
             // ------- REDO ---------
             if (LOG.isInfoEnabled())
-                {LOG.info("First pass: redoing " + txnCount + " transactions...");}
-            final ProgressBar progress = new ProgressBar("Redo ", FileUtils.sizeQuietly(last));
+                {LOG.info("First pass: redoing " + txnCount + " transactions using " + redoThreads + " thread(s)...");}
+            final RecoveryProgress progress = new RecoveryProgress("Redo", FileUtils.sizeQuietly(last));
             Loggable next = null;
             int redoCnt = 0;
-            try {
+            try (final ParallelRedo parallelRedo = redoThreads > 1 ? new ParallelRedo(broker.getBrokerPool(), redoThreads) : null) {
                 while ((next = reader.nextEntry()) != null) {
                     SanityCheck.ASSERT(next.getLogType() != LogEntryTypes.CHECKPOINT,
                             "Found a checkpoint during recovery run! This should not ever happen.");
@@ -277,12 +326,24 @@ public class RecoveryManager {
                     }
         //            LOG.debug("Redo: " + next.dump());
                     // redo the log entry
-                    next.redo();
+                    if (parallelRedo != null) {
+                        parallelRedo.redo(next);
+                    } else {
+                        next.redo();
+                    }
                     progress.set(next.getLsn().getOffset());
                     if (next.getLsn().equals(lastLsn))
                         {break;} // last readable entry reached. Stop here.
                 }
+
+                if (parallelRedo != null) {
+                    // all entries must be redone before any can be undone
+                    parallelRedo.await();
+                }
             } catch (final Exception e) {
+                if (e instanceof RedoException) {
+                    next = ((RedoException) e).loggable;
+                }
                 LOG.error("Exception caught while redoing transactions. Aborting recovery to avoid possible damage. " +
                     "Before starting again, make sure to run a check via the emergency export tool.", e);
                 if (next != null)
@@ -298,6 +359,7 @@ public class RecoveryManager {
                         runningTxns.size());}
             // see if there are uncommitted transactions pending
             if (runningTxns.size() > 0) {
+                broker.getBrokerPool().reportStatus("Undoing " + runningTxns.size() + " uncommitted transactions...");
                 // do a reverse scan of the log, undoing all uncommitted transactions
                 try {
                     while((next = reader.previousEntry()) != null) {
@@ -336,7 +398,450 @@ public class RecoveryManager {
         }
     }
     
-	private void cleanDirectory(final Stream<Path> files) {
-        files.forEach(FileUtils::deleteQuietly);
-	}
+    /**
+     * Replays the archived journal files on top of a snapshot of the data files.
+     *
+     * The entries are redone file by file, from the checkpoint of the snapshot up to the
+     * target. A transaction may span several journal files, e.g. if a file was switched whilst
+     * it was running, so the running transactions are tracked across files. Once the target
+     * is reached, the transactions which did not complete before it are undone, reading back
+     * through the replayed files as far as needed.
+     *
+     * @param replay the replay request
+     *
+     * @return the number of the last journal file which was replayed
+     *
+     * @throws LogException if the archived journal cannot be replayed
+     */
+    private int replay(final JournalReplay replay) throws LogException {
+        final Path archiveDir = replay.getArchiveDir();
+        final int startNum = (int) replay.getStart().getFileNumber();
+
+        final List<Integer> fileNums;
+        try (final Stream<Path> archived = Files.list(archiveDir)) {
+            fileNums = archived
+                    .filter(path -> FileUtils.fileName(path).matches("[0-9a-f]{10}\\." + Journal.LOG_FILE_SUFFIX))
+                    .map(Journal::journalFileNum)
+                    .filter(num -> num >= startNum)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new LogException("Unable to find journal files in archive: " + archiveDir.toAbsolutePath().toString(), e);
+        }
+        if (fileNums.isEmpty() || fileNums.get(0) != startNum) {
+            throw new LogException("The journal archive does not contain the journal file of the snapshot, number: " + startNum);
+        }
+
+        final Lsn target;
+        if (replay.getTargetLsn().isPresent()) {
+            target = replay.getTargetLsn().get();
+        } else if (replay.getTargetTimestamp().isPresent()) {
+            target = findCheckpoint(archiveDir, fileNums, replay.getStart(), replay.getTargetTimestamp().get());
+        } else {
+            target = null;
+        }
+
+        LOG.info("Replaying archived journal from " + replay.getStart() + " up to " + (target == null ? "its end" : target.toString()) + "...");
+        broker.getBrokerPool().reportStatus("Replaying archived journal...");
+
+        journalRecovery.setInRecovery.accept(true);
+        final Long2ObjectMap<Loggable> runningTxns = new Long2ObjectOpenHashMap<>();
+        // the last replayed entry of each replayed file, in order
+        final List<Lsn> lastLsns = new ArrayList<>();
+        try (final BlobStore blobStore = broker.getBrokerPool().getBlobStore()) {
+            try {
+                blobStore.openForRecovery();
+            } catch (final FileNotFoundException e) {
+                LOG.warn(e.getMessage(), e);
+            }
+
+            int expectedNum = startNum;
+            for (final int fileNum : fileNums) {
+                if (fileNum != expectedNum) {
+                    throw new LogException("The journal archive is missing the journal file number: " + expectedNum);
+                }
+                expectedNum++;
+
+                try (final JournalReader reader = new JournalReader(broker, getArchivedFile(archiveDir, fileNum), fileNum)) {
+                    if (fileNum == startNum) {
+                        // the snapshot already contains everything up to, and including, its checkpoint
+                        reader.position(replay.getStart());
+                        reader.nextEntry();
+                    } else {
+                        reader.positionFirst();
+                    }
+                    final RedoEnd end = redoFile(reader, target, runningTxns, lastLsns,
+                            fileNum == startNum ? replay.getStart() : Lsn.LSN_INVALID);
+                    if (end == RedoEnd.TARGET_REACHED) {
+                        break;
+                    } else if (end == RedoEnd.INCOMPLETE && fileNum != fileNums.get(fileNums.size() - 1)) {
+                        // the database crashed whilst writing the file, and the recovery at its next start
+                        // undid the transactions which were still running. Later files continue from there
+                        undoCrashed(archiveDir, fileNum, lastLsns.get(lastLsns.size() - 1), runningTxns);
+                    }
+                }
+            }
+
+            undo(archiveDir, startNum, lastLsns, runningTxns);
+        } catch (final IOException e) {
+            throw new LogException("Unable to replay the archived journal: " + e.getMessage(), e);
+        } finally {
+            broker.sync(Sync.MAJOR);
+            journalRecovery.setInRecovery.accept(false);
+        }
+
+        final int lastNum = startNum + lastLsns.size() - 1;
+        broker.repairPrimary();
+        broker.sync(Sync.MAJOR);
+        LOG.info("Replayed archived journal up to file number: " + lastNum);
+        return lastNum;
+    }
+
+    private Path getArchivedFile(final Path archiveDir, final int fileNum) {
+        return archiveDir.resolve(FileUtils.fileName(journalRecovery.getFile.apply(fileNum)));
+    }
+
+    /**
+     * Redoes the entries of a single journal file.
+     *
+     * @param reader the reader, positioned at the first entry to redo
+     * @param target the LSN of the last entry to redo, or null to redo all entries
+     * @param runningTxns the transactions which have not completed yet, updated with those of the file
+     * @param lastLsns receives the LSN of the last entry of the file which was redone, or else the initial LSN
+     * @param initialLsn the LSN of the checkpoint preceding the position of the reader, or {@link Lsn#LSN_INVALID}
+     *
+     * @return how the file ended
+     *
+     * @throws LogException if an entry cannot be redone
+     */
+    private RedoEnd redoFile(final JournalReader reader, @Nullable final Lsn target,
+            final Long2ObjectMap<Loggable> runningTxns, final List<Lsn> lastLsns, final Lsn initialLsn)
+            throws LogException {
+        Lsn lastLsn = initialLsn;
+        // a file which was closed by a checkpoint ends with one
+        RedoEnd end = Lsn.LSN_INVALID.equals(initialLsn) ? RedoEnd.INCOMPLETE : RedoEnd.CHECKPOINT;
+        Loggable next = null;
+        try {
+            while (true) {
+                try {
+                    next = reader.nextEntry();
+                } catch (final LogException e) {
+                    // the file was left incomplete by a crash, it ends with the last readable entry
+                    LOG.warn("Last readable journal log entry lsn: " + lastLsn + ": " + e.getMessage());
+                    end = RedoEnd.INCOMPLETE;
+                    break;
+                }
+                if (next == null) {
+                    break;
+                }
+
+                if (target != null && next.getLsn().compareTo(target) > 0) {
+                    end = RedoEnd.TARGET_REACHED;
+                    break;
+                }
+
+                if (next.getLogType() == LogEntryTypes.TXN_COMMIT || next.getLogType() == LogEntryTypes.TXN_ABORT) {
+                    runningTxns.remove(next.getTransactionId());
+                } else if (next.getLogType() != LogEntryTypes.CHECKPOINT) {
+                    // the transaction may have started before the snapshot, or in an earlier file
+                    if (!runningTxns.containsKey(next.getTransactionId())) {
+                        runningTxns.put(next.getTransactionId(), next);
+                    }
+                    next.redo();
+                }
+                lastLsn = next.getLsn();
+                end = next.getLogType() == LogEntryTypes.CHECKPOINT ? RedoEnd.CHECKPOINT : RedoEnd.INCOMPLETE;
+
+                if (target != null && lastLsn.equals(target)) {
+                    end = RedoEnd.TARGET_REACHED;
+                    break;
+                }
+            }
+        } catch (final LogException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (next != null) {
+                LOG.info("Log entry that caused the exception: " + next.dump());
+            }
+            throw new LogException("Replay of the archived journal aborted: " + e.getMessage(), e);
+        }
+
+        lastLsns.add(lastLsn);
+        return end;
+    }
+
+    /**
+     * Undoes the transactions which were still running when the database crashed whilst writing
+     * a journal file, as the recovery at the next start of the database did, see {@link #doRecovery}.
+     * That is, reading back from the last readable entry of the file to its last checkpoint.
+     * The crash ended all of the running transactions, so none of them is running afterwards.
+     *
+     * @param archiveDir the directory of the archived journal files
+     * @param fileNum the number of the file which the database crashed in
+     * @param lastLsn the last readable entry of the file, or {@link Lsn#LSN_INVALID}
+     * @param runningTxns the transactions which did not complete, cleared
+     *
+     * @throws LogException if an entry cannot be undone
+     */
+    private void undoCrashed(final Path archiveDir, final int fileNum, final Lsn lastLsn,
+            final Long2ObjectMap<Loggable> runningTxns) throws LogException {
+        if (!runningTxns.isEmpty() && !Lsn.LSN_INVALID.equals(lastLsn)) {
+            LOG.info("Journal file number " + fileNum + " was left incomplete by a crash, undoing " +
+                    runningTxns.size() + " transactions which were running...");
+
+            Loggable next = null;
+            try (final JournalReader reader = new JournalReader(broker, getArchivedFile(archiveDir, fileNum), fileNum)) {
+                reader.position(lastLsn);
+                reader.nextEntry();
+                while (!runningTxns.isEmpty() && (next = reader.previousEntry()) != null) {
+                    if (next.getLogType() == LogEntryTypes.CHECKPOINT) {
+                        break;
+                    }
+                    if (runningTxns.containsKey(next.getTransactionId())) {
+                        if (next.getLogType() == LogEntryTypes.TXN_START) {
+                            runningTxns.remove(next.getTransactionId());
+                        } else {
+                            next.undo();
+                        }
+                    }
+                }
+            } catch (final LogException e) {
+                throw e;
+            } catch (final Exception e) {
+                if (next != null) {
+                    LOG.info("Log entry that caused the exception: " + next.dump());
+                }
+                throw new LogException("Replay of the archived journal aborted: " + e.getMessage(), e);
+            }
+        }
+        runningTxns.clear();
+    }
+
+    /**
+     * Undoes the transactions which did not complete, reading back from the last redone entry
+     * through the replayed journal files.
+     *
+     * @param archiveDir the directory of the archived journal files
+     * @param startNum the number of the first replayed file
+     * @param lastLsns the last redone entry of each replayed file
+     * @param runningTxns the transactions which did not complete
+     *
+     * @throws LogException if an entry cannot be undone
+     */
+    private void undo(final Path archiveDir, final int startNum, final List<Lsn> lastLsns,
+            final Long2ObjectMap<Loggable> runningTxns) throws LogException {
+        if (runningTxns.isEmpty()) {
+            return;
+        }
+        LOG.info("Undoing " + runningTxns.size() + " transactions which did not complete before the target...");
+
+        Loggable next = null;
+        try {
+            for (int i = lastLsns.size() - 1; i >= 0 && !runningTxns.isEmpty(); i--) {
+                final Lsn lastLsn = lastLsns.get(i);
+                if (Lsn.LSN_INVALID.equals(lastLsn)) {
+                    continue;
+                }
+                final int fileNum = startNum + i;
+                try (final JournalReader reader = new JournalReader(broker, getArchivedFile(archiveDir, fileNum), fileNum)) {
+                    reader.position(lastLsn);
+                    reader.nextEntry();
+                    while (!runningTxns.isEmpty() && (next = reader.previousEntry()) != null) {
+                        if (runningTxns.containsKey(next.getTransactionId())) {
+                            if (next.getLogType() == LogEntryTypes.TXN_START) {
+                                runningTxns.remove(next.getTransactionId());
+                            } else if (next.getLogType() != LogEntryTypes.CHECKPOINT) {
+                                next.undo();
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (final LogException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (next != null) {
+                LOG.info("Log entry that caused the exception: " + next.dump());
+            }
+            throw new LogException("Replay of the archived journal aborted: " + e.getMessage(), e);
+        }
+
+        if (!runningTxns.isEmpty()) {
+            LOG.warn("The start of " + runningTxns.size() + " transactions which did not complete is not within " +
+                    "the journal archive, their earlier changes cannot be undone");
+        }
+    }
+
+    /**
+     * Finds the last checkpoint written at or before a point in time.
+     *
+     * @return the LSN of the checkpoint, or the start LSN if there is no such checkpoint after it
+     */
+    private Lsn findCheckpoint(final Path archiveDir, final List<Integer> fileNums, final Lsn start,
+            final long timestamp) throws LogException {
+        Lsn found = start;
+        for (final int fileNum : fileNums) {
+            final Path file = archiveDir.resolve(FileUtils.fileName(journalRecovery.getFile.apply(fileNum)));
+            try (final JournalReader reader = new JournalReader(broker, file, fileNum)) {
+                reader.positionFirst();
+                Loggable next;
+                while ((next = reader.nextEntry()) != null) {
+                    if (next.getLogType() == LogEntryTypes.CHECKPOINT && next.getLsn().compareTo(start) > 0) {
+                        if (((Checkpoint) next).getTimestamp() > timestamp) {
+                            return found;
+                        }
+                        found = next.getLsn();
+                    }
+                }
+            } catch (final LogException e) {
+                // an incomplete file, continue with the next one
+                LOG.warn("Unable to read journal file " + file.toAbsolutePath().toString() + " to the end: " + e.getMessage());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * How the redo of a journal file ended, see {@link #redoFile}.
+     */
+    private enum RedoEnd {
+        /**
+         * the target entry of the replay was reached
+         */
+        TARGET_REACHED,
+
+        /**
+         * the file ends with a checkpoint, i.e. it was switched or the database was shut down
+         */
+        CHECKPOINT,
+
+        /**
+         * the file does not end with a checkpoint, i.e. the database crashed, or,
+         * for the last file of the archive, the database is still writing it
+         */
+        INCOMPLETE
+    }
+
+    /**
+     * Reports the progress of a recovery pass both to the console,
+     * and to the status reporter of the database.
+     */
+    private class RecoveryProgress {
+        private final String name;
+        private final ProgressBar progressBar;
+        private final double max;
+        private int lastPercent = -1;
+
+        RecoveryProgress(final String name, final double max) {
+            this.name = name;
+            this.progressBar = new ProgressBar(name + " ", max);
+            this.max = max;
+        }
+
+        void set(final double value) {
+            progressBar.set(value);
+            final int percent = max <= 0 ? 100 : (int) ((value / max) * 100);
+            if (percent != lastPercent && percent % 5 == 0) {
+                broker.getBrokerPool().reportStatus(name + ": " + percent + "%");
+                lastPercent = percent;
+            }
+        }
+    }
+
+    /**
+     * Redoes journal entries concurrently.
+     *
+     * Entries are partitioned by the storage file which they modify,
+     * all of the entries for a file are redone in order by the same
+     * worker thread. Entries for which the file is not known are
+     * redone on the calling thread, once all preceding entries
+     * have been redone.
+     */
+    private static class ParallelRedo implements AutoCloseable {
+        /**
+         * Maximum number of entries which have been read from the journal
+         * but not yet redone, bounds the memory used when the
+         * workers fall behind the reader.
+         */
+        private static final int MAX_PENDING = 16 * 1024;
+
+        private final ExecutorService[] workers;
+        private final Semaphore pending = new Semaphore(MAX_PENDING);
+        private final AtomicReference<RedoException> failure = new AtomicReference<>();
+
+        ParallelRedo(final Database database, final int threads) {
+            final ThreadFactory threadFactory = new NamedThreadFactory(database, "recovery.redo");
+            this.workers = new ExecutorService[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+            }
+        }
+
+        void redo(final Loggable loggable) throws LogException, InterruptedException {
+            checkFailure();
+
+            final int fileId = loggable.getRedoFileId();
+            if (fileId == Loggable.NO_FILE_ID) {
+                // modifies no file, so need not wait for the preceding entries
+                loggable.redo();
+                return;
+            }
+            if (fileId == Loggable.UNKNOWN_FILE_ID) {
+                await();
+                loggable.redo();
+                return;
+            }
+
+            pending.acquire();
+            workers[fileId % workers.length].execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        loggable.redo();
+                    }
+                } catch (final Exception e) {
+                    failure.compareAndSet(null, new RedoException(loggable, e));
+                } finally {
+                    pending.release();
+                }
+            });
+        }
+
+        /**
+         * Waits until all of the entries passed to {@link #redo(Loggable)} have been redone.
+         */
+        void await() throws RedoException, InterruptedException {
+            pending.acquire(MAX_PENDING);
+            pending.release(MAX_PENDING);
+            checkFailure();
+        }
+
+        private void checkFailure() throws RedoException {
+            final RedoException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            for (final ExecutorService worker : workers) {
+                worker.shutdown();
+            }
+            for (final ExecutorService worker : workers) {
+                worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Thrown when an entry could not be redone by a worker thread.
+     */
+    private static class RedoException extends LogException {
+        private final Loggable loggable;
+
+        RedoException(final Loggable loggable, final Exception cause) {
+            super("Failed to redo: " + loggable.getLsn(), cause);
+            this.loggable = loggable;
+        }
+    }
 }
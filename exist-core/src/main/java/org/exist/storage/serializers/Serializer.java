@@ -944,6 +944,66 @@ public abstract class Serializer implements XMLReader {
 		}
 		receiver.endDocument();
 	}
+
+	/**
+	 * Start the serialization of a sequence whose items are not known in advance,
+	 * e.g. because they are still being produced by a query. The items are then passed
+	 * to {@link #sequenceItemToSAX(Item, boolean, boolean)} one by one, and the serialization
+	 * is completed by {@link #endSequence(boolean)}.
+	 *
+	 * If parameter wrap is set to true, the items are enclosed in the same wrapper element
+	 * as by {@link #toSAX(Sequence, int, int, boolean, boolean, long, long)}, but as the
+	 * length of the sequence is unknown it only has the start attribute.
+	 *
+	 * @param start The position in the sequence of the first item which will be serialized
+	 * @param wrap Indicates whether the output should be wrapped
+	 *
+	 * @throws SAXException If an error occurs during serialization
+	 */
+	public void startSequence(final int start, final boolean wrap) throws SAXException {
+		try {
+			setStylesheetFromProperties(null);
+		} catch (final TransformerConfigurationException e) {
+			throw new SAXException(e.getMessage(), e);
+		}
+		setXSLHandler(null, false);
+
+		receiver.startDocument();
+		if (wrap) {
+			final AttrList attrs = new AttrList();
+			attrs.addAttribute(ATTR_START_QNAME, Integer.toString(start));
+			receiver.startPrefixMapping("exist", Namespaces.EXIST_NS);
+			receiver.startElement(ELEM_RESULT_QNAME, attrs);
+		}
+	}
+
+	/**
+	 * Serialize the next item of a sequence started by {@link #startSequence(int, boolean)}.
+	 *
+	 * @param item The item to serialize
+	 * @param typed Indicates whether the output types should be wrapped
+	 * @param wrap Indicates whether the output is wrapped
+	 *
+	 * @throws SAXException If an error occurs during serialization
+	 */
+	public void sequenceItemToSAX(final Item item, final boolean typed, final boolean wrap) throws SAXException {
+		itemToSAX(item, typed, wrap);
+	}
+
+	/**
+	 * Complete the serialization of a sequence started by {@link #startSequence(int, boolean)}.
+	 *
+	 * @param wrap Indicates whether the output is wrapped
+	 *
+	 * @throws SAXException If an error occurs during serialization
+	 */
+	public void endSequence(final boolean wrap) throws SAXException {
+		if (wrap) {
+			receiver.endElement(ELEM_RESULT_QNAME);
+			receiver.endPrefixMapping("exist");
+		}
+		receiver.endDocument();
+	}
         
     /**
 	 * Serialize the items in the given sequence to SAX, starting with item start. If parameter
@@ -114,6 +114,33 @@ public class DataGuide {
         return temp.getMaxDepth();
     }
 
+    /**
+     * Get the number of elements with the given name, summed over
+     * all the paths on which the element occurs.
+     *
+     * @param qname the name of the element
+     *
+     * @return the number of elements
+     */
+    public long getNodeCount(QName qname) {
+        return root.getNodeCount(qname, null, false, false);
+    }
+
+    /**
+     * Get the number of elements with the given name which occur
+     * below an element named <code>ancestor</code>.
+     *
+     * @param ancestor the name of the ancestor (or parent) element
+     * @param qname the name of the element
+     * @param child true to only count elements which are a child of the ancestor,
+     *              false to count elements which are a descendant of the ancestor.
+     *
+     * @return the number of elements
+     */
+    public long getNodeCount(QName ancestor, QName qname, boolean child) {
+        return root.getNodeCount(qname, ancestor, child, false);
+    }
+
     public String toString() {
         final List<StringBuilder> paths = new ArrayList<>();
         root.dump(new StringBuilder(), paths);
@@ -58,7 +58,7 @@ public class IndexStatistics extends AbstractIndex implements RawBackupSupport {
     protected final static Logger LOG = LogManager.getLogger(IndexStatistics.class);
 
     private Path dataFile;
-    private DataGuide dataGuide = new DataGuide();
+    private volatile DataGuide dataGuide = new DataGuide();
 
     public String getIndexId() {
         return ID;
@@ -68,6 +68,31 @@ public class IndexStatistics extends AbstractIndex implements RawBackupSupport {
         return dataGuide.getMaxParentDepth(qname);
     }
 
+    /**
+     * Get the number of elements with the given name in the database.
+     *
+     * @param qname the element name
+     *
+     * @return the number of elements
+     */
+    public long getNodeCount(QName qname) {
+        return dataGuide.getNodeCount(qname);
+    }
+
+    /**
+     * Get the number of elements with the given name which occur below
+     * an element named <code>ancestor</code> in the database.
+     *
+     * @param ancestor the name of the ancestor element
+     * @param qname the element name
+     * @param child true to only count children of the ancestor, false to count all descendants
+     *
+     * @return the number of elements
+     */
+    public long getNodeCount(QName ancestor, QName qname, boolean child) {
+        return dataGuide.getNodeCount(ancestor, qname, child);
+    }
+
     protected void mergeStats(DataGuide other) {
         dataGuide = other.mergeInto(dataGuide);
     }
@@ -135,6 +135,38 @@ class NodeStats {
         }
     }
 
+    /**
+     * Sum the node counts of the given element below this node.
+     *
+     * The data guide may be concurrently merged with the statistics of a new document,
+     * so children are read defensively; the count is an estimate in any case.
+     *
+     * @param name the name of the elements to count
+     * @param ancestor if not null, only count elements which occur below an element with this name
+     * @param child if true, the ancestor must be the parent of the element
+     * @param belowAncestor true if this node is, or is below, an ancestor with the name <code>ancestor</code>
+     *
+     * @return the sum of the node counts
+     */
+    protected long getNodeCount(QName name, QName ancestor, boolean child, boolean belowAncestor) {
+        long count = 0;
+        final boolean isAncestor = ancestor != null && qname != null && qname.equals(ancestor);
+        final NodeStats[] localChildren = children;
+        if (localChildren != null) {
+            for (final NodeStats next : localChildren) {
+                if (next == null) {
+                    continue;
+                }
+                final boolean matches = ancestor == null || (child ? isAncestor : belowAncestor || isAncestor);
+                if (matches && name.equals(next.qname)) {
+                    count += next.nodeCount;
+                }
+                count += next.getNodeCount(name, ancestor, child, belowAncestor || isAncestor);
+            }
+        }
+        return count;
+    }
+
     protected void write(ByteBuffer buffer, SymbolTable symbols) {
         buffer.putShort(symbols.getNSSymbol(qname.getNamespaceURI()));
         buffer.putShort(symbols.getSymbol(qname.getLocalPart()));
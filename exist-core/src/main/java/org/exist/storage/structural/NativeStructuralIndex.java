@@ -52,12 +52,21 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
 
     public static final byte STRUCTURAL_INDEX_ID = 1;
 
+    /**
+     * The fraction of a page filled by keys which are added in ascending
+     * order before a new page is started, see {@link org.exist.storage.btree.BTree.BulkInsert}.
+     */
+    public static final double DEFAULT_FILL_FACTOR = 0.9;
+    public static final String FILL_FACTOR_ATTRIBUTE = "fill-factor";
+
     /** The datastore for this node index */
     protected BTreeStore btree;
 
     protected LockManager lockManager;
     protected SymbolTable symbols;
 
+    private double fillFactor = DEFAULT_FILL_FACTOR;
+
     public NativeStructuralIndex() {
         //Nothing to do
     }
@@ -67,6 +76,20 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
         super.configure(pool, dataDir, config);
         lockManager = pool.getLockManager();
         symbols = pool.getSymbols();
+        if (config != null && config.hasAttribute(FILL_FACTOR_ATTRIBUTE)) {
+            try {
+                fillFactor = Double.parseDouble(config.getAttribute(FILL_FACTOR_ATTRIBUTE));
+            } catch (final NumberFormatException e) {
+                throw new DatabaseConfigurationException("Invalid " + FILL_FACTOR_ATTRIBUTE + ": " + config.getAttribute(FILL_FACTOR_ATTRIBUTE), e);
+            }
+            if (fillFactor <= 0 || fillFactor > 1.0) {
+                throw new DatabaseConfigurationException(FILL_FACTOR_ATTRIBUTE + " should be <= 1 > 0");
+            }
+        }
+    }
+
+    public double getFillFactor() {
+        return fillFactor;
     }
 
     @Override
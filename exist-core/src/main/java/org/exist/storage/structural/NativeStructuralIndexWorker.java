@@ -31,6 +31,8 @@ import org.exist.dom.persistent.DocumentImpl;
 import org.exist.dom.persistent.IStoredNode;
 import org.exist.dom.persistent.SymbolTable;
 import org.exist.dom.persistent.NewArrayNodeSet;
+import org.exist.dom.persistent.AbstractArrayNodeSet;
+import org.exist.dom.persistent.CompactNodeSet;
 import org.exist.dom.persistent.ExtNodeSet;
 import org.exist.dom.persistent.NodeSet;
 import org.exist.collections.Collection;
@@ -68,6 +70,9 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     private final static Logger LOG = LogManager.getLogger(NativeStructuralIndexWorker.class);
 
+    // offset of the node id in a key: type, name symbol, namespace symbol, document id
+    private final static int NODE_ID_OFFSET = 9;
+
     private NativeStructuralIndex index;
     private ReindexMode mode = ReindexMode.STORE;
     private DocumentImpl document;
@@ -76,6 +81,17 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     //nameType out of QName
     private Map<QName, List<NodeProxy>> pending = new TreeMap<>(new TypedQNameComparator());
 
+    /**
+     * The maximum number of keys collected by a batch before they are written, see {@link #startBatch()}.
+     */
+    private final static int MAX_BATCH_SIZE = 1024 * 1024;
+
+    /**
+     * When not null, the keys of the documents which are stored are collected
+     * here instead of being written document by document, see {@link #startBatch()}.
+     */
+    private List<BatchEntry> batch = null;
+
     public NativeStructuralIndexWorker(NativeStructuralIndex index) {
         this.index = index;
     }
@@ -107,7 +123,9 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public NodeSet findElementsByTagName(byte type, DocumentSet docs, QName qname, NodeSelector selector, Expression parent) {
-        final NewArrayNodeSet result = new NewArrayNodeSet();
+        // without a selector, the whole index range ends up in the result, so keep it compact
+        final AbstractArrayNodeSet result = selector == null ?
+                new CompactNodeSet(index.getBrokerPool().getNodeFactory()) : new NewArrayNodeSet();
         final FindElementsCallback callback = new FindElementsCallback(type, qname, result, docs, selector, parent);
 
         // for each document id range, scan the index to find matches
@@ -191,13 +209,39 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public NodeSet findDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet, int contextId, Expression parent) {
+        return findDescendantsByTagName(type, qname, axis, docs, contextSet, contextId, parent, -1);
+    }
+
+    /**
+     * Find the first descendants of the specified node set matching the given QName.
+     *
+     * The context nodes are looked up in document order. On the descendant axes, the matches of a
+     * context node nested in an earlier one are a subset of the matches of the earlier one, and the
+     * matches of any later context node follow them in document order. Only the matches of the
+     * outermost context nodes are thus counted, and the lookup stops once limit nodes were found.
+     */
+    @Override
+    public NodeSet findDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
+                                            int contextId, Expression parent, int limit) {
         final NewArrayNodeSet result = new NewArrayNodeSet();
         final FindDescendantsCallback callback = new FindDescendantsCallback(type, axis, qname, contextId, result, parent);
+        if (axis != Constants.DESCENDANT_AXIS && axis != Constants.DESCENDANT_SELF_AXIS) {
+            limit = -1;
+        }
+        NodeProxy outermost = null;
         try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
             for (final NodeProxy ancestor : contextSet) {
                 final DocumentImpl doc = ancestor.getOwnerDocument();
                 final NodeId ancestorId = ancestor.getNodeId();
                 callback.setAncestor(doc, ancestor);
+                if (limit > -1) {
+                    if (outermost != null && encloses(outermost, doc.getDocId(), ancestorId)) {
+                        callback.setLimit(-1);
+                    } else {
+                        outermost = ancestor;
+                        callback.setLimit(limit);
+                    }
+                }
                 final byte[] fromKey;
                 final byte[] toKey;
                 if (ancestorId == NodeId.DOCUMENT_NODE) {
@@ -213,6 +257,9 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 } catch (final Exception e) {
                     NativeStructuralIndex.LOG.error("Error while searching structural index: " + e.getMessage(), e);
                 }
+                if (callback.isLimitReached()) {
+                    break;
+                }
             }
         } catch (final LockException e) {
             NativeStructuralIndex.LOG.warn("Lock problem while searching structural index: " + e.getMessage(), e);
@@ -221,6 +268,148 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         return result;
     }
 
+    /**
+     * Find all descendants (or children) of the specified node set matching the given QName, by
+     * merge joining the context set with the index.
+     *
+     * Index keys and the context set are both ordered by document and node id, so a single pass
+     * over both is sufficient. While scanning, a stack holds the context nodes enclosing the current
+     * key, the top of the stack being the nearest ancestor. Contrary to
+     * {@link #findElementsByTagName(byte, DocumentSet, QName, NodeSelector)} with a {@link NodeSelector},
+     * no lookup into the context set is needed per key, and only the parts of the index between the
+     * first and last context node of each run of documents are read. Contrary to
+     * {@link #findDescendantsByTagName(byte, QName, int, DocumentSet, NodeSet, int)}, nested context
+     * nodes do not cause the same keys to be read again.
+     *
+     * The context set is expected to iterate in document order, otherwise this falls back
+     * to {@link #findElementsByTagName(byte, DocumentSet, QName, NodeSelector, Expression)}.
+     *
+     * @param type the type of node to find
+     * @param qname the node name
+     * @param axis the node axis, one of {@link Constants#CHILD_AXIS}, {@link Constants#DESCENDANT_AXIS}
+     *     or {@link Constants#DESCENDANT_SELF_AXIS}
+     * @param docs the document set, only context nodes in these documents are joined
+     * @param contextSet the context set
+     * @param contextId the id of the context
+     * @param parent the expression to check for termination, may be null
+     *
+     * @return the matching descendants
+     */
+    @Override
+    public NodeSet joinDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
+                                            int contextId, Expression parent) {
+        return joinDescendantsByTagName(type, qname, axis, docs, contextSet, contextId, parent, -1);
+    }
+
+    /**
+     * Merge join the context set with the index as
+     * {@link #joinDescendantsByTagName(byte, QName, int, DocumentSet, NodeSet, int, Expression)} does,
+     * but stop the scan once limit matches were found. As the matches are found in document order
+     * and without duplicates, these are the first limit nodes of the full result.
+     */
+    @Override
+    public NodeSet joinDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
+                                            int contextId, Expression parent, int limit) {
+        final List<IndexQuery> queries = getJoinQueries(type, qname, docs, contextSet);
+        if (queries == null) {
+            final NodeSelector selector;
+            switch (axis) {
+                case Constants.CHILD_AXIS:
+                    selector = new ChildSelector(contextSet, contextId);
+                    break;
+                case Constants.DESCENDANT_SELF_AXIS:
+                    selector = new DescendantOrSelfSelector(contextSet, contextId);
+                    break;
+                default:
+                    selector = new DescendantSelector(contextSet, contextId);
+                    break;
+            }
+            return findElementsByTagName(type, docs, qname, selector, parent);
+        }
+
+        final NewArrayNodeSet result = new NewArrayNodeSet();
+        final MergeJoinCallback callback = new MergeJoinCallback(type, axis, qname, contextId, contextSet.iterator(), result, parent, limit);
+        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+            for (final IndexQuery query : queries) {
+                index.btree.query(query, callback);
+                if (callback.isLimitReached()) {
+                    break;
+                }
+            }
+        } catch (final LockException e) {
+            NativeStructuralIndex.LOG.warn("Lock problem while searching structural index: " + e.getMessage(), e);
+        } catch (final TerminatedException e) {
+            NativeStructuralIndex.LOG.warn("Query was terminated while searching structural index: " + e.getMessage(), e);
+        } catch (final Exception e) {
+            NativeStructuralIndex.LOG.error("Error while searching structural index: " + e.getMessage(), e);
+        }
+        // matches are found in document order
+        result.updateNoSort();
+        return result;
+    }
+
+    /**
+     * Compute the index ranges to scan for a merge join with the context set. Each range covers
+     * the subtrees of the context nodes in a run of consecutive document ids. Context nodes
+     * in documents which are not in the document set are skipped.
+     *
+     * @return the ranges to scan, or null if the context set is not in document order
+     */
+    private List<IndexQuery> getJoinQueries(byte type, QName qname, DocumentSet docs, NodeSet contextSet) {
+        final List<IndexQuery> queries = new ArrayList<>();
+        NodeProxy previous = null;
+        NodeProxy outermost = null;
+        int lastDocId = -1;
+        byte[] fromKey = null;
+        byte[] toKey = null;
+        for (final NodeProxy node : contextSet) {
+            if (previous != null && previous.compareTo(node) > 0) {
+                return null;
+            }
+            previous = node;
+
+            final int docId = node.getOwnerDocument().getDocId();
+            if (!docs.contains(docId)) {
+                continue;
+            }
+            if (outermost != null && encloses(outermost, docId, node.getNodeId())) {
+                // already covered by the range of its ancestor
+                continue;
+            }
+            outermost = node;
+
+            if (fromKey != null && docId != lastDocId && docId != lastDocId + 1) {
+                queries.add(new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey)));
+                fromKey = null;
+            }
+            final NodeId nodeId = node.getNodeId();
+            if (nodeId == NodeId.DOCUMENT_NODE) {
+                if (fromKey == null) {
+                    fromKey = computeKey(type, qname, docId);
+                }
+                toKey = computeKey(type, qname, docId + 1);
+            } else {
+                if (fromKey == null) {
+                    fromKey = computeKey(type, qname, docId, nodeId);
+                }
+                toKey = computeKey(type, qname, docId, nodeId.nextSibling());
+            }
+            lastDocId = docId;
+        }
+        if (fromKey != null) {
+            queries.add(new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey)));
+        }
+        return queries;
+    }
+
+    /**
+     * Check if the context node is the node identified by docId and nodeId, or one of its ancestors.
+     */
+    private static boolean encloses(NodeProxy contextNode, int docId, NodeId nodeId) {
+        return contextNode.getOwnerDocument().getDocId() == docId &&
+            (contextNode.getNodeId() == NodeId.DOCUMENT_NODE || nodeId.isDescendantOrSelfOf(contextNode.getNodeId()));
+    }
+
     public NodeSet findAncestorsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
                                           int contextId) {
         final NewArrayNodeSet result = new NewArrayNodeSet();
@@ -302,11 +491,11 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         byte type;
         QName qname;
         DocumentSet docs;
-        NewArrayNodeSet result;
+        AbstractArrayNodeSet result;
         NodeSelector selector;
         Expression parent;
 
-        FindElementsCallback(byte type, QName qname, NewArrayNodeSet result, DocumentSet docs, NodeSelector selector, Expression parent) {
+        FindElementsCallback(byte type, QName qname, AbstractArrayNodeSet result, DocumentSet docs, NodeSelector selector, Expression parent) {
             this.type = type;
             this.result = result;
             this.docs = docs;
@@ -324,17 +513,14 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 parent.getContext().proceed(parent);
             }
             final byte[] key = value.getData();
-            final NodeId nodeId = readNodeId(key, pointer);
             final DocumentImpl doc = docs.getDoc(readDocId(key));
             if (doc != null) {
                 if (selector == null) {
-                    final NodeProxy storedNode = new NodeProxy(doc, nodeId,
-                        type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer);
-                    if (qname != null) {
-                        storedNode.setQName(qname);
-                    }
-                    result.add(storedNode);
+                    // no need to create a NodeId or NodeProxy, just copy the node id from the key
+                    ((CompactNodeSet) result).add(doc, key, NODE_ID_OFFSET, readNodeIdUnits(key, pointer),
+                        type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer, qname);
                 } else {
+                    final NodeId nodeId = readNodeId(key, pointer);
                     final NodeProxy storedNode = selector.match(doc, nodeId);
                     if (storedNode != null) {
                         storedNode.setNodeType(type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE);
@@ -360,6 +546,8 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         NewArrayNodeSet result;
         boolean selfAsContext = false;
         Expression parent;
+        int limit = -1;
+        int count = 0;
 
         FindDescendantsCallback(byte type, int axis, QName qname, int contextId, NewArrayNodeSet result, Expression parent) {
         	this(type, axis, qname, contextId, false, result, parent);
@@ -384,6 +572,18 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             this.ancestor = ancestor;
         }
 
+        /**
+         * Stop the lookup once the total number of counted matches reaches limit.
+         * Matches are not counted while the limit is -1.
+         */
+        void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isLimitReached() {
+            return limit > -1 && count >= limit;
+        }
+
         public boolean indexInfo(Value value, long pointer) throws TerminatedException {
             if (parent != null) {
                 parent.getContext().proceed(parent);
@@ -412,11 +612,117 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             		storedNode.copyContext(ancestor);
                 }
                 storedNode.addMatches(ancestor);
+                if (limit > -1 && ++count >= limit) {
+                    return false;
+                }
             }
             return true;
         }
     }
     
+    /**
+     * Callback for {@link NativeStructuralIndexWorker#joinDescendantsByTagName(byte, QName, int, DocumentSet, NodeSet, int, Expression)}.
+     * Receives the index keys in document order and advances through the context set alongside.
+     */
+    private class MergeJoinCallback implements BTreeCallback {
+        final byte type;
+        final int axis;
+        final QName qname;
+        final int contextId;
+        final Iterator<NodeProxy> contextNodes;
+        final NewArrayNodeSet result;
+        final Expression parent;
+        final int limit;
+        int count = 0;
+
+        /**
+         * The context nodes enclosing the last key, outermost first.
+         */
+        final List<NodeProxy> ancestors = new ArrayList<>();
+
+        /**
+         * The next context node which has not been reached by the scan yet.
+         */
+        NodeProxy next;
+
+        MergeJoinCallback(byte type, int axis, QName qname, int contextId, Iterator<NodeProxy> contextNodes,
+                NewArrayNodeSet result, Expression parent, int limit) {
+            this.type = type;
+            this.axis = axis;
+            this.contextId = contextId;
+            this.contextNodes = contextNodes;
+            this.result = result;
+            this.parent = parent;
+            this.limit = limit;
+            if (qname != null && qname.getNameType() != type) {
+                this.qname = new QName(qname.getLocalPart(), qname.getNamespaceURI(), qname.getPrefix(), type);
+            } else {
+                this.qname = qname;
+            }
+            this.next = contextNodes.hasNext() ? contextNodes.next() : null;
+        }
+
+        @Override
+        public boolean indexInfo(Value value, long pointer) throws TerminatedException {
+            if (parent != null) {
+                parent.getContext().proceed(parent);
+            }
+            final byte[] key = value.getData();
+            final int docId = readDocId(key);
+            final NodeId nodeId = readNodeId(key, pointer);
+
+            // enter the context nodes up to the key
+            while (next != null && precedesOrSelf(next, docId, nodeId)) {
+                pop(next.getOwnerDocument().getDocId(), next.getNodeId());
+                ancestors.add(next);
+                next = contextNodes.hasNext() ? contextNodes.next() : null;
+            }
+            // leave the context nodes which do not enclose the key
+            pop(docId, nodeId);
+
+            int nearest = ancestors.size() - 1;
+            if (nearest > -1 && axis != Constants.DESCENDANT_SELF_AXIS && nodeId.equals(ancestors.get(nearest).getNodeId())) {
+                nearest--;
+            }
+            if (nearest < 0) {
+                return true;
+            }
+            final NodeProxy contextNode = ancestors.get(nearest);
+            if (axis == Constants.CHILD_AXIS && nodeId.computeRelation(contextNode.getNodeId()) != NodeId.IS_CHILD) {
+                return true;
+            }
+
+            final NodeProxy storedNode = new NodeProxy(contextNode.getOwnerDocument(), nodeId,
+                type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer);
+            if (qname != null) {
+                storedNode.setQName(qname);
+            }
+            if (Expression.NO_CONTEXT_ID != contextId) {
+                storedNode.deepCopyContext(contextNode, contextId);
+            } else {
+                storedNode.copyContext(contextNode);
+            }
+            result.add(storedNode);
+            return limit < 0 || ++count < limit;
+        }
+
+        boolean isLimitReached() {
+            return limit > -1 && count >= limit;
+        }
+
+        private void pop(int docId, NodeId nodeId) {
+            for (int i = ancestors.size() - 1; i > -1 && !encloses(ancestors.get(i), docId, nodeId); i--) {
+                ancestors.remove(i);
+            }
+        }
+
+        private boolean precedesOrSelf(NodeProxy contextNode, int docId, NodeId nodeId) {
+            final int contextDocId = contextNode.getOwnerDocument().getDocId();
+            return contextDocId < docId || (contextDocId == docId &&
+                (contextNode.getNodeId() == NodeId.DOCUMENT_NODE || contextNode.getNodeId().compareTo(nodeId) <= 0));
+        }
+    }
+
     public String getIndexId() {
         return NativeStructuralIndex.ID;
     }
@@ -658,6 +964,98 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         buf.add(proxy);
     }
 
+    /**
+     * Start collecting the keys of the documents which are stored, e.g. when the
+     * documents of a bulk load are indexed, see {@link org.exist.storage.BulkLoader}.
+     *
+     * Rather than the keys of each document being added to the btree when the
+     * document is flushed, the keys of all documents are sorted and added as one
+     * ascending run through a {@link BTree.BulkInsert} by {@link #endBatch()}, or
+     * whenever {@link #MAX_BATCH_SIZE} keys have been collected. As the keys of the
+     * same QName in consecutive documents are adjacent, the leaf pages are then
+     * filled sequentially, instead of a run being started for every QName of every
+     * document.
+     *
+     * Like the runs of a single document, the batch is written without being journaled.
+     */
+    public void startBatch() {
+        if (batch == null) {
+            batch = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Write the keys collected since {@link #startBatch()}, and
+     * return to writing the keys of each document when it is flushed.
+     */
+    public void endBatch() {
+        if (batch == null) {
+            return;
+        }
+        try {
+            writeBatch();
+        } finally {
+            batch = null;
+        }
+    }
+
+    private void writeBatch() {
+        if (batch.isEmpty() || index.btree == null) {
+            return;
+        }
+        try {
+            batch.sort((e1, e2) -> e1.key.compareTo(e2.key));
+            try (final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName());
+                    final BTree.BulkInsert bulkInsert = index.btree.bulkInsert(null, index.getFillFactor())) {
+                Value last = null;
+                for (final BatchEntry entry : batch) {
+                    // the document keys of a QName may have been collected more than once
+                    if (last == null || entry.key.compareTo(last) != 0) {
+                        bulkInsert.add(entry.key, entry.value);
+                        last = entry.key;
+                    }
+                }
+            } catch (final LockException e) {
+                NativeStructuralIndex.LOG.warn("Failed to lock structural index: " + e.getMessage(), e);
+            } catch (final Exception e) {
+                NativeStructuralIndex.LOG.warn("Exception caught while writing to structural index: " + e.getMessage(), e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Add the pending entries of the document to the batch.
+     */
+    private void batchPending() {
+        try {
+            for (final Map.Entry<QName,List<NodeProxy>> entry: pending.entrySet()) {
+                final QName qname = entry.getKey();
+                for (final NodeProxy node : entry.getValue()) {
+                    batch.add(new BatchEntry(new Value(computeKey(qname.getNameType(), qname, document.getDocId(),
+                            node.getNodeId())), computeValue(node)));
+                }
+                batch.add(new BatchEntry(new Value(computeDocKey(qname.getNameType(), document.getDocId(), qname)), 0));
+            }
+        } finally {
+            pending.clear();
+        }
+        if (batch.size() >= MAX_BATCH_SIZE) {
+            writeBatch();
+        }
+    }
+
+    private static final class BatchEntry {
+        private final Value key;
+        private final long value;
+
+        private BatchEntry(final Value key, final long value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
     /**
      * Process the map of pending entries and store them into the btree.
      */
@@ -665,15 +1063,36 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         if (pending.size() == 0 || index.btree == null)
             {return;}
 
+        if (batch != null) {
+            batchPending();
+            return;
+        }
+
         try {
             for (final Map.Entry<QName,List<NodeProxy>> entry: pending.entrySet()) {
                 final QName qname = entry.getKey();
                 try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
                     final List<NodeProxy> nodes = entry.getValue();
-                    for (final NodeProxy proxy : nodes) {
-                        final NodeId nodeId = proxy.getNodeId();
-                        final byte[] key = computeKey(qname.getNameType(), qname, document.getDocId(), nodeId);
-                        index.btree.addValue(new Value(key), computeValue(proxy));
+                    final Value[] keys = new Value[nodes.size()];
+                    boolean ascending = true;
+                    for (int i = 0; i < keys.length; i++) {
+                        final NodeId nodeId = nodes.get(i).getNodeId();
+                        keys[i] = new Value(computeKey(qname.getNameType(), qname, document.getDocId(), nodeId));
+                        if (i > 0 && ascending && keys[i].compareTo(keys[i - 1]) <= 0) {
+                            ascending = false;
+                        }
+                    }
+                    if (ascending) {
+                        // nodes are usually added in document order, which is also the order of their keys
+                        try (final BTree.BulkInsert bulkInsert = index.btree.bulkInsert(null, index.getFillFactor())) {
+                            for (int i = 0; i < keys.length; i++) {
+                                bulkInsert.add(keys[i], computeValue(nodes.get(i)));
+                            }
+                        }
+                    } else {
+                        for (int i = 0; i < keys.length; i++) {
+                            index.btree.addValue(keys[i], computeValue(nodes.get(i)));
+                        }
                     }
                     final Value docKey = new Value(computeDocKey(qname.getNameType(), document.getDocId(), qname));
                     if (index.btree.findValue(docKey) == -1) {
@@ -763,13 +1182,16 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     private NodeId readNodeId(byte[] key, long value) {
+        return index.getBrokerPool().getNodeFactory().createFromData(readNodeIdUnits(key, value), key, NODE_ID_OFFSET);
+    }
+
+    private int readNodeIdUnits(byte[] key, long value) {
         // extra number of bits of the node id is encoded in the long address
         short bits = (short)((value >>> 24) & 0xFFL);
         if (bits == 0)
             {bits = 8;}
         // compute total number of bits for node id
-        final int units = (key.length - 10) * 8 + bits;
-        return index.getBrokerPool().getNodeFactory().createFromData(units, key, 9);
+        return (key.length - 10) * 8 + bits;
     }
 
     private QName readQName(byte[] key) {
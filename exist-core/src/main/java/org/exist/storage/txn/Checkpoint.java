@@ -71,10 +71,22 @@ public class Checkpoint extends AbstractLoggable {
         return Lsn.RAW_LENGTH + TIMESTAMP_LEN;
     }
 
+    /**
+     * @return the time at which the checkpoint was written, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     public String getDateString() {
     	return df.format(new Date(timestamp));
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NO_FILE_ID;
+    }
+
     @Override
 	public String dump() {
 		return super.dump() + " - checkpoint at " + df.format(new Date(timestamp));
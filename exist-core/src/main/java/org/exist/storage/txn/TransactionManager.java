@@ -552,6 +552,11 @@ public class TransactionManager implements BrokerPoolService {
     }
 
     public void triggerSystemTask(final SystemTask task) {
+        if (!task.requiresExclusiveAccess()) {
+            systemTaskManager.runConcurrentTask(task);
+            return;
+        }
+
         systemTaskManager.addSystemTask(task);
         processSystemTasks();
     }
@@ -49,6 +49,11 @@ public class TxnAbort extends AbstractLoggable {
         return 0;
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NO_FILE_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - transaction " + transactionId + " aborted.";
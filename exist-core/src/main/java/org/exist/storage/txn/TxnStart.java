@@ -52,6 +52,11 @@ public class TxnStart extends AbstractLoggable {
         return 0;
     }
 
+    @Override
+    public int getRedoFileId() {
+        return NO_FILE_ID;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " - transaction " + transactionId + " started.";
@@ -54,6 +54,8 @@ import org.exist.storage.IndexSpec;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.NativeValueIndex;
 import org.exist.storage.XQueryPool;
+import org.exist.storage.btree.PageIOMode;
+import org.exist.storage.cache.CachePolicy;
 import org.exist.storage.journal.Journal;
 import org.exist.storage.serializers.CustomMatchListenerFactory;
 import org.exist.storage.serializers.Serializer;
@@ -300,10 +302,12 @@ public class Configuration implements ErrorHandler
         final boolean upgradeCheck = parseBoolean(getConfigAttributeValue(lockManager, "upgrade-check"), false);
         final boolean warnWaitOnReadForWrite = parseBoolean(getConfigAttributeValue(lockManager, "warn-wait-on-read-for-write"), false);
         final boolean pathsMultiWriter = parseBoolean(getConfigAttributeValue(lockManager, "paths-multi-writer"), false);
+        final boolean rootReadBias = parseBoolean(getConfigAttributeValue(lockManager, "root-read-bias"), false);
 
         config.put(LockManager.CONFIGURATION_UPGRADE_CHECK, upgradeCheck);
         config.put(LockManager.CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE, warnWaitOnReadForWrite);
         config.put(LockManager.CONFIGURATION_PATHS_MULTI_WRITER, pathsMultiWriter);
+        config.put(LockManager.CONFIGURATION_ROOT_READ_BIAS, rootReadBias);
 
         final NodeList nlLockTable = lockManager.getElementsByTagName("lock-table");
         if(nlLockTable.getLength() > 0) {
@@ -904,6 +908,9 @@ public class Configuration implements ErrorHandler
             LOG.warn("Cannot convert " + DefaultCacheManager.SHRINK_THRESHOLD_PROPERTY + " value to integer: " + cacheShrinkThreshold, nfe);
         }
 
+        configureCachePolicy( con, DefaultCacheManager.BTREE_CACHE_POLICY_ATTRIBUTE, DefaultCacheManager.PROPERTY_BTREE_CACHE_POLICY );
+        configureCachePolicy( con, DefaultCacheManager.DATA_CACHE_POLICY_ATTRIBUTE, DefaultCacheManager.PROPERTY_DATA_CACHE_POLICY );
+
         String collectionCache = getConfigAttributeValue(con, CollectionCache.CACHE_SIZE_ATTRIBUTE);
         if(collectionCache != null) {
             collectionCache = collectionCache.toLowerCase();
@@ -950,6 +957,32 @@ public class Configuration implements ErrorHandler
             }
         }
 
+        final String pageIO = getConfigAttributeValue( con, NativeBroker.PAGE_IO_ATTRIBUTE );
+
+        if( pageIO != null ) {
+            final PageIOMode pageIOMode = PageIOMode.fromConfigValue( pageIO );
+            if( pageIOMode != null ) {
+                config.put( BrokerPool.PROPERTY_PAGE_IO_MODE, pageIOMode );
+                LOG.debug( BrokerPool.PROPERTY_PAGE_IO_MODE + ": " + pageIOMode.getConfigValue() );
+            } else {
+                LOG.warn("Unknown value for " + BrokerPool.PROPERTY_PAGE_IO_MODE + ": " + pageIO + ", using default");
+            }
+        }
+
+        final String compressOverflow = getConfigAttributeValue( con, NativeBroker.COMPRESS_OVERFLOW_ATTRIBUTE );
+
+        if( compressOverflow != null ) {
+            config.put( BrokerPool.PROPERTY_COMPRESS_OVERFLOW, parseBoolean( compressOverflow, BrokerPool.DEFAULT_COMPRESS_OVERFLOW ) );
+            LOG.debug( BrokerPool.PROPERTY_COMPRESS_OVERFLOW + ": " + config.get( BrokerPool.PROPERTY_COMPRESS_OVERFLOW ) );
+        }
+
+        final String compressPages = getConfigAttributeValue( con, NativeBroker.COMPRESS_PAGES_ATTRIBUTE );
+
+        if( compressPages != null ) {
+            config.put( BrokerPool.PROPERTY_COMPRESS_PAGES, parseBoolean( compressPages, BrokerPool.DEFAULT_COMPRESS_PAGES ) );
+            LOG.debug( BrokerPool.PROPERTY_COMPRESS_PAGES + ": " + config.get( BrokerPool.PROPERTY_COMPRESS_PAGES ) );
+        }
+
         //Not clear : rather looks like a buffers count
         final String collCacheSize = getConfigAttributeValue( con, BrokerPool.COLLECTION_CACHE_SIZE_ATTRIBUTE );
 
@@ -1057,6 +1090,22 @@ public class Configuration implements ErrorHandler
     }
 
 
+    private void configureCachePolicy( final Element con, final String attributeName, final String propertyName )
+    {
+        final String policyName = getConfigAttributeValue( con, attributeName );
+
+        if( policyName != null ) {
+            final CachePolicy policy = CachePolicy.fromConfigValue( policyName );
+            if( policy != null ) {
+                config.put( propertyName, policy );
+                LOG.debug( propertyName + ": " + policy.getConfigValue() );
+            } else {
+                LOG.warn( "Unknown value for " + propertyName + ": " + policyName + ", using default" );
+            }
+        }
+    }
+
+
     private void configureRecovery( final Optional<Path> dbHome, Element recovery ) throws DatabaseConfigurationException
     {
         String option = getConfigAttributeValue( recovery, BrokerPool.RECOVERY_ENABLED_ATTRIBUTE );
@@ -1071,6 +1120,19 @@ public class Configuration implements ErrorHandler
         setProperty( BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, parseBoolean( option, false ) );
         LOG.debug( BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT + ": " + config.get( BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT ) );
 
+        option = getConfigAttributeValue( recovery, Journal.RECOVERY_GROUP_COMMIT_DELAY_ATTRIBUTE );
+
+        if( option != null ) {
+
+            try {
+                setProperty( Journal.PROPERTY_RECOVERY_GROUP_COMMIT_DELAY, Integer.valueOf( option ) );
+                LOG.debug( Journal.PROPERTY_RECOVERY_GROUP_COMMIT_DELAY + ": " + config.get( Journal.PROPERTY_RECOVERY_GROUP_COMMIT_DELAY ) + "ms" );
+            }
+            catch( final NumberFormatException e ) {
+                throw( new DatabaseConfigurationException( "group-commit-delay attribute in recovery section needs to be a number" ) );
+            }
+        }
+
         option = getConfigAttributeValue( recovery, Journal.RECOVERY_JOURNAL_DIR_ATTRIBUTE );
 
         if(option != null) {
@@ -1084,6 +1146,14 @@ public class Configuration implements ErrorHandler
             LOG.debug(Journal.PROPERTY_RECOVERY_JOURNAL_DIR + ": " + config.get(Journal.PROPERTY_RECOVERY_JOURNAL_DIR));
         }
 
+        option = getConfigAttributeValue( recovery, Journal.RECOVERY_JOURNAL_ARCHIVE_DIR_ATTRIBUTE );
+
+        if(option != null) {
+            final Path af = ConfigurationHelper.lookup( option, dbHome );
+            setProperty(Journal.PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR, af.toAbsolutePath());
+            LOG.debug(Journal.PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR + ": " + config.get(Journal.PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR));
+        }
+
         option = getConfigAttributeValue( recovery, Journal.RECOVERY_SIZE_LIMIT_ATTRIBUTE );
 
         if( option != null ) {
@@ -1111,6 +1181,19 @@ public class Configuration implements ErrorHandler
         setProperty( BrokerPool.PROPERTY_RECOVERY_FORCE_RESTART, value);
         LOG.debug( BrokerPool.PROPERTY_RECOVERY_FORCE_RESTART + ": " + config.get( BrokerPool.PROPERTY_RECOVERY_FORCE_RESTART ) );
 
+        option = getConfigAttributeValue( recovery, BrokerPool.RECOVERY_REDO_THREADS_ATTRIBUTE );
+
+        if( option != null ) {
+
+            try {
+                setProperty( BrokerPool.PROPERTY_RECOVERY_REDO_THREADS, Integer.valueOf( option ) );
+                LOG.debug( BrokerPool.PROPERTY_RECOVERY_REDO_THREADS + ": " + config.get( BrokerPool.PROPERTY_RECOVERY_REDO_THREADS ) );
+            }
+            catch( final NumberFormatException e ) {
+                throw( new DatabaseConfigurationException( "redo-threads attribute in recovery section needs to be a number" ) );
+            }
+        }
+
         option = getConfigAttributeValue( recovery, BrokerPool.RECOVERY_POST_RECOVERY_CHECK );
         value  = false;
 
@@ -1391,6 +1474,23 @@ public class Configuration implements ErrorHandler
             LOG.debug( Indexer.PROPERTY_PRESERVE_WS_MIXED_CONTENT + ": " + config.get( Indexer.PROPERTY_PRESERVE_WS_MIXED_CONTENT ) );
         }
 
+        String spoolSizeLimit = getConfigAttributeValue( indexer, Indexer.SPOOL_SIZE_LIMIT_ATTRIBUTE );
+
+        if( spoolSizeLimit != null ) {
+
+            if( spoolSizeLimit.endsWith( "M" ) || spoolSizeLimit.endsWith( "m" ) ) {
+                spoolSizeLimit = spoolSizeLimit.substring( 0, spoolSizeLimit.length() - 1 );
+            }
+
+            try {
+                config.put( Indexer.PROPERTY_SPOOL_SIZE_LIMIT, Integer.valueOf( spoolSizeLimit ) );
+                LOG.debug( Indexer.PROPERTY_SPOOL_SIZE_LIMIT + ": " + config.get( Indexer.PROPERTY_SPOOL_SIZE_LIMIT ) + "m" );
+            }
+            catch( final NumberFormatException e ) {
+                throw( new DatabaseConfigurationException( "spool-size-limit attribute in indexer section needs to be a number" ) );
+            }
+        }
+
         // index settings
         final NodeList cl = doc.getElementsByTagName( Indexer.CONFIGURATION_INDEX_ELEMENT_NAME );
 
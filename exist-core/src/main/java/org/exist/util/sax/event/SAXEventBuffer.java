@@ -0,0 +1,551 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.util.sax.event;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passes SAX events through to a ContentHandler and LexicalHandler,
+ * whilst recording them so that they may later be replayed
+ * by {@link #replay(ContentHandler, LexicalHandler)}.
+ *
+ * Unlike a queue of {@link SAXEvent} objects, the events are packed into
+ * an int array of opcodes and operands and a char array holding the
+ * character data, and names are stored only once in a symbol table.
+ * This keeps the buffer small enough to hold large documents.
+ *
+ * When the recording would exceed its maximum size it is discarded,
+ * events are still passed through, and {@link #isComplete()} returns false.
+ */
+@NotThreadSafe
+public class SAXEventBuffer implements ContentHandler, LexicalHandler {
+
+    private static final int SET_DOCUMENT_LOCATOR = 0;
+    private static final int START_DOCUMENT = 1;
+    private static final int END_DOCUMENT = 2;
+    private static final int START_PREFIX_MAPPING = 3;
+    private static final int END_PREFIX_MAPPING = 4;
+    private static final int START_ELEMENT = 5;
+    private static final int END_ELEMENT = 6;
+    private static final int CHARACTERS = 7;
+    private static final int IGNORABLE_WHITESPACE = 8;
+    private static final int PROCESSING_INSTRUCTION = 9;
+    private static final int SKIPPED_ENTITY = 10;
+    private static final int START_DTD = 11;
+    private static final int END_DTD = 12;
+    private static final int START_ENTITY = 13;
+    private static final int END_ENTITY = 14;
+    private static final int START_CDATA = 15;
+    private static final int END_CDATA = 16;
+    private static final int COMMENT = 17;
+
+    private static final int NULL_SYMBOL = -1;
+
+    private static final int INITIAL_EVENTS_SIZE = 1024;
+    private static final int INITIAL_CHARS_SIZE = 4096;
+
+    @Nullable private final ContentHandler contentHandler;
+    @Nullable private final LexicalHandler lexicalHandler;
+    private final long maxSize;
+
+    private int[] events = new int[INITIAL_EVENTS_SIZE];
+    private int eventsLen = 0;
+    private char[] chars = new char[INITIAL_CHARS_SIZE];
+    private int charsLen = 0;
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private long symbolsSize = 0;
+    @Nullable private Locator locator = null;
+    @Nullable private LocatorImpl replayLocator = null;
+
+    private boolean recording = true;
+    private boolean documentEnded = false;
+
+    /**
+     * @param contentHandler the handler to pass content events to, or null
+     * @param lexicalHandler the handler to pass lexical events to, or null
+     * @param maxSize the approximate maximum size in bytes of the recording
+     */
+    public SAXEventBuffer(@Nullable final ContentHandler contentHandler, @Nullable final LexicalHandler lexicalHandler,
+            final long maxSize) {
+        this.contentHandler = contentHandler;
+        this.lexicalHandler = lexicalHandler;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns true if all of the events of a document have been recorded.
+     *
+     * @return true if the buffer holds a complete document which may be replayed.
+     */
+    public boolean isComplete() {
+        return recording && documentEnded;
+    }
+
+    /**
+     * Get the approximate size in bytes of the recording.
+     *
+     * @return the size of the recording
+     */
+    public long size() {
+        return (eventsLen * 4L) + (charsLen * 2L) + symbolsSize;
+    }
+
+    /**
+     * Replays the recorded events.
+     *
+     * @param contentHandler the handler to receive the content events
+     * @param lexicalHandler the handler to receive the lexical events, or null
+     *
+     * @throws SAXException if a handler raises an error
+     * @throws IllegalStateException if the recording is not complete
+     */
+    public void replay(final ContentHandler contentHandler, @Nullable final LexicalHandler lexicalHandler)
+            throws SAXException {
+        if (!isComplete()) {
+            throw new IllegalStateException("The recording of SAX events is not complete");
+        }
+
+        final AttributesImpl attributes = new AttributesImpl();
+        int i = 0;
+        while (i < eventsLen) {
+            switch (events[i++]) {
+                case SET_DOCUMENT_LOCATOR:
+                    contentHandler.setDocumentLocator(replayLocator);
+                    break;
+
+                case START_DOCUMENT:
+                    contentHandler.startDocument();
+                    break;
+
+                case END_DOCUMENT:
+                    contentHandler.endDocument();
+                    break;
+
+                case START_PREFIX_MAPPING:
+                    contentHandler.startPrefixMapping(symbol(events[i++]), symbol(events[i++]));
+                    break;
+
+                case END_PREFIX_MAPPING:
+                    contentHandler.endPrefixMapping(symbol(events[i++]));
+                    break;
+
+                case START_ELEMENT:
+                    final int lineNumber = events[i++];
+                    if (replayLocator != null) {
+                        replayLocator.setLineNumber(lineNumber);
+                    }
+                    final String namespaceURI = symbol(events[i++]);
+                    final String localName = symbol(events[i++]);
+                    final String qName = symbol(events[i++]);
+                    final int attrCount = events[i++];
+                    attributes.clear();
+                    for (int j = 0; j < attrCount; j++) {
+                        final String attrNamespaceURI = symbol(events[i++]);
+                        final String attrLocalName = symbol(events[i++]);
+                        final String attrQName = symbol(events[i++]);
+                        final String attrType = symbol(events[i++]);
+                        final int offset = events[i++];
+                        final int length = events[i++];
+                        attributes.addAttribute(attrNamespaceURI, attrLocalName, attrQName, attrType, new String(chars, offset, length));
+                    }
+                    contentHandler.startElement(namespaceURI, localName, qName, attributes);
+                    break;
+
+                case END_ELEMENT:
+                    contentHandler.endElement(symbol(events[i++]), symbol(events[i++]), symbol(events[i++]));
+                    break;
+
+                case CHARACTERS:
+                    contentHandler.characters(chars, events[i++], events[i++]);
+                    break;
+
+                case IGNORABLE_WHITESPACE:
+                    contentHandler.ignorableWhitespace(chars, events[i++], events[i++]);
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    final String target = symbol(events[i++]);
+                    final int dataOffset = events[i++];
+                    final int dataLength = events[i++];
+                    contentHandler.processingInstruction(target, dataOffset < 0 ? null : new String(chars, dataOffset, dataLength));
+                    break;
+
+                case SKIPPED_ENTITY:
+                    contentHandler.skippedEntity(symbol(events[i++]));
+                    break;
+
+                case START_DTD:
+                    final String name = symbol(events[i++]);
+                    final String publicId = symbol(events[i++]);
+                    final String systemId = symbol(events[i++]);
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startDTD(name, publicId, systemId);
+                    }
+                    break;
+
+                case END_DTD:
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endDTD();
+                    }
+                    break;
+
+                case START_ENTITY:
+                    final String startEntityName = symbol(events[i++]);
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startEntity(startEntityName);
+                    }
+                    break;
+
+                case END_ENTITY:
+                    final String endEntityName = symbol(events[i++]);
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endEntity(endEntityName);
+                    }
+                    break;
+
+                case START_CDATA:
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startCDATA();
+                    }
+                    break;
+
+                case END_CDATA:
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endCDATA();
+                    }
+                    break;
+
+                case COMMENT:
+                    final int commentOffset = events[i++];
+                    final int commentLength = events[i++];
+                    if (lexicalHandler != null) {
+                        lexicalHandler.comment(chars, commentOffset, commentLength);
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown SAX event opcode: " + events[i - 1]);
+            }
+        }
+    }
+
+    /**
+     * Discards the recording.
+     */
+    public void clear() {
+        stopRecording();
+        documentEnded = false;
+    }
+
+    private void stopRecording() {
+        recording = false;
+        events = null;
+        chars = null;
+        symbols.clear();
+        symbolIds.clear();
+        locator = null;
+        replayLocator = null;
+    }
+
+    private @Nullable String symbol(final int id) {
+        return id == NULL_SYMBOL ? null : symbols.get(id);
+    }
+
+    private int symbolId(@Nullable final String symbol) {
+        if (symbol == null) {
+            return NULL_SYMBOL;
+        }
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            symbols.add(symbol);
+            symbolIds.put(symbol, id);
+            symbolsSize += symbol.length() * 2L;
+        }
+        return id;
+    }
+
+    /**
+     * Ensures there is space to record an event.
+     *
+     * @param eventsLength the number of ints needed for the event
+     * @param charsLength the number of chars needed for the event
+     *
+     * @return true if the event should be recorded, false if the recording has been discarded
+     */
+    private boolean ensureCapacity(final int eventsLength, final int charsLength) {
+        if (!recording) {
+            return false;
+        }
+
+        if (size() + (eventsLength * 4L) + (charsLength * 2L) > maxSize) {
+            stopRecording();
+            return false;
+        }
+
+        if (eventsLen + eventsLength > events.length) {
+            events = Arrays.copyOf(events, Math.max(events.length << 1, eventsLen + eventsLength));
+        }
+        if (charsLen + charsLength > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, charsLen + charsLength));
+        }
+        return true;
+    }
+
+    private void record(final int opcode) {
+        if (ensureCapacity(1, 0)) {
+            events[eventsLen++] = opcode;
+        }
+    }
+
+    private void record(final int opcode, @Nullable final String symbol) {
+        if (ensureCapacity(2, 0)) {
+            events[eventsLen++] = opcode;
+            events[eventsLen++] = symbolId(symbol);
+        }
+    }
+
+    private void record(final int opcode, final char[] ch, final int start, final int length) {
+        if (ensureCapacity(3, length)) {
+            events[eventsLen++] = opcode;
+            events[eventsLen++] = charsLen;
+            events[eventsLen++] = length;
+            System.arraycopy(ch, start, chars, charsLen, length);
+            charsLen += length;
+        }
+    }
+
+    private void recordChars(final String value) {
+        events[eventsLen++] = charsLen;
+        events[eventsLen++] = value.length();
+        value.getChars(0, value.length(), chars, charsLen);
+        charsLen += value.length();
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        if (locator != null && ensureCapacity(1, 0)) {
+            // the parser's locator is only valid whilst parsing, so its line numbers are recorded for replay
+            this.locator = locator;
+            this.replayLocator = new LocatorImpl(locator);
+            events[eventsLen++] = SET_DOCUMENT_LOCATOR;
+        }
+        if (contentHandler != null) {
+            contentHandler.setDocumentLocator(locator);
+        }
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        record(START_DOCUMENT);
+        if (contentHandler != null) {
+            contentHandler.startDocument();
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        record(END_DOCUMENT);
+        documentEnded = true;
+        locator = null;
+        if (contentHandler != null) {
+            contentHandler.endDocument();
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        if (ensureCapacity(3, 0)) {
+            events[eventsLen++] = START_PREFIX_MAPPING;
+            events[eventsLen++] = symbolId(prefix);
+            events[eventsLen++] = symbolId(uri);
+        }
+        if (contentHandler != null) {
+            contentHandler.startPrefixMapping(prefix, uri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        record(END_PREFIX_MAPPING, prefix);
+        if (contentHandler != null) {
+            contentHandler.endPrefixMapping(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        final int attrCount = atts == null ? 0 : atts.getLength();
+        int valuesLength = 0;
+        for (int i = 0; i < attrCount; i++) {
+            valuesLength += atts.getValue(i).length();
+        }
+
+        if (ensureCapacity(6 + (attrCount * 6), valuesLength)) {
+            events[eventsLen++] = START_ELEMENT;
+            events[eventsLen++] = locator != null ? locator.getLineNumber() : -1;
+            events[eventsLen++] = symbolId(uri);
+            events[eventsLen++] = symbolId(localName);
+            events[eventsLen++] = symbolId(qName);
+            events[eventsLen++] = attrCount;
+            for (int i = 0; i < attrCount; i++) {
+                events[eventsLen++] = symbolId(atts.getURI(i));
+                events[eventsLen++] = symbolId(atts.getLocalName(i));
+                events[eventsLen++] = symbolId(atts.getQName(i));
+                events[eventsLen++] = symbolId(atts.getType(i));
+                recordChars(atts.getValue(i));
+            }
+        }
+        if (contentHandler != null) {
+            contentHandler.startElement(uri, localName, qName, atts);
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (ensureCapacity(4, 0)) {
+            events[eventsLen++] = END_ELEMENT;
+            events[eventsLen++] = symbolId(uri);
+            events[eventsLen++] = symbolId(localName);
+            events[eventsLen++] = symbolId(qName);
+        }
+        if (contentHandler != null) {
+            contentHandler.endElement(uri, localName, qName);
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        record(CHARACTERS, ch, start, length);
+        if (contentHandler != null) {
+            contentHandler.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        record(IGNORABLE_WHITESPACE, ch, start, length);
+        if (contentHandler != null) {
+            contentHandler.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (ensureCapacity(4, data == null ? 0 : data.length())) {
+            events[eventsLen++] = PROCESSING_INSTRUCTION;
+            events[eventsLen++] = symbolId(target);
+            if (data == null) {
+                events[eventsLen++] = -1;
+                events[eventsLen++] = 0;
+            } else {
+                recordChars(data);
+            }
+        }
+        if (contentHandler != null) {
+            contentHandler.processingInstruction(target, data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        record(SKIPPED_ENTITY, name);
+        if (contentHandler != null) {
+            contentHandler.skippedEntity(name);
+        }
+    }
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        if (ensureCapacity(4, 0)) {
+            events[eventsLen++] = START_DTD;
+            events[eventsLen++] = symbolId(name);
+            events[eventsLen++] = symbolId(publicId);
+            events[eventsLen++] = symbolId(systemId);
+        }
+        if (lexicalHandler != null) {
+            lexicalHandler.startDTD(name, publicId, systemId);
+        }
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        record(END_DTD);
+        if (lexicalHandler != null) {
+            lexicalHandler.endDTD();
+        }
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        record(START_ENTITY, name);
+        if (lexicalHandler != null) {
+            lexicalHandler.startEntity(name);
+        }
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        record(END_ENTITY, name);
+        if (lexicalHandler != null) {
+            lexicalHandler.endEntity(name);
+        }
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        record(START_CDATA);
+        if (lexicalHandler != null) {
+            lexicalHandler.startCDATA();
+        }
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        record(END_CDATA);
+        if (lexicalHandler != null) {
+            lexicalHandler.endCDATA();
+        }
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) throws SAXException {
+        record(COMMENT, ch, start, length);
+        if (lexicalHandler != null) {
+            lexicalHandler.comment(ch, start, length);
+        }
+    }
+}
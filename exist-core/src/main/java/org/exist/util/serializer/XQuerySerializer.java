@@ -26,6 +26,12 @@ public class XQuerySerializer {
     private final DBBroker broker;
     private final Writer writer;
 
+    /**
+     * the serializer of a sequence which is streamed, see {@link #startSequence(int, boolean)}
+     */
+    private Serializer sequenceSerializer = null;
+    private SAXSerializer sequenceSax = null;
+
     public XQuerySerializer(DBBroker broker, Properties outputProperties, Writer writer) {
         super();
         this.broker = broker;
@@ -56,6 +62,83 @@ public class XQuerySerializer {
         }
     }
 
+    /**
+     * Start serializing a sequence whose items are not known in advance, e.g. because
+     * they are still being produced by a query. The items are then passed to
+     * {@link #serializeItem(Item, boolean, boolean)} one by one, and the serialization is
+     * completed by {@link #endSequence(boolean)}. The items are serialized as by
+     * {@link #serialize(Sequence, int, int, boolean, boolean, long, long)}, see
+     * {@link Serializer#startSequence(int, boolean)}.
+     *
+     * Only the xml output method can be streamed, see {@link #canStream()}. As the query
+     * may still use the serializer of the broker, a serializer of its own is used, which
+     * has to be released by {@link #release()}.
+     *
+     * @param start the position in the sequence of the first item which will be serialized
+     * @param wrap indicates whether the output should be wrapped
+     *
+     * @throws SAXException if an error occurs during serialization
+     */
+    public void startSequence(final int start, final boolean wrap) throws SAXException {
+        if (!canStream()) {
+            throw new SAXException("Cannot stream the output method: " + outputProperties.getProperty(OutputKeys.METHOD));
+        }
+        sequenceSerializer = broker.newSerializer();
+        sequenceSax = (SAXSerializer) SerializerPool.getInstance().borrowObject(SAXSerializer.class);
+        sequenceSax.setOutput(writer, outputProperties);
+        try {
+            sequenceSerializer.setProperties(outputProperties);
+        } catch (SAXNotSupportedException | SAXNotRecognizedException e) {
+            throw new SAXException(e.getMessage(), e);
+        }
+        sequenceSerializer.setSAXHandlers(sequenceSax, sequenceSax);
+        sequenceSerializer.startSequence(start, wrap);
+    }
+
+    /**
+     * Serialize the next item of a sequence started by {@link #startSequence(int, boolean)}.
+     *
+     * @param item the item to serialize
+     * @param typed indicates whether the output types should be wrapped
+     * @param wrap indicates whether the output is wrapped
+     *
+     * @throws SAXException if an error occurs during serialization
+     */
+    public void serializeItem(final Item item, final boolean typed, final boolean wrap) throws SAXException {
+        sequenceSerializer.sequenceItemToSAX(item, typed, wrap);
+    }
+
+    /**
+     * Complete the serialization of a sequence started by {@link #startSequence(int, boolean)}.
+     *
+     * @param wrap indicates whether the output is wrapped
+     *
+     * @throws SAXException if an error occurs during serialization
+     */
+    public void endSequence(final boolean wrap) throws SAXException {
+        sequenceSerializer.endSequence(wrap);
+    }
+
+    /**
+     * Release the resources of a sequence started by {@link #startSequence(int, boolean)}.
+     */
+    public void release() {
+        if (sequenceSax != null) {
+            SerializerPool.getInstance().returnObject(sequenceSax);
+            sequenceSax = null;
+        }
+        sequenceSerializer = null;
+    }
+
+    /**
+     * @return true if the output method allows the items of a sequence to be serialized
+     * one by one, see {@link #startSequence(int, boolean)}
+     */
+    public boolean canStream() {
+        final String method = outputProperties.getProperty(OutputKeys.METHOD, "xml");
+        return !("json".equals(method) || "adaptive".equals(method));
+    }
+
     public boolean normalize() {
         final String method = outputProperties.getProperty(OutputKeys.METHOD, "xml");
         return !("json".equals(method) || "adaptive".equals(method));
@@ -318,6 +318,22 @@ public abstract class AbstractRemoteResource extends AbstractRemote
                     }
                 }
 
+                final BinaryTransfer.Config binaryTransfer = collection.getBinaryTransferConfig();
+                if (offset > 0 && !isCompressed && binaryTransfer != null && binaryTransfer.isSupported()) {
+                    // read the rest of the content in one go
+                    BinaryTransfer.download(binaryTransfer, (String) table.get("handle"), offset, is -> {
+                        final byte[] buf = new byte[65536];
+                        int read;
+                        while ((read = is.read(buf)) > -1) {
+                            osTempFile.write(buf, 0, read);
+                            if (os != null) {
+                                os.write(buf, 0, read);
+                            }
+                        }
+                    });
+                    offset = 0;
+                }
+
                 while (offset > 0) {
                     params.clear();
                     params.add(table.get("handle"));
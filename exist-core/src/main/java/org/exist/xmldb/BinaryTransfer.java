@@ -0,0 +1,205 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xmldb;
+
+import com.evolvedbinary.j8fu.function.ConsumerE;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.exist.util.io.InputStreamUtil.copy;
+import static org.exist.util.io.InputStreamUtil.readString;
+
+/**
+ * Transfers the content of resources as a plain binary HTTP body to and from the
+ * endpoint of the XML-RPC server, see {@link org.exist.xmlrpc.RpcServlet}, rather than
+ * as base64 encoded chunks within XML-RPC calls.
+ *
+ * The uploaded content is stored in a temporary file on the server, whose handle is then
+ * passed to the usual XML-RPC calls, e.g. parseLocalExt. Likewise, a download continues
+ * reading the temporary file of a serialized resource, whose handle was returned by
+ * retrieveFirstChunk or getDocumentData.
+ *
+ * Only used if enabled by the {@link DatabaseImpl#BINARY_TRANSFER} property. As older servers
+ * do not provide the endpoint, the client checks whether the server supports it before its
+ * first transfer, and otherwise keeps using XML-RPC calls.
+ */
+final class BinaryTransfer {
+
+    private static final Logger LOG = LogManager.getLogger(BinaryTransfer.class);
+
+    static final String CONTENT_TYPE = "application/octet-stream";
+    static final String BINARY_TRANSFER_PARAMETER = "binary-transfer";
+
+    private BinaryTransfer() {
+    }
+
+    /**
+     * The configuration of an XML-RPC client which may use the binary transfer.
+     */
+    static class Config extends XmlRpcClientConfigImpl {
+        private static final long serialVersionUID = 8524813209264436147L;
+
+        private transient volatile Boolean supported = null;
+
+        /**
+         * @return true if the server supports binary transfers, checked on the first call
+         */
+        boolean isSupported() {
+            Boolean supported = this.supported;
+            if (supported == null) {
+                supported = probe(this);
+                this.supported = supported;
+            }
+            return supported;
+        }
+
+        void setSupported(final boolean supported) {
+            this.supported = supported;
+        }
+    }
+
+    /**
+     * Check whether the server provides the endpoint for binary transfers.
+     *
+     * @param config the configuration of the XML-RPC client
+     *
+     * @return true if the server supports binary transfers
+     */
+    static boolean probe(final Config config) {
+        try {
+            final URL url = new URL(config.getServerURL(), config.getServerURL().getPath() +
+                    "?" + BINARY_TRANSFER_PARAMETER);
+            final HttpURLConnection connection = open(url, config);
+            try {
+                connection.setRequestMethod("GET");
+                final String contentType = connection.getContentType();
+                return connection.getResponseCode() == HttpURLConnection.HTTP_OK
+                        && contentType != null && contentType.startsWith(CONTENT_TYPE);
+            } finally {
+                connection.disconnect();
+            }
+        } catch (final IOException e) {
+            LOG.debug("Unable to check for binary transfers: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Upload content to a new temporary file on the server.
+     *
+     * @param config the configuration of the XML-RPC client
+     * @param is the content
+     *
+     * @return the handle of the temporary file
+     *
+     * @throws IOException if the content cannot be transferred
+     */
+    static String upload(final Config config, final InputStream is) throws IOException {
+        final HttpURLConnection connection = open(config.getServerURL(), config);
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            if (config.isGzipCompressing()) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+            try (final OutputStream os = config.isGzipCompressing()
+                    ? new GZIPOutputStream(connection.getOutputStream()) : connection.getOutputStream()) {
+                copy(is, os);
+            }
+            checkResponse(connection);
+
+            try (final InputStream response = connection.getInputStream()) {
+                return readString(response, UTF_8).trim();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Download the content of a temporary file on the server, starting at the given offset.
+     * The server releases the temporary file once it has been read.
+     *
+     * @param config the configuration of the XML-RPC client
+     * @param handle the handle of the temporary file
+     * @param offset the number of bytes to skip
+     * @param reader receives the content
+     *
+     * @throws IOException if the content cannot be transferred
+     */
+    static void download(final Config config, final String handle, final long offset,
+            final ConsumerE<InputStream, IOException> reader) throws IOException {
+        final URL url = new URL(config.getServerURL(), config.getServerURL().getPath() +
+                "?handle=" + URLEncoder.encode(handle, "UTF-8") + "&offset=" + offset);
+        final HttpURLConnection connection = open(url, config);
+        try {
+            connection.setRequestMethod("GET");
+            if (config.isGzipRequesting()) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            checkResponse(connection);
+            try (final InputStream is = "gzip".equals(connection.getContentEncoding())
+                    ? new GZIPInputStream(connection.getInputStream()) : connection.getInputStream()) {
+                reader.accept(is);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(final URL url, final Config config) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setUseCaches(false);
+        if (config.getBasicUserName() != null) {
+            final String credentials = config.getBasicUserName() + ":" +
+                    (config.getBasicPassword() == null ? "" : config.getBasicPassword());
+            connection.setRequestProperty("Authorization", "Basic " + Base64.encodeBase64String(credentials.getBytes(UTF_8)));
+        }
+        if (config.getConnectionTimeout() > 0) {
+            connection.setConnectTimeout(config.getConnectionTimeout());
+        }
+        if (config.getReplyTimeout() > 0) {
+            connection.setReadTimeout(config.getReplyTimeout());
+        }
+        return connection;
+    }
+
+    private static void checkResponse(final HttpURLConnection connection) throws IOException {
+        final int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Binary transfer failed with HTTP status " + status + ": " +
+                    connection.getResponseMessage());
+        }
+    }
+}
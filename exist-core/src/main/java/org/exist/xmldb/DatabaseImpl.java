@@ -97,6 +97,7 @@ public class DatabaseImpl implements Database {
     private Boolean ssl_enable = false;
     private Boolean ssl_allow_self_signed = true;
     private Boolean ssl_verify_hostname = false;
+    private Boolean binary_transfer = false;
 
     public DatabaseImpl() {
         final String initdb = System.getProperty("exist.initdb");
@@ -323,7 +324,7 @@ public class DatabaseImpl implements Database {
     private Leasable<XmlRpcClient> newRpcClient(final String user, String password, final URL url) {
         final XmlRpcClient client = new XmlRpcClient();
 
-        final XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+        final XmlRpcClientConfigImpl config = binary_transfer ? new BinaryTransfer.Config() : new XmlRpcClientConfigImpl();
         config.setEnabledForExtensions(true);
         config.setContentLengthOptional(true);
         config.setGzipCompressing(true);
@@ -383,6 +384,13 @@ public class DatabaseImpl implements Database {
     public final static String SSL_ALLOW_SELF_SIGNED = "ssl-allow-self-signed";
     public final static String SSL_VERIFY_HOSTNAME = "ssl-verify-hostname";
 
+    /**
+     * Transfer the content of resources as plain binary HTTP bodies
+     * instead of base64 encoded XML-RPC chunks. Requires a server
+     * which supports it.
+     */
+    public final static String BINARY_TRANSFER = "binary-transfer";
+
     @Override
     public String getProperty(final String property) throws XMLDBException {
         final String value;
@@ -419,6 +427,10 @@ public class DatabaseImpl implements Database {
                 value = ssl_verify_hostname.toString();
                 break;
 
+            case BINARY_TRANSFER:
+                value = binary_transfer.toString();
+                break;
+
             default:
                 value = null;
         }
@@ -459,6 +471,10 @@ public class DatabaseImpl implements Database {
             case SSL_VERIFY_HOSTNAME:
                 this.ssl_verify_hostname = Boolean.valueOf(value);
                 break;
+
+            case BINARY_TRANSFER:
+                this.binary_transfer = Boolean.valueOf(value);
+                break;
         }
     }
 }
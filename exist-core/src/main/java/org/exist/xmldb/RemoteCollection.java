@@ -23,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientConfig;
 import org.exist.security.Permission;
 import org.exist.security.PermissionDeniedException;
 import org.exist.security.internal.aider.ACEAider;
@@ -40,6 +41,7 @@ import org.xmldb.api.base.*;
 import org.xmldb.api.modules.BinaryResource;
 import org.xmldb.api.modules.XMLResource;
 
+import javax.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -128,6 +130,18 @@ public class RemoteCollection extends AbstractRemote implements EXistCollection
         }
     }
 
+    /**
+     * @return the configuration of the client, if it has been enabled to transfer content using {@link BinaryTransfer},
+     *     see {@link BinaryTransfer.Config#isSupported()}
+     */
+    @Nullable BinaryTransfer.Config getBinaryTransferConfig() {
+        if (xmlRpcClientLease.isClosed()) {
+            return null;
+        }
+        final XmlRpcClientConfig config = xmlRpcClientLease.get().getClientConfig();
+        return config instanceof BinaryTransfer.Config ? (BinaryTransfer.Config) config : null;
+    }
+
     @Override
     public void close() {
         if (xmlRpcClientLease.isClosed()) {
@@ -602,7 +616,10 @@ public class RemoteCollection extends AbstractRemote implements EXistCollection
             try {
 
                 String fileName = null;
-                if (chunk.length > 0) {
+                final BinaryTransfer.Config binaryTransfer = getBinaryTransferConfig();
+                if (binaryTransfer != null && binaryTransfer.isSupported()) {
+                    fileName = BinaryTransfer.upload(binaryTransfer, is);
+                } else if (chunk.length > 0) {
                     int len;
                     while ((len = is.read(chunk)) > -1) {
                         final List<Object> params = new ArrayList<>();
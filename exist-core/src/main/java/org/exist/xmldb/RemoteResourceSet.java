@@ -62,8 +62,23 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
     private boolean closed;
     private LazyVal<Integer> inMemoryBufferSize;
 
+    /**
+     * The serialized items retrieved by the last call of retrieveBatch,
+     * used whilst iterating over the resources.
+     */
+    private Object[] batch = null;
+    private int batchStart = -1;
+    private boolean batchSupported = true;
+
     private static Logger LOG = LogManager.getLogger(RemoteResourceSet.class.getName());
 
+    /**
+     * The property which sets how many items are retrieved in a single call
+     * when iterating over the resources, see {@link #getIterator()}. At least 1.
+     */
+    public static final String BATCH_SIZE_PROPERTY = "batch-size";
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
     public RemoteResourceSet(final Leasable<XmlRpcClient> leasableXmlRpcClient, final RemoteCollection col, final Properties properties, final Object[] resources, final int handle, final int hash) {
         this.leasableXmlRpcClient = leasableXmlRpcClient;
         this.handle = handle;
@@ -73,6 +88,20 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
         this.outputProperties = properties;
     }
 
+    private int getBatchSize(final Properties properties) throws XMLDBException {
+        final String value = properties.getProperty(BATCH_SIZE_PROPERTY, Integer.toString(DEFAULT_BATCH_SIZE));
+        final int batchSize;
+        try {
+            batchSize = Integer.parseInt(value.trim());
+        } catch (final NumberFormatException e) {
+            throw new XMLDBException(ErrorCodes.VENDOR_ERROR, "Invalid " + BATCH_SIZE_PROPERTY + ": " + value, e);
+        }
+        if (batchSize < 1) {
+            throw new XMLDBException(ErrorCodes.VENDOR_ERROR, BATCH_SIZE_PROPERTY + " must be at least 1: " + value);
+        }
+        return batchSize;
+    }
+
     private final int getInMemorySize(Properties properties) {
         if (inMemoryBufferSize == null) {
             inMemoryBufferSize = new LazyVal<>(() -> Integer.parseInt(properties.getProperty("in-memory-buffer-size", Integer.toString(VirtualTempPath.DEFAULT_IN_MEMORY_SIZE))));
@@ -104,6 +133,7 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
         collection.execute("releaseQueryResult", params);
         hash = -1;
         resources.clear();
+        batch = null;
         handle = -1;
     }
 
@@ -192,6 +222,15 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
 
     @Override
     public Resource getResource(final long pos) throws XMLDBException {
+        return getResource(pos, false);
+    }
+
+    /**
+     * @param pos the position of the resource
+     * @param batched true if the content of a node should be taken from the batch of
+     *     serialized items, used when iterating over the resources
+     */
+    private Resource getResource(final long pos, final boolean batched) throws XMLDBException {
         if (pos >= resources.size()) {
             return null;
         }
@@ -211,7 +250,14 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
                 case "comment()":
                 case "namespace()":
                 case "cdata-section()":
-                    return getResourceNode((int)pos, item);
+                    final RemoteXMLResource res = getResourceNode((int)pos, item);
+                    if (batched) {
+                        final byte[] content = getBatchedContent((int)pos);
+                        if (content != null) {
+                            res.setContent(content);
+                        }
+                    }
+                    return res;
 
                 case "xs:base64Binary":
                     return getResourceBinaryValue((int)pos, item, Base64::decodeBase64);
@@ -253,6 +299,47 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
         return res;
     }
 
+    /**
+     * Get the serialized item at the given position from the current batch,
+     * retrieving the batch starting at the position from the server if needed.
+     * Saves a call per node when iterating over the resources.
+     *
+     * @param pos the position of the item
+     * @return the serialized item, or null if the server does not support retrieveBatch
+     */
+    private byte[] getBatchedContent(final int pos) throws XMLDBException {
+        if (handle < 0 || !batchSupported) {
+            return null;
+        }
+        if (batch == null || pos < batchStart || pos >= batchStart + batch.length) {
+            final List<Object> params = new ArrayList<>();
+            params.add(handle);
+            params.add(pos);
+            params.add(getBatchSize(outputProperties));
+            params.add(outputProperties);
+            try {
+                final Map<?, ?> result = (Map<?, ?>) collection.execute("retrieveBatch", params);
+                final Object[] data = (Object[]) result.get("data");
+                if (data.length == 0) {
+                    throw new XMLDBException(ErrorCodes.NO_SUCH_RESOURCE, "No item at position " + pos);
+                }
+                batch = data;
+                batchStart = (Integer) result.get("start");
+            } catch (final XMLDBException e) {
+                final String excMsg = e.getCause() != null ? e.getCause().getMessage() : null;
+                if (excMsg != null && (excMsg.contains("No such handler") || excMsg.contains("No method matching"))) {
+                    // an older server, retrieve the nodes one by one
+                    LOG.debug("Server does not support retrieveBatch: " + excMsg);
+                    batchSupported = false;
+                    batch = null;
+                    return null;
+                }
+                throw e;
+            }
+        }
+        return (byte[]) batch[pos - batchStart];
+    }
+
     private RemoteXMLResource getResourceValue(final int pos, final Map<String, String> valueDetail) throws XMLDBException {
         final RemoteXMLResource res = new RemoteXMLResource(collection, handle, pos, XmldbURI.create(Long.toString(pos)), Optional.empty());
         res.setContent(valueDetail.get("value"));
@@ -326,7 +413,7 @@ public class RemoteResourceSet implements ResourceSet, AutoCloseable {
 
         @Override
         public Resource nextResource() throws XMLDBException {
-            return getResource(pos++);
+            return getResource(pos++, true);
         }
     }
 }
@@ -823,6 +823,30 @@ public interface RpcAPI {
     Map<String, Object> retrieveFirstChunk(int resultId, int num, Map<String, Object> parameters)
             throws EXistException, PermissionDeniedException;
 
+    /**
+     * Retrieve the serialized items of the result-set identified by resultId,
+     * starting at position start. Up to count items are returned in a single call,
+     * but the call stops adding items once they exceed {@link RpcConnection#MAX_DOWNLOAD_CHUNK_SIZE}
+     * bytes in total; it returns at least one item though. Items are serialized as
+     * by {@link #retrieve(int, int, Map)}, but are never compressed. Atomic items
+     * are returned as empty arrays, as their values are already part of the result
+     * of the query.
+     *
+     * The returned struct has the following fields: "hits" (int) the number of items
+     * in the result-set, "start" (int) the position of the first returned item, and
+     * "data" (array of base64) the serialized items.
+     *
+     * @param resultId the ID of the result-set
+     * @param start the position of the first item to retrieve
+     * @param count the maximum number of items to retrieve, at least 1
+     * @param parameters controlling the serialization of the items
+     * @return the struct described above
+     * @throws EXistException If an internal error occurs, or count is less than 1
+     * @throws PermissionDeniedException If the current user is not allowed to perform this action
+     */
+    Map<String, Object> retrieveBatch(int resultId, int start, int count, Map<String, Object> parameters)
+            throws EXistException, PermissionDeniedException;
+
     boolean addAccount(String name, String passwd, String digestPassword, List<String> groups, Boolean isEnabled, Integer umask, Map<String, String> metadata)
             throws EXistException, PermissionDeniedException;
 
@@ -2360,6 +2360,54 @@ public class RpcConnection implements RpcAPI {
         });
     }
 
+    @Override
+    public Map<String, Object> retrieveBatch(final int resultId, final int start, final int count,
+            final Map<String, Object> parameters) throws EXistException, PermissionDeniedException {
+        if (count < 1) {
+            throw new EXistException("count must be at least 1: " + count);
+        }
+        final Charset encoding = getEncoding(parameters);
+        return withDb((broker, transaction) -> {
+            final QueryResult qr = factory.resultSets.getResult(resultId);
+            if (qr == null) {
+                throw new EXistException("result set unknown or timed out: " + resultId);
+            }
+            qr.touch();
+            final int hits = qr.result.getItemCount();
+            if (start < 0 || (start >= hits && hits > 0)) {
+                throw new EXistException("index out of range");
+            }
+            for (final Map.Entry<Object, Object> entry : qr.serialization.entrySet()) {
+                parameters.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+
+            final List<byte[]> data = new ArrayList<>();
+            long size = 0;
+            for (int i = start; i < hits && data.size() < count && (data.isEmpty() || size < MAX_DOWNLOAD_CHUNK_SIZE); i++) {
+                final Item item = qr.result.itemAt(i);
+                final byte[] bytes;
+                if (Type.subTypeOf(item.getType(), Type.NODE)) {
+                    final NodeValue nodeValue = (NodeValue) item;
+                    try (final StringWriter writer = new StringWriter()) {
+                        serialize(broker, toProperties(parameters), saxSerializer -> saxSerializer.toSAX(nodeValue), writer);
+                        bytes = writer.toString().getBytes(encoding);
+                    }
+                } else {
+                    // the value of an atomic item is already part of the summary returned by the query
+                    bytes = new byte[0];
+                }
+                data.add(bytes);
+                size += bytes.length;
+            }
+
+            final Map<String, Object> result = new HashMap<>();
+            result.put("hits", hits);
+            result.put("start", start);
+            result.put("data", data);
+            return result;
+        });
+    }
+
     @Override
     public byte[] retrieveAll(final int resultId, final Map<String, Object> parameters) throws EXistException,
             PermissionDeniedException {
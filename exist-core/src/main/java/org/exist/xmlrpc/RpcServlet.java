@@ -24,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.XmlRpcHandler;
+import org.apache.xmlrpc.common.XmlRpcHttpRequestConfig;
 import org.apache.xmlrpc.server.AbstractReflectiveHandlerMapping;
 import org.apache.xmlrpc.server.RequestProcessorFactoryFactory;
 import org.apache.xmlrpc.server.XmlRpcHandlerMapping;
@@ -34,6 +35,7 @@ import org.exist.http.Descriptor;
 import org.exist.http.servlets.HttpServletRequestWrapper;
 import org.exist.storage.BrokerPool;
 import org.exist.util.Configuration;
+import org.exist.util.io.TemporaryFileManager;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -41,24 +43,50 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.evolvedbinary.j8fu.Either.*;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * The XML-RPC endpoint.
+ *
+ * Besides XML-RPC requests, the servlet also accepts plain binary transfers of content
+ * from the remote XML:DB API, which avoid the overhead of base64 encoded chunks:
+ * a POST with content type {@link #BINARY_CONTENT_TYPE} stores the request body in a new
+ * temporary file and returns its handle, which can then be passed to e.g. parseLocalExt,
+ * and a GET with the parameters handle and offset returns the content of the temporary file
+ * of a serialized resource from the offset onwards, e.g. after retrieveFirstChunk.
+ * A GET with the parameter {@link #BINARY_TRANSFER_PARAMETER} tells clients that these
+ * transfers are supported. Binary transfers are authenticated like XML-RPC requests.
+ */
 public class RpcServlet extends XmlRpcServlet {
 
 	private static final long serialVersionUID = -1003413291835771186L;
     private static final Logger LOG = LogManager.getLogger(RpcServlet.class);
     private static final boolean DEFAULT_USE_DEFAULT_USER = true;
 
+    public static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+    public static final String BINARY_TRANSFER_PARAMETER = "binary-transfer";
+
     private boolean useDefaultUser = DEFAULT_USE_DEFAULT_USER;
     private Charset charset = null;
+    private XmldbRequestProcessorFactoryFactory requestProcessorFactoryFactory = null;
 
     @Override
     public void init(final ServletConfig pConfig) throws ServletException {
@@ -79,6 +107,12 @@ public class RpcServlet extends XmlRpcServlet {
 
     @Override
     public void doPost(HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        final String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith(BINARY_CONTENT_TYPE)) {
+            uploadBinary(request, response);
+            return;
+        }
+
         try {
             // Request logger
 
@@ -118,18 +152,152 @@ public class RpcServlet extends XmlRpcServlet {
         }
     }
 
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (request.getParameter("handle") != null) {
+            downloadBinary(request, response);
+        } else if (request.getParameter(BINARY_TRANSFER_PARAMETER) != null) {
+            // tell the client that binary transfers are supported
+            response.setContentType(BINARY_CONTENT_TYPE);
+            response.setContentLength(0);
+        } else {
+            super.doGet(request, response);
+        }
+    }
+
+    /**
+     * Store the body of the request in a new temporary file, and return its handle.
+     */
+    private void uploadBinary(final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        final XmlRpcHttpRequestConfig config = getRequestConfig(request);
+        final XmldbRequestProcessorFactory factory = getRequestProcessorFactory(config, response);
+        if (factory == null) {
+            return;
+        }
+
+        final Path tempFile = TemporaryFileManager.getInstance().getTemporaryFile();
+        final int handle = factory.resultSets.add(new SerializedResult(tempFile));
+        try (final InputStream is = config.isGzipCompressing()
+                ? new GZIPInputStream(request.getInputStream()) : request.getInputStream()) {
+            Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            factory.resultSets.remove(handle);
+            throw e;
+        }
+
+        response.setContentType("text/plain; charset=UTF-8");
+        response.getOutputStream().write(Integer.toString(handle).getBytes(UTF_8));
+    }
+
+    /**
+     * Return the content of the temporary file of a serialized resource from the given
+     * offset onwards. The temporary file is released afterwards, like after reading
+     * its last chunk through getNextChunk.
+     */
+    private void downloadBinary(final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        final XmlRpcHttpRequestConfig config = getRequestConfig(request);
+        final XmldbRequestProcessorFactory factory = getRequestProcessorFactory(config, response);
+        if (factory == null) {
+            return;
+        }
+
+        final int handle;
+        final long offset;
+        try {
+            handle = Integer.parseInt(request.getParameter("handle"));
+            offset = request.getParameter("offset") == null ? 0 : Long.parseLong(request.getParameter("offset"));
+        } catch (final NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Syntactically invalid handle or offset specified");
+            return;
+        }
+        final SerializedResult sr = factory.resultSets.getSerializedResult(handle);
+        if (sr == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Invalid handle specified");
+            return;
+        }
+
+        try (final SeekableByteChannel channel = Files.newByteChannel(sr.result)) {
+            if (offset < 0 || offset > channel.size()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No more data available");
+                return;
+            }
+            channel.position(offset);
+
+            response.setContentType(BINARY_CONTENT_TYPE);
+            final boolean gzip = config.isGzipRequesting();
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+            }
+            try (final InputStream is = Channels.newInputStream(channel);
+                    final OutputStream os = gzip ? new GZIPOutputStream(response.getOutputStream()) : response.getOutputStream()) {
+                final byte[] buf = new byte[65536];
+                int read;
+                while ((read = is.read(buf)) > -1) {
+                    os.write(buf, 0, read);
+                }
+            }
+        } finally {
+            factory.resultSets.remove(handle);
+        }
+    }
+
+    /**
+     * Get the configuration of a binary transfer, including the credentials and the
+     * compression, in the same way as the XML-RPC server does for its requests.
+     */
+    private XmlRpcHttpRequestConfig getRequestConfig(final HttpServletRequest request) throws ServletException {
+        final XmlRpcServletServer server = getXmlRpcServletServer();
+        if (!(server instanceof ExistRpcServletServer)) {
+            throw new ServletException("XML-RPC interface is not initialized");
+        }
+        return ((ExistRpcServletServer) server).getRequestConfig(request);
+    }
+
+    /**
+     * Authenticate the user of a binary transfer, in the same way as for an XML-RPC request.
+     *
+     * @return the factory, or null if the user could not be authenticated, in which case an error has been sent
+     */
+    private XmldbRequestProcessorFactory getRequestProcessorFactory(final XmlRpcHttpRequestConfig config,
+            final HttpServletResponse response) throws IOException, ServletException {
+        if (requestProcessorFactoryFactory == null) {
+            throw new ServletException("XML-RPC interface is not initialized");
+        }
+
+        try {
+            final XmldbRequestProcessorFactory factory =
+                    (XmldbRequestProcessorFactory) requestProcessorFactoryFactory.getRequestProcessorFactory(RpcConnection.class);
+            factory.authenticate(config);
+            return factory;
+        } catch (final XmlRpcException e) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+            return null;
+        }
+    }
+
     @Override
     protected XmlRpcServletServer newXmlRpcServer(final ServletConfig pConfig) throws XmlRpcException {
-        final XmlRpcServletServer server = super.newXmlRpcServer(pConfig);
+        final XmlRpcServletServer server = new ExistRpcServletServer();
         server.setTypeFactory(new ExistRpcTypeFactory(server));
         return server;
     }
 
+    /**
+     * Gives access to the configuration of a request, so that binary transfers
+     * are authenticated like XML-RPC requests.
+     */
+    private static class ExistRpcServletServer extends XmlRpcServletServer {
+        XmlRpcHttpRequestConfig getRequestConfig(final HttpServletRequest request) {
+            return getConfig(request);
+        }
+    }
+
     @Override
     protected XmlRpcHandlerMapping newXmlRpcHandlerMapping() throws XmlRpcException {
         final DefaultHandlerMapping mapping = new DefaultHandlerMapping();
         mapping.setVoidMethodEnabled(true);
-        mapping.setRequestProcessorFactoryFactory(new XmldbRequestProcessorFactoryFactory(useDefaultUser));
+        requestProcessorFactoryFactory = new XmldbRequestProcessorFactoryFactory(useDefaultUser);
+        mapping.setRequestProcessorFactoryFactory(requestProcessorFactoryFactory);
         mapping.loadDefault(RpcConnection.class);
         return mapping;
     }
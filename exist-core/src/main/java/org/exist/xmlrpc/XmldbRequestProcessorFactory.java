@@ -75,11 +75,21 @@ public class XmldbRequestProcessorFactory implements RequestProcessorFactoryFact
 
     @Override
     public Object getRequestProcessor(final XmlRpcRequest pRequest) throws XmlRpcException {
-        final XmlRpcHttpRequestConfig config = (XmlRpcHttpRequestConfig) pRequest.getConfig();
-        final Subject user = authenticate(config.getBasicUserName(), config.getBasicPassword());
+        final Subject user = authenticate((XmlRpcHttpRequestConfig) pRequest.getConfig());
         return new RpcConnection(this, user);
     }
 
+    /**
+     * Authenticate the user given by the credentials of a request.
+     *
+     * @param config the configuration of the request
+     * @return the authenticated user
+     * @throws XmlRpcException if the user cannot be authenticated
+     */
+    protected Subject authenticate(final XmlRpcHttpRequestConfig config) throws XmlRpcException {
+        return authenticate(config.getBasicUserName(), config.getBasicPassword());
+    }
+
     protected Subject authenticate(String username, String password) throws XmlRpcException {
         // assume guest user if no user is specified
         // set a password for admin to permit this
@@ -38,6 +38,10 @@ public class AtomicToString extends AbstractExpression {
         this.expression = expr;
     }
 
+    public Expression getExpression() {
+        return expression;
+    }
+
     /* (non-Javadoc)
      * @see org.exist.xquery.Expression#analyze(org.exist.xquery.Expression)
      */
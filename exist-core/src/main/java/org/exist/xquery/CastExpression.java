@@ -156,6 +156,10 @@ public class CastExpression extends AbstractExpression {
 		return requiredType;
 	}
 
+	public Expression getExpression() {
+		return expression;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.exist.xquery.AbstractExpression#getDependencies()
 	 */
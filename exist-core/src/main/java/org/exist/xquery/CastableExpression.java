@@ -63,6 +63,10 @@ public class CastableExpression extends AbstractExpression {
 		return Type.BOOLEAN;
 	}
 	
+	public Expression getExpression() {
+		return expression;
+	}
+
 	@Override
 	public Cardinality getCardinality() {
 		return Cardinality.EXACTLY_ONE;
@@ -0,0 +1,376 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.dom.QName;
+import org.exist.indexing.Index;
+import org.exist.storage.ElementValue;
+import org.exist.storage.statistics.IndexStatistics;
+import org.exist.xquery.Constants.Comparison;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+
+/**
+ * Estimates the cost of evaluating parts of a query from the element statistics
+ * collected by {@link IndexStatistics} (see {@link org.exist.storage.statistics.DataGuide}).
+ *
+ * Costs are expressed in an abstract unit, roughly the cost of visiting
+ * a single stored node. The estimates are used by the {@link Optimizer} to order
+ * the predicates of a location step, and at evaluation time to choose between
+ * an index lookup and a scan of the context.
+ *
+ * If the statistics index is not configured, node counts are unknown and the
+ * model falls back to fixed selectivities, which leaves the order of otherwise
+ * equal predicates untouched.
+ */
+public class CostModel {
+
+    /**
+     * Selectivities used when nothing better is known, following
+     * the classic defaults of System R.
+     */
+    static final double EQ_SELECTIVITY = 0.1;
+    static final double NEQ_SELECTIVITY = 0.9;
+    static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+    static final double DEFAULT_SELECTIVITY = 0.5;
+
+    /**
+     * Number of nodes assumed to be reached by a step which we
+     * have no statistics for.
+     */
+    static final double UNKNOWN_CHILD_FANOUT = 1.0;
+    static final double UNKNOWN_DESCENDANT_FANOUT = 10.0;
+
+    /**
+     * Per context node cost of a predicate which can be answered from an index.
+     */
+    static final double INDEXED_COST = 0.1;
+
+    /**
+     * Cost of evaluating an expression which does not visit any stored nodes.
+     */
+    static final double EXPRESSION_COST = 0.1;
+
+    /**
+     * Cost of a single B+-tree lookup, i.e. descending from the root to a leaf.
+     */
+    static final double INDEX_LOOKUP_COST = 20.0;
+
+    /**
+     * Cost of reading a single entry from a B+-tree leaf.
+     */
+    static final double INDEX_ENTRY_COST = 0.01;
+
+    /**
+     * Cost of loading the value of a stored node and comparing it.
+     */
+    static final double NODE_VALUE_COST = 1.0;
+
+    @Nullable private final IndexStatistics statistics;
+
+    public CostModel(final XQueryContext context) {
+        final Index index = context.getBroker().getBrokerPool().getIndexManager().getIndexById(IndexStatistics.ID);
+        this.statistics = index instanceof IndexStatistics ? (IndexStatistics) index : null;
+    }
+
+    /**
+     * @return true if element statistics are available
+     */
+    public boolean hasStatistics() {
+        return statistics != null;
+    }
+
+    /**
+     * Get the number of elements with the name in the database.
+     *
+     * @param qname the element name
+     *
+     * @return the number of elements, or -1 if unknown
+     */
+    public long getNodeCount(@Nullable final QName qname) {
+        if (statistics == null || qname == null || qname.getNameType() != ElementValue.ELEMENT) {
+            return -1;
+        }
+        return statistics.getNodeCount(qname);
+    }
+
+    /**
+     * Decide whether a step should read all the structural index entries for its
+     * name in one pass, instead of performing a range lookup for each context node.
+     *
+     * The node count of the database is an upper bound for the entries of the
+     * documents in the context, so a scan is only chosen when it is certainly cheaper.
+     *
+     * @param qname the name of the step's node test
+     * @param contextCount the number of nodes in the context set
+     *
+     * @return true if scanning the index is estimated to be cheaper
+     */
+    public boolean preferStructuralScan(final QName qname, final int contextCount) {
+        final long count = getNodeCount(qname);
+        return count >= 0 && count * INDEX_ENTRY_COST < contextCount * INDEX_LOOKUP_COST;
+    }
+
+    /**
+     * Decide whether a general comparison on a node set should compare the value of
+     * each node, rather than look up the keys in a range index.
+     *
+     * @param qname the name of the indexed nodes, may be null
+     * @param relation the comparison operator
+     * @param nodeCount the number of nodes in the node set
+     * @param keyCount the number of keys to look up
+     *
+     * @return true if comparing the nodes is estimated to be cheaper
+     */
+    public boolean preferNodeScan(@Nullable final QName qname, final Comparison relation, final int nodeCount,
+            final int keyCount) {
+        final long count = getNodeCount(qname);
+        if (count < 0) {
+            return false;
+        }
+        final double indexCost = keyCount * (INDEX_LOOKUP_COST + selectivity(relation) * count * INDEX_ENTRY_COST);
+        final double scanCost = nodeCount * (NODE_VALUE_COST + keyCount * EXPRESSION_COST);
+        return scanCost < indexCost;
+    }
+
+    /**
+     * Estimate the cost and selectivity of applying a predicate to the nodes selected
+     * by a location step.
+     *
+     * @param step the location step which the predicate filters
+     * @param predicate the predicate
+     * @param indexed true if the predicate will be answered from an index
+     *
+     * @return the estimate
+     */
+    public Estimate estimate(final LocationStep step, final Predicate predicate, final boolean indexed) {
+        final QName contextQName = getElementName(step);
+        final Estimate estimate = estimate(predicate, contextQName, getNodeCount(contextQName));
+        if (indexed) {
+            return new Estimate(Math.min(estimate.cost, INDEXED_COST), estimate.selectivity, estimate.guard);
+        }
+        return estimate;
+    }
+
+    private Estimate estimate(final Expression expr, @Nullable final QName contextQName, final long contextCount) {
+        if (expr instanceof DynamicCardinalityCheck || expr instanceof DynamicTypeCheck ||
+                expr instanceof UntypedValueCheck || expr instanceof Atomize) {
+            // checks added to function arguments, estimate the argument itself
+            return estimate(expr.getSubExpression(0), contextQName, contextCount);
+
+        } else if (expr instanceof CastableExpression || expr instanceof InstanceOfExpression) {
+            return new Estimate(EXPRESSION_COST, DEFAULT_SELECTIVITY, true);
+
+        } else if (expr instanceof GeneralComparison) {
+            final GeneralComparison comparison = (GeneralComparison) expr;
+            final Estimate left = estimate(comparison.getLeft(), contextQName, contextCount);
+            final Estimate right = estimate(comparison.getRight(), contextQName, contextCount);
+            return new Estimate(left.cost + right.cost, selectivity(comparison.getRelation()),
+                    left.guard || right.guard);
+
+        } else if (expr instanceof OpAnd) {
+            final OpAnd and = (OpAnd) expr;
+            final Estimate left = estimate(and.getLeft(), contextQName, contextCount);
+            final Estimate right = estimate(and.getRight(), contextQName, contextCount);
+            return new Estimate(left.cost + left.selectivity * right.cost, left.selectivity * right.selectivity,
+                    left.guard || right.guard);
+
+        } else if (expr instanceof OpOr) {
+            final OpOr or = (OpOr) expr;
+            final Estimate left = estimate(or.getLeft(), contextQName, contextCount);
+            final Estimate right = estimate(or.getRight(), contextQName, contextCount);
+            return new Estimate(left.cost + (1 - left.selectivity) * right.cost,
+                    left.selectivity + right.selectivity - left.selectivity * right.selectivity,
+                    left.guard || right.guard);
+
+        } else if (expr instanceof Function) {
+            final Function function = (Function) expr;
+            double cost = EXPRESSION_COST;
+            boolean guard = false;
+            for (int i = 0; i < function.getArgumentCount(); i++) {
+                final Estimate argument = estimate(function.getArgument(i), contextQName, contextCount);
+                cost += argument.cost;
+                guard |= argument.guard;
+            }
+            return new Estimate(cost, DEFAULT_SELECTIVITY, guard);
+
+        } else if (expr instanceof LocationStep) {
+            return estimatePath(new Expression[] { expr }, contextQName, contextCount);
+
+        } else if (expr instanceof PathExpr) {
+            final PathExpr path = (PathExpr) expr;
+            if (path.getSubExpressionCount() == 1) {
+                return estimate(path.getSubExpression(0), contextQName, contextCount);
+            }
+            final Expression[] steps = new Expression[path.getSubExpressionCount()];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = path.getSubExpression(i);
+            }
+            return estimatePath(steps, contextQName, contextCount);
+        }
+
+        return new Estimate(EXPRESSION_COST, DEFAULT_SELECTIVITY, false);
+    }
+
+    /**
+     * Estimate a relative path by following its steps through the statistics, the
+     * cost is the number of nodes visited per context node, and the selectivity
+     * the probability of the path selecting any node at all.
+     */
+    private Estimate estimatePath(final Expression[] steps, @Nullable QName contextQName, long contextCount) {
+        double nodes = 1.0;
+        double cost = 0;
+        boolean guard = false;
+        boolean descendant = false;
+        for (final Expression expr : steps) {
+            if (!(expr instanceof LocationStep)) {
+                // not a relative path we can follow
+                final Estimate estimate = estimate(expr, null, -1);
+                return new Estimate(cost + nodes * estimate.cost, Math.min(1.0, nodes), guard || estimate.guard);
+            }
+
+            final LocationStep step = (LocationStep) expr;
+            if (step.getAxis() == Constants.DESCENDANT_SELF_AXIS && step.getTest().getType() == Type.NODE
+                    && !step.hasPredicates()) {
+                // the abbreviated step '//' selects the descendants of the context for the next step
+                descendant = true;
+                continue;
+            }
+
+            final QName qname = getElementName(step);
+            final long count = getNodeCount(qname);
+            final int axis = descendant && step.getAxis() == Constants.CHILD_AXIS ? Constants.DESCENDANT_AXIS : step.getAxis();
+            descendant = false;
+
+            final double fanout;
+            switch (axis) {
+                case Constants.SELF_AXIS:
+                case Constants.ATTRIBUTE_AXIS:
+                    fanout = 1.0;
+                    break;
+
+                case Constants.CHILD_AXIS:
+                case Constants.DESCENDANT_AXIS:
+                case Constants.DESCENDANT_SELF_AXIS:
+                    final boolean child = axis == Constants.CHILD_AXIS;
+                    if (statistics != null && contextQName != null && contextCount > 0 && qname != null) {
+                        fanout = (double) statistics.getNodeCount(contextQName, qname, child) / contextCount;
+                    } else {
+                        fanout = child ? UNKNOWN_CHILD_FANOUT : UNKNOWN_DESCENDANT_FANOUT;
+                    }
+                    break;
+
+                default:
+                    fanout = UNKNOWN_CHILD_FANOUT;
+            }
+
+            nodes *= fanout;
+            cost += Math.max(nodes, EXPRESSION_COST);
+
+            for (final Predicate predicate : step.getPredicates()) {
+                final Estimate estimate = estimate(predicate, qname, count);
+                cost += nodes * estimate.cost;
+                nodes *= estimate.selectivity;
+                guard |= estimate.guard;
+            }
+
+            if (axis != Constants.SELF_AXIS) {
+                contextQName = qname;
+                contextCount = count;
+            }
+        }
+        return new Estimate(cost, Math.min(1.0, nodes), guard);
+    }
+
+    private static @Nullable QName getElementName(final Step step) {
+        final NodeTest test = step.getTest();
+        if (test == null || test.isWildcardTest() || test.getType() != Type.ELEMENT) {
+            return null;
+        }
+        return test.getName();
+    }
+
+    static double selectivity(final Comparison relation) {
+        switch (relation) {
+            case EQ:
+            case IN:
+                return EQ_SELECTIVITY;
+
+            case NEQ:
+                return NEQ_SELECTIVITY;
+
+            default:
+                return RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * The estimated cost and selectivity of a predicate.
+     */
+    public static class Estimate {
+        final double cost;
+        final double selectivity;
+        final boolean guard;
+
+        Estimate(final double cost, final double selectivity, final boolean guard) {
+            this.cost = cost;
+            this.selectivity = selectivity;
+            this.guard = guard;
+        }
+
+        /**
+         * @return the cost per context node
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * @return the fraction of context nodes expected to pass the predicate
+         */
+        public double getSelectivity() {
+            return selectivity;
+        }
+
+        /**
+         * A predicate is a guard if it tests whether a later predicate can be
+         * evaluated without an error, e.g. <code>[@n castable as xs:integer]</code>.
+         *
+         * @return true if the predicate looks like a guard
+         */
+        public boolean isGuard() {
+            return guard;
+        }
+
+        /**
+         * The rank of the predicate when applied in a chain of filters: applying predicates
+         * in increasing order of rank minimizes the expected total cost.
+         *
+         * @return the rank
+         */
+        public double getRank() {
+            if (selectivity >= 1.0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return cost / (1.0 - selectivity);
+        }
+    }
+}
@@ -78,6 +78,15 @@ public class FilteredExpression extends AbstractExpression {
             for (final Predicate pred : predicates) {
                 pred.analyze(newContext);
             }
+            // (//a)[n] only needs the first n nodes of the path
+            final Predicate pred = predicates.get(0);
+            if (!abbreviated && predicates.size() == 1 && pred.getExecutionMode() == Predicate.ExecutionMode.POSITIONAL
+                    && pred.getSubExpressionCount() == 1 && pred.getSubExpression(0) instanceof LiteralValue) {
+                final AtomicValue position = ((LiteralValue) pred.getSubExpression(0)).getValue();
+                if (position instanceof IntegerValue && ((IntegerValue) position).getDouble() <= Integer.MAX_VALUE) {
+                    LocationStep.setResultLimit(expression, ((IntegerValue) position).getInt());
+                }
+            }
         }
     }
 
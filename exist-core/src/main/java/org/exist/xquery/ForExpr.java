@@ -24,9 +24,12 @@ package org.exist.xquery;
 
 import org.exist.dom.QName;
 import org.exist.dom.persistent.NodeSet;
+import org.exist.xquery.pragmas.ParallelPragma;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.*;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents an XQuery "for" expression.
  * 
@@ -37,6 +40,8 @@ public class ForExpr extends BindingExpression {
     private String positionalVariable = null;
     private boolean allowEmpty = false;
     private boolean isOuterFor = true;
+    private ParallelPragma parallel = null;
+    private ResultConsumer resultConsumer = null;
 
     public ForExpr(XQueryContext context, boolean allowingEmpty) {
         super(context);
@@ -58,6 +63,80 @@ public class ForExpr extends BindingExpression {
         positionalVariable = var;
     }
 
+    /**
+     * @return the name of the positional variable, or null if there is none
+     */
+    public String getPositionalVariable() {
+        return positionalVariable;
+    }
+
+    /**
+     * Evaluate the iterations of this "for" expression concurrently,
+     * as requested by an enclosing exist:parallel pragma.
+     *
+     * @param parallel the pragma
+     */
+    public void setParallel(ParallelPragma parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Receives the result of each iteration, see {@link #setResultConsumer(ResultConsumer)}.
+     */
+    @FunctionalInterface
+    public interface ResultConsumer {
+
+        /**
+         * Receive the result of an iteration.
+         *
+         * @param result the result of the iteration
+         *
+         * @return true if the results of further iterations are needed, false to stop
+         *     evaluating the remaining iterations
+         *
+         * @throws XPathException if the result cannot be processed
+         */
+        boolean accept(Sequence result) throws XPathException;
+    }
+
+    /**
+     * Pass the result of each iteration to the given consumer as soon as it has been
+     * evaluated, instead of collecting the results into the sequence returned by eval.
+     * Only valid if {@link #canStreamResults()} returns true.
+     *
+     * The consumer is a property of the expression, so of the compiled query, and not of
+     * its evaluation. It must only be set by the holder of a compiled query borrowed from
+     * the {@link org.exist.storage.XQueryPool}, and be unset again before the query is returned to the pool.
+     *
+     * @param resultConsumer the consumer, or null to collect the results again
+     */
+    public void setResultConsumer(@Nullable ResultConsumer resultConsumer) {
+        this.resultConsumer = resultConsumer;
+    }
+
+    /**
+     * Check if the results of the iterations may be passed on one at a time,
+     * see {@link #setResultConsumer(ResultConsumer)}. This is not the case if the results
+     * have to be ordered, grouped or type checked as a whole once all iterations
+     * have been evaluated.
+     *
+     * @return true if the results may be streamed
+     */
+    public boolean canStreamResults() {
+        if (getPreviousClause() != null || sequenceType != null || parallel != null) {
+            return false;
+        }
+        Expression next = returnExpr;
+        while (next instanceof FLWORClause) {
+            final ClauseType type = ((FLWORClause) next).getType();
+            if (type == ClauseType.ORDERBY || type == ClauseType.GROUPBY) {
+                return false;
+            }
+            next = ((FLWORClause) next).getReturnExpression();
+        }
+        return true;
+    }
+
 	/* (non-Javadoc)
      * @see org.exist.xquery.Expression#analyze(org.exist.xquery.Expression)
      */
@@ -183,9 +262,14 @@ public class ForExpr extends BindingExpression {
             int p = 0;
             if (in.isEmpty() && allowEmpty) {
                 processItem(var, AtomicValue.EMPTY_VALUE, Sequence.EMPTY_SEQUENCE, resultSequence, at, p);
+            } else if (parallel != null && parallel.canEvaluate(in)) {
+                resultSequence.addAll(parallel.evalIterations(this, in));
             } else {
                 for (final SequenceIterator i = in.iterate(); i.hasNext(); p++) {
-                    processItem(var, i.nextItem(), in, resultSequence, at, p);
+                    if (!processItem(var, i.nextItem(), in, resultSequence, at, p)) {
+                        // the result consumer does not need any more results
+                        break;
+                    }
                 }
             }
         } catch (final QName.IllegalQNameException e) {
@@ -231,7 +315,47 @@ public class ForExpr extends BindingExpression {
         return resultSequence;
     }
 
-    private void processItem(LocalVariable var, Item contextItem, Sequence in, Sequence resultSequence, LocalVariable
+    /**
+     * Evaluate the return clause for the items of the input sequence between start
+     * (inclusive) and end (exclusive). The variables are bound afresh, so this may be called
+     * for a part of the input sequence only, or on the same expression compiled in another
+     * query context. Used for the parallel evaluation of the iterations.
+     *
+     * @param items the items of the input sequence
+     * @param in the input sequence
+     * @param start the position of the first item to process
+     * @param end the position after the last item to process
+     * @return the results of the iterations, in order
+     * @throws XPathException if the evaluation of an iteration fails
+     */
+    public Sequence evalIterations(Item[] items, Sequence in, int start, int end) throws XPathException {
+        final LocalVariable mark = context.markLocalVariables(false);
+        final Sequence resultSequence = new ValueSequence(unordered);
+        try {
+            final LocalVariable var = createVariable(varName);
+            var.setSequenceType(sequenceType);
+            context.declareVariableBinding(var);
+            LocalVariable at = null;
+            if (positionalVariable != null) {
+                at = new LocalVariable(QName.parse(context, positionalVariable, null));
+                at.setSequenceType(POSITIONAL_VAR_TYPE);
+                context.declareVariableBinding(at);
+            }
+            for (int p = start; p < end; p++) {
+                processItem(var, items[p], in, resultSequence, at, p);
+            }
+        } catch (final QName.IllegalQNameException e) {
+            throw new XPathException(ErrorCodes.XPST0081, "No namespace defined for prefix " + positionalVariable);
+        } finally {
+            context.popLocalVariables(mark, resultSequence);
+        }
+        return resultSequence;
+    }
+
+    /**
+     * @return false if the result consumer does not need the results of further iterations
+     */
+    private boolean processItem(LocalVariable var, Item contextItem, Sequence in, Sequence resultSequence, LocalVariable
             at, int p) throws XPathException {
         context.proceed(this);
         context.setContextSequencePosition(p, in);
@@ -246,10 +370,17 @@ public class ForExpr extends BindingExpression {
         //Reset the context position
         context.setContextSequencePosition(0, null);
 
-        resultSequence.addAll(returnExpr.eval(null));
+        final Sequence result = returnExpr.eval(null);
+        boolean proceed = true;
+        if (resultConsumer != null) {
+            proceed = resultConsumer.accept(result);
+        } else {
+            resultSequence.addAll(result);
+        }
 
         // free resources
         var.destroy(context, resultSequence);
+        return proceed;
     }
 
     private boolean callPostEval() {
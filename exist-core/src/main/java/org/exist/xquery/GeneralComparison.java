@@ -661,6 +661,21 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
     }
 
 
+    /**
+     * Decide whether {@link #quickNodeSetCompare(Sequence)} should compare the value of each node,
+     * rather than look up the keys in the range index.
+     *
+     * @param nodes the node set on the left
+     * @param keyCount the number of keys on the right
+     *
+     * @return true if comparing the nodes is estimated to be cheaper
+     */
+    boolean preferNodeScan( final NodeSet nodes, final int keyCount )
+    {
+        return( !( nodes instanceof VirtualNodeSet ) && context.getCostModel().preferNodeScan( contextQName, relation, nodes.getLength(), keyCount ) );
+    }
+
+
     /**
      * Optimized implementation: first checks if a range index is defined on the nodes in the left argument.
      * Otherwise, fall back to {@link #nodeSetCompare(NodeSet, Sequence)}.
@@ -725,6 +740,15 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
                 LOG.trace( "found an index of type: " + Type.getTypeName( indexType ) );
             }
 
+            //for a small node set and a frequent key, comparing the nodes is cheaper than the index lookup
+            if( preferNodeScan( nodes, rightSeq.getItemCount() ) ) {
+
+                if( context.getProfiler().isEnabled() ) {
+                    context.getProfiler().message( this, Profiler.OPTIMIZATION_FLAGS, "OPTIMIZATION CHOICE", "nodeSetCompare is estimated to be cheaper than the index lookup" );
+                }
+                return( nodeSetCompare( nodes, contextSequence ) );
+            }
+
             boolean indexScan = false;
             boolean indexMixed = false;
             QName myContextQName = contextQName;
@@ -106,6 +106,10 @@ public class InstanceOfExpression extends AbstractExpression {
 		return Type.BOOLEAN;
 	}
 
+	public Expression getExpression() {
+		return expression;
+	}
+
 	@Override
 	public Cardinality getCardinality() {
 		return Cardinality.EXACTLY_ONE;
@@ -67,6 +67,9 @@ public class LocationStep extends Step {
     private boolean useDirectChildSelect = false;
     private boolean applyPredicate = true;
 
+    // Number of nodes needed from the result in document order, -1 if all
+    private int resultLimit = -1;
+
     // Cache for the current NodeTest type
     private Integer nodeTestType = null;
 
@@ -697,10 +700,14 @@ public class LocationStep extends Step {
                         "Using structural index '" + index.toString() + "'");
             }
             if (!contextSet.getProcessInReverseOrder() && !(contextSet instanceof VirtualNodeSet) &&
-                    contextSet.getLength() < INDEX_SCAN_THRESHOLD) {
+                    !preferIndexScan(contextSet.getLength())) {
                 return index.findDescendantsByTagName(ElementValue.ELEMENT,
                         test.getName(), axis, docs, contextSet,
                         contextId, parent);
+            } else if (!contextSet.getProcessInReverseOrder() && !(contextSet instanceof VirtualNodeSet)) {
+                // large context: scan the index once alongside the context set
+                return index.joinDescendantsByTagName(ElementValue.ELEMENT, test.getName(), axis, docs, contextSet,
+                        contextId, this);
             } else {
                 // if (contextSet instanceof VirtualNodeSet)
                 // ((VirtualNodeSet)contextSet).realize();
@@ -710,6 +717,51 @@ public class LocationStep extends Step {
         }
     }
 
+    /**
+     * Decide whether the child or descendant nodes of the context set should be found by scanning
+     * the structural index entries for the step's name once, alongside the context set, instead of
+     * looking up the entries below each context node.
+     *
+     * @param contextCount the number of nodes in the context set
+     *
+     * @return true if the index should be scanned
+     */
+    boolean preferIndexScan(final int contextCount) {
+        return contextCount >= INDEX_SCAN_THRESHOLD
+                || context.getCostModel().preferStructuralScan(test.getName(), contextCount);
+    }
+
+    /**
+     * Called if only the first nodes of the result of the given expression are used, as in
+     * <code>(//a)[1]</code>, <code>head(//a)</code> or <code>subsequence(//a, 1, 10)</code>.
+     * If the expression is a path ending in a descendant step without predicates, the structural
+     * index lookup of this step stops once it found limit nodes.
+     *
+     * @param expr the expression whose result is bounded
+     * @param limit the number of nodes used from the result in document order
+     */
+    public static void setResultLimit(Expression expr, final int limit) {
+        while (true) {
+            if (expr instanceof PathExpr) {
+                if (((PathExpr) expr).getLength() == 0) {
+                    return;
+                }
+                expr = ((PathExpr) expr).getLastExpression();
+            } else if (expr instanceof DynamicCardinalityCheck || expr instanceof DynamicTypeCheck) {
+                expr = expr.getSubExpression(0);
+            } else {
+                break;
+            }
+        }
+        if (expr instanceof LocationStep && limit > 0) {
+            final LocationStep step = (LocationStep) expr;
+            if (!step.inPredicate && !step.hasPredicates() && (step.axis == Constants.DESCENDANT_AXIS
+                    || step.axis == Constants.DESCENDANT_SELF_AXIS)) {
+                step.resultLimit = limit;
+            }
+        }
+    }
+
     private Sequence getDescendants(final XQueryContext context, final Sequence contextSequence) throws XPathException {
         if (!contextSequence.isPersistentSet()) {
             final MemoryNodeSet nodes = contextSequence.toMemNodeSet();
@@ -770,9 +822,13 @@ public class LocationStep extends Step {
                         "Using structural index '" + index.toString() + "'");
             }
             if (!contextSet.getProcessInReverseOrder()
-                    && (contextSet instanceof VirtualNodeSet || contextSet.getLength() < INDEX_SCAN_THRESHOLD)) {
+                    && (contextSet instanceof VirtualNodeSet || !preferIndexScan(contextSet.getLength()))) {
                 return index.findDescendantsByTagName(ElementValue.ELEMENT, test.getName(), axis, docs, contextSet,
-                        contextId, this);
+                        contextId, this, resultLimit);
+            } else if (!contextSet.getProcessInReverseOrder()) {
+                // large context: scan the index once alongside the context set
+                return index.joinDescendantsByTagName(ElementValue.ELEMENT, test.getName(), axis, docs, contextSet,
+                        contextId, this, resultLimit);
             } else {
                 final NodeSelector selector;
                 switch (axis) {
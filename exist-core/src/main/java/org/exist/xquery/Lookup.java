@@ -6,6 +6,8 @@ import org.exist.xquery.functions.map.AbstractMapType;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.*;
 
+import javax.annotation.Nullable;
+
 /**
  * Implements the XQuery 3.1 lookup operator on maps and arrays.
  *
@@ -104,6 +106,14 @@ public class Lookup extends AbstractExpression {
         }
     }
 
+    public @Nullable Expression getContextExpression() {
+        return contextExpression;
+    }
+
+    public @Nullable Expression getKeyExpression() {
+        return keyExpression;
+    }
+
     @Override
     public int returnsType() {
         return Type.ITEM;
@@ -21,11 +21,16 @@ package org.exist.xquery;
 
 import org.exist.dom.QName;
 import org.exist.xquery.functions.array.ArrayConstructor;
+import org.exist.xquery.functions.fn.ExtCollection;
+import org.exist.xquery.functions.fn.FunLast;
+import org.exist.xquery.functions.fn.FunPosition;
+import org.exist.xquery.functions.fn.FunSubSequence;
 import org.exist.xquery.pragmas.Optimize;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.IntegerValue;
 import org.exist.xquery.value.Type;
 
 import java.util.*;
@@ -72,6 +77,8 @@ public class Optimizer extends DefaultExpressionVisitor {
     public void visitLocationStep(LocationStep locationStep) {
         super.visitLocationStep(locationStep);
 
+        orderPredicates(locationStep);
+
         // check query rewriters if they want to rewrite the location step
         Pragma optimizePragma = null;
         for (QueryRewriter rewriter : rewriters) {
@@ -102,6 +109,10 @@ public class Optimizer extends DefaultExpressionVisitor {
                     optimize = true;
                     break;
                 }
+                if (!isReorderable(pred)) {
+                    // the index lookup would filter the context of a positional predicate
+                    break;
+                }
             }
         }
 
@@ -145,6 +156,102 @@ public class Optimizer extends DefaultExpressionVisitor {
         }
     }
 
+    /**
+     * Reorder the predicates of a location step by their estimated rank (see {@link CostModel.Estimate#getRank()}),
+     * so that cheap and selective predicates filter the context before expensive ones are evaluated.
+     *
+     * Only runs of adjacent predicates which do not depend on the context position are reordered,
+     * and guards such as <code>[@n castable as xs:integer]</code> are never moved.
+     *
+     * @param locationStep the location step whose predicates should be reordered
+     */
+    private void orderPredicates(final LocationStep locationStep) {
+        final List<Predicate> preds = locationStep.getPredicates();
+        if (preds.size() < 2) {
+            return;
+        }
+
+        final CostModel costModel = context.getCostModel();
+        final List<Predicate> ordered = new ArrayList<>(preds.size());
+        final List<Predicate> run = new ArrayList<>();
+        final Map<Predicate, Double> ranks = new IdentityHashMap<>();
+        for (final Predicate pred : preds) {
+            if (isReorderable(pred)) {
+                final FindOptimizable find = new FindOptimizable();
+                pred.accept(find);
+                final List<Optimizable> list = find.getOptimizables();
+                final boolean indexed = list.size() > 0 && canOptimize(list);
+
+                final CostModel.Estimate estimate = costModel.estimate(locationStep, pred, indexed);
+                if (!estimate.isGuard()) {
+                    ranks.put(pred, estimate.getRank());
+                    run.add(pred);
+                    continue;
+                }
+            }
+            addOrdered(ordered, run, ranks);
+            ordered.add(pred);
+        }
+        addOrdered(ordered, run, ranks);
+
+        if (!ordered.equals(preds)) {
+            preds.clear();
+            preds.addAll(ordered);
+            hasOptimized = true;
+            if (LOG.isTraceEnabled())
+                {LOG.trace("Reordered predicates: " + ExpressionDumper.dump(locationStep));}
+        }
+    }
+
+    private static void addOrdered(final List<Predicate> ordered, final List<Predicate> run, final Map<Predicate, Double> ranks) {
+        // List.sort is stable: predicates of equal rank keep the order of the query
+        run.sort(Comparator.comparingDouble(ranks::get));
+        ordered.addAll(run);
+        run.clear();
+    }
+
+    /**
+     * A predicate may be moved if it filters the context independently of the context position,
+     * i.e. it is neither numeric, which would select by position, nor uses position() or last().
+     */
+    private static boolean isReorderable(final Predicate pred) {
+        final Predicate.ExecutionMode mode = pred.getExecutionMode();
+        if (mode != Predicate.ExecutionMode.NODE && mode != Predicate.ExecutionMode.BOOLEAN) {
+            return false;
+        }
+        if (Dependency.dependsOn(pred, Dependency.CONTEXT_POSITION) || !isPositionIndependent(pred.getExpression(0))) {
+            return false;
+        }
+        final int returnType = pred.getExpression(0).returnsType();
+        return returnType == Type.BOOLEAN || Type.subTypeOf(returnType, Type.NODE);
+    }
+
+    /**
+     * The dependencies of a comparison do not report a call to position() or last() in its operands,
+     * so look for them in the expression tree. Only expressions known not to pass on the context
+     * position are accepted, anything else is treated as position dependent.
+     */
+    private static boolean isPositionIndependent(final Expression expr) {
+        if (expr instanceof InternalFunctionCall) {
+            return isPositionIndependent(((InternalFunctionCall) expr).getFunction());
+        } else if (expr instanceof FunPosition || expr instanceof FunLast) {
+            return false;
+        } else if (expr instanceof LocationStep || expr instanceof LiteralValue || expr instanceof VariableReference) {
+            // the predicates of a step have their own context
+            return true;
+        } else if (expr instanceof PathExpr || expr instanceof DynamicCardinalityCheck || expr instanceof DynamicTypeCheck ||
+                expr instanceof UntypedValueCheck || expr instanceof Atomize) {
+            // paths, operators and the arguments of functions
+            for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+                if (!isPositionIndependent(expr.getSubExpression(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
     public void visitFilteredExpr(FilteredExpression filtered) {
         super.visitFilteredExpr(filtered);
 
@@ -285,6 +392,125 @@ public class Optimizer extends DefaultExpressionVisitor {
         --predicates;
     }
 
+    @Override
+    public void visitBuiltinFunction(Function function) {
+        if (function instanceof FunSubSequence) {
+            limitRankedResults(function);
+        }
+        super.visitBuiltinFunction(function);
+    }
+
+    /**
+     * Check if a call to fn:subsequence only selects the best scoring results of an index function, as in
+     * <code>subsequence(for $h in //p[ft:query(., $q)] order by ft:score($h) descending return $h, 1, 10)</code>,
+     * and if so, tell the index function how many results are needed, see {@link Rankable}.
+     *
+     * The rewrite only applies if the index function is the single predicate of the last step of a path
+     * selecting descendants of documents, and if the for clause is followed only by the order by clause
+     * and returns one item for each node. Nothing but the index function may then remove nodes from the
+     * input of the order by clause.
+     *
+     * @param subsequence the call to fn:subsequence
+     */
+    private void limitRankedResults(final Function subsequence) {
+        if (subsequence.getArgumentCount() != 3) {
+            return;
+        }
+        final long start = integerLiteral(subsequence.getArgument(1));
+        final long length = integerLiteral(subsequence.getArgument(2));
+        if (start < 1 || length < 1 || start + length - 1 > Integer.MAX_VALUE) {
+            return;
+        }
+
+        final Expression source = unwrap(subsequence.getArgument(0));
+        if (!(source instanceof ForExpr) || !(((ForExpr) source).getReturnExpression() instanceof OrderByClause)) {
+            return;
+        }
+        final ForExpr forExpr = (ForExpr) source;
+        final OrderByClause orderBy = (OrderByClause) forExpr.getReturnExpression();
+        if (forExpr.getPositionalVariable() != null || orderBy.getOrderSpecs().length != 1 ||
+                (orderBy.getOrderSpecs()[0].getModifiers() & OrderSpec.DESCENDING_ORDER) == 0) {
+            return;
+        }
+        final Expression returnExpr = unwrap(orderBy.getReturnExpression());
+        if (!(returnExpr instanceof ElementConstructor || isVariable(returnExpr, forExpr.getVariable()))) {
+            return;
+        }
+        final Expression orderExpr = unwrap(orderBy.getOrderSpecs()[0].getSortExpression());
+        if (!(orderExpr instanceof Function) || ((Function) orderExpr).getArgumentCount() != 1 ||
+                !isVariable(unwrap(((Function) orderExpr).getArgument(0)), forExpr.getVariable())) {
+            return;
+        }
+
+        // the input must be a path such as //p[ft:query(., $q)] or collection(...)//p[ft:query(., $q)]
+        final Expression input = forExpr.getInputSequence();
+        if (!(input instanceof PathExpr) || input instanceof Function || ((PathExpr) input).getLength() != 2) {
+            return;
+        }
+        final Expression root = unwrap(((PathExpr) input).getExpression(0));
+        final Expression last = ((PathExpr) input).getExpression(1);
+        if (!(root instanceof RootNode || root instanceof ExtCollection || root.returnsType() == Type.DOCUMENT) ||
+                !(last instanceof LocationStep)) {
+            return;
+        }
+        final LocationStep step = (LocationStep) last;
+        if (!(step.getAxis() == Constants.DESCENDANT_AXIS || step.getAxis() == Constants.DESCENDANT_SELF_AXIS) ||
+                step.getPredicates().size() != 1 || step.getPredicates().get(0).getLength() != 1) {
+            return;
+        }
+        final Expression predicate = unwrap(step.getPredicates().get(0).getExpression(0));
+        if (predicate instanceof Rankable && ((Rankable) predicate).isScoreFunction((Function) orderExpr)) {
+            ((Rankable) predicate).setRankLimit((int) (start + length - 1));
+            hasOptimized = true;
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Limited results of " + ExpressionDumper.dump(predicate) + " to " + (start + length - 1));
+            }
+        }
+    }
+
+    private long integerLiteral(final Expression expression) {
+        final Expression expr = unwrap(expression);
+        if (expr instanceof LiteralValue) {
+            final AtomicValue value = ((LiteralValue) expr).getValue();
+            if (Type.subTypeOf(value.getType(), Type.INTEGER)) {
+                return ((IntegerValue) value).getLong();
+            }
+        }
+        return -1;
+    }
+
+    private boolean isVariable(final Expression expr, final String varName) {
+        if (!(expr instanceof VariableReference)) {
+            return false;
+        }
+        try {
+            return ((VariableReference) expr).getName().equals(QName.parse(context, varName, null));
+        } catch (final QName.IllegalQNameException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Strip path expressions with a single step, the checks added for function arguments
+     * and the wrappers the compiler puts around function calls and return expressions.
+     */
+    private static Expression unwrap(Expression expr) {
+        while (true) {
+            if (expr.getClass() == PathExpr.class && ((PathExpr) expr).getLength() == 1) {
+                expr = ((PathExpr) expr).getExpression(0);
+            } else if (expr instanceof DynamicCardinalityCheck || expr instanceof DynamicTypeCheck ||
+                    expr instanceof UntypedValueCheck || expr instanceof Atomize) {
+                expr = expr.getSubExpression(0);
+            } else if (expr instanceof InternalFunctionCall) {
+                expr = ((InternalFunctionCall) expr).getFunction();
+            } else if (expr instanceof DebuggableExpression) {
+                expr = ((DebuggableExpression) expr).getFirst();
+            } else {
+                return expr;
+            }
+        }
+    }
+
     /**
      * Check if a global variable can be inlined, usually if it
      * references a literal value or sequence thereof.
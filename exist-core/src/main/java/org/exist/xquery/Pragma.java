@@ -35,6 +35,14 @@ public abstract class Pragma {
         this.contents = contents;
     }
 
+    /**
+     * Called by the parser once the expression the pragma applies to is known.
+     *
+     * @param expression the expression enclosed by the extension expression
+     */
+    public void setExpression(Expression expression) {
+    }
+
     public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
     }
 
@@ -0,0 +1,49 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+/**
+ * Implemented by index functions which select nodes with a relevance score, e.g. ft:query.
+ *
+ * If only the nodes with the highest scores are used, as in
+ * <code>subsequence(for $h in //p[ft:query(., $q)] order by ft:score($h) descending return $h, 1, 10)</code>,
+ * the {@link Optimizer} tells the function how many of them are needed, so that the index does not
+ * have to return all of its hits.
+ */
+public interface Rankable extends Expression {
+
+    /**
+     * Check if ordering the nodes selected by this expression by the given function, in descending order,
+     * orders them by their relevance score.
+     *
+     * @param function the function called with the node as its only argument
+     *
+     * @return true if the function returns the score of the node
+     */
+    boolean isScoreFunction(Function function);
+
+    /**
+     * Only the given number of nodes with the highest scores, and any other nodes with the same score
+     * as the last of them, need to be selected.
+     *
+     * @param limit the number of nodes
+     */
+    void setRankLimit(int limit);
+}
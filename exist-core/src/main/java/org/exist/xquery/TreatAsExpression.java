@@ -48,6 +48,10 @@ public class TreatAsExpression extends AbstractExpression {
         return type.getPrimaryType();
     }
 
+    public Expression getExpression() {
+        return expression;
+    }
+
     @Override
     public Cardinality getCardinality() {
         return type.getCardinality();
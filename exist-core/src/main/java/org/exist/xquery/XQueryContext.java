@@ -78,6 +78,7 @@ import org.exist.source.*;
 import org.exist.stax.ExtendedXMLStreamReader;
 import org.exist.storage.DBBroker;
 import org.exist.storage.UpdateListener;
+import org.exist.storage.XQueryPool;
 import org.exist.storage.lock.Lock.LockMode;
 import org.exist.storage.lock.LockedDocumentMap;
 import org.exist.storage.txn.Txn;
@@ -364,12 +365,22 @@ public class XQueryContext implements BinaryValueManager, Context {
 
     private boolean enableOptimizer = true;
 
+    /**
+     * Cost model of the optimizer, created on first use.
+     */
+    @Nullable private CostModel costModel = null;
+
     private boolean raiseErrorOnFailedRetrieval = XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL_DEFAULT;
 
     private boolean isShared = false;
 
     private Source source = null;
 
+    /**
+     * The exist:parallel pragmas of the query, in the order in which they were parsed.
+     */
+    private final List<ParallelPragma> parallelPragmas = new ArrayList<>();
+
     private DebuggeeJoint debuggeeJoint = null;
 
     private int xqueryVersion = 31;
@@ -2499,12 +2510,7 @@ public class XQueryContext implements BinaryValueManager, Context {
             LOG.debug("Loading module from " + location);
         }
 
-        try (final Reader reader = source.getReader()) {
-            if (reader == null) {
-                throw moduleLoadException("failed to load module: '" + namespaceURI + "' from: " +
-                        "'" + source + "', location: '" + location + "'. Source not found. ", location);
-            }
-
+        try {
             if (namespaceURI == null) {
                 final QName qname = source.isModule();
                 if (qname == null) {
@@ -2512,15 +2518,73 @@ public class XQueryContext implements BinaryValueManager, Context {
                 }
                 namespaceURI = qname.getNamespaceURI();
             }
+        } catch (final IOException e) {
+            throw moduleLoadException("IO exception while loading module '" + namespaceURI + "'" + " from '" + source + "'", location, e);
+        }
+
+        final ExternalModuleImpl modExternal = new ExternalModuleImpl(namespaceURI, prefix);
+        setModule(namespaceURI, modExternal);
+        final XQueryContext modContext = new ModuleContext(this, prefix, namespaceURI, location);
+        modExternal.setContext(modContext);
+
+        // only the parsing is shared between queries, each query still compiles its own copy of the module
+        final XQueryPool xqueryPool = getBroker().getBrokerPool().getXQueryPool();
+        AST ast = xqueryPool.getModuleAST(getBroker(), source);
+        if (ast == null) {
+            ast = parseModule(modContext, namespaceURI, location, source);
+            xqueryPool.putModuleAST(source, ast);
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Reusing syntax tree of module " + location);
+        }
+
+        final XQueryTreeParser astParser = new XQueryTreeParser(modContext, modExternal);
+
+        try {
+            final PathExpr path = new PathExpr(modContext);
+            astParser.xpath(ast, path);
+
+            if (astParser.foundErrors()) {
+                throw new XPathException(ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + astParser.getErrorMessage(), astParser.getLastException());
+            }
+
+            modExternal.setRootExpression(path);
+
+            if (namespaceURI != null && !modExternal.getNamespaceURI().equals(namespaceURI)) {
+                throw new XPathException(ErrorCodes.XQST0059, "namespace URI declared by module (" + modExternal.getNamespaceURI() + ") does not match namespace URI in import statement, which was: " + namespaceURI);
+            }
+
+            modExternal.setSource(source);
+            modContext.setSource(source);
+            modExternal.setIsReady(true);
+            return modExternal;
+        } catch (final RecognitionException e) {
+            throw new XPathException(e.getLine(), e.getColumn(), ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage());
+        } catch (final XPathException e) {
+            e.prependMessage("Error while loading module " + location + ": ");
+            throw e;
+        }
+    }
+
+    /**
+     * Parse the source of an XQuery Module into a syntax tree.
+     *
+     * @param modContext   the context of the module.
+     * @param namespaceURI the namespace URI of the module.
+     * @param location     the location of the module
+     * @param source       the source of the module.
+     * @return The syntax tree of the module
+     * @throws XPathException if the module could not be loaded (XQST0059) or parsed (XPST0003)
+     */
+    private AST parseModule(final XQueryContext modContext, final String namespaceURI, final String location,
+                            final Source source) throws XPathException {
+        try (final Reader reader = source.getReader()) {
+            if (reader == null) {
+                throw moduleLoadException("failed to load module: '" + namespaceURI + "' from: " +
+                        "'" + source + "', location: '" + location + "'. Source not found. ", location);
+            }
 
-            final ExternalModuleImpl modExternal = new ExternalModuleImpl(namespaceURI, prefix);
-            setModule(namespaceURI, modExternal);
-            final XQueryContext modContext = new ModuleContext(this, prefix, namespaceURI, location);
-            modExternal.setContext(modContext);
             final XQueryLexer lexer = new XQueryLexer(modContext, reader);
             final XQueryParser parser = new XQueryParser(lexer);
-            final XQueryTreeParser astParser = new XQueryTreeParser(modContext, modExternal);
-
             try {
                 parser.xpath();
 
@@ -2530,40 +2594,16 @@ public class XQueryContext implements BinaryValueManager, Context {
                     }
                     throw new XPathException(ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + parser.getErrorMessage());
                 }
-
-                final AST ast = parser.getAST();
-
-                final PathExpr path = new PathExpr(modContext);
-                astParser.xpath(ast, path);
-
-                if (astParser.foundErrors()) {
-                    throw new XPathException(ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + astParser.getErrorMessage(), astParser.getLastException());
-                }
-
-                modExternal.setRootExpression(path);
-
-                if (namespaceURI != null && !modExternal.getNamespaceURI().equals(namespaceURI)) {
-                    throw new XPathException(ErrorCodes.XQST0059, "namespace URI declared by module (" + modExternal.getNamespaceURI() + ") does not match namespace URI in import statement, which was: " + namespaceURI);
-                }
-
-                // Set source information on module context
-//            String sourceClassName = source.getClass().getName();
-//            modContext.setSourceKey(source.getKey().toString());
-                // Extract the source type from the classname by removing the package prefix and the "Source" suffix
-//            modContext.setSourceType( sourceClassName.substring( 17, sourceClassName.length() - 6 ) );
-
-                modExternal.setSource(source);
-                modContext.setSource(source);
-                modExternal.setIsReady(true);
-                return modExternal;
-            } catch (final RecognitionException e) {
-                throw new XPathException(e.getLine(), e.getColumn(), ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage());
-            } catch (final TokenStreamException e) {
-                throw new XPathException(ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage(), e);
             } catch (final XPathException e) {
                 e.prependMessage("Error while loading module " + location + ": ");
                 throw e;
             }
+
+            return parser.getAST();
+        } catch (final RecognitionException e) {
+            throw new XPathException(e.getLine(), e.getColumn(), ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage());
+        } catch (final TokenStreamException e) {
+            throw new XPathException(ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage(), e);
         } catch (final IOException e) {
             throw moduleLoadException("IO exception while loading module '" + namespaceURI + "'" + " from '" + source + "'", location, e);
         }
@@ -2712,6 +2752,19 @@ public class XQueryContext implements BinaryValueManager, Context {
         return enableOptimizer;
     }
 
+    /**
+     * Get the cost model for estimating the cost of evaluating
+     * expressions from the statistics of the database.
+     *
+     * @return the cost model
+     */
+    public CostModel getCostModel() {
+        if (costModel == null) {
+            costModel = new CostModel(this);
+        }
+        return costModel;
+    }
+
     @Override
     public void addOption(final String name, final String value) throws XPathException {
         if (staticOptions == null) {
@@ -2836,11 +2889,28 @@ public class XQueryContext implements BinaryValueManager, Context {
             if (NoIndexPragma.NO_INDEX_PRAGMA.equals(qname)) {
                 return new NoIndexPragma(qname, contents);
             }
+
+            if (ParallelPragma.PARALLEL_PRAGMA.equals(qname)) {
+                final ParallelPragma pragma = new ParallelPragma(this, qname, contents, parallelPragmas.size());
+                parallelPragmas.add(pragma);
+                return pragma;
+            }
         }
 
         return null;
     }
 
+    /**
+     * Get an exist:parallel pragma of the query by its position.
+     *
+     * @param ordinal the position of the pragma in the query, starting at 0
+     *
+     * @return the pragma, or null if the query has less pragmas
+     */
+    public @Nullable ParallelPragma getParallelPragma(final int ordinal) {
+        return ordinal < parallelPragmas.size() ? parallelPragmas.get(ordinal) : null;
+    }
+
     @Override
     public DocumentImpl storeTemporaryDoc(final org.exist.dom.memtree.DocumentImpl doc) throws XPathException {
         try {
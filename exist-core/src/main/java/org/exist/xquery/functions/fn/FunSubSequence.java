@@ -91,6 +91,38 @@ public class FunSubSequence extends Function {
             }
         }
         argumentsChecked = true;
+
+        // subsequence($a, $start, $length) only needs the first $start + $length - 1 nodes of $a
+        if (getArgumentCount() == 3) {
+            final double start = getLiteralNumber(getArgument(1));
+            final double length = getLiteralNumber(getArgument(2));
+            final double limit = Math.floor(start + 0.5) + Math.floor(length + 0.5) - 1;
+            if (limit >= 1 && limit <= Integer.MAX_VALUE) {
+                LocationStep.setResultLimit(getArgument(0), (int) limit);
+            }
+        }
+    }
+
+    /**
+     * Get the value of a numeric literal argument.
+     *
+     * @param arg the argument
+     *
+     * @return the value, or NaN if the argument is not a numeric literal
+     */
+    private static double getLiteralNumber(Expression arg) {
+        while (arg instanceof DynamicCardinalityCheck || arg instanceof DynamicTypeCheck
+                || arg instanceof UntypedValueCheck || arg instanceof Atomize) {
+            arg = arg.getSubExpression(0);
+        }
+        if (arg instanceof LiteralValue && ((LiteralValue) arg).getValue() instanceof NumericValue) {
+            try {
+                return ((NumericValue) ((LiteralValue) arg).getValue()).getDouble();
+            } catch (final XPathException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
     }
 
     @Override
@@ -360,7 +360,8 @@ public class Transform extends BasicFunction {
                     stylesheet = TemplatesFactory.stylesheet(
                         getContext().getBroker(),
                         stylesheetNode,
-                        context.getModuleLoadPath()
+                        context.getModuleLoadPath(),
+                        useCache
                     );
                 }
             } else {
@@ -0,0 +1,123 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.functions.xmldb;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.dom.QName;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BulkLoader;
+import org.exist.util.DirectoryScanner;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.BasicFunction;
+import org.exist.xquery.Cardinality;
+import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQueryContext;
+import org.exist.xquery.value.FunctionParameterSequenceType;
+import org.exist.xquery.value.FunctionReturnSequenceType;
+import org.exist.xquery.value.IntegerValue;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.SequenceType;
+import org.exist.xquery.value.StringValue;
+import org.exist.xquery.value.Type;
+import org.exist.xquery.value.ValueSequence;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Implements the xmldb:bulk-load() function.
+ *
+ * Stores XML files from the server's file system using several threads,
+ * and builds the indexes of the collection once all files have been stored.
+ */
+public class XMLDBBulkLoad extends BasicFunction {
+    private static final Logger logger = LogManager.getLogger(XMLDBBulkLoad.class);
+
+    public final static FunctionSignature signature = new FunctionSignature(
+            new QName("bulk-load", XMLDBModule.NAMESPACE_URI, XMLDBModule.PREFIX),
+            "Stores the XML files matching $pattern in $directory of the server's file system into " +
+            "the collection $collection-uri, using up to $threads threads. Each file is stored under its path relative to " +
+            "$directory, the sub-collections for its directories are created as needed. " +
+            "Index updates are deferred whilst the files are stored, the collection is reindexed once all of them " +
+            "have been stored, so queries on the collection may return incomplete results until the function has " +
+            "returned. Files which cannot be stored are skipped and logged. " +
+            "The function returns a sequence of all document paths added to the db. " +
+            XMLDBModule.COLLECTION_URI + " " +
+            XMLDBModule.NEED_PRIV_USER,
+            new SequenceType[] {
+                new FunctionParameterSequenceType("collection-uri", Type.STRING, Cardinality.EXACTLY_ONE, "The collection-uri where resources should be stored."),
+                new FunctionParameterSequenceType("directory", Type.STRING, Cardinality.EXACTLY_ONE, "The directory in the file system from where the files are read."),
+                new FunctionParameterSequenceType("pattern", Type.STRING, Cardinality.ONE_OR_MORE, "The file matching pattern, e.g. **/*.xml, see xmldb:store-files-from-pattern()."),
+                new FunctionParameterSequenceType("threads", Type.INTEGER, Cardinality.EXACTLY_ONE, "The maximum number of threads storing files.")
+            },
+            new FunctionReturnSequenceType(Type.STRING, Cardinality.ZERO_OR_MORE, "the sequence of document paths")
+    );
+
+    public XMLDBBulkLoad(final XQueryContext context, final FunctionSignature signature) {
+        super(context, signature);
+    }
+
+    @Override
+    public Sequence eval(final Sequence[] args, final Sequence contextSequence) throws XPathException {
+        if (!context.getSubject().hasDbaRole()) {
+            throw new XPathException(this, "Permission denied, user '" + context.getSubject().getName() + "' must be a DBA to bulk load files");
+        }
+
+        final XmldbURI collectionUri;
+        try {
+            collectionUri = XmldbURI.xmldbUriFor(args[0].getStringValue()).toCollectionPathURI();
+        } catch (final URISyntaxException e) {
+            throw new XPathException(this, "Invalid collection URI: " + args[0].getStringValue(), e);
+        }
+        final Path baseDir = Paths.get(args[1].getStringValue()).normalize();
+        final int threads = ((IntegerValue) args[3].itemAt(0)).getInt();
+
+        try {
+            // a file may match more than one of the patterns
+            final Set<Path> files = new LinkedHashSet<>();
+            for (final SequenceIterator i = args[2].iterate(); i.hasNext(); ) {
+                files.addAll(DirectoryScanner.scanDir(baseDir, i.nextItem().getStringValue()));
+            }
+            logger.debug("Bulk loading {} files from directory: {}", files.size(), baseDir.toAbsolutePath());
+
+            final BulkLoader loader = new BulkLoader(context.getBroker().getBrokerPool(), context.getSubject(), collectionUri, threads);
+            final BulkLoader.Result result = loader.load(baseDir, new ArrayList<>(files));
+
+            final ValueSequence stored = new ValueSequence();
+            for (final XmldbURI docUri : result.getStored()) {
+                stored.add(new StringValue(docUri.toString()));
+            }
+            return stored;
+        } catch (final EXistException | PermissionDeniedException | IOException | LockException | TriggerException e) {
+            throw new XPathException(this, "An error occurred while bulk loading into " + collectionUri + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.pragmas;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.Namespaces;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.NewArrayNodeSet;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.security.PermissionDeniedException;
+import org.exist.security.Subject;
+import org.exist.source.Source;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.xquery.*;
+import org.exist.xquery.functions.request.RequestModule;
+import org.exist.xquery.functions.response.ResponseModule;
+import org.exist.xquery.functions.securitymanager.SecurityManagerModule;
+import org.exist.xquery.functions.session.SessionModule;
+import org.exist.xquery.functions.system.SystemModule;
+import org.exist.xquery.functions.util.UtilModule;
+import org.exist.xquery.functions.map.MapExpr;
+import org.exist.xquery.functions.xmldb.XMLDBModule;
+import org.exist.xquery.update.Modification;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.NodeValue;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+import org.exist.xquery.value.ValueSequence;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates the iterations of a "for" expression concurrently:
+ *
+ * <pre>
+ * (# exist:parallel threads=4 #) {
+ *     for $doc in collection("/db/articles")/article
+ *     return transform:transform($doc, $xsl, ())
+ * }
+ * </pre>
+ *
+ * The input sequence is evaluated once, then split into chunks which are processed by the calling
+ * thread and up to threads - 1 (default: the number of available processors) worker threads of the
+ * executor shared by the database instance, see {@link BrokerPool#getWorkerExecutor()}.
+ * Every worker leases its own broker from the pool and uses its own compiled copy of the query,
+ * as expressions keep evaluation state and cannot be shared between threads. The copies are
+ * compiled once and reused by later evaluations, at most threads - 1 of them are kept. The results
+ * are returned in the order of the input sequence.
+ *
+ * The pragma is an assertion by the query author that the iterations are independent. The
+ * expression is evaluated sequentially, with a warning at compile time, if:
+ * <ul>
+ *     <li>it is not a FLWOR expression starting with a "for" clause, or the FLWOR has an
+ *     "order by" or "group by" clause</li>
+ *     <li>it is in the scope of a local variable (e.g. in a function with parameters, or in
+ *     another FLWOR expression), or in a library module</li>
+ *     <li>the return clause updates the database (XQuery Update), calls a function of the
+ *     xmldb, file, request, response, session, system, sm, repo or scheduler modules or
+ *     util:eval, or calls a function item</li>
+ *     <li>the return clause contains an expression whose operands the check does not know how to
+ *     inspect, e.g. a string constructor or an arrow operator</li>
+ * </ul>
+ * User-defined functions called by the return clause are checked as well. The expression is also
+ * evaluated sequentially if the query was not compiled from a source, or, at run time, if the
+ * input sequence has less than two items, or contains in-memory nodes or the same node twice. A
+ * worker never waits for a broker, see {@link BrokerPool#tryGet(Optional)}: if no broker is
+ * available, or all worker threads are busy, the calling thread evaluates the chunks itself.
+ *
+ * Every worker is given its own copy of the values of the global variables of the main module, as
+ * evaluating an expression may modify the nodes of a value. Variables of imported library
+ * modules are initialized again by each worker. Statically known documents set by the caller
+ * are not passed to the workers.
+ */
+public class ParallelPragma extends Pragma {
+
+    public static final QName PARALLEL_PRAGMA = new QName("parallel", Namespaces.EXIST_NS, "exist");
+
+    private static final Logger LOG = LogManager.getLogger(ParallelPragma.class);
+
+    /**
+     * Number of chunks per thread. More chunks balance the load better if the
+     * iterations differ in cost.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final Set<String> SIDE_EFFECT_MODULES = new HashSet<>(Arrays.asList(
+            XMLDBModule.NAMESPACE_URI,
+            RequestModule.NAMESPACE_URI,
+            ResponseModule.NAMESPACE_URI,
+            SessionModule.NAMESPACE_URI,
+            SystemModule.NAMESPACE_URI,
+            SecurityManagerModule.NAMESPACE_URI,
+            "http://exist-db.org/xquery/file",
+            "http://exist-db.org/xquery/repo",
+            "http://exist-db.org/xquery/scheduler"
+    ));
+
+    private final XQueryContext context;
+    private final int ordinal;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Expression expression = null;
+    private ForExpr forExpr = null;
+    private boolean enabled = true;
+
+    /**
+     * Compiled copies of the query which are not in use by a worker, at most
+     * one per worker thread of an evaluation.
+     */
+    private final BlockingQueue<WorkerQuery> workerQueries;
+
+    /**
+     * Number of chunks of iterations evaluated by worker threads.
+     */
+    private final AtomicLong workerChunks = new AtomicLong();
+
+    public ParallelPragma(XQueryContext context, QName qname, String contents, int ordinal) throws XPathException {
+        super(qname, contents);
+        this.context = context;
+        this.ordinal = ordinal;
+        if (contents != null && contents.length() > 0) {
+            final String options[] = Option.tokenize(contents);
+            for (final String option : options) {
+                final String param[] = Option.parseKeyValuePair(option);
+                if (param == null || !"threads".equals(param[0])) {
+                    throw new XPathException("Invalid content found for pragma " + PARALLEL_PRAGMA.getStringValue() +
+                            ": " + contents);
+                }
+                try {
+                    threads = Integer.parseInt(param[1]);
+                } catch (final NumberFormatException e) {
+                    throw new XPathException("Invalid number of threads for pragma " +
+                            PARALLEL_PRAGMA.getStringValue() + ": " + param[1]);
+                }
+            }
+        }
+        this.workerQueries = new ArrayBlockingQueue<>(Math.max(1, threads - 1));
+    }
+
+    @Override
+    public void setExpression(Expression expression) {
+        this.expression = expression;
+    }
+
+    @Override
+    public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
+        super.analyze(contextInfo);
+        if (forExpr == null) {
+            forExpr = getForExpr(expression);
+        }
+        if (!enabled) {
+            return;
+        }
+        final String reason = checkEligible();
+        if (reason != null) {
+            LOG.warn(PARALLEL_PRAGMA.getStringValue() + " ignored at line " + getLine() + ": " + reason);
+            disable();
+        } else {
+            forExpr.setParallel(this);
+        }
+    }
+
+    @Override
+    public void before(XQueryContext context, Expression expression, Sequence contextSequence) throws XPathException {
+    }
+
+    @Override
+    public void after(XQueryContext context, Expression expression) throws XPathException {
+    }
+
+    /**
+     * Evaluate the "for" expression sequentially.
+     */
+    private void disable() {
+        enabled = false;
+        if (forExpr != null) {
+            forExpr.setParallel(null);
+        }
+    }
+
+    /**
+     * Get the number of chunks of iterations which have been evaluated
+     * by worker threads rather than by the thread evaluating the query.
+     *
+     * @return the number of chunks evaluated by worker threads
+     */
+    public long getWorkerChunks() {
+        return workerChunks.get();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    int getKeptWorkerQueries() {
+        return workerQueries.size();
+    }
+
+    private int getLine() {
+        return expression == null ? -1 : expression.getLine();
+    }
+
+    /**
+     * Check if the expression can be evaluated in parallel.
+     *
+     * @return the reason why it cannot, or null if it can
+     */
+    private @Nullable String checkEligible() {
+        if (forExpr == null) {
+            return "the expression is not a for expression";
+        }
+        if (context instanceof ModuleContext) {
+            return "the expression is in a library module";
+        }
+        if (!context.getLocalVariables().isEmpty()) {
+            return "the expression is in the scope of local variables";
+        }
+        Expression next = forExpr.getReturnExpression();
+        while (next instanceof FLWORClause) {
+            final FLWORClause.ClauseType type = ((FLWORClause) next).getType();
+            if (type == FLWORClause.ClauseType.ORDERBY || type == FLWORClause.ClauseType.GROUPBY) {
+                return "the expression has an order by or group by clause";
+            }
+            next = ((FLWORClause) next).getReturnExpression();
+        }
+        final SideEffectsVisitor visitor = new SideEffectsVisitor();
+        forExpr.getReturnExpression().accept(visitor);
+        return visitor.reason;
+    }
+
+    private static @Nullable ForExpr getForExpr(Expression expr) {
+        while (expr != null && expr.getClass() == PathExpr.class && ((PathExpr) expr).getLength() == 1) {
+            expr = ((PathExpr) expr).getExpression(0);
+        }
+        return expr instanceof ForExpr ? (ForExpr) expr : null;
+    }
+
+    /**
+     * Check if the iterations over the input sequence can be evaluated in parallel.
+     *
+     * @param in the input sequence of the "for" expression
+     * @return true if the input sequence can be split
+     */
+    public boolean canEvaluate(Sequence in) throws XPathException {
+        if (!enabled || threads < 2 || context.getSource() == null || in.getItemCount() < 2) {
+            return false;
+        }
+        if (in.isPersistentSet()) {
+            return true;
+        }
+        final Set<Item> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final SequenceIterator i = in.iterate(); i.hasNext(); ) {
+            final Item item = i.nextItem();
+            if (Type.subTypeOf(item.getType(), Type.NODE)) {
+                // the context of a node is modified while evaluating an iteration
+                if (((NodeValue) item).getImplementationType() != NodeValue.PERSISTENT_NODE || !nodes.add(item)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the iterations of the "for" expression over the input sequence in parallel.
+     *
+     * @param forExpr the "for" expression
+     * @param in the input sequence
+     * @return the results of all iterations, in order
+     * @throws XPathException if an iteration fails
+     */
+    public Sequence evalIterations(ForExpr forExpr, Sequence in) throws XPathException {
+        final Item[] items = new Item[in.getItemCount()];
+        int n = 0;
+        for (final SequenceIterator i = in.iterate(); i.hasNext(); ) {
+            items[n++] = i.nextItem();
+        }
+
+        final Iterations iterations = new Iterations(forExpr, items, in, threads);
+        final int workers = Math.min(threads, iterations.chunks) - 1;
+        if (workers < 1) {
+            return forExpr.evalIterations(items, in, 0, items.length);
+        }
+
+        final BrokerPool pool = context.getBroker().getBrokerPool();
+        final Subject subject = context.getBroker().getCurrentSubject();
+        final ExecutorService executor = pool.getWorkerExecutor();
+        final List<Future<Void>> futures = new ArrayList<>(workers);
+        // a worker only runs if it claims its slot before this thread does
+        final AtomicBoolean[] claimed = new AtomicBoolean[workers];
+        for (int i = 0; i < workers; i++) {
+            // copied by this thread, the only one which reads the values of the query
+            final List<Variable> globals = copyGlobalVariables();
+            final AtomicBoolean slot = claimed[i] = new AtomicBoolean();
+            futures.add(executor.submit(() -> {
+                if (slot.compareAndSet(false, true)) {
+                    evalWorker(pool, subject, iterations, globals);
+                }
+                return null;
+            }));
+        }
+
+        XPathException error = null;
+        try {
+            evalChunks(forExpr, iterations, false);
+        } catch (final XPathException e) {
+            iterations.cancelled = true;
+            error = e;
+        }
+        for (int i = 0; i < workers; i++) {
+            // this thread has taken all chunks, so a worker which has not started yet is not needed.
+            // A worker which has started may still be evaluating its last chunk and is waited for
+            if (claimed[i].compareAndSet(false, true)) {
+                futures.get(i).cancel(false);
+                continue;
+            }
+            try {
+                futures.get(i).get();
+            } catch (final ExecutionException e) {
+                iterations.cancelled = true;
+                if (error == null) {
+                    error = e.getCause() instanceof XPathException ? (XPathException) e.getCause() :
+                            new XPathException(forExpr, "Error while evaluating in parallel: " +
+                                    e.getCause().getMessage(), e.getCause());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                iterations.cancelled = true;
+                throw new XPathException(forExpr, "Interrupted while evaluating in parallel", e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+
+        final ValueSequence result = new ValueSequence();
+        for (final Sequence chunk : iterations.results) {
+            result.addAll(chunk);
+        }
+        return result;
+    }
+
+    /**
+     * Take chunks of iterations until there are none left.
+     */
+    private void evalChunks(ForExpr forExpr, Iterations iterations, boolean worker) throws XPathException {
+        int chunk;
+        while (!iterations.cancelled && (chunk = iterations.next.getAndIncrement()) < iterations.chunks) {
+            // the watchdog of the query is checked to stop workers if the query is killed
+            context.getWatchDog().proceed(forExpr);
+            final int start = chunk * iterations.chunkSize;
+            final int end = Math.min(iterations.items.length, start + iterations.chunkSize);
+            iterations.results[chunk] = forExpr.evalIterations(iterations.items, iterations.in, start, end);
+            if (worker) {
+                workerChunks.incrementAndGet();
+            }
+        }
+    }
+
+    private void evalWorker(BrokerPool pool, Subject subject, Iterations iterations, List<Variable> globals)
+            throws EXistException, XPathException, IOException, PermissionDeniedException {
+        if (iterations.cancelled || iterations.next.get() >= iterations.chunks) {
+            return;
+        }
+        // never wait for a broker, whilst the calling thread holds one and waits for this worker.
+        // Without a broker, the chunks of this worker are evaluated by the calling thread
+        final Optional<DBBroker> leased = pool.tryGet(Optional.of(subject));
+        if (!leased.isPresent()) {
+            return;
+        }
+        try (final DBBroker broker = leased.get()) {
+            WorkerQuery query = workerQueries.poll();
+            try {
+                if (query == null) {
+                    query = compile(broker, iterations.forExpr);
+                } else {
+                    query.context.prepareForReuse();
+                    query.compiled.reset();
+                    query.context.getWatchDog().reset();
+                }
+
+                for (final Variable var : globals) {
+                    query.context.declareGlobalVariable(var);
+                }
+                query.context.prepareForExecution();
+
+                evalChunks(query.forExpr, iterations, true);
+            } catch (final XPathException | IOException | PermissionDeniedException e) {
+                iterations.cancelled = true;
+                throw e;
+            } finally {
+                if (query != null) {
+                    query.context.runCleanupTasks();
+                    query.context.reset();
+                    // a copy which is not kept, because the evaluation failed or enough copies are kept, is discarded
+                    if (!iterations.cancelled) {
+                        workerQueries.offer(query);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile the query in a new context and find the copy of the "for" expression.
+     */
+    private WorkerQuery compile(DBBroker broker, ForExpr forExpr)
+            throws XPathException, IOException, PermissionDeniedException {
+        final Source source = context.getSource();
+        final XQueryContext workerContext = new XQueryContext(broker.getBrokerPool());
+        workerContext.setModuleLoadPath(context.getModuleLoadPath());
+        workerContext.setHttpContext(context.getHttpContext());
+        final CompiledXQuery compiled = broker.getBrokerPool().getXQueryService().compile(broker, workerContext, source);
+
+        // no nested parallel evaluation in workers
+        ParallelPragma pragma;
+        for (int i = 0; (pragma = workerContext.getParallelPragma(i)) != null; i++) {
+            pragma.disable();
+        }
+
+        final ParallelPragma twin = workerContext.getParallelPragma(ordinal);
+        if (twin == null || twin.forExpr == null || twin.forExpr.getLine() != forExpr.getLine() ||
+                twin.forExpr.getColumn() != forExpr.getColumn()) {
+            workerContext.reset();
+            throw new XPathException(forExpr, "Query " + source.path() + " was modified during parallel evaluation");
+        }
+        return new WorkerQuery(workerContext, compiled, twin.forExpr);
+    }
+
+    /**
+     * Copy the global variables of the query, so that a worker can modify
+     * the nodes of their values, e.g. their context, independently.
+     */
+    private List<Variable> copyGlobalVariables() throws XPathException {
+        final List<Variable> copies = new ArrayList<>();
+        for (final Variable var : context.getGlobalVariables().values()) {
+            final VariableImpl copy;
+            if (var instanceof VariableImpl) {
+                copy = new VariableImpl((VariableImpl) var);
+            } else {
+                copy = new VariableImpl(var.getQName());
+                copy.setStaticType(var.getStaticType());
+                copy.setContextDocs(var.getContextDocs());
+            }
+            copy.setValue(copyValue(var.getValue()));
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static Sequence copyValue(@Nullable Sequence value) throws XPathException {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        if (value.isPersistentSet()) {
+            final NewArrayNodeSet copy = new NewArrayNodeSet();
+            for (final NodeProxy node : value.toNodeSet()) {
+                copy.add(copyNode(node));
+            }
+            return copy;
+        }
+        final ValueSequence copy = new ValueSequence(value.getItemCount());
+        for (final SequenceIterator i = value.iterate(); i.hasNext(); ) {
+            final Item item = i.nextItem();
+            copy.add(item instanceof NodeProxy ? copyNode((NodeProxy) item) : item);
+        }
+        return copy;
+    }
+
+    private static NodeProxy copyNode(NodeProxy node) {
+        final NodeProxy copy = new NodeProxy(node.getOwnerDocument(), node.getNodeId(), node.getNodeType(),
+                node.getInternalAddress());
+        copy.addMatches(node);
+        return copy;
+    }
+
+    /**
+     * A compiled copy of the query for use by a worker.
+     */
+    private static class WorkerQuery {
+        final XQueryContext context;
+        final CompiledXQuery compiled;
+        final ForExpr forExpr;
+
+        WorkerQuery(XQueryContext context, CompiledXQuery compiled, ForExpr forExpr) {
+            this.context = context;
+            this.compiled = compiled;
+            this.forExpr = forExpr;
+        }
+    }
+
+    /**
+     * The iterations of one evaluation of the "for" expression, split into chunks.
+     */
+    private static class Iterations {
+        final ForExpr forExpr;
+        final Item[] items;
+        final Sequence in;
+        final int chunkSize;
+        final int chunks;
+        final Sequence[] results;
+        final AtomicInteger next = new AtomicInteger();
+        volatile boolean cancelled = false;
+
+        Iterations(ForExpr forExpr, Item[] items, Sequence in, int threads) {
+            this.forExpr = forExpr;
+            this.items = items;
+            this.in = in;
+            this.chunkSize = Math.max(1, items.length / (threads * CHUNKS_PER_THREAD));
+            this.chunks = (items.length + chunkSize - 1) / chunkSize;
+            this.results = new Sequence[chunks];
+        }
+    }
+
+    /**
+     * Looks for expressions which are not safe to evaluate concurrently. The check fails closed:
+     * an expression which is not known to the visitor, and whose operands it therefore cannot
+     * check, makes the expression ineligible.
+     */
+    private static class SideEffectsVisitor extends DefaultExpressionVisitor {
+
+        private final Set<UserDefinedFunction> visited = new HashSet<>();
+        private String reason = null;
+
+        private void setReason(final String reason) {
+            if (this.reason == null) {
+                this.reason = reason;
+            }
+        }
+
+        @Override
+        public void visit(Expression expression) {
+            if (expression instanceof LiteralValue || expression instanceof EmptySequenceExpr ||
+                    expression instanceof RootNode || expression instanceof TextConstructor ||
+                    expression instanceof CommentConstructor || expression instanceof PIConstructor ||
+                    expression instanceof CDATAConstructor) {
+                // no operands
+            } else if (expression instanceof PathExpr) {
+                // the expression of a nested pragma
+                expression.accept(this);
+            } else if (expression instanceof MapExpr) {
+                // MapExpr#accept visits the keys and values
+            } else if (expression instanceof Modification) {
+                setReason("the return clause updates the database");
+            } else if (expression instanceof DynamicFunctionCall || expression instanceof NamedFunctionReference ||
+                    expression instanceof InlineFunction || expression instanceof PartialFunctionApplication) {
+                setReason("the return clause uses function items");
+            } else if (expression instanceof WhereClause) {
+                ((WhereClause) expression).getWhereExpr().accept(this);
+                ((WhereClause) expression).getReturnExpression().accept(this);
+            } else if (expression instanceof QuantifiedExpression) {
+                ((QuantifiedExpression) expression).getInputSequence().accept(this);
+                ((QuantifiedExpression) expression).getReturnExpression().accept(this);
+            } else if (expression instanceof CastableExpression) {
+                ((CastableExpression) expression).getExpression().accept(this);
+            } else if (expression instanceof InstanceOfExpression) {
+                ((InstanceOfExpression) expression).getExpression().accept(this);
+            } else if (expression instanceof TreatAsExpression) {
+                ((TreatAsExpression) expression).getExpression().accept(this);
+            } else if (expression instanceof AtomicToString) {
+                ((AtomicToString) expression).getExpression().accept(this);
+            } else if (expression instanceof Lookup) {
+                final Expression context = ((Lookup) expression).getContextExpression();
+                if (context != null) {
+                    context.accept(this);
+                }
+                final Expression key = ((Lookup) expression).getKeyExpression();
+                if (key != null) {
+                    key.accept(this);
+                }
+            } else {
+                setReason("the return clause contains an expression which cannot be checked: " +
+                        expression.getClass().getSimpleName());
+            }
+        }
+
+        @Override
+        public void visitCastExpr(CastExpression expression) {
+            expression.getExpression().accept(this);
+        }
+
+        @Override
+        public void visitBuiltinFunction(Function function) {
+            final QName name = function.getName();
+            if (SIDE_EFFECT_MODULES.contains(name.getNamespaceURI()) ||
+                    (UtilModule.NAMESPACE_URI.equals(name.getNamespaceURI()) && name.getLocalPart().startsWith("eval"))) {
+                setReason("the return clause calls " + name.getStringValue());
+            }
+            super.visitBuiltinFunction(function);
+        }
+
+        @Override
+        public void visitFunctionCall(FunctionCall call) {
+            for (int i = 0; i < call.getArgumentCount(); i++) {
+                call.getArgument(i).accept(this);
+            }
+            // UserDefinedFunction#accept visits a function only once per lifetime
+            final UserDefinedFunction function = call.getFunction();
+            if (function == null) {
+                setReason("the return clause calls " + call.getName().getStringValue() + ", which is not resolved");
+            } else if (visited.add(function)) {
+                function.getFunctionBody().accept(this);
+            }
+        }
+
+        @Override
+        public void visitFilteredExpr(FilteredExpression filtered) {
+            filtered.getExpression().accept(this);
+            for (final Predicate pred : filtered.getPredicates()) {
+                pred.accept(this);
+            }
+        }
+
+        @Override
+        public void visitGeneralComparison(GeneralComparison comparison) {
+            comparison.getLeft().accept(this);
+            comparison.getRight().accept(this);
+        }
+
+        @Override
+        public void visitAndExpr(OpAnd and) {
+            and.getLeft().accept(this);
+            and.getRight().accept(this);
+        }
+
+        @Override
+        public void visitOrExpr(OpOr or) {
+            or.getLeft().accept(this);
+            or.getRight().accept(this);
+        }
+    }
+}
@@ -110,6 +110,7 @@ public abstract class Modification extends AbstractExpression
 
     @Override
     public void accept(ExpressionVisitor visitor) {
+        super.accept(visitor);
         select.accept(visitor);
         if (value != null) {
             value.accept(visitor);
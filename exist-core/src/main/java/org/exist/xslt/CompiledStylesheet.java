@@ -0,0 +1,215 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xslt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import net.jcip.annotations.Immutable;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.DBBroker;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.xmldb.XmldbURI;
+
+/**
+ * Compiled {@link Templates} of a stylesheet, together with the
+ * modules it was compiled from, i.e. the stylesheet itself and every
+ * module it imports or includes, and their last modification times.
+ *
+ * The compiled stylesheet stays valid only as long as none of its
+ * modules has been modified since.
+ */
+@Immutable
+final class CompiledStylesheet {
+
+  private final Templates templates;
+  private final SAXTransformerFactory factory;
+  private final Map<String, Long> modules;
+
+  /**
+   * @param templates the compiled stylesheet
+   * @param factory the factory for creating transformer handlers from the {@code templates}
+   * @param modules the last modification time of each module, by URI
+   */
+  CompiledStylesheet(final Templates templates, final SAXTransformerFactory factory, final Map<String, Long> modules) {
+    this.templates = templates;
+    this.factory = factory;
+    this.modules = Collections.unmodifiableMap(new HashMap<>(modules));
+  }
+
+  Templates getTemplates() {
+    return templates;
+  }
+
+  SAXTransformerFactory getFactory() {
+    return factory;
+  }
+
+  /**
+   * @return the number of modules the stylesheet was compiled from
+   */
+  int getModuleCount() {
+    return Math.max(1, modules.size());
+  }
+
+  /**
+   * A compiled stylesheet may only be reused if the modification
+   * time of all of its modules is known.
+   *
+   * @return true if the compiled stylesheet may be cached
+   */
+  boolean isCacheable() {
+    for (final long lastModified : modules.values()) {
+      if (lastModified <= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks that none of the modules has been modified, or removed,
+   * since the stylesheet was compiled.
+   *
+   * @param broker the broker to use for accessing modules stored in the database
+   *
+   * @return true if the compiled stylesheet is still valid
+   */
+  boolean isValid(final DBBroker broker) {
+    for (final Map.Entry<String, Long> module : modules.entrySet()) {
+      final long lastModified = lastModified(broker, module.getKey());
+      if (lastModified <= 0 || lastModified != module.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the last modification time of a stylesheet module.
+   *
+   * @param broker the broker to use for accessing modules stored in the database
+   * @param uri the URI of the module, either a database path or a URL
+   *
+   * @return the last modification time, or a value less than or equal to 0 if unknown
+   */
+  static long lastModified(final DBBroker broker, final String uri) {
+    String path = uri;
+    if (path.startsWith(XmldbURI.EMBEDDED_SERVER_URI_PREFIX)) {
+      path = path.substring(XmldbURI.EMBEDDED_SERVER_URI_PREFIX.length());
+    }
+
+    try {
+      if (path.startsWith("/")) {
+        try (final LockedDocument lockedDocument = broker.getXMLResource(XmldbURI.create(path), LockMode.READ_LOCK)) {
+          return lockedDocument == null ? -1 : lockedDocument.getDocument().getMetadata().getLastModified();
+        }
+      } else if (path.startsWith("file:")) {
+        return Files.getLastModifiedTime(Paths.get(new URI(path))).toMillis();
+      } else {
+        final URLConnection connection = new URL(path).openConnection();
+        if (connection instanceof HttpURLConnection) {
+          // only the headers are needed, not the body of the module
+          final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+          httpConnection.setRequestMethod("HEAD");
+          if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            return -1;
+          }
+          return httpConnection.getLastModified();
+        }
+
+        final long lastModified = connection.getLastModified();
+        try (final InputStream is = connection.getInputStream()) {
+          // only opened to release the connection
+        }
+        return lastModified;
+      }
+    } catch (final IOException | PermissionDeniedException | URISyntaxException | IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Records every module resolved while compiling a stylesheet, along
+   * with its last modification time.
+   */
+  static class ModuleRecorder implements URIResolver {
+    private final DBBroker broker;
+    @Nullable private final URIResolver resolver;
+    private final Map<String, Long> modules = new HashMap<>();
+
+    /**
+     * @param broker the broker to use for accessing modules stored in the database
+     * @param resolver the resolver to delegate to, or null
+     */
+    ModuleRecorder(final DBBroker broker, @Nullable final URIResolver resolver) {
+      this.broker = broker;
+      this.resolver = resolver;
+    }
+
+    /**
+     * Records a module which is not resolved by the compiler,
+     * i.e. the stylesheet itself.
+     *
+     * @param uri the URI of the module
+     * @param lastModified the last modification time of the module
+     */
+    void record(final String uri, final long lastModified) {
+      modules.put(uri, lastModified);
+    }
+
+    Map<String, Long> getModules() {
+      return modules;
+    }
+
+    @Override
+    public Source resolve(final String href, final String base) throws TransformerException {
+      final Source source = resolver == null ? null : resolver.resolve(href, base);
+
+      String uri = source == null ? null : source.getSystemId();
+      if (uri == null) {
+        try {
+          uri = base == null ? href : new URI(base).resolve(href).toString();
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+          uri = href;
+        }
+      }
+      record(uri, lastModified(broker, uri));
+
+      return source;
+    }
+  }
+}
@@ -42,7 +42,6 @@ import org.exist.storage.BrokerPool;
 import org.exist.storage.DBBroker;
 import org.exist.storage.lock.Lock.LockMode;
 import org.exist.storage.serializers.Serializer;
-import org.exist.util.EXistURISchemeURIResolver;
 import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.Constants;
 import org.xml.sax.SAXException;
@@ -59,18 +58,31 @@ public class StylesheetResolverAndCompiler implements Stylesheet {
 
   protected final static Logger LOG = LogManager.getLogger(StylesheetResolverAndCompiler.class);
 
-  SAXTransformerFactory factory;
+  final String uri;
+  final String base;
 
-  long lastModified = -1;
-  Templates templates = null;
+  final Properties properties;
 
-  String uri;
-  String base;
-
-  Properties properties;
+  final boolean useCache;
 
   public StylesheetResolverAndCompiler(String uri) {
+    this(uri, null);
+  }
+
+  public StylesheetResolverAndCompiler(String uri, Properties properties) {
+    this(uri, properties, false);
+  }
+
+  /**
+   * @param uri the URI of the stylesheet
+   * @param properties the attributes of the transformer factory, or null
+   * @param useCache true to reuse the stylesheet compiled by an earlier query,
+   *     see {@link TemplatesFactory}
+   */
+  public StylesheetResolverAndCompiler(String uri, Properties properties, boolean useCache) {
     this.uri = uri;
+    this.properties = properties;
+    this.useCache = useCache;
 
     final int p = uri.lastIndexOf('/');
     if (p != Constants.STRING_NOT_FOUND) {
@@ -80,15 +92,51 @@ public class StylesheetResolverAndCompiler implements Stylesheet {
     }
   }
 
-  public StylesheetResolverAndCompiler(String uri, Properties properties) {
-    this(uri);
+  public <E extends Exception> Templates templates(DBBroker broker, XSLTErrorsListener<E> errorListener)
+      throws E, TransformerConfigurationException, IOException, PermissionDeniedException, SAXException {
+    return compiled(broker, errorListener).getTemplates();
+  }
 
-    this.properties = properties;
+  @Override
+  public <E extends Exception> TransformerHandler newTransformerHandler(DBBroker broker, XSLTErrorsListener<E> errorListener)
+      throws E, PermissionDeniedException, SAXException, TransformerConfigurationException, IOException {
+
+    final CompiledStylesheet compiled = compiled(broker, errorListener);
+
+    TransformerHandler handler = compiled.getFactory().newTransformerHandler(compiled.getTemplates());
+
+    handler.getTransformer().setErrorListener(errorListener);
+
+    return handler;
   }
 
-  public <E extends Exception> Templates templates(DBBroker broker, XSLTErrorsListener<E> errorListener)
+  private <E extends Exception> CompiledStylesheet compiled(DBBroker broker, XSLTErrorsListener<E> errorListener)
+      throws E, TransformerConfigurationException, IOException, PermissionDeniedException, SAXException {
+
+    final String key = useCache ? TemplatesFactory.key(uri, properties) : null;
+    if (useCache) {
+      final CompiledStylesheet compiled = TemplatesFactory.getCached(broker, key);
+      if (compiled != null) {
+        return compiled;
+      }
+    }
+
+    final CompiledStylesheet compiled = compile(broker, errorListener);
+    if (useCache) {
+      TemplatesFactory.putCached(key, compiled);
+    }
+    return compiled;
+  }
+
+  private <E extends Exception> CompiledStylesheet compile(DBBroker broker, XSLTErrorsListener<E> errorListener)
       throws E, TransformerConfigurationException, IOException, PermissionDeniedException, SAXException {
 
+    final SAXTransformerFactory factory = factory(broker.getBrokerPool(), errorListener);
+    final CompiledStylesheet.ModuleRecorder recorder =
+        new CompiledStylesheet.ModuleRecorder(broker, factory.getURIResolver());
+    factory.setURIResolver(recorder);
+
+    final Templates templates;
     if (uri.startsWith(XmldbURI.EMBEDDED_SERVER_URI_PREFIX)) {
       final String docPath = uri.substring(XmldbURI.EMBEDDED_SERVER_URI_PREFIX.length());
       try (final LockedDocument lockedDocument = broker.getXMLResource(XmldbURI.create(docPath), LockMode.READ_LOCK)) {
@@ -96,54 +144,36 @@ public class StylesheetResolverAndCompiler implements Stylesheet {
           throw new IOException("XSL stylesheet not found: "+docPath);
         }
         final DocumentImpl doc = lockedDocument.getDocument();
-        if (templates == null || doc.getMetadata().getLastModified() > lastModified) {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("compiling stylesheet " + doc.getURI());
-          }
-          templates = compileTemplates(broker, doc, errorListener);
-          lastModified = doc.getMetadata().getLastModified();
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("compiling stylesheet " + doc.getURI());
         }
+        recorder.record(uri, doc.getMetadata().getLastModified());
+        templates = compileTemplates(broker, doc, factory, errorListener);
       }
 
     } else {
       final URL url = new URL(uri);
       final URLConnection connection = url.openConnection();
-      long modified = connection.getLastModified();
-      if (templates == null || modified > lastModified || modified == 0) {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("compiling stylesheet " + url);
-        }
-        try (final InputStream is = connection.getInputStream()) {
-          templates = factory(broker.getBrokerPool(), errorListener).newTemplates(new StreamSource(is));
-        }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("compiling stylesheet " + url);
+      }
+      recorder.record(uri, connection.getLastModified());
+      try (final InputStream is = connection.getInputStream()) {
+        templates = factory.newTemplates(new StreamSource(is));
       }
-      lastModified = modified;
     }
 
-    return templates;
-  }
-
-  @Override
-  public <E extends Exception> TransformerHandler newTransformerHandler(DBBroker broker, XSLTErrorsListener<E> errorListener)
-      throws E, PermissionDeniedException, SAXException, TransformerConfigurationException, IOException {
-
-    TransformerHandler handler = cachedFactory(broker.getBrokerPool())
-        .newTransformerHandler(templates(broker, errorListener));
-
-    handler.getTransformer().setErrorListener(errorListener);
-
-    return handler;
+    return new CompiledStylesheet(templates, handlerFactory(broker.getBrokerPool()), recorder.getModules());
   }
 
   private <E extends Exception> Templates compileTemplates(
       DBBroker broker,
       DocumentImpl stylesheet,
+      SAXTransformerFactory factory,
       XSLTErrorsListener<E> errorListener)
       throws E, TransformerConfigurationException, SAXException
   {
-    //factory.setURIResolver(new EXistURIResolver(broker, stylesheet.getCollection().getURI().toString()));
-
-    final TemplatesHandler handler = factory(broker.getBrokerPool(), errorListener).newTemplatesHandler();
+    final TemplatesHandler handler = factory.newTemplatesHandler();
     handler.setSystemId(stylesheet.getBaseURI());
     handler.startDocument();
 
@@ -162,36 +192,23 @@ public class StylesheetResolverAndCompiler implements Stylesheet {
     return t;
   }
 
-  private SAXTransformerFactory cachedFactory(BrokerPool db) {
-    if (factory == null) {
-      factory = TransformerFactoryAllocator.getTransformerFactory(db);
-
-      if (properties != null) {
-        //set any attributes
-        for (final Map.Entry<Object, Object> attribute : properties.entrySet()) {
-          factory.setAttribute((String) attribute.getKey(), attribute.getValue());
-        }
-      }
-      final URIResolver uriResolver = getXsltURIResolver(db, factory.getURIResolver(), base, true);
-      factory.setURIResolver(uriResolver);
-    }
-    return factory;
-  }
-
-  private <E extends Exception> SAXTransformerFactory factory(BrokerPool db, XSLTErrorsListener<E> errorListener) {
-    SAXTransformerFactory newFactory = TransformerFactoryAllocator.getTransformerFactory(db);
+  private SAXTransformerFactory handlerFactory(BrokerPool db) {
+    final SAXTransformerFactory factory = TransformerFactoryAllocator.getTransformerFactory(db);
 
     if (properties != null) {
       //set any attributes
       for (final Map.Entry<Object, Object> attribute : properties.entrySet()) {
-        newFactory.setAttribute((String) attribute.getKey(), attribute.getValue());
+        factory.setAttribute((String) attribute.getKey(), attribute.getValue());
       }
     }
+    final URIResolver uriResolver = getXsltURIResolver(db, factory.getURIResolver(), base, true);
+    factory.setURIResolver(uriResolver);
 
-    // setup any URI resolvers
-    final URIResolver uriResolver = getXsltURIResolver(db, newFactory.getURIResolver(), base, true);
-    newFactory.setURIResolver(uriResolver);
+    return factory;
+  }
 
+  private <E extends Exception> SAXTransformerFactory factory(BrokerPool db, XSLTErrorsListener<E> errorListener) {
+    final SAXTransformerFactory newFactory = handlerFactory(db);
     newFactory.setErrorListener(errorListener);
     return newFactory;
   }
@@ -20,26 +20,30 @@
 package org.exist.xslt;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.TreeMap;
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TemplatesHandler;
 import javax.xml.transform.sax.TransformerHandler;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import net.jcip.annotations.ThreadSafe;
-import org.exist.repo.PkgXsltModuleURIResolver;
+import org.apache.commons.io.output.NullOutputStream;
 import org.exist.security.PermissionDeniedException;
 import org.exist.storage.DBBroker;
-import org.exist.util.EXistURISchemeURIResolver;
-import org.exist.util.URIResolverHierarchy;
+import org.exist.util.crypto.digest.DigestOutputStream;
+import org.exist.util.crypto.digest.DigestType;
+import org.exist.util.crypto.digest.StreamableDigest;
+import org.exist.util.serializer.SAXSerializer;
 import org.exist.xquery.Constants;
 import org.exist.xquery.value.NodeValue;
 import org.w3c.dom.Document;
@@ -48,40 +52,35 @@ import org.xml.sax.SAXException;
 import static org.exist.xslt.XsltURIResolverHelper.getXsltURIResolver;
 
 /**
- * Factory for stylesheet resolver and compiler instances
- * and if instance is safe for reuse then it cached.
+ * Factory for stylesheet resolver and compiler instances.
+ *
+ * Compiled stylesheets are shared between queries through a cache,
+ * if requested. The cache is bounded by the total number of stylesheet
+ * modules, i.e. stylesheets and the modules they import or include,
+ * and an entry is only reused as long as none of its modules has
+ * been modified since it was compiled.
  *
  * @author <a href="mailto:shabanovd@gmail.com">Dmitriy Shabanov</a>
  */
 @ThreadSafe
 public class TemplatesFactory {
 
-  private final static ConcurrentMap<String, StylesheetResolverAndCompiler> cache = new ConcurrentHashMap<>();
-
-  public static Stylesheet stylesheet(String stylesheet, String baseUri, Properties properties, boolean useCache) {
-
-    if (useCache && properties == null) {
-      return stylesheet(stylesheet, baseUri);
-    }
-
-    String uri = uri(stylesheet, baseUri);
-
-    return new StylesheetResolverAndCompiler(uri, properties);
-  }
-
-  private static Stylesheet stylesheet(String stylesheet, String baseUri) {
+  /**
+   * The maximum number of stylesheet modules of all compiled stylesheets in the cache.
+   */
+  public final static int MAX_CACHED_MODULES = 512;
 
-    String uri = uri(stylesheet, baseUri);
+  private final static Cache<String, CompiledStylesheet> cache = Caffeine.newBuilder()
+      .maximumWeight(MAX_CACHED_MODULES)
+      .weigher((String key, CompiledStylesheet compiled) -> compiled.getModuleCount())
+      .build();
 
-    return cache.computeIfAbsent(uri, StylesheetResolverAndCompiler::new);
+  public static Stylesheet stylesheet(String stylesheet, String baseUri, Properties properties, boolean useCache) {
+    return new StylesheetResolverAndCompiler(uri(stylesheet, baseUri), properties, useCache);
   }
 
   public static Stylesheet stylesheet(String stylesheet, String baseUri, boolean useCache) {
-    if (useCache) {
-      return stylesheet(stylesheet, baseUri);
-    } else {
-      return new StylesheetResolverAndCompiler(uri(stylesheet, baseUri));
-    }
+    return stylesheet(stylesheet, baseUri, null, useCache);
   }
 
   private static String uri(String stylesheet, String baseUri) {
@@ -100,13 +99,56 @@ public class TemplatesFactory {
     return uri;
   }
 
-  public static <E extends Exception> Stylesheet stylesheet(DBBroker broker, NodeValue node, String baseUri)
-      throws E, TransformerConfigurationException
-  {
-    SAXTransformerFactory factory = TransformerFactoryAllocator
-        .getTransformerFactory(broker.getBrokerPool());
+  /**
+   * The cache key of a stylesheet, which is compiled differently
+   * for different attributes of the transformer factory.
+   */
+  static String key(String uri, Properties properties) {
+    if (properties == null || properties.isEmpty()) {
+      return uri;
+    }
+    return uri + new TreeMap<>(properties);
+  }
 
-    String base = baseUri;
+  /**
+   * Gets a compiled stylesheet from the cache, unless any of its modules has been modified since.
+   *
+   * @return the compiled stylesheet, or null if there is no valid one in the cache
+   */
+  static CompiledStylesheet getCached(DBBroker broker, String key) {
+    final CompiledStylesheet compiled = cache.getIfPresent(key);
+    if (compiled == null) {
+      return null;
+    }
+    if (!compiled.isValid(broker)) {
+      cache.asMap().remove(key, compiled);
+      return null;
+    }
+    return compiled;
+  }
+
+  static void putCached(String key, CompiledStylesheet compiled) {
+    if (compiled.isCacheable()) {
+      cache.put(key, compiled);
+    }
+  }
+
+  public static Stylesheet stylesheet(DBBroker broker, NodeValue node, String baseUri) {
+    return stylesheet(broker, node, baseUri, false);
+  }
+
+  /**
+   * A stylesheet given as a node, which is cached by its content.
+   *
+   * @param broker the broker
+   * @param node the stylesheet
+   * @param baseUri the base URI for resolving modules, unless the node is part of a document with a URI
+   * @param useCache true to reuse the stylesheet compiled by an earlier query
+   *
+   * @return the stylesheet
+   */
+  public static Stylesheet stylesheet(DBBroker broker, NodeValue node, String baseUri, boolean useCache) {
+    String baseValue = baseUri;
     Document doc = node.getOwnerDocument();
     if (doc != null) {
       String uri = doc.getDocumentURI();
@@ -116,18 +158,50 @@ public class TemplatesFactory {
        * an in-memory document, it will cause an NPE
        */
       if (uri != null) {
-        base = uri.substring(0, uri.lastIndexOf('/'));
+        baseValue = uri.substring(0, uri.lastIndexOf('/'));
       }
     }
-
-    // setup any URI resolvers
-    final URIResolver uriResolver = getXsltURIResolver(broker.getBrokerPool(), factory.getURIResolver(), base, true);
-    factory.setURIResolver(uriResolver);
+    final String base = baseValue;
 
     return new Stylesheet() {
       @Override
       public <E extends Exception> Templates templates(DBBroker broker, XSLTErrorsListener<E> errorListener)
           throws E, TransformerConfigurationException, IOException, PermissionDeniedException, SAXException {
+        return compiled(broker, errorListener).getTemplates();
+      }
+
+      @Override
+      public <E extends Exception> TransformerHandler newTransformerHandler(DBBroker broker,
+          XSLTErrorsListener<E> errorListener)
+          throws E, PermissionDeniedException, SAXException, TransformerConfigurationException, IOException {
+        final CompiledStylesheet compiled = compiled(broker, errorListener);
+
+        TransformerHandler handler = compiled.getFactory().newTransformerHandler(compiled.getTemplates());
+
+        handler.getTransformer().setErrorListener(errorListener);
+
+        return handler;
+      }
+
+      private <E extends Exception> CompiledStylesheet compiled(DBBroker broker, XSLTErrorsListener<E> errorListener)
+          throws E, TransformerConfigurationException, IOException, SAXException {
+        final String key = useCache ? "node:" + base + ':' + contentDigest(broker, node) : null;
+        if (useCache) {
+          final CompiledStylesheet compiled = getCached(broker, key);
+          if (compiled != null) {
+            return compiled;
+          }
+        }
+
+        final SAXTransformerFactory factory = TransformerFactoryAllocator
+            .getTransformerFactory(broker.getBrokerPool());
+
+        // setup any URI resolvers
+        final URIResolver uriResolver = getXsltURIResolver(broker.getBrokerPool(), factory.getURIResolver(), base, true);
+        factory.setURIResolver(uriResolver);
+
+        final CompiledStylesheet.ModuleRecorder recorder = new CompiledStylesheet.ModuleRecorder(broker, uriResolver);
+        factory.setURIResolver(recorder);
 
         final TemplatesHandler handler = factory.newTemplatesHandler();
 
@@ -142,20 +216,30 @@ public class TemplatesFactory {
         //check for errors
         errorListener.checkForErrors();
 
-        return t;
-      }
+        // transformations resolve relative to the same base as the compilation
+        factory.setURIResolver(uriResolver);
 
-      @Override
-      public <E extends Exception> TransformerHandler newTransformerHandler(DBBroker broker,
-          XSLTErrorsListener<E> errorListener)
-          throws E, PermissionDeniedException, SAXException, TransformerConfigurationException, IOException {
-        TransformerHandler handler = factory
-            .newTransformerHandler(templates(broker, errorListener));
-
-        handler.getTransformer().setErrorListener(errorListener);
-
-        return handler;
+        final CompiledStylesheet compiled = new CompiledStylesheet(t, factory, recorder.getModules());
+        if (useCache) {
+          putCached(key, compiled);
+        }
+        return compiled;
       }
     };
   }
+
+  /**
+   * Calculates a digest of the serialized stylesheet node, as its cache key.
+   */
+  private static String contentDigest(DBBroker broker, NodeValue node) throws IOException, SAXException {
+    final StreamableDigest digest = DigestType.BLAKE_256.newStreamableDigest();
+    try (final Writer writer = new OutputStreamWriter(
+        new DigestOutputStream(new NullOutputStream(), digest), StandardCharsets.UTF_8)) {
+      final SAXSerializer serializer = new SAXSerializer(writer, new Properties());
+      serializer.startDocument();
+      node.toSAX(broker, serializer, null);
+      serializer.endDocument();
+    }
+    return digest.copyMessageDigest().toHexString();
+  }
 }
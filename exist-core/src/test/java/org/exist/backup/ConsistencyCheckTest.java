@@ -0,0 +1,204 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.backup;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.TerminatedException;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.exist.test.TestConstants.TEST_COLLECTION_URI;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistencyCheckTest {
+
+    private static final int COLLECTIONS = 5;
+    private static final int DOCUMENTS = 10;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @BeforeClass
+    public static void storeDocuments() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            for (int i = 0; i < COLLECTIONS; i++) {
+                try (final Collection collection = broker.getOrCreateCollection(transaction,
+                        TEST_COLLECTION_URI.append("c" + i).append("sub"))) {
+                    broker.saveCollection(transaction, collection);
+                    for (int j = 0; j < DOCUMENTS; j++) {
+                        final String data = "<doc n=\"" + j + "\"><title>Document " + j + "</title><p>text</p></doc>";
+                        final XmldbURI docName = XmldbURI.create("doc" + j + ".xml");
+                        final IndexInfo info = collection.validateXMLResource(transaction, broker, docName, data);
+                        collection.store(transaction, broker, info, data);
+                    }
+                }
+            }
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void checkAllOnline() throws EXistException, TerminatedException, PermissionDeniedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+
+            final CountingCallback offline = new CountingCallback();
+            final List<ErrorReport> offlineErrors = new ConsistencyCheck(broker, transaction, false, true)
+                    .checkAll(offline);
+
+            final CountingCallback online = new CountingCallback();
+            final List<ErrorReport> onlineErrors = new ConsistencyCheck(broker, transaction, false, true)
+                    .checkAllOnline(online, 4);
+
+            assertTrue(onlineErrors.toString(), onlineErrors.isEmpty());
+            assertEquals(offlineErrors.size(), onlineErrors.size());
+            assertEquals(offline.collections, online.collections);
+            assertTrue(online.documents >= COLLECTIONS * DOCUMENTS);
+            assertEquals(offline.documents, online.documents);
+
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void checkAllOnlineWhileModified() throws EXistException, TerminatedException, InterruptedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch modified = new CountDownLatch(1);
+        final AtomicReference<Exception> writerError = new AtomicReference<>();
+
+        // stores and removes documents and collections whilst the check runs
+        final Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; !stop.get(); i++) {
+                    modify(pool, TEST_COLLECTION_URI.append("changing").append("r" + i));
+                    modified.countDown();
+                }
+            } catch (final Exception e) {
+                writerError.set(e);
+                modified.countDown();
+            }
+        }, "consistency-check-writer");
+        writer.start();
+
+        try {
+            modified.await();
+            for (int i = 0; i < 5; i++) {
+                try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                        final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+                    final CountingCallback online = new CountingCallback();
+                    final List<ErrorReport> errors = new ConsistencyCheck(broker, transaction, false, true)
+                            .checkAllOnline(online, 4);
+
+                    // the removed collections and documents are skipped
+                    assertTrue(errors.toString(), errors.isEmpty());
+                    assertTrue(online.documents >= COLLECTIONS * DOCUMENTS);
+
+                    transaction.commit();
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        assertNull(String.valueOf(writerError.get()), writerError.get());
+    }
+
+    private static void modify(final BrokerPool pool, final XmldbURI collectionUri) throws EXistException,
+            PermissionDeniedException, IOException, SAXException, LockException {
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final Txn transaction = transact.beginTransaction();
+                    final Collection collection = broker.getOrCreateCollection(transaction, collectionUri)) {
+                broker.saveCollection(transaction, collection);
+                for (int j = 0; j < DOCUMENTS; j++) {
+                    final String data = "<doc n=\"" + j + "\"><title>Document " + j + "</title><p>text</p></doc>";
+                    final XmldbURI docName = XmldbURI.create("doc" + j + ".xml");
+                    final IndexInfo info = collection.validateXMLResource(transaction, broker, docName, data);
+                    collection.store(transaction, broker, info, data);
+                }
+                transaction.commit();
+            }
+
+            try (final Txn transaction = transact.beginTransaction()) {
+                try (final Collection collection = broker.openCollection(collectionUri, LockMode.WRITE_LOCK)) {
+                    for (int j = 0; j < DOCUMENTS; j += 2) {
+                        collection.removeXMLResource(transaction, broker, XmldbURI.create("doc" + j + ".xml"));
+                    }
+                }
+                transaction.commit();
+            }
+
+            try (final Txn transaction = transact.beginTransaction();
+                    final Collection collection = broker.openCollection(collectionUri, LockMode.WRITE_LOCK)) {
+                broker.removeCollection(transaction, collection);
+                transaction.commit();
+            }
+        }
+    }
+
+    private static class CountingCallback implements ConsistencyCheck.ProgressCallback {
+        private final Set<String> collections = ConcurrentHashMap.newKeySet();
+        private volatile int documents = 0;
+
+        @Override
+        public synchronized void startDocument(final String name, final int current, final int count) {
+            documents++;
+        }
+
+        @Override
+        public void startCollection(final String path) {
+            collections.add(path);
+        }
+
+        @Override
+        public void error(final ErrorReport error) {
+        }
+    }
+}
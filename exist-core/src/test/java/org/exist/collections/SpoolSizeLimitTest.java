@@ -0,0 +1,142 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.collections;
+
+import org.exist.EXistException;
+import org.exist.Indexer;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.util.io.FastByteArrayInputStream;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that documents are stored from the SAX events spooled whilst validating,
+ * and that documents whose events exceed the spool-size-limit are parsed again.
+ */
+public class SpoolSizeLimitTest {
+
+    /**
+     * Spool size limit in megabytes.
+     */
+    private static final int SPOOL_SIZE_LIMIT = 1;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(Indexer.PROPERTY_SPOOL_SIZE_LIMIT, SPOOL_SIZE_LIMIT)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void storeSpooled() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, XPathException {
+        final int items = 100;
+        final XmldbURI docUri = XmldbURI.create("spooled.xml");
+        store(docUri, generateXml(items), true);
+        assertStored(docUri, items);
+    }
+
+    @Test
+    public void storeAboveSpoolSizeLimit() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, XPathException {
+        // about 4M characters, well above the limit
+        final int items = 20000;
+        final XmldbURI docUri = XmldbURI.create("above-limit.xml");
+        store(docUri, generateXml(items), false);
+        assertStored(docUri, items);
+    }
+
+    /**
+     * Validates and stores a document.
+     *
+     * @param docUri the name of the document
+     * @param xml the document
+     * @param spooled whether the events of the document are expected to have been spooled. If so, the
+     *     document is stored from an empty input source, which would fail if the document was parsed again.
+     */
+    private static void store(final XmldbURI docUri, final String xml, final boolean spooled)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            try (final Collection col = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+                broker.saveCollection(transaction, col);
+
+                final InputSource source = new InputSource(new FastByteArrayInputStream(xml.getBytes(UTF_8)));
+                final IndexInfo info = col.validateXMLResource(transaction, broker, docUri, source);
+                assertEquals(spooled, info.hasSpooledEvents());
+
+                col.store(transaction, broker, info, spooled ? new InputSource() : source);
+                assertFalse(info.hasSpooledEvents());
+            }
+            transaction.commit();
+        }
+    }
+
+    private static void assertStored(final XmldbURI docUri, final int items)
+            throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final String doc = "doc('" + TestConstants.TEST_COLLECTION_URI.append(docUri) + "')";
+
+            Sequence result = pool.getXQueryService().execute(broker, "count(" + doc + "/items/item)", null);
+            assertEquals(items, (long) result.itemAt(0).toJavaObject(Long.class));
+
+            result = pool.getXQueryService().execute(broker, doc + "/items/item[last()]/@n/string()", null);
+            assertEquals(String.valueOf(items), result.getStringValue());
+
+            result = pool.getXQueryService().execute(broker, "sum(" + doc + "/items/item/string-length(.))", null);
+            assertEquals(items * 200L, (long) result.itemAt(0).toJavaObject(Long.class));
+        }
+    }
+
+    /**
+     * Generates a document with items of 200 characters of text each.
+     */
+    private static String generateXml(final int items) {
+        final StringBuilder builder = new StringBuilder("<items>");
+        for (int i = 1; i <= items; i++) {
+            builder.append("<item n=\"").append(i).append("\">");
+            for (int j = 0; j < 20; j++) {
+                builder.append("text ").append((char) ('a' + (j % 26))).append("....");
+            }
+            builder.append("</item>");
+        }
+        return builder.append("</items>").toString();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.exist.dom.persistent;
+
+import org.exist.numbering.DLN;
+import org.exist.numbering.DLNFactory;
+import org.exist.numbering.NodeId;
+import org.exist.xquery.Expression;
+import org.exist.xquery.value.SequenceIterator;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class CompactNodeSetTest {
+
+    private static final String[] NODES = {
+            "1.3", "1.1", "1.2.1", "1.2", "1", "1.2.1.1", "1.1.1", "1.2.2", "1.2", "1.10"
+    };
+
+    @Test
+    public void sortAndRemoveDuplicates() {
+        final DocumentImpl doc1 = mockDoc(1);
+        final DocumentImpl doc2 = mockDoc(2);
+        replay(doc1, doc2);
+
+        final CompactNodeSet set = new CompactNodeSet(new DLNFactory());
+        for (final String id : NODES) {
+            set.add(new NodeProxy(doc2, new DLN(id)));
+            set.add(new NodeProxy(doc1, new DLN(id)));
+        }
+
+        assertEquals(18, set.getLength());
+        assertEquals(2, set.getDocumentCount());
+
+        final NewArrayNodeSet expected = new NewArrayNodeSet();
+        for (final String id : NODES) {
+            expected.add(new NodeProxy(doc2, new DLN(id)));
+            expected.add(new NodeProxy(doc1, new DLN(id)));
+        }
+        assertSameNodes(expected, set);
+    }
+
+    @Test
+    public void addPacked() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final CompactNodeSet set = new CompactNodeSet(new DLNFactory());
+        for (final String id : NODES) {
+            final NodeId nodeId = new DLN(id);
+            final byte[] data = new byte[nodeId.size() + 3];
+            nodeId.serialize(data, 3);
+            set.add(doc, data, 3, nodeId.units(), Node.ELEMENT_NODE, 42, null);
+        }
+
+        assertEquals(9, set.getLength());
+        final NodeProxy p = set.get(doc, new DLN("1.2.1.1"));
+        assertNotNull(p);
+        assertEquals(new DLN("1.2.1.1"), p.getNodeId());
+        assertEquals(Node.ELEMENT_NODE, p.getNodeType());
+        assertEquals(42, p.getInternalAddress());
+
+        assertTrue(set.contains(new NodeProxy(doc, new DLN("1.10"))));
+        assertFalse(set.contains(new NodeProxy(doc, new DLN("1.4"))));
+        assertNull(set.get(doc, new DLN("1.2.3")));
+    }
+
+    @Test
+    public void selectParentChild() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final CompactNodeSet set = compactNodeSet(doc);
+        final NewArrayNodeSet reference = newArrayNodeSet(doc);
+        final NodeSet parents = nodeSet(doc, "1.2", "1.3");
+
+        assertSameNodes(reference.selectParentChild(parents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID),
+                set.selectParentChild(parents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID));
+        assertSameNodes(reference.selectParentChild(parents, NodeSet.ANCESTOR, Expression.NO_CONTEXT_ID),
+                set.selectParentChild(parents, NodeSet.ANCESTOR, Expression.NO_CONTEXT_ID));
+
+        final NodeSet children = set.selectParentChild(parents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+        assertEquals(2, children.getLength());
+    }
+
+    @Test
+    public void selectParentChild_documentNode() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final NodeSet parents = new NewArrayNodeSet();
+        parents.add(new NodeProxy(doc, NodeId.DOCUMENT_NODE));
+
+        final NodeSet children = compactNodeSet(doc).selectParentChild(parents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+        assertEquals(1, children.getLength());
+        assertEquals(new DLN("1"), ((NodeProxy) children.itemAt(0)).getNodeId());
+    }
+
+    @Test
+    public void selectAncestorDescendant() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final CompactNodeSet set = compactNodeSet(doc);
+        final NewArrayNodeSet reference = newArrayNodeSet(doc);
+        final NodeSet ancestors = nodeSet(doc, "1.1", "1.2");
+
+        for (final boolean includeSelf : new boolean[] { false, true }) {
+            assertSameNodes(
+                    reference.selectAncestorDescendant(ancestors, NodeSet.DESCENDANT, includeSelf, Expression.NO_CONTEXT_ID, true),
+                    set.selectAncestorDescendant(ancestors, NodeSet.DESCENDANT, includeSelf, Expression.NO_CONTEXT_ID, true));
+        }
+
+        final NodeSet descendants = set.selectAncestorDescendant(ancestors, NodeSet.DESCENDANT, false, Expression.NO_CONTEXT_ID, true);
+        assertEquals(4, descendants.getLength());
+    }
+
+    @Test
+    public void hasDescendantsInSet() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final CompactNodeSet set = compactNodeSet(doc);
+        assertNotNull(set.hasDescendantsInSet(doc, new DLN("1.2"), false, Expression.NO_CONTEXT_ID, false));
+        assertNull(set.hasDescendantsInSet(doc, new DLN("1.3"), false, Expression.NO_CONTEXT_ID, false));
+        assertNotNull(set.hasDescendantsInSet(doc, new DLN("1.3"), true, Expression.NO_CONTEXT_ID, false));
+    }
+
+    @Test
+    public void iterate_skip_loop() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final SequenceIterator it = compactNodeSet(doc).iterate();
+        assertEquals(9, it.skippable());
+        assertEquals(4, it.skip(4));
+        assertEquals(5, it.skippable());
+
+        int count = 0;
+        while (it.hasNext()) {
+            it.nextItem();
+            count++;
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void matchesAndContextKeptThroughIterator() {
+        final DocumentImpl doc = mockDoc(1);
+        replay(doc);
+
+        final CompactNodeSet set = compactNodeSet(doc);
+        final NodeProxy contextNode = new NodeProxy(doc, new DLN("1"));
+        for (final NodeSetIterator i = set.iterator(); i.hasNext(); ) {
+            final NodeProxy p = i.next();
+            if (p.getNodeId().equals(new DLN("1.2"))) {
+                p.addMatch(new TestMatch(p.getNodeId()));
+                p.addContextNode(1, contextNode);
+            }
+        }
+
+        final NodeProxy p = set.get(doc, new DLN("1.2"));
+        assertNotNull(p.getMatches());
+        assertEquals(new DLN("1.2"), p.getMatches().getNodeId());
+        assertNotNull(p.getContext());
+        assertSame(contextNode, p.getContext().getNode());
+
+        int matches = 0;
+        for (final NodeSetIterator i = set.iterator(); i.hasNext(); ) {
+            if (i.next().getMatches() != null) {
+                matches++;
+            }
+        }
+        assertEquals(1, matches);
+
+        // kept when the set is joined as well
+        final NodeSet children = set.selectParentChild(nodeSet(doc, "1"), NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+        final NodeProxy child = children.get(doc, new DLN("1.2"));
+        assertNotNull(child);
+        assertNotNull(child.getMatches());
+    }
+
+    private static CompactNodeSet compactNodeSet(final DocumentImpl doc) {
+        final CompactNodeSet set = new CompactNodeSet(new DLNFactory());
+        for (final String id : NODES) {
+            set.add(new NodeProxy(doc, new DLN(id)));
+        }
+        return set;
+    }
+
+    private static NewArrayNodeSet newArrayNodeSet(final DocumentImpl doc) {
+        return (NewArrayNodeSet) nodeSet(doc, NODES);
+    }
+
+    private static NodeSet nodeSet(final DocumentImpl doc, final String... ids) {
+        final NewArrayNodeSet set = new NewArrayNodeSet();
+        for (final String id : ids) {
+            set.add(new NodeProxy(doc, new DLN(id)));
+        }
+        return set;
+    }
+
+    private static void assertSameNodes(final NodeSet expected, final NodeSet actual) {
+        assertEquals(ids(expected), ids(actual));
+    }
+
+    private static List<String> ids(final NodeSet set) {
+        final List<String> ids = new ArrayList<>();
+        for (final NodeProxy p : set) {
+            ids.add(p.getOwnerDocument().getDocId() + "/" + p.getNodeId());
+        }
+        return ids;
+    }
+
+    private static DocumentImpl mockDoc(final int docId) {
+        final DocumentImpl doc = createMock(DocumentImpl.class);
+        expect(doc.getDocId()).andReturn(docId).anyTimes();
+        return doc;
+    }
+
+    private static class TestMatch extends Match {
+        TestMatch(final NodeId nodeId) {
+            super(Expression.NO_CONTEXT_ID, nodeId, "test");
+        }
+
+        TestMatch(final TestMatch match) {
+            super(match);
+        }
+
+        @Override
+        public Match createInstance(final int contextId, final NodeId nodeId, final String matchTerm) {
+            return new TestMatch(nodeId);
+        }
+
+        @Override
+        public Match newCopy() {
+            return new TestMatch(this);
+        }
+
+        @Override
+        public String getIndexId() {
+            return "test";
+        }
+    }
+}
@@ -10,12 +10,19 @@ import org.exist.storage.io.VariableByteOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.exist.util.Configuration;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -122,6 +129,44 @@ public class SymbolTableTest {
         assertEquals(mimetype, roundTrippedMimetype);
     }
 
+    @Test
+    public void concurrent_registration_yields_one_id_per_name() throws IOException, BrokerPoolServiceException, InterruptedException, ExecutionException {
+        final Path tmpDir = createTempDir();
+        SymbolTable symbolTable = createSymbolTable(tmpDir);
+
+        final int threads = 8;
+        final int names = 500;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<short[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final SymbolTable table = symbolTable;
+                results.add(executorService.submit(() -> {
+                    final short[] ids = new short[names];
+                    for (int i = 0; i < names; i++) {
+                        ids[i] = table.getSymbol("name-" + i);
+                        assertEquals("name-" + i, table.getName(ids[i]));
+                    }
+                    return ids;
+                }));
+            }
+
+            final short[] expected = results.get(0).get();
+            for (final Future<short[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+            symbolTable.close();
+
+            symbolTable = createSymbolTable(tmpDir);
+            for (int i = 0; i < names; i++) {
+                assertEquals("name-" + i, symbolTable.getName(expected[i]));
+            }
+            symbolTable.close();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     @Test
     public void write_and_read_are_balanced() throws IOException, BrokerPoolServiceException {
         final SymbolTable symbolTable = createSymbolTable(createTempDir());
@@ -29,6 +29,11 @@ import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.xml.parsers.ParserConfigurationException;
 
 import com.googlecode.junittoolbox.ParallelRunner;
@@ -58,6 +63,7 @@ import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeThat;
 
@@ -695,6 +701,138 @@ try {
         doStoredQuery(true, true);
     }
 
+    @Test
+    public void queryGetStreamed() throws IOException {
+        final String query = "for $i in 1 to 1000 return <item>{$i}</item>";
+        final HttpURLConnection connect = getConnection(getStreamUri(query, "_start=5&_howmany=10"));
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+
+            final String response = readResponse(connect.getInputStream());
+            assertEquals(Arrays.asList(5, 6, 7, 8, 9, 10, 11, 12, 13, 14), parseItems(response));
+            assertThat(response, containsString("</exist:result>"));
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetStreamedSameAsNotStreamed() throws IOException {
+        final String query = "for $i in 1 to 5 return ($i, 'text', <item n='{$i}'>{$i}</item>)";
+        final String parameters = "_wrap=no&_howmany=100";
+        final String streamed = readQueryResponse(getStreamUri(query, parameters));
+        final String notStreamed = readQueryResponse(getCollectionUri() + "?" + parameters + "&_query=" +
+                URLEncoder.encode(query, UTF_8.displayName()));
+        assertThat(streamed, containsString("<item n=\"5\">5</item>"));
+        assertEquals(notStreamed, streamed);
+    }
+
+    private String readQueryResponse(final String uri) throws IOException {
+        final HttpURLConnection connect = getConnection(uri);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+            return readResponse(connect.getInputStream());
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetStreamedStopsAfterWindow() throws IOException {
+        // the iterations after the window are not evaluated, so the error is never raised
+        final String query = "for $i in 1 to 1000 return if ($i = 20) then error(xs:QName('local:stream'), 'not streamed') else <item>{$i}</item>";
+        HttpURLConnection connect = getConnection(getStreamUri(query, "_howmany=10"));
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+
+            final String response = readResponse(connect.getInputStream());
+            assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), parseItems(response));
+        } finally {
+            connect.disconnect();
+        }
+
+        // without streaming the whole sequence is evaluated
+        connect = getConnection(getCollectionUri() + "?_howmany=10&_query=" + URLEncoder.encode(query, UTF_8.displayName()));
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.BAD_REQUEST_400, r);
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetStreamedErrorBeforeFlush() throws IOException {
+        // no results have been flushed yet when the error is raised
+        final String query = "for $i in 1 to 50 return if ($i = 20) then error(xs:QName('local:stream'), 'failed') else <item>{$i}</item>";
+        final HttpURLConnection connect = getConnection(getStreamUri(query, "_howmany=1000"));
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.BAD_REQUEST_400, r);
+
+            final String response = readResponse(connect.getErrorStream());
+            assertThat(response, containsString("failed"));
+            assertThat(response, not(containsString("<item>1</item>")));
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetStreamedErrorAfterFlush() throws IOException {
+        // the first results have been flushed, and so the status code sent, when the error is raised
+        final String query = "for $i in 1 to 500 return if ($i = 300) then error(xs:QName('local:stream'), 'failed') else <item>{$i}</item>";
+        final HttpURLConnection connect = getConnection(getStreamUri(query, "_howmany=1000"));
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+
+            // the body is incomplete and ends with the error marker
+            final String response = readResponse(connect.getInputStream());
+            assertThat(response, not(containsString("</exist:result>")));
+            assertTrue(parseItems(response).size() < 299);
+            assertThat(response, containsString("<!--exist:error "));
+            assertThat(response, containsString("failed"));
+            assertTrue(response.trim().endsWith("-->"));
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    private static String getStreamUri(final String query, final String parameters) throws IOException {
+        return getCollectionUri() + "?_stream=yes&" + parameters + "&_query=" + URLEncoder.encode(query, UTF_8.displayName());
+    }
+
+    private static List<Integer> parseItems(final String data) {
+        final List<Integer> items = new ArrayList<>();
+        final Matcher matcher = Pattern.compile("<item>(\\d+)</item>").matcher(data);
+        while (matcher.find()) {
+            items.add(Integer.parseInt(matcher.group(1)));
+        }
+        return items;
+    }
+
     private void doPut(final String data, final String path, final int responseCode) throws IOException {
         final HttpURLConnection connect = getConnection(getCollectionUri() + '/' + path);
         try {
@@ -133,7 +133,7 @@ public class BTreeRecoverTest {
 			final byte[] data = value.data();
 //        	NodeId id = pool.getNodeFactory().createFromData(data[value.start() + 4], data, value.start() + 5);
             count++;
-            return false;
+            return true;
         }
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.collections.CollectionConfigurationManager;
+import org.exist.collections.IndexInfo;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.value.Sequence;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkLoaderTest {
+
+    private static final String COLLECTION_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "	<index>" +
+            "		<create qname=\"item\" type=\"xs:string\"/>" +
+            "	</index>" +
+            "</collection>";
+
+    private static final int FILES = 50;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @ClassRule
+    public static final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void load() throws EXistException, PermissionDeniedException, IOException, LockException,
+            TriggerException, XPathException {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            final Path file = temporaryFolder.getRoot().toPath().resolve("doc-" + i + ".xml");
+            Files.write(file, ("<items><item id='" + i + "'>value-" + i + "</item><item>common</item></items>").getBytes(UTF_8));
+            files.add(file);
+        }
+        final Path malformed = temporaryFolder.getRoot().toPath().resolve("malformed.xml");
+        Files.write(malformed, "<items><item></items>".getBytes(UTF_8));
+        files.add(malformed);
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final BulkLoader loader = new BulkLoader(pool, pool.getSecurityManager().getSystemSubject(),
+                TestConstants.TEST_COLLECTION_URI, 4);
+        final BulkLoader.Result result = loader.load(files);
+
+        assertEquals(FILES, result.getStored().size());
+        assertEquals(1, result.getFailed().size());
+        assertTrue(result.getFailed().containsKey(malformed));
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQuery xquery = pool.getXQueryService();
+            Sequence seq = xquery.execute(broker, "count(collection('" + TestConstants.TEST_COLLECTION_URI + "')//item)", null);
+            assertEquals(FILES * 2, Integer.parseInt(seq.getStringValue()));
+
+            // found through the range index built after the load
+            seq = xquery.execute(broker, "collection('" + TestConstants.TEST_COLLECTION_URI + "')//item[. = 'value-7']/@id/string()", null);
+            assertEquals(1, seq.getItemCount());
+            assertEquals("7", seq.getStringValue());
+
+            seq = xquery.execute(broker, "count(collection('" + TestConstants.TEST_COLLECTION_URI + "')//item[. = 'common'])", null);
+            assertEquals(FILES, Integer.parseInt(seq.getStringValue()));
+
+            // indexing is no longer deferred for the broker
+            assertFalse(broker.isIndexingDeferred());
+        }
+
+        // the documents have been indexed, so the collection is no longer pending
+        assertFalse(Files.exists(getPendingFile(pool)));
+    }
+
+    @Test
+    public void loadPreservesRelativePaths() throws EXistException, PermissionDeniedException, IOException,
+            LockException, TriggerException, XPathException {
+        final Path baseDir = temporaryFolder.newFolder("relative").toPath();
+        final List<Path> files = new ArrayList<>();
+        for (final String dir : new String[] { "a", "b/c" }) {
+            final Path parent = Files.createDirectories(baseDir.resolve(dir));
+            final Path file = parent.resolve("same.xml");
+            Files.write(file, ("<items><item>" + dir + "</item></items>").getBytes(UTF_8));
+            files.add(file);
+        }
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final XmldbURI collectionUri = XmldbURI.ROOT_COLLECTION_URI.append("bulk-load-relative");
+        final BulkLoader loader = new BulkLoader(pool, pool.getSecurityManager().getSystemSubject(), collectionUri, 2);
+        final BulkLoader.Result result = loader.load(baseDir, files);
+
+        assertEquals(2, result.getStored().size());
+        assertTrue(result.getStored().contains(collectionUri.append("a/same.xml")));
+        assertTrue(result.getStored().contains(collectionUri.append("b/c/same.xml")));
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQuery xquery = pool.getXQueryService();
+            final Sequence seq = xquery.execute(broker, "doc('" + collectionUri.append("b/c/same.xml") + "')//item[. = 'b/c']/string()", null);
+            assertEquals(1, seq.getItemCount());
+        }
+    }
+
+    @Test(expected = EXistException.class)
+    public void loadRejectsDuplicateNames() throws EXistException, PermissionDeniedException, IOException,
+            LockException, TriggerException {
+        final Path baseDir = temporaryFolder.newFolder("duplicates").toPath();
+        final List<Path> files = new ArrayList<>();
+        for (final String dir : new String[] { "a", "b" }) {
+            final Path file = Files.createDirectories(baseDir.resolve(dir)).resolve("same.xml");
+            Files.write(file, "<items/>".getBytes(UTF_8));
+            files.add(file);
+        }
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final BulkLoader loader = new BulkLoader(pool, pool.getSecurityManager().getSystemSubject(),
+                XmldbURI.ROOT_COLLECTION_URI.append("bulk-load-duplicates"), 2);
+        // stored by file name, both files would be stored as the same document
+        loader.load(files);
+    }
+
+    @Test
+    public void indexPending() throws EXistException, PermissionDeniedException, IOException, LockException,
+            SAXException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final XmldbURI collectionUri = XmldbURI.ROOT_COLLECTION_URI.append("bulk-load-pending");
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            // store a document without indexing it, as if the load had been interrupted
+            final TransactionManager transact = pool.getTransactionManager();
+            broker.setIndexingDeferred(true);
+            try (final Txn transaction = transact.beginTransaction();
+                    final Collection collection = broker.getOrCreateCollection(transaction, collectionUri)) {
+                broker.saveCollection(transaction, collection);
+                final String data = "<items><item>pending</item></items>";
+                final IndexInfo info = collection.validateXMLResource(transaction, broker, XmldbURI.create("pending.xml"), data);
+                collection.store(transaction, broker, info, data);
+                transaction.commit();
+            } finally {
+                broker.setIndexingDeferred(false);
+            }
+            Files.write(getPendingFile(pool), (collectionUri.toString() + "\n").getBytes(UTF_8));
+
+            final XQuery xquery = pool.getXQueryService();
+            final String query = "count(collection('" + collectionUri + "')//item[. = 'pending'])";
+            assertEquals(0, Integer.parseInt(xquery.execute(broker, query, null).getStringValue()));
+
+            BulkLoader.indexPending(broker, false);
+
+            assertEquals(1, Integer.parseInt(xquery.execute(broker, query, null).getStringValue()));
+            assertFalse(Files.exists(getPendingFile(pool)));
+        }
+    }
+
+    private static Path getPendingFile(final BrokerPool pool) {
+        return ((Path) pool.getConfiguration().getProperty(BrokerPool.PROPERTY_DATA_DIR)).resolve(BulkLoader.PENDING_FILE);
+    }
+
+    @BeforeClass
+    public static void configureCollection() throws EXistException, PermissionDeniedException, IOException,
+            LockException, TriggerException, CollectionConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction();
+                final Collection root = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+            broker.saveCollection(transaction, root);
+
+            final CollectionConfigurationManager mgr = pool.getConfigurationManager();
+            mgr.addConfiguration(transaction, broker, root, COLLECTION_CONFIG);
+
+            transaction.commit();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests recovery after a forced database corruption, when large nodes are
+ * written to overflow pages compressed, see {@link DOMFileCompressOverflowTest}.
+ * The journal logs the compressed chunks of the overflow pages, which are
+ * redone and undone as is.
+ */
+public class DOMFileCompressOverflowRecoveryTest {
+
+    private static final XmldbURI DOC1_URI = TestConstants.TEST_COLLECTION_URI.append("large1.xml");
+    private static final XmldbURI DOC2_URI = TestConstants.TEST_COLLECTION_URI.append("large2.xml");
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_COMPRESS_OVERFLOW, Boolean.TRUE)
+                    .build(),
+            true,
+            true);
+
+    @After
+    public void cleanup() {
+        // restore the flag in-case of a test failure
+        BrokerPool.FORCE_CORRUPTION = false;
+    }
+
+    @Test
+    public void redoCommittedStore() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException, XPathException, DatabaseConfigurationException {
+        final String text1 = generateText(1);
+        final String text2 = generateText(2);
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            store(broker, transaction, DOC1_URI, text1);
+            store(broker, transaction, DOC2_URI, text2);
+            transaction.commit();
+        }
+
+        crash();
+
+        verify(DOC1_URI, text1);
+        verify(DOC2_URI, text2);
+    }
+
+    @Test
+    public void undoUncommittedStoreAndRemove() throws EXistException, PermissionDeniedException, IOException,
+            SAXException, LockException, XPathException, DatabaseConfigurationException {
+        final String text1 = generateText(1);
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final Txn transaction = transact.beginTransaction()) {
+                store(broker, transaction, DOC1_URI, text1);
+                transaction.commit();
+            }
+
+            // the following transaction will not be committed. It will thus be rolled back by recovery
+            final Txn transaction = transact.beginTransaction();
+            store(broker, transaction, DOC2_URI, generateText(2));
+            try (final Collection collection = broker.openCollection(TestConstants.TEST_COLLECTION_URI, LockMode.WRITE_LOCK)) {
+                collection.removeXMLResource(transaction, broker, DOC1_URI.lastSegment());
+            }
+        }
+
+        crash();
+
+        verify(DOC1_URI, text1);
+        final BrokerPool restartedPool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = restartedPool.get(Optional.of(restartedPool.getSecurityManager().getSystemSubject()));
+                final LockedDocument lockedDoc = broker.getXMLResource(DOC2_URI, LockMode.READ_LOCK)) {
+            assertNull("Document '" + DOC2_URI + "' should not exist", lockedDoc);
+        }
+    }
+
+    /**
+     * Flushes the journal and restarts with no journal checkpoint, which forces recovery to run at startup.
+     */
+    private void crash() throws EXistException, DatabaseConfigurationException, IOException {
+        existEmbeddedServer.getBrokerPool().getJournalManager().get().flush(true, false);
+
+        BrokerPool.FORCE_CORRUPTION = true;
+        existEmbeddedServer.restart();
+        BrokerPool.FORCE_CORRUPTION = false;
+    }
+
+    private static void store(final DBBroker broker, final Txn transaction, final XmldbURI docUri, final String text)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final String xml = "<doc><p>" + text + "</p><p>small</p></doc>";
+        try (final Collection collection = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+            broker.saveCollection(transaction, collection);
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, docUri.lastSegment(), xml);
+            collection.store(transaction, broker, info, xml);
+        }
+    }
+
+    private void verify(final XmldbURI docUri, final String text) throws EXistException, PermissionDeniedException,
+            XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                assertNotNull("Document '" + docUri + "' should exist", lockedDoc);
+                // still compressed, the text would need more than 60 overflow pages uncompressed
+                assertTrue(lockedDoc.getDocument().getMetadata().getPageCount() < 10);
+            }
+
+            Sequence seq = pool.getXQueryService().execute(broker, "doc('" + docUri + "')/doc/p[1]/string()", null);
+            assertEquals(text, seq.getStringValue());
+
+            seq = pool.getXQueryService().execute(broker, "doc('" + docUri + "')/doc/p[2]/string()", null);
+            assertEquals("small", seq.getStringValue());
+        }
+    }
+
+    private static String generateText(final int n) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("The quick brown fox ").append(n).append(" jumps over the lazy dog ").append(i % 10).append(". ");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that large nodes, which are written to overflow pages, are compressed
+ * and read back unchanged when compressOverflow is enabled.
+ */
+public class DOMFileCompressOverflowTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_COMPRESS_OVERFLOW, Boolean.TRUE)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void largeTextNode() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException, XPathException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("The quick brown fox jumps over the lazy dog ").append(i % 10).append(". ");
+        }
+        final String xml = "<doc><p>" + text + "</p><p>small</p></doc>";
+        final XmldbURI docUri = TestConstants.TEST_COLLECTION_URI.append("large.xml");
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final Txn transaction = transact.beginTransaction();
+                    final Collection collection = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+                broker.saveCollection(transaction, collection);
+                final IndexInfo info = collection.validateXMLResource(transaction, broker, docUri.lastSegment(), xml);
+                collection.store(transaction, broker, info, xml);
+                transaction.commit();
+            }
+
+            // the text would need more than 60 overflow pages uncompressed
+            try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                assertTrue(lockedDoc.getDocument().getMetadata().getPageCount() < 10);
+            }
+
+            final XQuery xquery = pool.getXQueryService();
+            Sequence seq = xquery.execute(broker, "doc('" + docUri + "')/doc/p[1]/string()", null);
+            assertEquals(text.toString(), seq.getStringValue());
+
+            seq = xquery.execute(broker, "doc('" + docUri + "')/doc/p[2]/string()", null);
+            assertEquals("small", seq.getStringValue());
+
+            seq = xquery.execute(broker, "string-length(serialize(doc('" + docUri + "')))", null);
+            assertTrue(Integer.parseInt(seq.getStringValue()) >= xml.length());
+        }
+    }
+}
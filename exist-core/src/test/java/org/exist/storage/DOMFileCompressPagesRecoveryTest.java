@@ -0,0 +1,160 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.exist.storage.DOMFileCompressPagesTest.expected;
+import static org.exist.storage.DOMFileCompressPagesTest.generateXml;
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests recovery after a forced database corruption, when the pages of a document
+ * are packed, see {@link DOMFileCompressPagesTest}. The journal logs the uncompressed
+ * records, which are redone and undone on the uncompressed pages.
+ */
+public class DOMFileCompressPagesRecoveryTest {
+
+    private static final XmldbURI DOC1_URI = TestConstants.TEST_COLLECTION_URI.append("packed1.xml");
+    private static final XmldbURI DOC2_URI = TestConstants.TEST_COLLECTION_URI.append("packed2.xml");
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_COMPRESS_PAGES, Boolean.TRUE)
+                    .build(),
+            true,
+            true);
+
+    @After
+    public void cleanup() {
+        // restore the flag in-case of a test failure
+        BrokerPool.FORCE_CORRUPTION = false;
+    }
+
+    @Test
+    public void redoCommittedStoreAndUpdate() throws EXistException, PermissionDeniedException, IOException,
+            SAXException, LockException, XPathException, DatabaseConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final Txn transaction = transact.beginTransaction()) {
+                store(broker, transaction, DOC1_URI);
+                store(broker, transaction, DOC2_URI);
+                transaction.commit();
+            }
+            pool.getXQueryService().execute(broker,
+                    "update delete doc('" + DOC2_URI + "')//p[@n = '2000']", null);
+        }
+
+        crash();
+
+        verify(DOC1_URI, expected(-1, -1, -1));
+        verify(DOC2_URI, expected(-1, -1, 2000));
+    }
+
+    @Test
+    public void undoUncommittedStoreAndRemove() throws EXistException, PermissionDeniedException, IOException,
+            SAXException, LockException, XPathException, DatabaseConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final Txn transaction = transact.beginTransaction()) {
+                store(broker, transaction, DOC1_URI);
+                transaction.commit();
+            }
+
+            // the following transaction will not be committed. It will thus be rolled back by recovery
+            final Txn transaction = transact.beginTransaction();
+            store(broker, transaction, DOC2_URI);
+            try (final Collection collection = broker.openCollection(TestConstants.TEST_COLLECTION_URI, LockMode.WRITE_LOCK)) {
+                collection.removeXMLResource(transaction, broker, DOC1_URI.lastSegment());
+            }
+        }
+
+        crash();
+
+        verify(DOC1_URI, expected(-1, -1, -1));
+        final BrokerPool restartedPool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = restartedPool.get(Optional.of(restartedPool.getSecurityManager().getSystemSubject()));
+                final LockedDocument lockedDoc = broker.getXMLResource(DOC2_URI, LockMode.READ_LOCK)) {
+            assertNull("Document '" + DOC2_URI + "' should not exist", lockedDoc);
+        }
+    }
+
+    /**
+     * Flushes the journal and restarts with no journal checkpoint, which forces recovery to run at startup.
+     */
+    private void crash() throws EXistException, DatabaseConfigurationException, IOException {
+        existEmbeddedServer.getBrokerPool().getJournalManager().get().flush(true, false);
+
+        BrokerPool.FORCE_CORRUPTION = true;
+        existEmbeddedServer.restart();
+        BrokerPool.FORCE_CORRUPTION = false;
+    }
+
+    private static void store(final DBBroker broker, final Txn transaction, final XmldbURI docUri)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final String xml = generateXml();
+        try (final Collection collection = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+            broker.saveCollection(transaction, collection);
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, docUri.lastSegment(), xml);
+            collection.store(transaction, broker, info, xml);
+        }
+    }
+
+    private void verify(final XmldbURI docUri, final String expected) throws EXistException,
+            PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                assertNotNull("Document '" + docUri + "' should exist", lockedDoc);
+            }
+
+            final Sequence seq = pool.getXQueryService().execute(broker,
+                    "string-join(doc('" + docUri + "')//p, '|')", null);
+            assertEquals(expected, seq.getStringValue());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the pages of a document are packed when compressPages is enabled,
+ * and that nodes on packed pages can be read, updated and removed.
+ */
+public class DOMFileCompressPagesTest {
+
+    private static final int PARAGRAPHS = 3000;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_COMPRESS_PAGES, Boolean.TRUE)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void packedPages() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException, XPathException {
+        final XmldbURI docUri = TestConstants.TEST_COLLECTION_URI.append("packed.xml");
+        final String xml = generateXml();
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            store(broker, docUri, xml);
+
+            // the document would need more than 60 pages unpacked
+            try (final LockedDocument lockedDoc = broker.getXMLResource(docUri, LockMode.READ_LOCK)) {
+                assertTrue(lockedDoc.getDocument().getMetadata().getPageCount() < 40);
+            }
+
+            final XQuery xquery = pool.getXQueryService();
+            Sequence seq = xquery.execute(broker, "count(doc('" + docUri + "')//p)", null);
+            assertEquals(String.valueOf(PARAGRAPHS), seq.getStringValue());
+
+            seq = xquery.execute(broker, "doc('" + docUri + "')//p[@n = '1500']/string()", null);
+            assertEquals(paragraph(1500), seq.getStringValue());
+
+            seq = xquery.execute(broker, "string-join(doc('" + docUri + "')//p, '|')", null);
+            assertEquals(expected(-1, -1, -1), seq.getStringValue());
+        }
+    }
+
+    @Test
+    public void updatePackedPages() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException, XPathException {
+        final XmldbURI docUri = TestConstants.TEST_COLLECTION_URI.append("updated.xml");
+        final String doc = "doc('" + docUri + "')";
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            store(broker, docUri, generateXml());
+
+            final XQuery xquery = pool.getXQueryService();
+            xquery.execute(broker, "update value " + doc + "//p[@n = '10'] with 'updated'", null);
+            xquery.execute(broker, "update insert <p n='inserted'>inserted</p> following " + doc + "//p[@n = '500']", null);
+            xquery.execute(broker, "update delete " + doc + "//p[@n = '2000']", null);
+            xquery.execute(broker, "update insert <p n='last'>last</p> into " + doc + "/doc", null);
+
+            final Sequence seq = xquery.execute(broker, "string-join(" + doc + "//p, '|')", null);
+            assertEquals(expected(10, 500, 2000) + "|last", seq.getStringValue());
+        }
+    }
+
+    private static void store(final DBBroker broker, final XmldbURI docUri, final String xml)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final TransactionManager transact = broker.getBrokerPool().getTransactionManager();
+        try (final Txn transaction = transact.beginTransaction();
+                final Collection collection = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+            broker.saveCollection(transaction, collection);
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, docUri.lastSegment(), xml);
+            collection.store(transaction, broker, info, xml);
+            transaction.commit();
+        }
+    }
+
+    static String generateXml() {
+        final StringBuilder xml = new StringBuilder("<doc>");
+        for (int i = 1; i <= PARAGRAPHS; i++) {
+            xml.append("<p n='").append(i).append("'>").append(paragraph(i)).append("</p>");
+        }
+        return xml.append("</doc>").toString();
+    }
+
+    static String paragraph(final int n) {
+        return "The quick brown fox jumps over the lazy dog " + n;
+    }
+
+    /**
+     * The string values of the paragraphs, with an updated, an inserted and a removed paragraph.
+     */
+    static String expected(final int updated, final int insertAfter, final int removed) {
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= PARAGRAPHS; i++) {
+            if (i != removed) {
+                if (expected.length() > 0) {
+                    expected.append('|');
+                }
+                expected.append(i == updated ? "updated" : paragraph(i));
+            }
+            if (i == insertAfter) {
+                expected.append("|inserted");
+            }
+        }
+        return expected.toString();
+    }
+}
@@ -63,6 +63,7 @@ public class DataBackupTest {
         assertNotNull(zipFile.getEntry("symbols.dbx"));
         assertNotNull(zipFile.getEntry("values.dbx"));
         assertNotNull(zipFile.getEntry("blob.dbx"));
+        assertNotNull(zipFile.getEntry(DataBackup.JOURNAL_POSITION_ENTRY));
     }
 
     private class TestableDataBackup extends DataBackup {
@@ -329,6 +329,129 @@ public class BTreeTest {
         }
     }
 
+    @Test
+    public void bulkInsert() throws DBException, IOException, TerminatedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            try (final BTree.BulkInsert bulkInsert = btree.bulkInsert(null, 0.9)) {
+                for (int i = 1; i <= COUNT; i++) {
+                    bulkInsert.add(new Value(String.format("B%06d", i)), i);
+                }
+            }
+
+            // keys added afterwards, before, after and in between the bulk inserted keys
+            for (int i = 1; i <= COUNT; i++) {
+                btree.addValue(new Value(String.format("A%06d", i)), i);
+                btree.addValue(new Value(String.format("C%06d", i)), i);
+                btree.addValue(new Value(String.format("B%06dx", i)), -i);
+            }
+            btree.flush();
+
+            for (int i = 1; i <= COUNT; i++) {
+                assertEquals(i, btree.findValue(new Value(String.format("A%06d", i))));
+                assertEquals(i, btree.findValue(new Value(String.format("B%06d", i))));
+                assertEquals(-i, btree.findValue(new Value(String.format("B%06dx", i))));
+                assertEquals(i, btree.findValue(new Value(String.format("C%06d", i))));
+            }
+
+            final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, new Value("B"));
+            btree.query(query, new StringIndexCallback());
+            assertEquals(COUNT * 2, count);
+        }
+    }
+
+    @Test
+    public void bulkInsertIntoExisting() throws DBException, IOException, TerminatedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            char prefix = 'A';
+            for (int i = 0; i < 4; i++) {
+                for (int j = 1; j <= COUNT; j += 2) {
+                    btree.addValue(new Value(String.format("%c%06d", prefix, j)), j);
+                }
+                prefix++;
+            }
+
+            // appends after and inserts between existing keys, overwriting some of them
+            try (final BTree.BulkInsert bulkInsert = btree.bulkInsert(null, 0.9)) {
+                for (int j = 1; j <= COUNT * 2; j++) {
+                    bulkInsert.add(new Value(String.format("B%06d", j)), -j);
+                }
+                for (int j = 1; j <= COUNT; j += 10) {
+                    bulkInsert.add(new Value(String.format("C%06d", j)), -j);
+                }
+            }
+            btree.flush();
+
+            for (int j = 1; j <= COUNT * 2; j++) {
+                assertEquals(-j, btree.findValue(new Value(String.format("B%06d", j))));
+            }
+            for (int j = 1; j <= COUNT; j += 2) {
+                assertEquals(j, btree.findValue(new Value(String.format("A%06d", j))));
+                assertEquals(j % 10 == 1 ? -j : j, btree.findValue(new Value(String.format("C%06d", j))));
+                assertEquals(j, btree.findValue(new Value(String.format("D%06d", j))));
+            }
+
+            prefix = 'A';
+            final int[] expected = { (COUNT + 1) / 2, COUNT * 2, (COUNT + 1) / 2, (COUNT + 1) / 2 };
+            for (int i = 0; i < 4; i++) {
+                final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, new Value(Character.toString(prefix)));
+                btree.query(query, new StringIndexCallback());
+                assertEquals(expected[i], count);
+                prefix++;
+            }
+        }
+    }
+
+    @Test
+    public void stopWhenCallbackReturnsFalse() throws DBException, IOException, TerminatedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            for (int i = 1; i <= COUNT; i++) {
+                btree.addValue(new Value(String.format("K%06d", i)), i);
+            }
+            btree.flush();
+
+            // spans several leaf pages, so the scan has to stop across page boundaries too
+            final int limit = COUNT / 2;
+            final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, new Value("K"));
+            btree.query(query, new LimitCallback(limit));
+            assertEquals(limit, count);
+
+            btree.query(new IndexQuery(IndexQuery.GT, new Value("K")), new LimitCallback(limit));
+            assertEquals(limit, count);
+
+            btree.query(null, new LimitCallback(limit));
+            assertEquals(limit, count);
+
+            // the key reported last is still removed, the rest is kept
+            btree.remove(query, new LimitCallback(limit));
+            assertEquals(limit, count);
+            btree.query(query, new StringIndexCallback());
+            assertEquals(COUNT - limit, count);
+            assertEquals(limit + 1, btree.findValue(new Value(String.format("K%06d", limit + 1))));
+        }
+    }
+
+    @Test(expected = BTreeException.class)
+    public void bulkInsertNotAscending()throws DBException, IOException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            try (final BTree.BulkInsert bulkInsert = btree.bulkInsert(null, 0.9)) {
+                bulkInsert.add(new Value("B"), 1);
+                bulkInsert.add(new Value("A"), 2);
+            }
+        }
+    }
+
     @ClassRule
     public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
 
@@ -355,7 +478,7 @@ public class BTreeTest {
         @Override
         public boolean indexInfo(Value value, long pointer) throws TerminatedException {
             count++;
-            return false;
+            return true;
         }
     }
 
@@ -371,7 +494,7 @@ public class BTreeTest {
             assertEquals(99, prefix);
 //            XMLString key = UTF8.decode(value.data(), value.start() + 4, value.getLength() - 4);
             count++;
-            return false;
+            return true;
         }
     }
 
@@ -386,7 +509,21 @@ public class BTreeTest {
 //            @SuppressWarnings("unused")
 //			XMLString key = UTF8.decode(value.data(), value.start(), value.getLength());
             count++;
-            return false;
+            return true;
+        }
+    }
+
+    private final class LimitCallback implements BTreeCallback {
+        private final int limit;
+
+        public LimitCallback(final int limit) {
+            this.limit = limit;
+            count = 0;
+        }
+
+        @Override
+        public boolean indexInfo(Value value, long pointer) throws TerminatedException {
+            return ++count < limit;
         }
     }
 
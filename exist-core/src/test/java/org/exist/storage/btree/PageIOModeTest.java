@@ -0,0 +1,89 @@
+package org.exist.storage.btree;
+
+import org.exist.storage.BrokerPool;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.FileUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a B+tree can be written, closed and re-read
+ * using each of the {@link PageIOMode}s.
+ */
+@RunWith(Parameterized.class)
+public class PageIOModeTest {
+
+    private final static byte BTREE_TEST_FILE_ID = 0x7F;
+    private final static short BTREE_TEST_FILE_VERSION = Short.MIN_VALUE;
+    private static final int COUNT = 5000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static java.util.Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { PageIOMode.RANDOM_ACCESS },
+                { PageIOMode.CHANNEL },
+                { PageIOMode.MMAP }
+        });
+    }
+
+    private final PageIOMode pageIOMode;
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // make sure that the test data spans several mapped regions
+    private static final int REGION_SIZE = 16 * 4096;
+
+    public PageIOModeTest(final PageIOMode pageIOMode) {
+        this.pageIOMode = pageIOMode;
+        this.existEmbeddedServer = new ExistEmbeddedServer(
+                propertiesBuilder()
+                        .put(BrokerPool.PROPERTY_PAGE_IO_MODE, pageIOMode)
+                        .build(),
+                true,
+                true);
+    }
+
+    @Test
+    public void writeAndReopen() throws DBException, IOException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        assertEquals(pageIOMode, pool.getPageIOMode());
+
+        final Path file = temporaryFolder.getRoot().toPath().resolve("test-" + pageIOMode.getConfigValue() + ".dbx");
+        try {
+            try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+                btree.setMappedRegionSize(REGION_SIZE);
+                btree.create((short) -1);
+                for (int i = 1; i <= COUNT; i++) {
+                    btree.addValue(new Value("K" + i), i);
+                }
+                for (int i = 1; i <= COUNT; i++) {
+                    assertEquals(i, btree.findValue(new Value("K" + i)));
+                }
+            }
+
+            try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+                btree.setMappedRegionSize(REGION_SIZE);
+                btree.open(BTREE_TEST_FILE_VERSION);
+                assertEquals(pageIOMode, btree.getPageIOMode());
+                for (int i = 1; i <= COUNT; i++) {
+                    assertEquals(i, btree.findValue(new Value("K" + i)));
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.exist.storage.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SegmentedLRUCacheTest {
+
+    private static final int SIZE = 64;
+
+    @Test
+    public void scanDoesNotEvictFrequentlyUsed() {
+        final Cache<TestPage> cache = new SegmentedLRUCache<>("test", SIZE, 0, 0, Cache.CacheType.BTREE, 1);
+
+        // access the hot pages twice, which promotes them
+        for (int i = 0; i < SIZE / 2; i++) {
+            cache.add(new TestPage(i));
+        }
+        for (int i = 0; i < SIZE / 2; i++) {
+            cache.add(cache.get(i));
+        }
+
+        // scan many pages which are accessed only once
+        for (int i = 1000; i < 1000 + SIZE * 10; i++) {
+            cache.add(new TestPage(i));
+        }
+
+        for (int i = 0; i < SIZE / 2; i++) {
+            assertNotNull("hot page " + i + " was evicted by scan", cache.get(i));
+        }
+        assertEquals(SIZE, cache.getUsedBuffers());
+    }
+
+    @Test
+    public void leafPagesReplacedBeforeInnerPages() {
+        final Cache<TestPage> cache = new SegmentedLRUCache<>("test", SIZE, 0, 0, Cache.CacheType.BTREE, 1);
+
+        cache.add(new TestPage(0, true));
+        for (int i = 1; i < SIZE * 4; i++) {
+            cache.add(new TestPage(i));
+        }
+
+        assertNotNull(cache.get(0));
+    }
+
+    @Test
+    public void pinnedPagesAreNotReplaced() {
+        final Cache<TestPage> cache = new SegmentedLRUCache<>("test", SIZE, 0, 0, Cache.CacheType.DATA, 4);
+
+        final TestPage pinned = new TestPage(7);
+        pinned.allowUnload = false;
+        cache.add(pinned);
+        for (int i = 100; i < 100 + SIZE * 4; i++) {
+            cache.add(new TestPage(i));
+        }
+
+        assertSame(pinned, cache.get(7));
+        assertFalse(pinned.synced);
+    }
+
+    @Test
+    public void replacedPagesAreSynced() {
+        final Cache<TestPage> cache = new SegmentedLRUCache<>("test", SIZE, 0, 0, Cache.CacheType.DATA, 1);
+
+        final TestPage first = new TestPage(0);
+        cache.add(first);
+        for (int i = 1; i <= SIZE; i++) {
+            cache.add(new TestPage(i));
+        }
+
+        assertNull(cache.get(0));
+        assertTrue(first.synced);
+    }
+
+    @Test
+    public void resize() {
+        final SegmentedLRUCache<TestPage> cache = new SegmentedLRUCache<>("test", SIZE, 0, 0, Cache.CacheType.DATA, 4);
+        for (int i = 0; i < SIZE * 2; i++) {
+            cache.add(new TestPage(i));
+        }
+        assertTrue(cache.getUsedBuffers() <= SIZE);
+
+        cache.resize(SIZE * 4);
+        assertEquals(SIZE * 4, cache.getBuffers());
+        for (int i = 0; i < SIZE * 2; i++) {
+            cache.add(new TestPage(i));
+        }
+        assertEquals(SIZE * 2, cache.getUsedBuffers());
+
+        cache.resize(SIZE / 2);
+        assertTrue(cache.getUsedBuffers() <= SIZE / 2);
+    }
+
+    private static class TestPage implements BTreeCacheable {
+        private final long key;
+        private final boolean inner;
+        boolean allowUnload = true;
+        boolean synced = false;
+        private int refCount;
+        private int timestamp;
+
+        TestPage(final long key) {
+            this(key, false);
+        }
+
+        TestPage(final long key, final boolean inner) {
+            this.key = key;
+            this.inner = inner;
+        }
+
+        @Override
+        public boolean isInnerPage() {
+            return inner;
+        }
+
+        @Override
+        public long getKey() {
+            return key;
+        }
+
+        @Override
+        public int getReferenceCount() {
+            return refCount;
+        }
+
+        @Override
+        public int incReferenceCount() {
+            return ++refCount;
+        }
+
+        @Override
+        public int decReferenceCount() {
+            return --refCount;
+        }
+
+        @Override
+        public void setReferenceCount(final int count) {
+            this.refCount = count;
+        }
+
+        @Override
+        public void setTimestamp(final int timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public int getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean sync(final boolean syncJournal) {
+            synced = true;
+            return true;
+        }
+
+        @Override
+        public boolean allowUnload() {
+            return allowUnload;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return false;
+        }
+    }
+}
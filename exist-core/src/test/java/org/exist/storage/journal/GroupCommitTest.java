@@ -0,0 +1,98 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.journal;
+
+import org.exist.storage.BrokerPool;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that concurrently committing transactions
+ * share syncs of the journal when group commit is enabled.
+ */
+public class GroupCommitTest {
+
+    private static final int THREADS = 8;
+    private static final int COMMITS_PER_THREAD = 50;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, true)
+                    .put(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, true)
+                    .put(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_DELAY, 5)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void concurrentCommitsShareSyncs() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        final JournalStatistics statistics = pool.getJournalManager().get().getStatistics().get();
+
+        final long syncsBefore = statistics.getSyncCount();
+        final long commitsBefore = statistics.getBatchedCommits();
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < COMMITS_PER_THREAD; j++) {
+                        try (final Txn transaction = transact.beginTransaction()) {
+                            transact.commit(transaction);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final long syncs = statistics.getSyncCount() - syncsBefore;
+        final long commits = statistics.getBatchedCommits() - commitsBefore;
+
+        assertTrue("Expected all commits to be synced, but was: " + commits, commits >= THREADS * COMMITS_PER_THREAD);
+        assertTrue("Expected fewer syncs (" + syncs + ") than commits (" + commits + ")", syncs < commits);
+        assertTrue(statistics.getMaxBatchSize() > 1);
+    }
+}
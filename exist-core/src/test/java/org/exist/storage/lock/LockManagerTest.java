@@ -12,6 +12,8 @@ import uk.ac.ic.doc.slurp.multilock.MultiLock;
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -555,6 +557,65 @@ public class LockManagerTest {
         assertIntentionWriteOrWriteMode(event9.mode);
     }
 
+    /**
+     * Readers take the INTENTION_READ lock on the root Collection
+     * through the read bias, ensure that they still exclude a
+     * writer of the root Collection, and that the bias is
+     * restored after the writer has released
+     */
+    @Test
+    public void acquireCollectionWriteLock_root_waitsForBiasedReader() throws LockException, InterruptedException {
+        final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
+        final XmldbURI collectionUri = XmldbURI.create("/db/colA");
+
+        final CountDownLatch writeLocked = new CountDownLatch(1);
+        final Thread writer = new Thread(() -> {
+            try (final ManagedCollectionLock rootLock = lockManager.acquireCollectionWriteLock(XmldbURI.ROOT_COLLECTION_URI)) {
+                writeLocked.countDown();
+            } catch (final LockException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try (final ManagedCollectionLock colALock = lockManager.acquireCollectionReadLock(collectionUri)) {
+            assertEquals(0, lockManager.getPathLock(XmldbURI.ROOT_COLLECTION).getIntentionReadLockCount());
+
+            writer.start();
+            assertFalse(writeLocked.await(200, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(writeLocked.await(10, TimeUnit.SECONDS));
+        writer.join();
+
+        try (final ManagedCollectionLock colALock = lockManager.acquireCollectionReadLock(collectionUri)) {
+            assertEquals(0, lockManager.getPathLock(XmldbURI.ROOT_COLLECTION).getIntentionReadLockCount());
+        }
+    }
+
+    /**
+     * Ensure that a reader falls back to the INTENTION_READ lock
+     * on the root Collection whilst a writer holds the root Collection
+     */
+    @Test
+    public void acquireCollectionReadLock_waitsForRootWriter() throws LockException, InterruptedException {
+        final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
+
+        final CountDownLatch readLocked = new CountDownLatch(1);
+        final Thread reader = new Thread(() -> {
+            try (final ManagedCollectionLock colALock = lockManager.acquireCollectionReadLock(XmldbURI.create("/db/colA"))) {
+                readLocked.countDown();
+            } catch (final LockException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try (final ManagedCollectionLock rootLock = lockManager.acquireCollectionWriteLock(XmldbURI.ROOT_COLLECTION_URI)) {
+            reader.start();
+            assertFalse(readLocked.await(200, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(readLocked.await(10, TimeUnit.SECONDS));
+        reader.join();
+    }
+
     @Test
     public void getDocumentLock_isStripedByPath() {
         final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
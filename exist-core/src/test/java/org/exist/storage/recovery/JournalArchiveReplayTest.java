@@ -0,0 +1,379 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.recovery;
+
+import org.exist.EXistException;
+import org.exist.backup.ConsistencyCheck;
+import org.exist.backup.ErrorReport;
+import org.exist.backup.JournalRestoreMain;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.DataBackup;
+import org.exist.storage.journal.Journal;
+import org.exist.storage.journal.JournalManager;
+import org.exist.storage.journal.JournalReader;
+import org.exist.storage.journal.Loggable;
+import org.exist.storage.journal.Lsn;
+import org.exist.storage.sync.Sync;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.TerminatedException;
+import org.exist.xquery.XPathException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Archives the journal of a database, restores a snapshot of its data files,
+ * and replays the archived journal on top of it, see {@link JournalRestoreMain}.
+ *
+ * Each test stores the documents a.xml, b.xml and c.xml, each in a journal file of
+ * its own, and takes the snapshot after storing a.xml.
+ *
+ * The journal may also contain a file which was left incomplete by a crash, and which
+ * was archived after the recovery at the next start of the database.
+ */
+public class JournalArchiveReplayTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExistEmbeddedServer existEmbeddedServer;
+    private Path archiveDir;
+    private Path snapshot;
+
+    /**
+     * the commit of the transaction storing b.xml
+     */
+    private Lsn commitB;
+
+    /**
+     * a time between the checkpoint after storing b.xml and storing c.xml
+     */
+    private long afterB;
+
+    /**
+     * the entry preceding the commit of the transaction storing c.xml
+     */
+    private Lsn beforeCommitC;
+
+    @Before
+    public void setUp() throws IOException, DatabaseConfigurationException, EXistException, PermissionDeniedException,
+            SAXException, LockException, InterruptedException {
+        archiveDir = temporaryFolder.newFolder("archive").toPath();
+        existEmbeddedServer = new ExistEmbeddedServer(
+                propertiesBuilder()
+                        .put(Journal.PROPERTY_RECOVERY_JOURNAL_ARCHIVE_DIR, archiveDir)
+                        // start a new journal file at every checkpoint
+                        .put(Journal.PROPERTY_RECOVERY_SIZE_MIN, 0)
+                        .build(),
+                true,
+                true);
+        existEmbeddedServer.startDb();
+
+        store("a.xml");
+        snapshot = backup();
+
+        store("b.xml");
+        commitB = getJournalManager().lastWrittenLsn();
+        checkpoint();
+
+        Thread.sleep(20);
+        afterB = System.currentTimeMillis();
+        Thread.sleep(20);
+
+        store("c.xml");
+        beforeCommitC = previousLsn(getJournalManager().lastWrittenLsn());
+        final int lastArchivedNum = (int) beforeCommitC.getFileNumber();
+        checkpoint();
+        awaitArchived(lastArchivedNum);
+
+        stopAndShipJournal();
+    }
+
+    @After
+    public void tearDown() {
+        if (existEmbeddedServer.getBrokerPool() != null) {
+            existEmbeddedServer.stopDb();
+        } else {
+            existEmbeddedServer.getTemporaryStorage().ifPresent(FileUtils::deleteQuietly);
+        }
+    }
+
+    @Test
+    public void replayAll() throws IOException, DatabaseConfigurationException, EXistException,
+            PermissionDeniedException, XPathException {
+        restore(null, -1);
+        assertAvailable(true, true, true);
+    }
+
+    @Test
+    public void replayToTargetLsn() throws IOException, DatabaseConfigurationException, EXistException,
+            PermissionDeniedException, XPathException {
+        restore(commitB, -1);
+        assertAvailable(true, true, false);
+    }
+
+    @Test
+    public void replayToTargetTime() throws IOException, DatabaseConfigurationException, EXistException,
+            PermissionDeniedException, XPathException {
+        restore(null, afterB);
+        assertAvailable(true, true, false);
+    }
+
+    @Test
+    public void undoIncompleteTransaction() throws IOException, DatabaseConfigurationException, EXistException,
+            PermissionDeniedException, XPathException {
+        // the transaction storing c.xml has not committed at the target, so it is undone
+        restore(beforeCommitC, -1);
+        assertAvailable(true, true, false);
+    }
+
+    @Test
+    public void gapInArchive() throws IOException, DatabaseConfigurationException {
+        final int missingNum = (int) beforeCommitC.getFileNumber();
+        Files.delete(archiveDir.resolve(fileName(missingNum)));
+
+        try {
+            restore(null, -1);
+            fail("Replaying an archive with a missing journal file should fail");
+        } catch (final EXistException e) {
+            assertTrue(hasMessage(e, "missing the journal file number: " + missingNum));
+        }
+    }
+
+    @Test
+    public void crashWithinArchive() throws IOException, DatabaseConfigurationException, EXistException,
+            PermissionDeniedException, SAXException, LockException, XPathException, InterruptedException,
+            TerminatedException {
+        existEmbeddedServer.startDb();
+
+        // the following transaction will not be committed. It is undone by the recovery after the crash,
+        // which archives the journal file it was written to, without a checkpoint at its end
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Txn transaction = pool.getTransactionManager().beginTransaction();
+            store(broker, transaction, "x.xml", "<doc name='x.xml'/>");
+        }
+        final int crashedNum = (int) getJournalManager().lastWrittenLsn().getFileNumber();
+        getJournalManager().flush(true, false);
+
+        BrokerPool.FORCE_CORRUPTION = true;
+        try {
+            existEmbeddedServer.restart();
+        } finally {
+            BrokerPool.FORCE_CORRUPTION = false;
+        }
+        awaitArchived(crashedNum);
+
+        // later journal files continue from the database as it was recovered
+        store("d.xml");
+        final int lastArchivedNum = (int) getJournalManager().lastWrittenLsn().getFileNumber();
+        checkpoint();
+        awaitArchived(lastArchivedNum);
+
+        stopAndShipJournal();
+
+        restore(null, -1);
+        assertAvailable(true, true, true);
+        assertTrue(isAvailable("d.xml"));
+        assertFalse(isAvailable("x.xml"));
+
+        final BrokerPool restored = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = restored.get(Optional.of(restored.getSecurityManager().getSystemSubject()));
+             final Txn transaction = restored.getTransactionManager().beginTransaction()) {
+            final List<ErrorReport> errors = new ConsistencyCheck(broker, transaction, false, true).checkAll(null);
+            assertTrue(errors.toString(), errors.isEmpty());
+            transaction.commit();
+        }
+    }
+
+    private void restore(@Nullable final Lsn targetLsn, final long targetTimestamp) throws IOException,
+            DatabaseConfigurationException, EXistException {
+        JournalRestoreMain.restore(snapshot, getDataDir(), getDataDir(), archiveDir, targetLsn, targetTimestamp);
+        existEmbeddedServer.startDb();
+        assertFalse(Files.exists(getDataDir().resolve(JournalReplay.FILE_NAME)));
+    }
+
+    private void assertAvailable(final boolean a, final boolean b, final boolean c) throws EXistException,
+            PermissionDeniedException, XPathException {
+        assertEquals(a, isAvailable("a.xml"));
+        assertEquals(b, isAvailable("b.xml"));
+        assertEquals(c, isAvailable("c.xml"));
+    }
+
+    private boolean isAvailable(final String docName) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            return pool.getXQueryService().execute(broker,
+                    "doc-available('" + TestConstants.TEST_COLLECTION_URI.append(docName) + "')", null)
+                    .effectiveBooleanValue();
+        }
+    }
+
+    private void store(final String docName) throws EXistException, PermissionDeniedException, IOException,
+            SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            store(broker, transaction, docName, "<doc name='" + docName + "'/>");
+            transaction.commit();
+        }
+    }
+
+    private static void store(final DBBroker broker, final Txn transaction, final String docName, final String xml)
+            throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        try (final Collection col = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI)) {
+            broker.saveCollection(transaction, col);
+
+            final IndexInfo info = col.validateXMLResource(transaction, broker, XmldbURI.create(docName), xml);
+            col.store(transaction, broker, info, xml);
+        }
+    }
+
+    /**
+     * Waits for a journal file to be archived, which happens in the background.
+     */
+    private void awaitArchived(final int fileNum) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (!Files.exists(archiveDir.resolve(fileName(fileNum))) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(archiveDir.resolve(fileName(fileNum))));
+    }
+
+    /**
+     * Stops the database, and ships the journal files which are still in use to the archive as well.
+     */
+    private void stopAndShipJournal() throws IOException {
+        existEmbeddedServer.stopDb(false);
+
+        try (final Stream<Path> files = Files.list(getDataDir())) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                if (FileUtils.fileName(file).endsWith("." + Journal.LOG_FILE_SUFFIX)
+                        && !Files.exists(archiveDir.resolve(FileUtils.fileName(file)))) {
+                    Files.copy(file, archiveDir.resolve(FileUtils.fileName(file)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint and starts a new journal file, the previous one is archived.
+     */
+    private void checkpoint() throws EXistException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            pool.sync(broker, Sync.MAJOR);
+            pool.getTransactionManager().checkpoint(true);
+        }
+    }
+
+    private Path backup() throws InterruptedException {
+        final TestableDataBackup dataBackup = new TestableDataBackup(temporaryFolder.getRoot().toPath());
+        existEmbeddedServer.getBrokerPool().triggerSystemTask(dataBackup);
+        while (!dataBackup.isCompleted()) {
+            Thread.sleep(100);
+        }
+        assertTrue(dataBackup.getLastBackup().isPresent());
+        return dataBackup.getLastBackup().get();
+    }
+
+    /**
+     * Finds the journal entry which precedes the given one.
+     */
+    private Lsn previousLsn(final Lsn lsn) throws EXistException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        getJournalManager().flush(true, true);
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final JournalReader reader = new JournalReader(broker,
+                     getDataDir().resolve(fileName((int) lsn.getFileNumber())), (int) lsn.getFileNumber())) {
+            reader.position(lsn);
+            final Loggable previous = reader.previousEntry();
+            assertNotNull(previous);
+            return previous.getLsn();
+        }
+    }
+
+    private JournalManager getJournalManager() {
+        return existEmbeddedServer.getBrokerPool().getJournalManager().get();
+    }
+
+    private Path getDataDir() {
+        return existEmbeddedServer.getTemporaryStorage().get();
+    }
+
+    private static String fileName(final int fileNum) {
+        return String.format("%010x.%s", fileNum, Journal.LOG_FILE_SUFFIX);
+    }
+
+    private static boolean hasMessage(@Nullable final Throwable e, final String message) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class TestableDataBackup extends DataBackup {
+        private volatile boolean completed = false;
+
+        TestableDataBackup(final Path destination) {
+            super(destination);
+        }
+
+        @Override
+        public void execute(final DBBroker broker, final Txn transaction) throws EXistException {
+            super.execute(broker, transaction);
+            completed = true;
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.recovery;
+
+import org.exist.storage.journal.LogException;
+import org.exist.storage.journal.Lsn;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JournalReplayTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void noRequest() throws IOException, LogException {
+        final Path dataDir = temporaryFolder.newFolder().toPath();
+        assertFalse(JournalReplay.read(dataDir).isPresent());
+    }
+
+    @Test
+    public void writeAndReadTargetLsn() throws IOException, LogException {
+        final Path dataDir = temporaryFolder.newFolder().toPath();
+        final Path archiveDir = temporaryFolder.newFolder().toPath();
+
+        new JournalReplay(archiveDir, new Lsn((short) 3, 1024), new Lsn((short) 5, 2048), -1).write(dataDir);
+
+        final Optional<JournalReplay> replay = JournalReplay.read(dataDir);
+        assertTrue(replay.isPresent());
+        assertEquals(archiveDir.toAbsolutePath(), replay.get().getArchiveDir());
+        assertEquals(new Lsn((short) 3, 1024), replay.get().getStart());
+        assertEquals(Optional.of(new Lsn((short) 5, 2048)), replay.get().getTargetLsn());
+        assertFalse(replay.get().getTargetTimestamp().isPresent());
+
+        JournalReplay.remove(dataDir);
+        assertFalse(JournalReplay.read(dataDir).isPresent());
+    }
+
+    @Test
+    public void writeAndReadTargetTimestamp() throws IOException, LogException {
+        final Path dataDir = temporaryFolder.newFolder().toPath();
+        final Path archiveDir = temporaryFolder.newFolder().toPath();
+
+        new JournalReplay(archiveDir, new Lsn((short) 3, 1024), null, 1559390400000L).write(dataDir);
+
+        final Optional<JournalReplay> replay = JournalReplay.read(dataDir);
+        assertTrue(replay.isPresent());
+        assertFalse(replay.get().getTargetLsn().isPresent());
+        assertEquals(Optional.of(1559390400000L), replay.get().getTargetTimestamp());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.structural;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.DefaultDocumentSet;
+import org.exist.dom.persistent.DocumentSet;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.ChildSelector;
+import org.exist.xquery.Constants;
+import org.exist.xquery.DescendantOrSelfSelector;
+import org.exist.xquery.DescendantSelector;
+import org.exist.xquery.Expression;
+import org.exist.xquery.NodeSelector;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Optional;
+
+import javax.xml.XMLConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the merge join of a context set with the structural index,
+ * see {@link NativeStructuralIndexWorker#joinDescendantsByTagName(byte, QName, int, DocumentSet, NodeSet, int, Expression)},
+ * finds the same nodes as the selector based lookup.
+ */
+public class StructuralJoinTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    private static final XmldbURI TEST_COLLECTION = XmldbURI.ROOT_COLLECTION_URI.append("structural-join-test");
+
+    private static final int DOCS = 3;
+
+    /**
+     * Sections per document, more than LocationStep's index scan threshold in total.
+     */
+    private static final int SECTIONS = 4000;
+
+    private static final QName SECTION = new QName("section", XMLConstants.NULL_NS_URI);
+    private static final QName PARA = new QName("para", XMLConstants.NULL_NS_URI);
+
+    @Test
+    public void childAxis() throws EXistException, PermissionDeniedException {
+        assertJoin(Constants.CHILD_AXIS, PARA, null);
+    }
+
+    @Test
+    public void descendantAxis() throws EXistException, PermissionDeniedException {
+        assertJoin(Constants.DESCENDANT_AXIS, PARA, null);
+    }
+
+    @Test
+    public void descendantOrSelfAxis() throws EXistException, PermissionDeniedException {
+        assertJoin(Constants.DESCENDANT_SELF_AXIS, SECTION, null);
+    }
+
+    @Test
+    public void descendantAxis_sparseContext() throws EXistException, PermissionDeniedException, XPathException {
+        assertJoin(Constants.DESCENDANT_AXIS, PARA, "collection('" + TEST_COLLECTION + "')//section[@n mod 7 = 0]");
+    }
+
+    @Test
+    public void childAxis_nestedContext() throws EXistException, PermissionDeniedException, XPathException {
+        assertJoin(Constants.CHILD_AXIS, PARA, "collection('" + TEST_COLLECTION + "')//section[section]");
+    }
+
+    @Test
+    public void query() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final int nested = (SECTIONS + 2) / 3;
+
+            Sequence result = pool.getXQueryService().execute(broker,
+                    "count(collection('" + TEST_COLLECTION + "')//section/para)", null);
+            assertEquals(DOCS * (SECTIONS + 2 * nested), (long) result.itemAt(0).toJavaObject(Long.class));
+
+            result = pool.getXQueryService().execute(broker,
+                    "count(collection('" + TEST_COLLECTION + "')//section//para)", null);
+            assertEquals(DOCS * (SECTIONS + 3 * nested), (long) result.itemAt(0).toJavaObject(Long.class));
+        }
+    }
+
+    @Test
+    public void limit() throws EXistException, PermissionDeniedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final DocumentSet docs = broker.getCollection(TEST_COLLECTION).allDocs(broker, new DefaultDocumentSet(), false);
+            final NodeSet sections = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT, docs, SECTION, null);
+            final NodeSet all = broker.getStructuralIndex().joinDescendantsByTagName(ElementValue.ELEMENT, PARA,
+                    Constants.DESCENDANT_AXIS, docs, sections, Expression.NO_CONTEXT_ID, null);
+
+            // nested sections are part of the context, their paras must not be counted twice
+            final NodeSet found = broker.getStructuralIndex().findDescendantsByTagName(ElementValue.ELEMENT, PARA,
+                    Constants.DESCENDANT_AXIS, docs, sections, Expression.NO_CONTEXT_ID, null, 10);
+            assertStartsWith(all, found, 10);
+            assertTrue(found.getLength() < all.getLength());
+
+            final NodeSet joined = broker.getStructuralIndex().joinDescendantsByTagName(ElementValue.ELEMENT, PARA,
+                    Constants.DESCENDANT_AXIS, docs, sections, Expression.NO_CONTEXT_ID, null, 10);
+            assertEquals(10, joined.getLength());
+            assertStartsWith(all, joined, 10);
+        } catch (final LockException e) {
+            throw new EXistException(e);
+        }
+    }
+
+    @Test
+    public void positionalQuery() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final String paras = "collection('" + TEST_COLLECTION + "')//para";
+            final String[] queries = {
+                    "(" + paras + ")[3]",
+                    "head(" + paras + ")",
+                    "subsequence(" + paras + ", 2, 3)",
+                    "(" + paras + ")[" + (DOCS * SECTIONS * 2) + "]"
+            };
+            for (final String query : queries) {
+                final String unbounded = query.replace(paras, "(" + paras + ", ())");
+                final Sequence expected = pool.getXQueryService().execute(broker, unbounded, null);
+                final Sequence actual = pool.getXQueryService().execute(broker, query, null);
+                assertEquals(query, expected.getItemCount(), actual.getItemCount());
+                for (int i = 0; i < expected.getItemCount(); i++) {
+                    final NodeProxy e = (NodeProxy) expected.itemAt(i);
+                    final NodeProxy a = (NodeProxy) actual.itemAt(i);
+                    assertEquals(query, e.getOwnerDocument().getDocId(), a.getOwnerDocument().getDocId());
+                    assertEquals(query, e.getNodeId(), a.getNodeId());
+                }
+            }
+        }
+    }
+
+    private static void assertStartsWith(final NodeSet all, final NodeSet found, final int count) {
+        assertTrue(found.getLength() >= count);
+        final Iterator<NodeProxy> itAll = all.iterator();
+        final Iterator<NodeProxy> itFound = found.iterator();
+        for (int i = 0; i < count; i++) {
+            final NodeProxy e = itAll.next();
+            final NodeProxy a = itFound.next();
+            assertEquals(e.getOwnerDocument().getDocId(), a.getOwnerDocument().getDocId());
+            assertEquals(e.getNodeId(), a.getNodeId());
+        }
+    }
+
+    /**
+     * Joins the context set with the structural index and compares the result with the selector based lookup.
+     *
+     * @param axis the axis of the step
+     * @param qname the name of the step
+     * @param contextQuery the query selecting the context set, or null for all sections
+     */
+    private static void assertJoin(final int axis, final QName qname, final String contextQuery)
+            throws EXistException, PermissionDeniedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final DocumentSet docs = broker.getCollection(TEST_COLLECTION).allDocs(broker, new DefaultDocumentSet(), false);
+
+            final NodeSet contextSet;
+            if (contextQuery == null) {
+                contextSet = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT, docs, SECTION, null);
+            } else {
+                contextSet = pool.getXQueryService().execute(broker, contextQuery, null).toNodeSet();
+            }
+            assertFalse(contextSet.isEmpty());
+
+            final NodeSelector selector;
+            switch (axis) {
+                case Constants.CHILD_AXIS:
+                    selector = new ChildSelector(contextSet, Expression.NO_CONTEXT_ID);
+                    break;
+                case Constants.DESCENDANT_SELF_AXIS:
+                    selector = new DescendantOrSelfSelector(contextSet, Expression.NO_CONTEXT_ID);
+                    break;
+                default:
+                    selector = new DescendantSelector(contextSet, Expression.NO_CONTEXT_ID);
+                    break;
+            }
+            final NodeSet expected = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT, docs, qname, selector);
+            final NodeSet actual = broker.getStructuralIndex().joinDescendantsByTagName(ElementValue.ELEMENT, qname, axis,
+                    docs, contextSet, Expression.NO_CONTEXT_ID, null);
+
+            assertFalse(expected.isEmpty());
+            assertEquals(expected.getLength(), actual.getLength());
+            final Iterator<NodeProxy> itExpected = expected.iterator();
+            final Iterator<NodeProxy> itActual = actual.iterator();
+            while (itExpected.hasNext()) {
+                assertTrue(itActual.hasNext());
+                final NodeProxy e = itExpected.next();
+                final NodeProxy a = itActual.next();
+                assertEquals(e.getOwnerDocument().getDocId(), a.getOwnerDocument().getDocId());
+                assertEquals(e.getNodeId(), a.getNodeId());
+            }
+        } catch (final XPathException | LockException e) {
+            throw new EXistException(e);
+        }
+    }
+
+    /**
+     * Every section has one child para; every third section also has
+     * a nested section with two more paras, and a div with one para.
+     */
+    private static String generateXml() {
+        final StringBuilder builder = new StringBuilder("<doc>");
+        for (int i = 0; i < SECTIONS; i++) {
+            builder.append("<section n='").append(i).append("'><para/>");
+            if (i % 3 == 0) {
+                builder.append("<section><para/><para/></section><div><para/></div>");
+            }
+            builder.append("</section>");
+        }
+        return builder.append("</doc>").toString();
+    }
+
+    @BeforeClass
+    public static void storeDocuments() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection collection = broker.getOrCreateCollection(transaction, TEST_COLLECTION);
+            broker.saveCollection(transaction, collection);
+
+            final String xml = generateXml();
+            for (int i = 0; i < DOCS; i++) {
+                final IndexInfo info = collection.validateXMLResource(transaction, broker, XmldbURI.create("doc" + i + ".xml"), xml);
+                collection.store(transaction, broker, info, xml);
+            }
+            transaction.commit();
+        }
+    }
+
+    @AfterClass
+    public static void removeDocuments() throws EXistException, PermissionDeniedException, IOException, TriggerException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection collection = broker.getCollection(TEST_COLLECTION);
+            if (collection != null) {
+                broker.removeCollection(transaction, collection);
+            }
+            transaction.commit();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.util.sax.event;
+
+import org.exist.Namespaces;
+import org.exist.util.serializer.SAXSerializer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class SAXEventBufferTest {
+
+    private static final String XML =
+            "<?xml-stylesheet href='style.xsl' type='text/xsl'?>" +
+            "<!-- before -->" +
+            "<a xmlns='http://a' xmlns:b='http://b' z='99'>" +
+            "    <b:b x='1' b:y='2'/>" +
+            "    <c><![CDATA[<cdata>]]></c>" +
+            "    <d>text &amp; more text<!-- comment --><?pi data?></d>" +
+            "</a>";
+
+    @Test
+    public void passThroughAndReplay() throws ParserConfigurationException, SAXException, IOException {
+        final SAXSerializer direct = serializer();
+        final SAXEventBuffer buffer = new SAXEventBuffer(direct, direct, Long.MAX_VALUE);
+        parse(buffer);
+
+        assertTrue(buffer.isComplete());
+        assertTrue(buffer.size() > 0);
+
+        final SAXSerializer replayed = serializer();
+        buffer.replay(replayed, replayed);
+
+        final String expected = direct.getWriter().toString();
+        assertTrue(expected.contains("<![CDATA[<cdata>]]>"));
+        assertEquals(expected, replayed.getWriter().toString());
+
+        // may be replayed more than once
+        final SAXSerializer replayedAgain = serializer();
+        buffer.replay(replayedAgain, replayedAgain);
+        assertEquals(expected, replayedAgain.getWriter().toString());
+    }
+
+    @Test
+    public void exceedsMaxSize() throws ParserConfigurationException, SAXException, IOException {
+        final SAXSerializer direct = serializer();
+        final SAXEventBuffer buffer = new SAXEventBuffer(direct, direct, 64);
+        parse(buffer);
+
+        // events are still passed through
+        assertTrue(direct.getWriter().toString().contains("text &amp; more text"));
+        assertFalse(buffer.isComplete());
+
+        try {
+            buffer.replay(serializer(), null);
+            fail("Expected the incomplete recording not to be replayed");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void incompleteDocument() throws ParserConfigurationException, SAXException, IOException {
+        final SAXEventBuffer buffer = new SAXEventBuffer(null, null, Long.MAX_VALUE);
+        try {
+            parse(buffer, "<a><b></a>");
+            fail("Expected a parse error");
+        } catch (final SAXException e) {
+            assertFalse(buffer.isComplete());
+        }
+    }
+
+    private static void parse(final SAXEventBuffer buffer) throws ParserConfigurationException, SAXException, IOException {
+        parse(buffer, XML);
+    }
+
+    private static void parse(final SAXEventBuffer buffer, final String xml) throws ParserConfigurationException, SAXException, IOException {
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setContentHandler(buffer);
+        reader.setProperty(Namespaces.SAX_LEXICAL_HANDLER, buffer);
+        reader.parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static SAXSerializer serializer() {
+        final Properties properties = new Properties();
+        properties.setProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        return new SAXSerializer(new StringWriter(), properties);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xmldb;
+
+import org.exist.TestUtils;
+import org.exist.test.ExistWebServer;
+import org.exist.util.io.FastByteArrayInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.base.XMLDBException;
+import org.xmldb.api.modules.BinaryResource;
+import org.xmldb.api.modules.CollectionManagementService;
+import org.xmldb.api.modules.XMLResource;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of resources through the remote XML:DB API, with the content transferred
+ * as plain HTTP bodies, see {@link BinaryTransfer}, or as XML-RPC chunks if the server
+ * does not support it.
+ */
+public class BinaryTransferTest {
+
+    @ClassRule
+    public static final ExistWebServer existWebServer = new ExistWebServer(true, false, true, true);
+
+    private static final String TEST_COLLECTION_NAME = "binary-transfer-test";
+
+    /**
+     * Larger than several XML-RPC upload and download chunks.
+     */
+    private static final int LARGE_SIZE = 5 * 1024 * 1024;
+
+    @Test
+    public void largeBinaryRoundTrip() throws XMLDBException {
+        final byte[] content = generateBinary(LARGE_SIZE);
+
+        final Collection binaryCol = getTestCollection(true);
+        assertTrue(((RemoteCollection) binaryCol).getBinaryTransferConfig().isSupported());
+        storeBinary(binaryCol, "large.bin", content);
+
+        // read back with and without binary transfer
+        assertArrayEquals(content, (byte[]) binaryCol.getResource("large.bin").getContent());
+        assertArrayEquals(content, (byte[]) getTestCollection(false).getResource("large.bin").getContent());
+    }
+
+    @Test
+    public void largeXmlRoundTrip() throws XMLDBException {
+        final String xml = generateXml(LARGE_SIZE);
+
+        final Collection binaryCol = getTestCollection(true);
+        final XMLResource resource = (XMLResource) binaryCol.createResource("large.xml", XMLResource.RESOURCE_TYPE);
+        resource.setContent(xml);
+        binaryCol.storeResource(resource);
+
+        final String expected = (String) getTestCollection(false).getResource("large.xml").getContent();
+        assertTrue(expected.contains("<item n=\"1000\">"));
+        assertEquals(expected, binaryCol.getResource("large.xml").getContent());
+    }
+
+    @Test
+    public void fallbackWithoutEndpoint() throws XMLDBException, MalformedURLException {
+        // an endpoint which does not support binary transfers
+        final BinaryTransfer.Config config = newConfig("/rest", TestUtils.ADMIN_DB_USER, TestUtils.ADMIN_DB_PWD);
+        assertFalse(BinaryTransfer.probe(config));
+        assertTrue(BinaryTransfer.probe(newConfig("/xmlrpc", TestUtils.ADMIN_DB_USER, TestUtils.ADMIN_DB_PWD)));
+
+        // the client of an older server uses XML-RPC chunks instead
+        final byte[] content = generateBinary(LARGE_SIZE);
+        final Collection binaryCol = getTestCollection(true);
+        final BinaryTransfer.Config binaryConfig = ((RemoteCollection) binaryCol).getBinaryTransferConfig();
+        binaryConfig.setSupported(false);
+        try {
+            storeBinary(binaryCol, "fallback.bin", content);
+            assertArrayEquals(content, (byte[]) binaryCol.getResource("fallback.bin").getContent());
+        } finally {
+            binaryConfig.setSupported(true);
+        }
+        assertArrayEquals(content, (byte[]) getTestCollection(false).getResource("fallback.bin").getContent());
+    }
+
+    @Test
+    public void failedAuthentication() throws MalformedURLException {
+        final BinaryTransfer.Config config = newConfig("/xmlrpc", TestUtils.ADMIN_DB_USER, "wrong password");
+        try {
+            BinaryTransfer.upload(config, new FastByteArrayInputStream(generateBinary(1024)));
+            fail("upload with wrong credentials should fail");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("401"));
+        }
+
+        try {
+            BinaryTransfer.download(config, "0", 0, is -> fail("download with wrong credentials should fail"));
+            fail("download with wrong credentials should fail");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("401"));
+        }
+    }
+
+    private static void storeBinary(final Collection col, final String name, final byte[] content) throws XMLDBException {
+        final BinaryResource resource = (BinaryResource) col.createResource(name, BinaryResource.RESOURCE_TYPE);
+        resource.setContent(content);
+        col.storeResource(resource);
+    }
+
+    private static BinaryTransfer.Config newConfig(final String path, final String user, final String password)
+            throws MalformedURLException {
+        final BinaryTransfer.Config config = new BinaryTransfer.Config();
+        config.setServerURL(new URL("http://localhost:" + existWebServer.getPort() + path));
+        config.setBasicUserName(user);
+        config.setBasicPassword(password);
+        return config;
+    }
+
+    private static String getBaseUri() {
+        return "xmldb:exist://localhost:" + existWebServer.getPort() + "/xmlrpc";
+    }
+
+    private static Collection getTestCollection(final boolean binaryTransfer) throws XMLDBException {
+        final DatabaseImpl database = new DatabaseImpl();
+        database.setProperty(DatabaseImpl.BINARY_TRANSFER, Boolean.toString(binaryTransfer));
+        final Collection col = database.getCollection(getBaseUri() + "/db/" + TEST_COLLECTION_NAME,
+                TestUtils.ADMIN_DB_USER, TestUtils.ADMIN_DB_PWD);
+        assertNotNull(col);
+        return col;
+    }
+
+    private static byte[] generateBinary(final int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static String generateXml(final int size) {
+        final StringBuilder builder = new StringBuilder("<items>");
+        for (int i = 1; builder.length() < size; i++) {
+            builder.append("<item n=\"").append(i).append("\">").append("item ").append(i).append("</item>");
+        }
+        return builder.append("</items>").toString();
+    }
+
+    @Before
+    public void setUp() throws XMLDBException {
+        final Collection root = new DatabaseImpl().getCollection(getBaseUri() + "/db",
+                TestUtils.ADMIN_DB_USER, TestUtils.ADMIN_DB_PWD);
+        final CollectionManagementService service = (CollectionManagementService) root.getService("CollectionManagementService", "1.0");
+        assertNotNull(service.createCollection(TEST_COLLECTION_NAME));
+    }
+
+    @After
+    public void tearDown() throws XMLDBException {
+        final Collection root = new DatabaseImpl().getCollection(getBaseUri() + "/db",
+                TestUtils.ADMIN_DB_USER, TestUtils.ADMIN_DB_PWD);
+        final CollectionManagementService service = (CollectionManagementService) root.getService("CollectionManagementService", "1.0");
+        service.removeCollection(TEST_COLLECTION_NAME);
+    }
+}
@@ -547,6 +547,89 @@ public class XmlRpcTest {
         item = (byte[]) xmlrpc.execute("retrieve", params);
     }
 
+    @Test
+    public void retrieveBatch() throws XmlRpcException, MalformedURLException {
+        List<Object> params = new ArrayList<>();
+        String query = "for $i in 1 to 5 return <item n='{$i}'/>";
+        params.add(query.getBytes(UTF_8));
+        params.add(new HashMap<>());
+        XmlRpcClient xmlrpc = getClient();
+        Integer handle = (Integer) xmlrpc.execute("executeQuery", params);
+        assertNotNull(handle);
+
+        final Map<String, String> options = new HashMap<>();
+        options.put(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+        params.clear();
+        params.add(handle);
+        params.add(1);
+        params.add(3);
+        params.add(options);
+        Map<?, ?> result = (Map<?, ?>) xmlrpc.execute("retrieveBatch", params);
+        assertEquals(5, result.get("hits"));
+        assertEquals(1, result.get("start"));
+        Object[] data = (Object[]) result.get("data");
+        assertEquals(3, data.length);
+        assertEquals("<item n=\"2\"/>", new String((byte[]) data[0], UTF_8));
+        assertEquals("<item n=\"4\"/>", new String((byte[]) data[2], UTF_8));
+
+        // the last batch may be shorter
+        params.set(1, 3);
+        result = (Map<?, ?>) xmlrpc.execute("retrieveBatch", params);
+        data = (Object[]) result.get("data");
+        assertEquals(2, data.length);
+        assertEquals("<item n=\"5\"/>", new String((byte[]) data[1], UTF_8));
+    }
+
+    @Test
+    public void retrieveBatchInvalidCount() throws XmlRpcException, MalformedURLException {
+        List<Object> params = new ArrayList<>();
+        params.add("1 to 5".getBytes(UTF_8));
+        params.add(new HashMap<>());
+        XmlRpcClient xmlrpc = getClient();
+        Integer handle = (Integer) xmlrpc.execute("executeQuery", params);
+        assertNotNull(handle);
+
+        params.clear();
+        params.add(handle);
+        params.add(0);
+        params.add(0);
+        params.add(new HashMap<>());
+        try {
+            xmlrpc.execute("retrieveBatch", params);
+            fail("retrieveBatch should reject a count of 0");
+        } catch (final XmlRpcException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("count must be at least 1"));
+        }
+    }
+
+    @Test
+    public void retrieveBatchAtomicItems() throws XmlRpcException, MalformedURLException {
+        List<Object> params = new ArrayList<>();
+        String query = "(<item n='1'/>, 'value', <item n='2'/>)";
+        params.add(query.getBytes(UTF_8));
+        params.add(new HashMap<>());
+        XmlRpcClient xmlrpc = getClient();
+        Integer handle = (Integer) xmlrpc.execute("executeQuery", params);
+        assertNotNull(handle);
+
+        final Map<String, String> options = new HashMap<>();
+        options.put(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+        params.clear();
+        params.add(handle);
+        params.add(0);
+        params.add(3);
+        params.add(options);
+        final Map<?, ?> result = (Map<?, ?>) xmlrpc.execute("retrieveBatch", params);
+        final Object[] data = (Object[]) result.get("data");
+        assertEquals(3, data.length);
+        assertEquals("<item n=\"1\"/>", new String((byte[]) data[0], UTF_8));
+        // the values of atomic items are not transferred again
+        assertEquals(0, ((byte[]) data[1]).length);
+        assertEquals("<item n=\"2\"/>", new String((byte[]) data[2], UTF_8));
+    }
+
     @Test
     public void testQueryModuleExternalVar() throws XmlRpcException, MalformedURLException {
         storeData();
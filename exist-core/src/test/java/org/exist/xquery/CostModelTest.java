@@ -0,0 +1,349 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.DefaultDocumentSet;
+import org.exist.dom.persistent.DocumentSet;
+import org.exist.dom.persistent.NewArrayNodeSet;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.Constants.Comparison;
+import org.exist.xquery.util.ExpressionDumper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import javax.xml.XMLConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the decisions taken from the {@link CostModel} on a database with a known
+ * {@link org.exist.storage.statistics.DataGuide}: the order of predicates after
+ * optimization, and the choice of access path in {@link GeneralComparison} and {@link LocationStep}.
+ */
+public class CostModelTest {
+
+    private static Path configFile;
+
+    static {
+        try {
+            configFile = Paths.get(CostModelTest.class.getClassLoader()
+                    .getResource("org/exist/storage/statistics/conf.xml").toURI());
+        } catch (final URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(null, configFile, null, true, true);
+
+    private static final XmldbURI TEST_COLLECTION = XmldbURI.ROOT_COLLECTION_URI.append("cost-model-test");
+
+    private static final int ITEMS = 500;
+    private static final int MANY_PER_ITEM = 20;
+
+    private static final QName ITEM = new QName("item", XMLConstants.NULL_NS_URI);
+    private static final QName MANY = new QName("many", XMLConstants.NULL_NS_URI);
+    private static final QName RARE = new QName("rare", XMLConstants.NULL_NS_URI);
+
+    @Test
+    public void nodeCounts() throws EXistException, PermissionDeniedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final CostModel costModel = new XQueryContext(pool).getCostModel();
+            assertTrue(costModel.hasStatistics());
+            assertEquals(ITEMS, costModel.getNodeCount(ITEM));
+            assertEquals(ITEMS * MANY_PER_ITEM, costModel.getNodeCount(MANY));
+            assertEquals(1, costModel.getNodeCount(RARE));
+            assertEquals(-1, costModel.getNodeCount(new QName("id", XMLConstants.NULL_NS_URI, ElementValue.ATTRIBUTE)));
+        }
+    }
+
+    /**
+     * Without statistics both predicates would be estimated to visit one child per step and keep
+     * their order; the DataGuide tells that every item has 20 <code>many</code> children,
+     * but only one item has a <code>note/rare</code>.
+     */
+    @Test
+    public void reorderPredicates() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQueryContext context = new XQueryContext(pool);
+            final LocationStep step = compileStep(broker, context,
+                    "collection('" + TEST_COLLECTION + "')//item[count(many) > 1][exists(note/rare)]", ITEM);
+
+            final List<Predicate> predicates = step.getPredicates();
+            assertEquals(2, predicates.size());
+            assertPredicate("rare", predicates.get(0));
+            assertPredicate("many", predicates.get(1));
+
+            final CostModel costModel = context.getCostModel();
+            final CostModel.Estimate rare = costModel.estimate(step, predicates.get(0), false);
+            final CostModel.Estimate many = costModel.estimate(step, predicates.get(1), false);
+            assertEquals(20.2, many.getCost(), 0.001);
+            assertEquals(CostModel.RANGE_SELECTIVITY, many.getSelectivity(), 0.001);
+            assertEquals(0.3, rare.getCost(), 0.001);
+            assertEquals(CostModel.DEFAULT_SELECTIVITY, rare.getSelectivity(), 0.001);
+            assertTrue(rare.getRank() < many.getRank());
+        }
+    }
+
+    @Test
+    public void positionalPredicateIsBarrier() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[count(many) > 1][1][exists(note/rare)]", ITEM);
+
+            final List<Predicate> predicates = step.getPredicates();
+            assertEquals(3, predicates.size());
+            assertPredicate("many", predicates.get(0));
+            assertPredicate("rare", predicates.get(2));
+        }
+    }
+
+    /**
+     * The dependencies of the comparison do not tell that it uses the context position.
+     */
+    @Test
+    public void positionComparisonIsBarrier() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[count(many) > 1][position() > 10][exists(note/rare)]", ITEM);
+
+            final List<Predicate> predicates = step.getPredicates();
+            assertEquals(3, predicates.size());
+            assertPredicate("many", predicates.get(0));
+            assertPredicate("position", predicates.get(1));
+            assertPredicate("rare", predicates.get(2));
+        }
+    }
+
+    @Test
+    public void guardIsNotMoved() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[count(many) > 1][@id castable as xs:integer][exists(note/rare)]", ITEM);
+
+            final List<Predicate> predicates = step.getPredicates();
+            assertEquals(3, predicates.size());
+            assertPredicate("many", predicates.get(0));
+            assertPredicate("castable", predicates.get(1));
+            assertPredicate("rare", predicates.get(2));
+        }
+    }
+
+    /**
+     * With 10000 <code>many</code> elements in the database, a lookup of one key in the
+     * range index costs 20 + 0.1 * 10000 * 0.01 = 30, comparing n nodes costs n * 1.1.
+     */
+    @Test
+    public void preferNodeScan() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[many = 'a']", ITEM);
+            final Expression expression = step.getPredicates().get(0).getExpression(0);
+            assertTrue(expression instanceof GeneralComparison);
+            final GeneralComparison comparison = (GeneralComparison) expression;
+            assertEquals(Comparison.EQ, comparison.getRelation());
+
+            final NodeSet many = findElements(broker, MANY);
+            assertTrue(comparison.preferNodeScan(subset(many, 1), 1));
+            assertTrue(comparison.preferNodeScan(subset(many, 27), 1));
+            assertFalse(comparison.preferNodeScan(subset(many, 28), 1));
+            assertFalse(comparison.preferNodeScan(many, 1));
+
+            // each key adds a lookup: 10 keys cost 300 with the index, and n * 2 when comparing nodes
+            assertTrue(comparison.preferNodeScan(subset(many, 149), 10));
+            assertFalse(comparison.preferNodeScan(subset(many, 150), 10));
+        }
+    }
+
+    @Test
+    public void preferNodeScan_rangeComparison() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[many > 'a']", ITEM);
+            final GeneralComparison comparison = (GeneralComparison) step.getPredicates().get(0).getExpression(0);
+
+            // a range comparison matches a third of the 10000 entries: 20 + 10000 / 3 * 0.01 = 53.3
+            final NodeSet many = findElements(broker, MANY);
+            assertTrue(comparison.preferNodeScan(subset(many, 48), 1));
+            assertFalse(comparison.preferNodeScan(subset(many, 49), 1));
+        }
+    }
+
+    /**
+     * Scanning the 10000 <code>many</code> entries of the structural index costs 10000 * 0.01 = 100,
+     * a lookup for each context node costs 20.
+     */
+    @Test
+    public void preferStructuralScan() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep item = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item[many = 'a']", ITEM);
+            final LocationStep many = findStep(((GeneralComparison) item.getPredicates().get(0).getExpression(0)).getLeft(), MANY);
+
+            assertFalse(many.preferIndexScan(1));
+            assertFalse(many.preferIndexScan(5));
+            assertTrue(many.preferIndexScan(6));
+            assertTrue(many.preferIndexScan(ITEMS));
+
+            final LocationStep rare = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item//rare", RARE);
+            assertTrue(rare.preferIndexScan(1));
+        }
+    }
+
+    @Test
+    public void preferStructuralScan_unknownName() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final LocationStep step = compileStep(broker, new XQueryContext(pool),
+                    "collection('" + TEST_COLLECTION + "')//item/unknown", new QName("unknown", XMLConstants.NULL_NS_URI));
+
+            // no such elements in the database, so there are no index entries to scan
+            assertTrue(step.preferIndexScan(1));
+        }
+    }
+
+    private static LocationStep compileStep(final DBBroker broker, final XQueryContext context, final String query,
+            final QName qname) throws XPathException, PermissionDeniedException {
+        final CompiledXQuery compiled = broker.getBrokerPool().getXQueryService().compile(broker, context, query);
+        return findStep((Expression) compiled, qname);
+    }
+
+    private static LocationStep findStep(final Expression expression, final QName qname) {
+        final List<LocationStep> steps = new ArrayList<>();
+        expression.accept(new DefaultExpressionVisitor() {
+            @Override
+            public void visit(final Expression expr) {
+                // look into the (# exist:optimize #) pragmas added by the optimizer
+                if (expr instanceof PathExpr || expr instanceof LocationStep) {
+                    expr.accept(this);
+                } else {
+                    super.visit(expr);
+                }
+            }
+
+            @Override
+            public void visitLocationStep(final LocationStep locationStep) {
+                steps.add(locationStep);
+                super.visitLocationStep(locationStep);
+            }
+        });
+        for (final LocationStep step : steps) {
+            if (step.getTest().getName() != null && qname.equals(step.getTest().getName())) {
+                return step;
+            }
+        }
+        throw new AssertionError("No step " + qname + " in " + ExpressionDumper.dump(expression));
+    }
+
+    private static void assertPredicate(final String expected, final Predicate predicate) {
+        final String dump = ExpressionDumper.dump(predicate);
+        assertTrue("Expected '" + expected + "' in predicate " + dump, dump.contains(expected));
+    }
+
+    private static NodeSet findElements(final DBBroker broker, final QName qname) throws PermissionDeniedException {
+        try {
+            final DocumentSet docs = broker.getCollection(TEST_COLLECTION).allDocs(broker, new DefaultDocumentSet(), false);
+            final NodeSet nodes = broker.getStructuralIndex().findElementsByTagName(ElementValue.ELEMENT, docs, qname, null);
+            assertNotNull(nodes);
+            return nodes;
+        } catch (final LockException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static NodeSet subset(final NodeSet nodes, final int count) {
+        final NodeSet subset = new NewArrayNodeSet();
+        final Iterator<NodeProxy> i = nodes.iterator();
+        for (int n = 0; n < count && i.hasNext(); n++) {
+            subset.add(i.next());
+        }
+        assertEquals(count, subset.getLength());
+        return subset;
+    }
+
+    /**
+     * Every item has 20 <code>many</code> children, the first item also has a <code>note/rare</code>.
+     */
+    private static String generateXml() {
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < ITEMS; i++) {
+            builder.append("<item id='").append(i).append("'>");
+            for (int j = 0; j < MANY_PER_ITEM; j++) {
+                builder.append("<many>").append(j == 0 ? 'a' : 'b').append("</many>");
+            }
+            if (i == 0) {
+                builder.append("<note><rare>x</rare></note>");
+            }
+            builder.append("</item>");
+        }
+        return builder.append("</root>").toString();
+    }
+
+    @BeforeClass
+    public static void storeDocument() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection collection = broker.getOrCreateCollection(transaction, TEST_COLLECTION);
+            broker.saveCollection(transaction, collection);
+
+            final String xml = generateXml();
+            final IndexInfo info = collection.validateXMLResource(transaction, broker, XmldbURI.create("items.xml"), xml);
+            collection.store(transaction, broker, info, xml);
+            transaction.commit();
+        }
+    }
+}
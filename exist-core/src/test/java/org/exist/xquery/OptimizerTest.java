@@ -143,6 +143,20 @@ public class OptimizerTest {
         execute("//SPEECH[true() and true()]", true, MSG_OPT_ERROR, 2628);
     }
 
+    @Test
+    public void reorderPredicates() throws XMLDBException {
+        long r = execute("//SPEECH[contains(string-join(LINE, ' '), 'love')][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[contains(string-join(LINE, ' '), 'love')][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+
+        // positional predicates must not be moved
+        r = execute("//SPEECH[SPEAKER = 'HAMLET'][1]", false);
+        execute("//SPEECH[SPEAKER = 'HAMLET'][1]", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[1][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[1][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[position() > 10][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[position() > 10][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+    }
+
     private long execute(String query, boolean optimize) throws XMLDBException {
         XQueryService service = (XQueryService) testCollection.getService("XQueryService", "1.0");
         if (optimize) {
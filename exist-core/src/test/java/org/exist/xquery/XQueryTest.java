@@ -1124,6 +1124,37 @@ public class XQueryTest {
                 result.getResource(0).getContent().toString());
     }
 
+    @Test
+    public void moduleSharedByQueriesIsReloadedWhenChanged() throws XMLDBException {
+        final String moduleName = "shared.xqm";
+        final Collection testCollection = getTestCollection();
+        Resource doc = testCollection.createResource(moduleName, "BinaryResource");
+        doc.setContent("module namespace shared=\"shared\";\n" +
+                "declare function shared:value() { \"first\" };");
+        ((EXistResource) doc).setMimeType("application/xquery");
+        testCollection.storeResource(doc);
+
+        final XPathQueryService service = (XPathQueryService) testCollection.getService("XPathQueryService", "1.0");
+        final String prolog = "xquery version \"1.0\";\n" +
+                "import module namespace shared=\"shared\" at \"" + URI + "/test/" + moduleName + "\";\n";
+
+        ResourceSet result = service.query(prolog + "shared:value()");
+        assertEquals("first", result.getResource(0).getContent());
+
+        // a different main query imports the same module
+        result = service.query(prolog + "concat('value: ', shared:value())");
+        assertEquals("value: first", result.getResource(0).getContent());
+
+        doc = testCollection.createResource(moduleName, "BinaryResource");
+        doc.setContent("module namespace shared=\"shared\";\n" +
+                "declare function shared:value() { \"second\" };");
+        ((EXistResource) doc).setMimeType("application/xquery");
+        testCollection.storeResource(doc);
+
+        result = service.query(prolog + "concat('value: ', shared:value())");
+        assertEquals("value: second", result.getResource(0).getContent());
+    }
+
     @Test
     public void importExternalClasspathMainModule() throws EXistException, IOException, PermissionDeniedException, XPathException, QName.IllegalQNameException {
         final long timestamp = System.currentTimeMillis();
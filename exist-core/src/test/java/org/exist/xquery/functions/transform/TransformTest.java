@@ -33,9 +33,12 @@ import org.exist.storage.txn.Txn;
 import org.exist.test.ExistEmbeddedServer;
 import org.exist.util.LockException;
 import org.exist.xmldb.XmldbURI;
+import org.exist.xslt.TemplatesFactory;
+import org.exist.xslt.XSLTErrorsListener;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQuery;
 import org.exist.xquery.value.Item;
+import org.exist.xquery.value.NodeValue;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.Type;
 import org.junit.*;
@@ -49,12 +52,17 @@ import org.xmlunit.builder.Input;
 import org.xmlunit.diff.Diff;
 
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.Properties;
 
 import static com.evolvedbinary.j8fu.tuple.Tuple.Tuple;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 
@@ -204,6 +212,25 @@ public class TransformTest {
                 "return\n" +
                 "\ttransform:transform($xml, $xsl, ())";
 
+    private static final XmldbURI TEST_IMPORT_COLLECTION = XmldbURI.create("/db/transform-import-test");
+    private static final XmldbURI IMPORT_MAIN_XSLT_NAME = XmldbURI.create("import-main.xsl");
+    private static final XmldbURI IMPORT_MODULE_XSLT_NAME = XmldbURI.create("import-module.xsl");
+
+    private static final String IMPORT_MAIN_XSLT =
+            "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">\n" +
+            "\t<xsl:import href=\"" + IMPORT_MODULE_XSLT_NAME + "\"/>\n" +
+            "\t<xsl:template match=\"/\">\n" +
+            "\t\t<result><xsl:call-template name=\"value\"/></result>\n" +
+            "\t</xsl:template>\n" +
+            "</xsl:stylesheet>";
+
+    private static final String IMPORT_QUERY =
+            "import module namespace transform=\"http://exist-db.org/xquery/transform\";\n" +
+            "\n" +
+            "let $xsl := doc('" + TEST_IMPORT_COLLECTION.append(IMPORT_MAIN_XSLT_NAME).getRawCollectionPath() + "')\n" +
+            "return\n" +
+            "\ttransform:transform(<a/>, $xsl, ())";
+
 
     /**
      * {@see https://github.com/eXist-db/exist/issues/1506}
@@ -299,6 +326,110 @@ public class TransformTest {
         transform_twoNodesCountDescendants();
     }
 
+    /**
+     * A cached stylesheet must be recompiled when a module it imports is modified.
+     */
+    @Test
+    public void importedModuleModified() throws EXistException, PermissionDeniedException, XPathException, IOException, SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            assertEquals("1", transformImport(broker));
+            assertEquals("1", transformImport(broker));
+
+            try (final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+                createCollection(broker, transaction, TEST_IMPORT_COLLECTION,
+                        Tuple(IMPORT_MODULE_XSLT_NAME, getImportModuleXslt("2"))
+                );
+                transaction.commit();
+            }
+
+            assertEquals("2", transformImport(broker));
+        }
+    }
+
+    private static String transformImport(final DBBroker broker) throws EXistException, PermissionDeniedException, XPathException {
+        final Sequence sequence = broker.getBrokerPool().getXQueryService().execute(broker, IMPORT_QUERY, null);
+
+        assertNotNull(sequence);
+        assertTrue(sequence.hasOne());
+
+        return sequence.itemAt(0).toJavaObject(Node.class).getTextContent();
+    }
+
+    private static String getImportModuleXslt(final String value) {
+        return
+                "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">\n" +
+                "\t<xsl:template name=\"value\">" + value + "</xsl:template>\n" +
+                "</xsl:stylesheet>";
+    }
+
+    /**
+     * A stylesheet passed as a node is cached by its content, rather than by the identity of the node.
+     */
+    @Test
+    public void nodeStylesheetCachedByContent() throws EXistException, PermissionDeniedException, XPathException, IOException, SAXException, TransformerConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Templates templates = nodeTemplates(broker, "1", true);
+
+            // an equal node, constructed by another query
+            assertSame(templates, nodeTemplates(broker, "1", true));
+
+            assertNotSame(templates, nodeTemplates(broker, "2", true));
+            assertNotSame(templates, nodeTemplates(broker, "1", false));
+        }
+    }
+
+    /**
+     * A stylesheet is compiled, and cached, separately for different attributes of the transformer factory.
+     */
+    @Test
+    public void factoryAttributesInCacheKey() throws EXistException, PermissionDeniedException, IOException, SAXException, XPathException, TransformerConfigurationException {
+        final String uri = XmldbURI.EMBEDDED_SERVER_URI_PREFIX + TEST_DOCUMENT_XSLT_COLLECTION.append(DOCUMENT_XSLT_NAME).getRawCollectionPath();
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Templates templates = uriTemplates(broker, uri, null);
+            assertSame(templates, uriTemplates(broker, uri, null));
+
+            final Templates templatesWithAttributes = uriTemplates(broker, uri, initialTemplateAttributes());
+            assertNotSame(templates, templatesWithAttributes);
+
+            // equal attributes, in another instance
+            assertSame(templatesWithAttributes, uriTemplates(broker, uri, initialTemplateAttributes()));
+        }
+    }
+
+    private static Templates nodeTemplates(final DBBroker broker, final String value, final boolean useCache) throws EXistException, PermissionDeniedException, XPathException, IOException, SAXException, TransformerConfigurationException {
+        final Sequence sequence = broker.getBrokerPool().getXQueryService().execute(broker, getImportModuleXslt(value), null);
+
+        assertNotNull(sequence);
+        assertTrue(sequence.hasOne());
+
+        final NodeValue node = (NodeValue) sequence.itemAt(0);
+        return TemplatesFactory.stylesheet(broker, node, XmldbURI.EMBEDDED_SERVER_URI_PREFIX + "/db", useCache)
+                .templates(broker, newErrorListener());
+    }
+
+    private static Templates uriTemplates(final DBBroker broker, final String uri, final Properties attributes) throws PermissionDeniedException, IOException, SAXException, XPathException, TransformerConfigurationException {
+        return TemplatesFactory.stylesheet(uri, null, attributes, true).templates(broker, newErrorListener());
+    }
+
+    private static Properties initialTemplateAttributes() {
+        final Properties attributes = new Properties();
+        attributes.setProperty("http://saxon.sf.net/feature/initialTemplate", "xsl-doc");
+        return attributes;
+    }
+
+    private static XSLTErrorsListener<XPathException> newErrorListener() {
+        return new XSLTErrorsListener<XPathException>(true, false) {
+            @Override
+            protected void raiseError(final String error, final Exception ex) throws XPathException {
+                throw new XPathException(error, ex);
+            }
+        };
+    }
+
     private static void transform1(final XmldbURI collectionUri) throws EXistException, PermissionDeniedException, XPathException {
         final BrokerPool pool = existEmbeddedServer.getBrokerPool();
         final XQuery xquery = pool.getXQueryService();
@@ -409,6 +540,11 @@ public class TransformTest {
                     Tuple(COUNT_DESCENDANTS_TWO_NODES_XSLT_NAME, COUNT_DESCENDANTS_TWO_NODES_XSLT)
             );
 
+            createCollection(broker, transaction, TEST_IMPORT_COLLECTION,
+                    Tuple(IMPORT_MAIN_XSLT_NAME, IMPORT_MAIN_XSLT),
+                    Tuple(IMPORT_MODULE_XSLT_NAME, getImportModuleXslt("1"))
+            );
+
             transaction.commit();
         }
     }
@@ -449,6 +585,7 @@ public class TransformTest {
             deleteCollection(broker, transaction, TEST_SIMPLE_XML_WITH_COMMENT_COLLECTION);
             deleteCollection(broker, transaction, TEST_SIMPLE_XML_WITH_TWO_COMMENTS_COLLECTION);
             deleteCollection(broker, transaction, TEST_TWO_NODES_COLLECTION);
+            deleteCollection(broker, transaction, TEST_IMPORT_COLLECTION);
 
             transaction.commit();
         }
@@ -0,0 +1,245 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.pragmas;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.IndexInfo;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.CompiledXQuery;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.XQueryContext;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelPragmaTest {
+
+    private static final String PARALLEL = "(# exist:parallel threads=4 #) ";
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @BeforeClass
+    public static void setup() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final StringBuilder xml = new StringBuilder("<items>");
+        for (int i = 1; i <= 200; i++) {
+            xml.append("<item n=\"").append(i).append("\"><name>item ").append(i).append("</name></item>");
+        }
+        xml.append("</items>");
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection root = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI);
+            assertNotNull(root);
+            broker.saveCollection(transaction, root);
+
+            final IndexInfo info = root.validateXMLResource(transaction, broker, XmldbURI.create("items.xml"), xml.toString());
+            assertNotNull(info);
+            root.store(transaction, broker, info, xml.toString());
+
+            transaction.commit();
+        }
+    }
+
+    @AfterClass
+    public static void cleanup() throws EXistException, PermissionDeniedException, IOException, TriggerException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection test = broker.getCollection(TestConstants.TEST_COLLECTION_URI);
+            if (test != null) {
+                broker.removeCollection(transaction, test);
+            }
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void atomicValues() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("for $i at $p in 1 to 1000 return $i * $p");
+    }
+
+    @Test
+    public void storedNodes() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("for $item in doc('/db/test/items.xml')//item " +
+                "return <r n='{ $item/@n }'>{ upper-case($item/name) }</r>");
+    }
+
+    @Test
+    public void whereClause() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("for $item in doc('/db/test/items.xml')//item " +
+                "where xs:integer($item/@n) mod 3 = 0 return $item/name/string()");
+    }
+
+    @Test
+    public void globalVariables() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("declare variable $local:factor := 3;\n" +
+                "declare function local:times($i) { $i * $local:factor };\n",
+                "for $i in 1 to 500 return local:times($i)");
+    }
+
+    @Test
+    public void globalNodeVariables() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("declare variable $local:items := doc('/db/test/items.xml')//item;\n",
+                "for $i in 1 to 200 return $local:items[$i]/name/string()");
+    }
+
+    @Test
+    public void workersUsed() throws EXistException, PermissionDeniedException, XPathException {
+        final String query = "for $i in 1 to 64 return (util:wait(5), $i * 2)";
+        final List<String> expected = execute(query);
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final XQuery xquery = pool.getXQueryService();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQueryContext context = new XQueryContext(pool);
+            final CompiledXQuery compiled = xquery.compile(broker, context, PARALLEL + "{ " + query + " }");
+            final ParallelPragma pragma = context.getParallelPragma(0);
+            assertNotNull(pragma);
+
+            // the second evaluation reuses the compiled copies of the query of the workers
+            for (int i = 0; i < 2; i++) {
+                final long workerChunks = pragma.getWorkerChunks();
+                assertEquals(expected, toStrings(xquery.execute(broker, compiled, null)));
+                assertTrue(pragma.getWorkerChunks() > workerChunks);
+                // at most one compiled copy per worker thread is kept
+                assertTrue(pragma.getKeptWorkerQueries() <= 3);
+                context.prepareForReuse();
+            }
+        }
+    }
+
+    @Test
+    public void notEligible() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("for $i in 1 to 100 order by $i descending return $i");
+        assertSameResult("for $i in 1 to 100 return function() { $i }()");
+    }
+
+    @Test
+    public void sideEffectsInOperands() throws EXistException, PermissionDeniedException, XPathException {
+        final String store = "xmldb:store('/db/test', 'parallel' || $i || '.txt', 'text')";
+        // the queries are only compiled, never executed
+        assertNotEligible("for $i in 1 to 10 return $i + count(" + store + ")");
+        assertNotEligible("for $i in 1 to 10 return xs:string(" + store + ")");
+        assertNotEligible("for $i in 1 to 10 return " + store + " castable as xs:integer");
+        assertNotEligible("for $i in 1 to 10 return " + store + " instance of xs:string");
+        assertNotEligible("for $i in 1 to 10 return " + store + " eq 'parallel.xml'");
+        assertNotEligible("for $i in 1 to 10 return upper-case(" + store + ")");
+        assertNotEligible("for $i in 1 to 10 return some $y in (1, 2) satisfies xmldb:remove('/db/test', 'parallel.xml')");
+        assertNotEligible("for $i in 1 to 10 return map { " + store + " : $i }");
+        assertNotEligible("for $i in 1 to 10 return map { $i : " + store + " }");
+        assertNotEligible("for $i in 1 to 10 where $i > 5 return " + store);
+        assertNotEligible("for $i in 1 to 10 return if ($i > 5) then update delete " +
+                "doc('/db/test/items.xml')//item[@n = $i] else ()");
+        // an expression whose operands are not inspected
+        assertNotEligible("for $i in 1 to 10 return ``[item `{ $i }`]``");
+    }
+
+    @Test
+    public void pureOperands() throws EXistException, PermissionDeniedException, XPathException {
+        assertEligible("for $i in 1 to 100 return $i + count(1 to $i)");
+        assertEligible("for $i in 1 to 100 return xs:string($i)");
+        assertEligible("for $i in 1 to 100 return $i castable as xs:byte");
+        assertEligible("for $i in 1 to 100 return some $y in (1, 2) satisfies $y eq $i");
+        assertEligible("for $i in 1 to 100 return map { $i : upper-case('v' || $i) }?($i)");
+        assertEligible("for $i in 1 to 100 where $i mod 3 = 0 return $i");
+    }
+
+    @Test
+    public void errorInIteration() throws EXistException, PermissionDeniedException {
+        try {
+            execute(PARALLEL + "{ for $i in 1 to 500 return if ($i eq 377) then error(xs:QName('local:fail'), 'failed') else $i }");
+            fail("expected the error raised by an iteration");
+        } catch (final XPathException e) {
+            assertEquals("fail", e.getErrorCode().getErrorQName().getLocalPart());
+        }
+    }
+
+    private static void assertNotEligible(final String body) throws EXistException, PermissionDeniedException, XPathException {
+        assertFalse(body, compileParallel(body).isEnabled());
+    }
+
+    private static void assertEligible(final String body) throws EXistException, PermissionDeniedException, XPathException {
+        assertTrue(body, compileParallel(body).isEnabled());
+        assertSameResult(body);
+    }
+
+    private static ParallelPragma compileParallel(final String body) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQueryContext context = new XQueryContext(pool);
+            pool.getXQueryService().compile(broker, context, PARALLEL + "{ " + body + " }");
+            final ParallelPragma pragma = context.getParallelPragma(0);
+            assertNotNull(pragma);
+            return pragma;
+        }
+    }
+
+    private static void assertSameResult(final String body) throws EXistException, PermissionDeniedException, XPathException {
+        assertSameResult("", body);
+    }
+
+    private static void assertSameResult(final String prolog, final String body) throws EXistException, PermissionDeniedException, XPathException {
+        final List<String> expected = execute(prolog + body);
+        assertEquals(expected, execute(prolog + PARALLEL + "{ " + body + " }"));
+    }
+
+    private static List<String> execute(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final XQuery xquery = pool.getXQueryService();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            return toStrings(xquery.execute(broker, query, null));
+        }
+    }
+
+    private static List<String> toStrings(final Sequence result) throws XPathException {
+        final List<String> values = new ArrayList<>(result.getItemCount());
+        for (final SequenceIterator i = result.iterate(); i.hasNext(); ) {
+            values.add(i.nextItem().getStringValue());
+        }
+        return values;
+    }
+}
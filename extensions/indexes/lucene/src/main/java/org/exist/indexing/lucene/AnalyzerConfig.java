@@ -35,8 +35,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.core.StopAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.util.Version;
 
 import org.exist.collections.CollectionConfiguration;
@@ -95,7 +96,7 @@ public class AnalyzerConfig {
     private static final String PARAM_ELEMENT_NAME = "param";
 
     private Map<String, Analyzer> analyzers = new TreeMap<>();
-    private Analyzer defaultAnalyzer = new StandardAnalyzer();
+    private Analyzer defaultAnalyzer = new StandardAnalyzer(LuceneIndex.DEFAULT_STOP_WORDS);
 
     public Analyzer getAnalyzerById(String id) {
         return analyzers.get(id);
@@ -192,6 +193,23 @@ public class AnalyzerConfig {
                 cParams = new ArrayList<>();
             }
 
+            // Analyzer constructors do not take a lucene Version anymore, an explicit
+            // Version given as first parameter is set on the analyzer instead.
+            Version version = null;
+            if (!cParams.isEmpty() && cParams.get(0).getValueClass() == Version.class) {
+                version = (Version) cParams.get(0).getValue();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("An explicit Version %s of lucene has been specified.", version.toString()));
+                }
+                cParams.remove(0);
+            }
+
+            // Without parameters, keep the english stop words the StandardAnalyzer
+            // and StopAnalyzer used by default before Lucene 7.
+            if (cParams.isEmpty() && (clazz == StandardAnalyzer.class || clazz == StopAnalyzer.class)) {
+                cParams.add(new KeyTypedValue("stopwords", LuceneIndex.DEFAULT_STOP_WORDS, CharArraySet.class));
+            }
+
             // Iterate over all parameters, convert data to two arrays
             // that can be used in the reflection code
             final Class<?> cParamClasses[] = new Class<?>[cParams.size()];
@@ -203,33 +221,9 @@ public class AnalyzerConfig {
             }
 
             // Create new analyzer
-            if (cParamClasses.length > 0 && cParamClasses[0] == Version.class) {
-
-                if (LOG.isDebugEnabled()) {
-                    Version version = (Version) cParamValues[0];
-                    LOG.debug(String.format("An explicit Version %s of lucene has been specified.", version.toString()));
-                }
-
-                // A lucene Version object has been provided, so it shall be used
-                newAnalyzer = createInstance(clazz, cParamClasses, cParamValues, false);
-
-            } else {
-                // Either no parameters have been provided or more than one parameter
-
-                // Extend arrays with (default) Version object info, add to front.
-                Class<?>[] vcParamClasses = addVersionToClasses(cParamClasses);
-                Object[] vcParamValues = addVersionValueToValues(cParamValues);
-
-                // Finally create Analyzer
-                newAnalyzer = createInstance(clazz, vcParamClasses, vcParamValues, true);
-
-                // Fallback scenario: a special (not standard type of) Analyzer has been specified without 
-                // a 'Version' argument on purpose. For this (try) to create the Analyzer with 
-                // the original parameters.
-                if (newAnalyzer == null) {
-                    newAnalyzer = createInstance(clazz, cParamClasses, cParamValues, false);
-                }
-
+            newAnalyzer = createInstance(clazz, cParamClasses, cParamValues, false);
+            if (newAnalyzer != null && version != null) {
+                newAnalyzer.setVersion(version);
             }
 
         }
@@ -289,26 +283,6 @@ public class AnalyzerConfig {
         return null;
     }
 
-    /**
-     * Extend list of values, add version-value to front
-     */
-    private static Object[] addVersionValueToValues(final Object[] cParamValues) {
-        final Object vcParamValues[] = new Object[cParamValues.length + 1];
-        vcParamValues[0] = LuceneIndex.LUCENE_VERSION_IN_USE;
-        System.arraycopy(cParamValues, 0, vcParamValues, 1, cParamValues.length);
-        return vcParamValues;
-    }
-
-    /**
-     * Extend list of classes, add version-class to front
-     */
-    private static Class<?>[] addVersionToClasses(final Class<?>[] cParamClasses) {
-        final Class<?> vcParamClasses[] = new Class<?>[cParamClasses.length + 1];
-        vcParamClasses[0] = Version.class;
-        System.arraycopy(cParamClasses, 0, vcParamClasses, 1, cParamClasses.length);
-        return vcParamClasses;
-    }
-
     /**
      * Retrieve parameter info from all <param/> elements.
      *
@@ -425,13 +399,14 @@ public class AnalyzerConfig {
                 case "java.util.Set": {
 
                     LOG.info(String.format("Type '%s' has been deprecated in recent Lucene versions, "
-                            + "please use 'org.apache.lucene.analysis.util.CharArraySet' (short 'set') instead.", type));
+                            + "please use 'org.apache.lucene.analysis.CharArraySet' (short 'set') instead.", type));
 
                     final Set s = getConstructorParameterSetValues(param);
                     parameter = new KeyTypedValue(name, s, Set.class);
                     break;
                 }
 
+                case "org.apache.lucene.analysis.CharArraySet":
                 case "org.apache.lucene.analysis.util.CharArraySet":
                 case "set": {
                     // This is mandatory to use iso a normal Set since Lucene 4
@@ -518,7 +493,7 @@ public class AnalyzerConfig {
      */
     private static CharArraySet getConstructorParameterCharArraySetValues(Element param) {
         final Set<String> set = getConstructorParameterSetValues(param);
-        return CharArraySet.copy(LuceneIndex.LUCENE_VERSION_IN_USE, set);
+        return CharArraySet.copy(set);
     }
 
     /**
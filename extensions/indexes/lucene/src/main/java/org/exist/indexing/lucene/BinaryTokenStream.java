@@ -22,6 +22,7 @@ package org.exist.indexing.lucene;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
 import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
 import org.apache.lucene.util.BytesRef;
 
 /**
@@ -58,10 +59,6 @@ public final class BinaryTokenStream extends TokenStream {
     public static class ByteTermAttributeImpl extends AttributeImpl implements ByteTermAttribute,TermToBytesRefAttribute {
         private BytesRef bytes;
 
-        @Override
-        public void fillBytesRef() {
-        }
-
         @Override
         public BytesRef getBytesRef() {
             return bytes;
@@ -80,6 +77,11 @@ public final class BinaryTokenStream extends TokenStream {
             ByteTermAttributeImpl other = (ByteTermAttributeImpl) target;
             other.bytes = bytes;
         }
+
+        @Override
+        public void reflectWith(AttributeReflector reflector) {
+            reflector.reflect(TermToBytesRefAttribute.class, "bytes", getBytesRef());
+        }
     }
 }
 
@@ -291,7 +291,7 @@ public class LuceneConfig {
                                 if (elem.hasAttribute(DIACRITICS)) {
                                     String value = elem.getAttribute(DIACRITICS);
                                     if (value.equalsIgnoreCase("no")) {
-                                        analyzers.setDefaultAnalyzer(new NoDiacriticsStandardAnalyzer(LuceneIndex.LUCENE_VERSION_IN_USE));
+                                        analyzers.setDefaultAnalyzer(new NoDiacriticsStandardAnalyzer());
                                     }
                                 }
                                 parseConfig(node.getChildNodes(), namespaces);
@@ -160,63 +160,74 @@ public class LuceneFieldConfig extends AbstractFieldConfig {
     protected void processResult(Sequence result, Document luceneDoc) throws XPathException {
         for (SequenceIterator i = result.unorderedIterator(); i.hasNext(); ) {
             final String text = i.nextItem().getStringValue();
-            final Field field = convertToField(text);
-            if (field != null) {
-                luceneDoc.add(field);
-            }
+            addFields(text, luceneDoc);
         }
     }
 
     @Override
     protected void processText(CharSequence text, Document luceneDoc) {
-        final Field field = convertToField(text.toString());
-        if (field != null) {
-            luceneDoc.add(field);
-        }
+        addFields(text.toString(), luceneDoc);
     }
 
-    private Field convertToField(String content) {
+    /**
+     * Convert the content to the type of the field and add it to the lucene document.
+     * Numeric values are indexed as points and stored in a separate field.
+     */
+    private void addFields(String content, Document luceneDoc) {
         try {
             switch (type) {
                 case Type.INTEGER:
                 case Type.LONG:
                 case Type.UNSIGNED_LONG:
                     long lvalue = Long.parseLong(content);
-                    return new LongField(fieldName, lvalue, LongField.TYPE_STORED);
+                    luceneDoc.add(new LongPoint(fieldName, lvalue));
+                    luceneDoc.add(new StoredField(fieldName, lvalue));
+                    break;
                 case Type.INT:
                 case Type.UNSIGNED_INT:
                 case Type.SHORT:
                 case Type.UNSIGNED_SHORT:
                     int ivalue = Integer.parseInt(content);
-                    return new IntField(fieldName, ivalue, IntField.TYPE_STORED);
+                    luceneDoc.add(new IntPoint(fieldName, ivalue));
+                    luceneDoc.add(new StoredField(fieldName, ivalue));
+                    break;
                 case Type.DECIMAL:
                 case Type.DOUBLE:
                     double dvalue = Double.parseDouble(content);
-                    return new DoubleField(fieldName, dvalue, DoubleField.TYPE_STORED);
+                    luceneDoc.add(new DoublePoint(fieldName, dvalue));
+                    luceneDoc.add(new StoredField(fieldName, dvalue));
+                    break;
                 case Type.FLOAT:
                     float fvalue = Float.parseFloat(content);
-                    return new FloatField(fieldName, fvalue, FloatField.TYPE_STORED);
+                    luceneDoc.add(new FloatPoint(fieldName, fvalue));
+                    luceneDoc.add(new StoredField(fieldName, fvalue));
+                    break;
                 case Type.DATE:
                     DateValue dv = new DateValue(content);
                     long dl = dateToLong(dv);
-                    return new LongField(fieldName, dl, LongField.TYPE_STORED);
+                    luceneDoc.add(new LongPoint(fieldName, dl));
+                    luceneDoc.add(new StoredField(fieldName, dl));
+                    break;
                 case Type.TIME:
                     TimeValue tv = new TimeValue(content);
                     long tl = timeToLong(tv);
-                    return new LongField(fieldName, tl, LongField.TYPE_STORED);
+                    luceneDoc.add(new LongPoint(fieldName, tl));
+                    luceneDoc.add(new StoredField(fieldName, tl));
+                    break;
                 case Type.DATE_TIME:
                     DateTimeValue dtv = new DateTimeValue(content);
                     String dateStr = dateTimeToString(dtv);
-                    return new TextField(fieldName, dateStr, Field.Store.YES);
+                    luceneDoc.add(new TextField(fieldName, dateStr, Field.Store.YES));
+                    break;
                 default:
-                    return new TextField(fieldName, content, store ? Field.Store.YES : Field.Store.NO);
+                    luceneDoc.add(new TextField(fieldName, content, store ? Field.Store.YES : Field.Store.NO));
+                    break;
             }
         } catch (NumberFormatException | XPathException e) {
             // wrong type: ignore
             LOG.trace("Cannot convert field " + fieldName + " to type " + Type.getTypeName(type) +
                     ". Content was: " + content);
         }
-        return null;
     }
 
     private static long dateToLong(DateValue date) {
@@ -24,13 +24,18 @@ import com.evolvedbinary.j8fu.function.FunctionE;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.*;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Version;
 import org.exist.backup.RawDataBackup;
 import org.exist.indexing.AbstractIndex;
@@ -41,18 +46,46 @@ import org.exist.storage.DBBroker;
 import org.exist.storage.btree.DBException;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.FileUtils;
+import org.exist.util.NamedThreadFactory;
 import org.exist.xquery.XPathException;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full text index based on Apache Lucene, see {@link #LUCENE_VERSION_IN_USE}. The
+ * range index (see org.exist.indexing.range.RangeIndex) and the facets extend it.
+ * The index files are memory mapped, see {@link MMapDirectory}.
+ *
+ * Queries use near-real-time readers and searchers, which are refreshed in the
+ * background every refresh-interval milliseconds, see {@link #REFRESH_INTERVAL_ATTRIBUTE}.
+ * A query only refreshes them itself if changes have been written since they were
+ * last refreshed, so that it sees all the changes written before it started.
+ *
+ * Changes are committed to disk when the database syncs its indexes, and in
+ * the background every commit-interval milliseconds, see {@link #COMMIT_INTERVAL_ATTRIBUTE},
+ * so that the cost of a Lucene commit is not paid by the transaction that wrote the
+ * changes.
+ */
 public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
     
-    public final static Version LUCENE_VERSION_IN_USE = Version.LUCENE_4_10_4;
+    public final static Version LUCENE_VERSION_IN_USE = Version.LUCENE_8_11_3;
+
+    /**
+     * The stop words of the default analyzer, which are the ones
+     * Lucene's StandardAnalyzer used by default up to Lucene 6.
+     */
+    public final static CharArraySet DEFAULT_STOP_WORDS = EnglishAnalyzer.ENGLISH_STOP_WORDS_SET;
 
     private static final Logger LOG = LogManager.getLogger(LuceneIndexWorker.class);
 
@@ -61,19 +94,70 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
 	private static final String DIR_NAME = "lucene";
 	private static final String TAXONOMY_DIR_NAME = "taxonomy";
 
+    public final static String REFRESH_INTERVAL_ATTRIBUTE = "refresh-interval";
+    public final static long DEFAULT_REFRESH_INTERVAL = 1000;
+    public final static String COMMIT_INTERVAL_ATTRIBUTE = "commit-interval";
+    public final static long DEFAULT_COMMIT_INTERVAL = 60000;
+    public final static String QUERY_THREADS_ATTRIBUTE = "query-threads";
+
     protected Directory directory;
     protected Directory taxoDirectory;
 
     protected Analyzer defaultAnalyzer;
 
+    /**
+     * Analyzer of the index writer. Lucene analyzes a document on the thread which
+     * adds it, so the analyzer of the document being added is kept per thread,
+     * see {@link #addDocument(IndexWriter, Document, Analyzer)}.
+     */
+    private final ThreadLocal<Analyzer> documentAnalyzer = new ThreadLocal<>();
+    private final Analyzer writerAnalyzer = new DelegatingAnalyzerWrapper(Analyzer.PER_FIELD_REUSE_STRATEGY) {
+        @Override
+        protected Analyzer getWrappedAnalyzer(final String fieldName) {
+            final Analyzer analyzer = documentAnalyzer.get();
+            return analyzer == null ? defaultAnalyzer : analyzer;
+        }
+    };
+
     protected double bufferSize = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
 
     protected IndexWriter cachedWriter = null;
+    private SnapshotDeletionPolicy snapshotPolicy = null;
     protected DirectoryTaxonomyWriter cachedTaxonomyWriter = null;
 
     protected SearcherTaxonomyManager searcherManager = null;
     protected ReaderManager readerManager = null;
 
+    /**
+     * Interval in milliseconds at which the near-real-time readers
+     * are refreshed in the background, 0 disables background refresh.
+     */
+    protected long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private ScheduledExecutorService refreshExecutor = null;
+
+    /**
+     * Interval in milliseconds at which changes are committed
+     * in the background, 0 only commits on index sync.
+     */
+    protected long commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private ScheduledExecutorService commitExecutor = null;
+
+    /**
+     * The maximum number of threads a single query may use to search
+     * the index segments, 1 searches all segments on the calling thread.
+     */
+    protected int queryThreads = 1;
+    private volatile ExecutorService queryExecutor = null;
+
+    /**
+     * Incremented whenever a writer is released. A reader or searcher
+     * is only refreshed before use if changes have been written since
+     * it was last refreshed.
+     */
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private final AtomicLong searcherGeneration = new AtomicLong();
+    private final AtomicLong readerGeneration = new AtomicLong();
+
     public String getDirName() {
         return DIR_NAME;
     }
@@ -94,6 +178,30 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
 
         if (LOG.isDebugEnabled())
             LOG.debug("Using buffer size: " + bufferSize);
+
+        final String refreshIntervalParam = config.getAttribute(REFRESH_INTERVAL_ATTRIBUTE);
+        if (refreshIntervalParam != null && !refreshIntervalParam.isEmpty())
+            try {
+                refreshInterval = Long.parseLong(refreshIntervalParam);
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid refresh interval setting for lucene index: " + refreshIntervalParam, e);
+            }
+
+        final String commitIntervalParam = config.getAttribute(COMMIT_INTERVAL_ATTRIBUTE);
+        if (commitIntervalParam != null && !commitIntervalParam.isEmpty())
+            try {
+                commitInterval = Long.parseLong(commitIntervalParam);
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid commit interval setting for lucene index: " + commitIntervalParam, e);
+            }
+
+        final String queryThreadsParam = config.getAttribute(QUERY_THREADS_ATTRIBUTE);
+        if (queryThreadsParam != null && !queryThreadsParam.isEmpty())
+            try {
+                queryThreads = Math.max(1, Integer.parseInt(queryThreadsParam));
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid query threads setting for lucene index: " + queryThreadsParam, e);
+            }
         
         NodeList nl = config.getElementsByTagName("analyzer");
         if (nl.getLength() > 0) {
@@ -102,7 +210,7 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         }
 
         if (defaultAnalyzer == null)
-            defaultAnalyzer = new StandardAnalyzer(LUCENE_VERSION_IN_USE);
+            defaultAnalyzer = new StandardAnalyzer(DEFAULT_STOP_WORDS);
         if (LOG.isDebugEnabled())
             LOG.debug("Using default analyzer: " + defaultAnalyzer.getClass().getName());
     }
@@ -124,16 +232,37 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
                 Files.createDirectories(taxoDir);
             }
 
-            directory = FSDirectory.open(dir.toFile());
-            taxoDirectory = FSDirectory.open(taxoDir.toFile());
+            directory = new MMapDirectory(dir);
+            taxoDirectory = new MMapDirectory(taxoDir);
 
-            final IndexWriterConfig idxWriterConfig = new IndexWriterConfig(LUCENE_VERSION_IN_USE, defaultAnalyzer);
+            // keeps the commit being backed up while commits continue in the background
+            snapshotPolicy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+            final IndexWriterConfig idxWriterConfig = new IndexWriterConfig(writerAnalyzer);
             idxWriterConfig.setRAMBufferSizeMB(bufferSize);
+            idxWriterConfig.setIndexDeletionPolicy(snapshotPolicy);
             cachedWriter = new IndexWriter(directory, idxWriterConfig);
+            if (!DirectoryReader.indexExists(directory)) {
+                cachedWriter.commit();
+            }
             cachedTaxonomyWriter = new DirectoryTaxonomyWriter(taxoDirectory);
 
             searcherManager = new SearcherTaxonomyManager(cachedWriter, true, null, cachedTaxonomyWriter);
-            readerManager = new ReaderManager(cachedWriter, true);
+            readerManager = new ReaderManager(cachedWriter, true, false);
+
+            if (refreshInterval > 0) {
+                refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new NamedThreadFactory(getBrokerPool(), "lucene-refresh." + getDirName()));
+                refreshExecutor.scheduleWithFixedDelay(this::refreshInBackground, refreshInterval,
+                        refreshInterval, TimeUnit.MILLISECONDS);
+            }
+            if (commitInterval > 0) {
+                commitExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new NamedThreadFactory(getBrokerPool(), "lucene-commit." + getDirName()));
+                commitExecutor.scheduleWithFixedDelay(this::commitInBackground, commitInterval,
+                        commitInterval, TimeUnit.MILLISECONDS);
+            }
+
+            queryExecutor = createQueryExecutor(queryThreads);
         } catch (IOException e) {
             throw new DatabaseConfigurationException("Exception while reading lucene index directory: " +
                 e.getMessage(), e);
@@ -145,6 +274,25 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
     @Override
     public synchronized void close() throws DBException {
         try {
+            if (refreshExecutor != null) {
+                // Lucene closes the index writer if a refresh is interrupted, so let it complete
+                refreshExecutor.shutdown();
+                try {
+                    refreshExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                refreshExecutor = null;
+            }
+            if (commitExecutor != null) {
+                // a background commit cannot be running, it would hold the lock on the index
+                commitExecutor.shutdownNow();
+                commitExecutor = null;
+            }
+            if (queryExecutor != null) {
+                queryExecutor.shutdownNow();
+                queryExecutor = null;
+            }
             if (searcherManager != null) {
                 searcherManager.close();
                 searcherManager = null;
@@ -193,6 +341,11 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         return new LuceneIndexWorker(this, broker);
     }
 
+    @Override
+    public String getIndexId() {
+        return ID;
+    }
+
     @Override
     public boolean checkIndex(DBBroker broker) {
         return false;  //To change body of implemented methods use File | Settings | File Templates.
@@ -202,7 +355,7 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         return defaultAnalyzer;
     }
     
-    protected boolean needsCommit = false;
+    protected volatile boolean needsCommit = false;
 
     public IndexWriter getWriter() throws IOException {
         return getWriter(false);
@@ -212,20 +365,84 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         return cachedWriter;
     }
 
+    /**
+     * @return the maximum number of threads a single query may use
+     */
+    public int getQueryThreads() {
+        return queryExecutor == null ? 1 : queryThreads;
+    }
+
+    /**
+     * @return the executor for searching index segments concurrently,
+     *  or null if queries are not parallelised
+     */
+    public ExecutorService getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * Change the maximum number of threads a single query may use, replacing the executor
+     * for searching index segments concurrently. Only meant to be used by tests.
+     *
+     * @param threads the maximum number of threads, 1 searches all segments on the calling thread
+     */
+    synchronized void setQueryThreads(final int threads) {
+        final ExecutorService oldExecutor = queryExecutor;
+        queryThreads = Math.max(1, threads);
+        queryExecutor = createQueryExecutor(queryThreads);
+        if (oldExecutor != null) {
+            oldExecutor.shutdown();
+        }
+    }
+
+    private @Nullable ExecutorService createQueryExecutor(final int threads) {
+        if (threads < 2) {
+            return null;
+        }
+        // shared by all queries, at most threads - 1 tasks of a query run on it
+        return Executors.newFixedThreadPool(threads,
+                new NamedThreadFactory(getBrokerPool(), "lucene-query." + getDirName()));
+    }
+
     public TaxonomyWriter getTaxonomyWriter() {
         return cachedTaxonomyWriter;
     }
 
-    public synchronized void releaseWriter(IndexWriter writer) {
+    /**
+     * Add a document to the index, analyzing its fields with the given analyzer.
+     *
+     * @param writer the writer of this index
+     * @param document the document to add
+     * @param analyzer the analyzer for the fields of the document, or null for the default analyzer
+     * @throws IOException if the document cannot be added
+     */
+    public void addDocument(final IndexWriter writer, final Document document, @Nullable final Analyzer analyzer)
+            throws IOException {
+        if (analyzer == null) {
+            writer.addDocument(document);
+            return;
+        }
+        documentAnalyzer.set(analyzer);
+        try {
+            writer.addDocument(document);
+        } finally {
+            documentAnalyzer.remove();
+        }
+    }
+
+    public void releaseWriter(IndexWriter writer) {
         if (writer == null)
             return;
         needsCommit = true;
+        writeGeneration.incrementAndGet();
     }
 
-    protected void commit() {
+    protected synchronized void commit() {
     	if (!needsCommit) {
             return;
         }
+        // changes released while committing are committed next time
+        needsCommit = false;
         try {
             if(LOG.isDebugEnabled()) {
                 LOG.debug("Committing lucene index");
@@ -234,16 +451,26 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
                 cachedTaxonomyWriter.commit();
                 cachedWriter.commit();
             }
-            needsCommit = false;
         } catch(CorruptIndexException cie) {
+            needsCommit = true;
             LOG.error("Detected corrupt Lucence index on writer release and commit: " + cie.getMessage(), cie);
         } catch(IOException ioe) {
+            needsCommit = true;
             LOG.error("Detected Lucence index issue on writer release and commit: " + ioe.getMessage(), ioe);
         }
     }
 
+    private void commitInBackground() {
+        try {
+            commit();
+        } catch (RuntimeException e) {
+            // the next sync commits again
+            LOG.warn("Background commit of lucene index failed: " + e.getMessage(), e);
+        }
+    }
+
     public <R> R withReader(FunctionE<IndexReader, R, IOException> fn) throws IOException {
-        readerManager.maybeRefreshBlocking();
+        refresh(readerManager, readerGeneration);
         final DirectoryReader reader = readerManager.acquire();
         try {
             return fn.apply(reader);
@@ -253,7 +480,7 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
     }
 
     public <R> R withSearcher(Function2E<SearcherTaxonomyManager.SearcherAndTaxonomy, R, IOException, XPathException> consumer) throws IOException, XPathException {
-        searcherManager.maybeRefreshBlocking();
+        refresh(searcherManager, searcherGeneration);
         final SearcherTaxonomyManager.SearcherAndTaxonomy searcher = searcherManager.acquire();
         try {
             return consumer.apply(searcher);
@@ -262,19 +489,64 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         }
     }
 
+    /**
+     * Refresh the near-real-time reader or searcher if changes have been written
+     * since it was last refreshed, so that a query sees all the changes written
+     * before it started. Usually the background refresh has already done so and
+     * the query does not have to wait.
+     */
+    private void refresh(final ReferenceManager<?> manager, final AtomicLong refreshedGeneration)
+            throws IOException {
+        final long generation = writeGeneration.get();
+        if (refreshedGeneration.get() < generation) {
+            manager.maybeRefreshBlocking();
+            refreshedGeneration.accumulateAndGet(generation, Math::max);
+        }
+    }
+
+    /**
+     * @return true if the searcher has been refreshed since changes were last written
+     */
+    boolean isSearcherCurrent() {
+        return searcherGeneration.get() >= writeGeneration.get();
+    }
+
+    private void refreshInBackground() {
+        try {
+            final long generation = writeGeneration.get();
+            if (searcherGeneration.get() < generation && searcherManager.maybeRefresh()) {
+                searcherGeneration.accumulateAndGet(generation, Math::max);
+            }
+            if (readerGeneration.get() < generation && readerManager.maybeRefresh()) {
+                readerGeneration.accumulateAndGet(generation, Math::max);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the next query refreshes before searching
+            LOG.warn("Background refresh of lucene index failed: " + e.getMessage(), e);
+        }
+    }
+
 	@Override
 	public void backupToArchive(final RawDataBackup backup) throws IOException {
-		for (final String name : directory.listAll()) {
-			final String path = getDirName() + "/" + name;
-
-            // do not use try-with-resources here, closing the OutputStream will close the entire backup
-//            try(final OutputStream os = backup.newEntry(path)) {
-            try {
-                final OutputStream os = backup.newEntry(path);
-                Files.copy(getDataDir().resolve(path), os);
-            } finally {
-                backup.closeEntry();
+        commit();
+        // the files of the snapshot are not deleted by commits while they are copied
+        final IndexCommit snapshot = snapshotPolicy.snapshot();
+        try {
+            for (final String name : snapshot.getFileNames()) {
+                final String path = getDirName() + "/" + name;
+
+                // do not use try-with-resources here, closing the OutputStream will close the entire backup
+//                try(final OutputStream os = backup.newEntry(path)) {
+                try {
+                    final OutputStream os = backup.newEntry(path);
+                    Files.copy(getDataDir().resolve(path), os);
+                } finally {
+                    backup.closeEntry();
+                }
             }
-		}
+        } finally {
+            snapshotPolicy.release(snapshot);
+            cachedWriter.deleteUnusedFiles();
+        }
 	}
 }
@@ -34,12 +34,11 @@ import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.index.*;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.BytesRefBuilder;
-import org.apache.lucene.util.NumericUtils;
 import org.exist.collections.Collection;
 import org.exist.dom.QName;
 import org.exist.dom.memtree.MemTreeBuilder;
@@ -71,6 +70,12 @@ import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -84,13 +89,25 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
     public static final org.apache.lucene.document.FieldType TYPE_NODE_ID = new org.apache.lucene.document.FieldType();
     static {
-        TYPE_NODE_ID.setIndexed(true);
+        TYPE_NODE_ID.setIndexOptions(IndexOptions.DOCS);
         TYPE_NODE_ID.setStored(false);
         TYPE_NODE_ID.setOmitNorms(true);
         TYPE_NODE_ID.setStoreTermVectors(false);
         TYPE_NODE_ID.setTokenized(true);
     }
 
+    /**
+     * Type of the fields holding the analyzed text content
+     */
+    private static final org.apache.lucene.document.FieldType TYPE_CONTENT = new org.apache.lucene.document.FieldType(TextField.TYPE_NOT_STORED);
+    private static final org.apache.lucene.document.FieldType TYPE_CONTENT_STORED = new org.apache.lucene.document.FieldType(TextField.TYPE_STORED);
+    static {
+        TYPE_CONTENT.setStoreTermVectors(true);
+        TYPE_CONTENT.freeze();
+        TYPE_CONTENT_STORED.setStoreTermVectors(true);
+        TYPE_CONTENT_STORED.freeze();
+    }
+
     static final Logger LOG = LogManager.getLogger(LuceneIndexWorker.class);
     
     protected LuceneIndex index;
@@ -119,6 +136,10 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
     public static final String FIELD_DOC_ID = "docId";
     public static final String FIELD_DOC_URI = "docUri";
+    /**
+     * Index time boost of a Lucene document, only stored if it is not 1
+     */
+    public static final String FIELD_DOC_BOOST = "docBoost";
 
     private final StreamListener listener = new LuceneStreamListener();
 
@@ -308,10 +329,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
     	IndexWriter writer = null;
         try {
             writer = index.getWriter();
-            final BytesRefBuilder bytes = new BytesRefBuilder();
-            NumericUtils.intToPrefixCoded(docId, 0, bytes);
-            Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
-            writer.deleteDocuments(dt);
+            writer.deleteDocuments(IntPoint.newExactQuery(FIELD_DOC_ID, docId));
         } catch (IOException e) {
             LOG.warn("Error while removing lucene index: " + e.getMessage(), e);
         } finally {
@@ -344,10 +362,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             writer = index.getWriter();
             for (Iterator<DocumentImpl> i = collection.iterator(broker); i.hasNext(); ) {
                 DocumentImpl doc = i.next();
-                final BytesRefBuilder bytes = new BytesRefBuilder();
-                NumericUtils.intToPrefixCoded(doc.getDocId(), 0, bytes);
-                Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
-                writer.deleteDocuments(dt);
+                writer.deleteDocuments(IntPoint.newExactQuery(FIELD_DOC_ID, doc.getDocId()));
             }
         } catch (IOException | PermissionDeniedException | LockException e) {
             LOG.error("Error while removing lucene index: " + e.getMessage(), e);
@@ -378,10 +393,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         try {
             writer = index.getWriter();
 
-            final BytesRefBuilder bytes = new BytesRefBuilder();
-            NumericUtils.intToPrefixCoded(currentDoc.getDocId(), 0, bytes);
-            Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
-            TermQuery tq = new TermQuery(dt);
+            final Query tq = IntPoint.newExactQuery(FIELD_DOC_ID, currentDoc.getDocId());
             for (NodeId nodeId : nodesToRemove) {
                 // store the node id
                 int nodeIdLen = nodeId.size();
@@ -392,10 +404,10 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 Term it = new Term(LuceneUtil.FIELD_NODE_ID, new BytesRef(data));
 
                 TermQuery iq = new TermQuery(it);
-                BooleanQuery q = new BooleanQuery();
+                BooleanQuery.Builder q = new BooleanQuery.Builder();
                 q.add(tq, BooleanClause.Occur.MUST);
                 q.add(iq, BooleanClause.Occur.MUST);
-                writer.deleteDocuments(q);
+                writer.deleteDocuments(q.build());
             }
         } catch (IOException e) {
             LOG.warn("Error while deleting lucene index entries: " + e.getMessage(), e);
@@ -438,7 +450,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 Analyzer analyzer = getQueryAnalyzer(config,null, qname, options);
                 Query query;
                 if (queryStr == null) {
-                    query = new ConstantScoreQuery(new FieldValueFilter(field));
+                    query = new ConstantScoreQuery(new NormsFieldExistsQuery(field));
                 } else {
                     QueryParserWrapper parser = getQueryParser(field, analyzer, docs);
                     options.configureParser(parser.getConfiguration());
@@ -449,7 +461,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                     query = drilldown(facets.get(), query, config);
                 }
                 searchAndProcess(contextId, qname, docs, contextSet, resultSet,
-                        returnAncestor, searcher, query, options.getFields(), config);
+                        returnAncestor, searcher, query, options.getFields(), options.getRankLimit(), config);
             }
             return resultSet;
         });
@@ -486,14 +498,14 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 String field = LuceneUtil.encodeQName(qname, index.getBrokerPool().getSymbols());
                 LuceneConfig config = getLuceneConfig(broker, docs);
                 analyzer = getQueryAnalyzer(config, null, qname, options);
-                Query query = queryRoot == null ? new ConstantScoreQuery(new FieldValueFilter(field)) : queryTranslator.parse(field, queryRoot, analyzer, options);
+                Query query = queryRoot == null ? new ConstantScoreQuery(new NormsFieldExistsQuery(field)) : queryTranslator.parse(field, queryRoot, analyzer, options);
                 Optional<Map<String, QueryOptions.FacetQuery>> facets = options.getFacets();
                 if (facets.isPresent() && config != null) {
                     query = drilldown(facets.get(), query, config);
                 }
                 if (query != null) {
                     searchAndProcess(contextId, qname, docs, contextSet, resultSet,
-                            returnAncestor, searcher, query, options.getFields(), config);
+                            returnAncestor, searcher, query, options.getFields(), options.getRankLimit(), config);
                 }
             }
             return resultSet;
@@ -511,7 +523,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             final Query query = queryTranslator.parse(field, queryRoot, analyzer, options);
             if (query != null) {
                 searchAndProcess(contextId, null, docs, contextSet, resultSet,
-                        returnAncestor, searcher, query, null, config);
+                        returnAncestor, searcher, query, null, -1, config);
             }
             return resultSet;
         });
@@ -529,16 +541,143 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
     private void searchAndProcess(int contextId, QName qname, DocumentSet docs,
                                   NodeSet contextSet, NodeSet resultSet, boolean returnAncestor,
                                   SearcherTaxonomyManager.SearcherAndTaxonomy searcher, Query query,
-                                  @Nullable Set<String> fields, LuceneConfig config) throws IOException {
+                                  @Nullable Set<String> fields, int limit, LuceneConfig config) throws IOException {
         final LuceneFacets facets = new LuceneFacets();
         final FacetsCollector facetsCollector = new FacetsCollector();
-        final LuceneHitCollector collector = new LuceneHitCollector(qname, query, docs, contextSet, resultSet, returnAncestor, contextId, facets, facetsCollector, fields);
-        searcher.searcher.search(query, collector);
+        final List<LeafReaderContext> leaves = searcher.searcher.getIndexReader().leaves();
+        final ExecutorService executor = index.getQueryExecutor();
+        final Query boostedQuery = boostByDocument(query);
+        if (limit > 0) {
+            searchTopHits(leaves, qname, docs, contextSet, resultSet, returnAncestor, contextId,
+                    searcher.searcher, boostedQuery, query, limit, facets, facetsCollector, fields);
+        } else if (executor != null && index.getQueryThreads() > 1 && leaves.size() > 1) {
+            final Weight weight = searcher.searcher.createWeight(searcher.searcher.rewrite(boostedQuery),
+                    ScoreMode.COMPLETE, 1f);
+            searchSegments(executor, leaves, qname, docs, contextSet, resultSet, returnAncestor, contextId,
+                    weight, query, facets, facetsCollector, fields);
+        } else {
+            final LuceneHitCollector collector = new LuceneHitCollector(qname, query, docs, contextSet, resultSet, returnAncestor, contextId, facets, facetsCollector, fields);
+            searcher.searcher.search(boostedQuery, collector);
+        }
 
         // compute facets
         facets.compute(searcher.taxonomyReader, config.facetsConfig, facetsCollector);
     }
 
+    /**
+     * Multiply the scores of the query by the boost of the matching Lucene documents, see
+     * {@link #FIELD_DOC_BOOST}. Documents without a boost keep their score. Only the search
+     * uses the boosted query, the matches keep the query as it was given.
+     */
+    private static Query boostByDocument(final Query query) {
+        return FunctionScoreQuery.boostByValue(query, DoubleValuesSource.fromFloatField(FIELD_DOC_BOOST));
+    }
+
+    /**
+     * Search the index segments concurrently, using at most {@link LuceneIndex#getQueryThreads()}
+     * threads including the calling thread. The hits of each segment are scored and mapped to nodes
+     * on the thread which searched the segment. They are then filtered by the context set, turned into
+     * matches and added to the result set and the facets collector on the calling thread, segment by
+     * segment, as neither the context set, the result set nor the facets collector is thread safe.
+     */
+    private void searchSegments(final ExecutorService executor, final List<LeafReaderContext> leaves,
+                                final QName qname, final DocumentSet docs, final NodeSet contextSet,
+                                final NodeSet resultSet, final boolean returnAncestor, final int contextId,
+                                final Weight weight, final Query query, final LuceneFacets facets,
+                                final FacetsCollector facetsCollector, @Nullable final Set<String> fields)
+            throws IOException {
+        final SegmentHitCollector[] segmentHits = new SegmentHitCollector[leaves.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final Callable<Void> task = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < segmentHits.length) {
+                final LeafReaderContext context = leaves.get(i);
+                final SegmentHitCollector collector = new SegmentHitCollector(qname, query, docs, contextSet, resultSet,
+                        returnAncestor, contextId, facets, fields);
+                final LeafCollector leafCollector = collector.getLeafCollector(context);
+                final BulkScorer scorer = weight.bulkScorer(context);
+                if (scorer != null) {
+                    scorer.score(leafCollector, context.reader().getLiveDocs());
+                }
+                segmentHits[i] = collector;
+            }
+            return null;
+        };
+
+        final int workers = Math.min(index.getQueryThreads(), segmentHits.length) - 1;
+        final List<Future<Void>> futures = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(task));
+            }
+        } catch (final RejectedExecutionException e) {
+            // the index is being closed, search the remaining segments on this thread
+        }
+        try {
+            task.call();
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while searching lucene index: " + e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching lucene index", e);
+        } catch (final IOException | RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            // only futures which have not started yet are cancelled, the others have completed or failed
+            for (final Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        for (int i = 0; i < segmentHits.length; i++) {
+            facetsCollector.getLeafCollector(leaves.get(i));
+            segmentHits[i].addHits(facetsCollector);
+        }
+    }
+
+    /**
+     * Search the index for the hits with the highest scores, e.g. for
+     * <code>subsequence(for $h in //p[ft:query(., $q)] order by ft:score($h) descending return $h, 1, 10)</code>.
+     *
+     * All hits are scored and passed to the facets collector, but only the <code>limit</code> hits with the highest
+     * scores, and any other hits with the same score as the last of them, are kept in a bounded queue and resolved
+     * to nodes. Ties are kept, so that ordering the returned nodes by score gives the same result as ordering all
+     * hits.
+     */
+    private void searchTopHits(final List<LeafReaderContext> leaves, final QName qname, final DocumentSet docs,
+                               final NodeSet contextSet, final NodeSet resultSet, final boolean returnAncestor,
+                               final int contextId, final IndexSearcher searcher, final Query boostedQuery,
+                               final Query query, final int limit, final LuceneFacets facets,
+                               final FacetsCollector facetsCollector, @Nullable final Set<String> fields)
+            throws IOException {
+        final RankedHitCollector ranked = new RankedHitCollector(docs, limit, facetsCollector);
+        searcher.search(boostedQuery, ranked);
+
+        SegmentHitCollector hits = null;
+        for (final RankedHit hit : ranked.getTopHits()) {
+            if (hits == null || hits.ord != hit.ord) {
+                if (hits != null) {
+                    hits.addHits(null);
+                }
+                hits = new SegmentHitCollector(qname, query, docs, contextSet, resultSet, returnAncestor, contextId,
+                        facets, fields);
+                hits.getLeafCollector(leaves.get(hit.ord));
+            }
+            hits.add(hit.doc, hit.score);
+        }
+        if (hits != null) {
+            hits.addHits(null);
+        }
+    }
+
     /**
      * Wrapper around Lucene {@link Facets}, which are computed after the search has finished.
      */
@@ -594,7 +733,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             options.configureParser(parser.getConfiguration());
             Query query = parser.parse(queryString);
             searchAndProcess(contextId, null, docs, contextSet, resultSet,
-                    returnAncestor, searcher, query, null, config);
+                    returnAncestor, searcher, query, null, -1, config);
             return resultSet;
         });
     }
@@ -634,17 +773,18 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
             pendingDoc.add(fDocId);
 
-            IntField fDocIdIdx = new IntField(FIELD_DOC_ID, currentDoc.getDocId(), Field.Store.NO);
+            IntPoint fDocIdIdx = new IntPoint(FIELD_DOC_ID, currentDoc.getDocId());
             pendingDoc.add(fDocIdIdx);
 
             // For binary documents the doc path needs to be stored
             String uri = currentDoc.getURI().toString();
 
-            Field fDocUri = new Field(FIELD_DOC_URI, uri, Field.Store.YES, Field.Index.NOT_ANALYZED);
+            Field fDocUri = new StringField(FIELD_DOC_URI, uri, Field.Store.YES);
             pendingDoc.add(fDocUri);
         }
         
         // Iterate over all found fields and write the data.
+        float boost = 0;
         for (PlainTextField field : solrconfParser.getFields()) {
             
             // Get field type configuration
@@ -660,15 +800,29 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             String contentFieldName = field.getName();
 
             // Actual field content ; Store flag can be set in solrField
-            Field contentField = new Field(contentFieldName, field.getData().toString(),  store, Field.Index.ANALYZED, Field.TermVector.YES);
+            Field contentField = new Field(contentFieldName, field.getData().toString(),
+                    store == Field.Store.YES ? TYPE_CONTENT_STORED : TYPE_CONTENT);
 
             // Extract (document) Boost factor
-            if (field.getBoost() > 0) {
-                contentField.setBoost(field.getBoost());
-            }
+            boost = Math.max(boost, field.getBoost());
 
             pendingDoc.add(contentField);
         }
+        // boosts apply to the whole Lucene document, so it gets the highest boost of its fields
+        addBoost(pendingDoc, boost);
+    }
+
+    /**
+     * Store the index time boost of a Lucene document, by which its
+     * scores are multiplied when searching, see {@link #boostByDocument(Query)}.
+     *
+     * @param doc the Lucene document
+     * @param boost the boost, a boost of 0 or less is ignored
+     */
+    private static void addBoost(Document doc, float boost) {
+        if (boost > 0 && boost != 1.0f) {
+            doc.add(new FloatDocValuesField(FIELD_DOC_BOOST, boost));
+        }
     }
     
     public void writeNonXML() {
@@ -704,7 +858,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
         return index.withSearcher(searcher -> {
             // Get analyzer : to be retrieved from configuration
-            final Analyzer searchAnalyzer = new StandardAnalyzer(LuceneIndex.LUCENE_VERSION_IN_USE);
+            final Analyzer searchAnalyzer = new StandardAnalyzer(LuceneIndex.DEFAULT_STOP_WORDS);
 
             // Setup query Version, default field, analyzer
             final QueryParserWrapper parser = getQueryParser("", searchAnalyzer, null);
@@ -731,7 +885,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
                 // Perform actual search
                 final BinarySearchCollector collector = new BinarySearchCollector(toBeMatchedURIs, builder, fields, searchAnalyzer, highlighter);
-                searcher.searcher.search(query, collector);
+                searcher.searcher.search(boostByDocument(query), collector);
 
                 // finish root element
                 builder.endElement();
@@ -747,14 +901,14 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         });
     }
 
-    private class BinarySearchCollector extends Collector {
+    private class BinarySearchCollector extends SimpleCollector {
         private final List<String> toBeMatchedURIs;
         private final MemTreeBuilder builder;
         private final String[] fields;
         private final Analyzer searchAnalyzer;
         private final PlainTextHighlighter highlighter;
-        private Scorer scorer;
-        private AtomicReader reader;
+        private Scorable scorer;
+        private LeafReader reader;
 
         public BinarySearchCollector(List<String> toBeMatchedURIs, MemTreeBuilder builder, String[] fields, Analyzer searchAnalyzer, PlainTextHighlighter highlighter) {
 
@@ -766,7 +920,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         }
 
         @Override
-        public void setScorer(Scorer scorer) throws IOException {
+        public void setScorer(Scorable scorer) throws IOException {
             this.scorer = scorer;
         }
 
@@ -823,55 +977,54 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         }
 
         @Override
-        public void setNextReader(AtomicReaderContext atomicReaderContext) throws IOException {
+        protected void doSetNextReader(LeafReaderContext atomicReaderContext) throws IOException {
             this.reader = atomicReaderContext.reader();
         }
 
         @Override
-        public boolean acceptsDocsOutOfOrder() {
-            return true;
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE;
         }
     }
 
     public String getFieldContent(int docId, String field) throws IOException {
-        final BytesRefBuilder bytes = new BytesRefBuilder();
-        NumericUtils.intToPrefixCoded(docId, 0, bytes);
-        Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
+        final Query query = IntPoint.newExactQuery(FIELD_DOC_ID, docId);
+        final Set<String> fieldsToLoad = Collections.singleton(field);
 
         return index.withReader(reader -> {
-            List<AtomicReaderContext> leaves = reader.leaves();
-            for (AtomicReaderContext context : leaves) {
-                AtomicReader atomicReader = context.reader();
-                DocsEnum docs = atomicReader.termDocsEnum(dt);
-                if (docs != null && docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
-                    Document doc = atomicReader.document(docs.docID());
-                    String value = doc.get(field);
-                    if (value != null) {
-                        return value;
+            final String[] content = new String[1];
+            new IndexSearcher(reader).search(query, new SimpleCollector() {
+                private LeafReader leafReader;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) {
+                    if (content[0] != null) {
+                        throw new CollectionTerminatedException();
                     }
+                    leafReader = context.reader();
                 }
-            }
-            return null;
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    content[0] = leafReader.document(doc, fieldsToLoad).get(field);
+                    if (content[0] != null) {
+                        throw new CollectionTerminatedException();
+                    }
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            });
+            return content[0];
         });
     }
 
     public boolean hasIndex(int docId) throws IOException {
-        final BytesRefBuilder bytes = new BytesRefBuilder();
-        NumericUtils.intToPrefixCoded(docId, 0, bytes);
-        Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
+        final Query query = IntPoint.newExactQuery(FIELD_DOC_ID, docId);
 
-        return index.withReader(reader -> {
-            boolean found = false;
-            List<AtomicReaderContext> leaves = reader.leaves();
-            for (AtomicReaderContext context : leaves) {
-                DocsEnum docs = context.reader().termDocsEnum(dt);
-                if (docs != null && docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
-                    found = true;
-                    break;
-                }
-            }
-            return found;
-        });
+        return index.withReader(reader -> new IndexSearcher(reader).count(query) > 0);
     }
     
     /**
@@ -903,11 +1056,16 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         return false;
     }
 
-    private class LuceneHitCollector extends Collector {
+    /**
+     * Base class of the collectors which map the hits of a search to nodes
+     * and add them to the result set, along with their {@link LuceneMatch}.
+     */
+    private abstract class AbstractHitCollector extends SimpleCollector {
 
-        private Scorer scorer;
+        protected Scorable scorer;
 
-        private AtomicReader reader;
+        protected int ord;
+        protected LeafReader reader;
         private NumericDocValues docIdValues;
         private BinaryDocValues nodeIdValues;
         private final QName qname;
@@ -918,10 +1076,9 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         private final int contextId;
         private final Query query;
         private final LuceneFacets facets;
-        private final FacetsCollector chainedCollector;
         private final Set<String> fields;
 
-        private LuceneHitCollector(QName qname, Query query, DocumentSet docs, NodeSet contextSet, NodeSet resultSet, boolean returnAncestor, int contextId, LuceneFacets facets, FacetsCollector nextCollector, @Nullable Set<String> fields) {
+        protected AbstractHitCollector(QName qname, Query query, DocumentSet docs, NodeSet contextSet, NodeSet resultSet, boolean returnAncestor, int contextId, LuceneFacets facets, @Nullable Set<String> fields) {
             this.qname = qname;
             this.docs = docs;
             this.contextSet = contextSet;
@@ -930,78 +1087,90 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             this.contextId = contextId;
             this.query = query;
             this.facets = facets;
-            this.chainedCollector = nextCollector;
             this.fields = fields;
         }
 
         @Override
-        public void setScorer(Scorer scorer) throws IOException {
+        public void setScorer(Scorable scorer) throws IOException {
             this.scorer = scorer;
-            chainedCollector.setScorer(scorer);
         }
 
         @Override
-        public void setNextReader(AtomicReaderContext atomicReaderContext) throws IOException {
+        protected void doSetNextReader(LeafReaderContext atomicReaderContext) throws IOException {
+            this.ord = atomicReaderContext.ord;
             this.reader = atomicReaderContext.reader();
             this.docIdValues = this.reader.getNumericDocValues(FIELD_DOC_ID);
             this.nodeIdValues = this.reader.getBinaryDocValues(LuceneUtil.FIELD_NODE_ID);
-            chainedCollector.setNextReader(atomicReaderContext);
         }
 
         @Override
-        public boolean acceptsDocsOutOfOrder() {
-            return false;
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE;
         }
 
-        @Override
-        public void collect(int doc) {
-            try {
-                float score = scorer.score();
-                int docId = (int) this.docIdValues.get(doc);
-                DocumentImpl storedDocument = docs.getDoc(docId);
-                if (storedDocument == null)
-                    return;
-                final BytesRef ref = this.nodeIdValues.get(doc);
-                int units = ByteConversion.byteToShort(ref.bytes, ref.offset);
-                NodeId nodeId = index.getBrokerPool().getNodeFactory().createFromData(units, ref.bytes, ref.offset + 2);
-                //LOG.info("doc: " + docId + "; node: " + nodeId.toString() + "; units: " + units);
-
-                NodeProxy storedNode = new NodeProxy(storedDocument, nodeId);
-                if (qname != null)
-                    storedNode.setNodeType(qname.getNameType() == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE);
-                // if a context set is specified, we can directly check if the
-                // matching node is a descendant of one of the nodes
-                // in the context set.
-                if (contextSet != null) {
-                    int sizeHint = contextSet.getSizeHint(storedDocument);
-                    if (returnAncestor) {
-                        NodeProxy parentNode = contextSet.get(storedNode);
-                        // NodeProxy parentNode = contextSet.parentWithChild(storedNode, false, true, NodeProxy.UNKNOWN_NODE_LEVEL);
-                        if (parentNode != null) {
-                            LuceneMatch match = createMatch(doc, score, nodeId);
-                            parentNode.addMatch(match);
-                            resultSet.add(parentNode, sizeHint);
-                            if (Expression.NO_CONTEXT_ID != contextId) {
-                                parentNode.deepCopyContext(storedNode, contextId);
-                            } else
-                                parentNode.copyContext(storedNode);
-                            chainedCollector.collect(doc);
-                        }
-                    } else {
-                        LuceneMatch match = createMatch(doc, score, nodeId);
-                        storedNode.addMatch(match);
-                        resultSet.add(storedNode, sizeHint);
-                        chainedCollector.collect(doc);
-                    }
+        /**
+         * Get the node indexed by a Lucene document of the current segment. The doc values
+         * are iterators, so the documents must be passed in increasing order.
+         *
+         * @param doc the Lucene document
+         *
+         * @return the node, or null if its document is not among the documents of the query
+         */
+        protected @Nullable NodeProxy getStoredNode(int doc) throws IOException {
+            if (!this.docIdValues.advanceExact(doc) || !this.nodeIdValues.advanceExact(doc))
+                return null;
+            final int docId = (int) this.docIdValues.longValue();
+            final DocumentImpl storedDocument = docs.getDoc(docId);
+            if (storedDocument == null)
+                return null;
+            final BytesRef ref = this.nodeIdValues.binaryValue();
+            final int units = ByteConversion.byteToShort(ref.bytes, ref.offset);
+            final NodeId nodeId = index.getBrokerPool().getNodeFactory().createFromData(units, ref.bytes, ref.offset + 2);
+            //LOG.info("doc: " + docId + "; node: " + nodeId.toString() + "; units: " + units);
+
+            final NodeProxy storedNode = new NodeProxy(storedDocument, nodeId);
+            if (qname != null)
+                storedNode.setNodeType(qname.getNameType() == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE);
+            return storedNode;
+        }
+
+        /**
+         * Add a hit of the current segment to the result set. The match of the hit,
+         * including its stored fields, is only created if the hit is not filtered out
+         * by the context set.
+         *
+         * @param doc the Lucene document of the hit
+         * @param score the score of the hit
+         * @param storedNode the node indexed by the Lucene document
+         * @param facetsCollector the collector to pass the hit on to if it is added, or null
+         */
+        protected void addHit(int doc, float score, NodeProxy storedNode, @Nullable FacetsCollector facetsCollector) throws IOException {
+            // if a context set is specified, we can directly check if the
+            // matching node is a descendant of one of the nodes
+            // in the context set.
+            if (contextSet != null) {
+                int sizeHint = contextSet.getSizeHint(storedNode.getOwnerDocument());
+                if (returnAncestor) {
+                    NodeProxy parentNode = contextSet.get(storedNode);
+                    // NodeProxy parentNode = contextSet.parentWithChild(storedNode, false, true, NodeProxy.UNKNOWN_NODE_LEVEL);
+                    if (parentNode == null)
+                        return;
+                    parentNode.addMatch(createMatch(doc, score, storedNode.getNodeId()));
+                    resultSet.add(parentNode, sizeHint);
+                    if (Expression.NO_CONTEXT_ID != contextId) {
+                        parentNode.deepCopyContext(storedNode, contextId);
+                    } else
+                        parentNode.copyContext(storedNode);
                 } else {
-                    LuceneMatch match = createMatch(doc, score, nodeId);
-                    storedNode.addMatch(match);
-                    resultSet.add(storedNode);
-                    chainedCollector.collect(doc);
+                    storedNode.addMatch(createMatch(doc, score, storedNode.getNodeId()));
+                    resultSet.add(storedNode, sizeHint);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
+            } else {
+                storedNode.addMatch(createMatch(doc, score, storedNode.getNodeId()));
+                resultSet.add(storedNode);
             }
+            if (facetsCollector != null)
+                facetsCollector.collect(doc);
         }
 
         private LuceneMatch createMatch(int docId, float score, NodeId nodeId) throws IOException {
@@ -1017,6 +1186,199 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         }
     }
 
+    /**
+     * Adds every hit to the result set as it is collected.
+     */
+    private class LuceneHitCollector extends AbstractHitCollector {
+
+        private final FacetsCollector chainedCollector;
+
+        private LuceneHitCollector(QName qname, Query query, DocumentSet docs, NodeSet contextSet, NodeSet resultSet, boolean returnAncestor, int contextId, LuceneFacets facets, FacetsCollector nextCollector, @Nullable Set<String> fields) {
+            super(qname, query, docs, contextSet, resultSet, returnAncestor, contextId, facets, fields);
+            this.chainedCollector = nextCollector;
+        }
+
+        @Override
+        public void setScorer(Scorable scorer) throws IOException {
+            super.setScorer(scorer);
+            chainedCollector.setScorer(scorer);
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext atomicReaderContext) throws IOException {
+            super.doSetNextReader(atomicReaderContext);
+            chainedCollector.getLeafCollector(atomicReaderContext);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            final NodeProxy storedNode = getStoredNode(doc);
+            if (storedNode != null) {
+                addHit(doc, scorer.score(), storedNode, chainedCollector);
+            }
+        }
+    }
+
+    /**
+     * Collects the hits of a single segment, which may be searched on another thread,
+     * and maps them to nodes. The hits are added to the result set by {@link #addHits(FacetsCollector)}
+     * on the calling thread, see
+     * {@link #searchSegments(ExecutorService, List, QName, DocumentSet, NodeSet, NodeSet, boolean, int, Weight, Query, LuceneFacets, FacetsCollector, Set)}.
+     */
+    private class SegmentHitCollector extends AbstractHitCollector {
+
+        private int size = 0;
+        private int[] hitDocs = new int[16];
+        private float[] scores = new float[16];
+        private NodeProxy[] nodes = new NodeProxy[16];
+
+        private SegmentHitCollector(QName qname, Query query, DocumentSet docs, NodeSet contextSet, NodeSet resultSet, boolean returnAncestor, int contextId, LuceneFacets facets, @Nullable Set<String> fields) {
+            super(qname, query, docs, contextSet, resultSet, returnAncestor, contextId, facets, fields);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            add(doc, scorer.score());
+        }
+
+        private void add(int doc, float score) throws IOException {
+            final NodeProxy storedNode = getStoredNode(doc);
+            if (storedNode == null)
+                return;
+
+            if (size == nodes.length) {
+                final int newLength = size * 2;
+                hitDocs = Arrays.copyOf(hitDocs, newLength);
+                scores = Arrays.copyOf(scores, newLength);
+                nodes = Arrays.copyOf(nodes, newLength);
+            }
+            hitDocs[size] = doc;
+            scores[size] = score;
+            nodes[size++] = storedNode;
+        }
+
+        /**
+         * Add the collected hits to the result set.
+         *
+         * @param facetsCollector the collector to pass the added hits on to, or null
+         */
+        private void addHits(@Nullable FacetsCollector facetsCollector) throws IOException {
+            for (int i = 0; i < size; i++) {
+                addHit(hitDocs[i], scores[i], nodes[i], facetsCollector);
+            }
+        }
+    }
+
+    /**
+     * The score and position of a hit, see {@link RankedHitCollector}.
+     */
+    private static class RankedHit {
+        private final float score;
+        private final int ord;
+        private final int doc;
+
+        private RankedHit(float score, int ord, int doc) {
+            this.score = score;
+            this.ord = ord;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * Keeps the score and position of the <code>limit</code> hits with the highest scores in the documents
+     * of the query, and of any other hits with the same score as the lowest of them, without resolving them
+     * to nodes, see
+     * {@link #searchTopHits(List, QName, DocumentSet, NodeSet, NodeSet, boolean, int, IndexSearcher, Query, Query, int, LuceneFacets, FacetsCollector, Set)}.
+     */
+    private static class RankedHitCollector extends SimpleCollector {
+
+        private static final Comparator<RankedHit> BY_SCORE = (h1, h2) -> Float.compare(h1.score, h2.score);
+        private static final Comparator<RankedHit> BY_POSITION = (h1, h2) ->
+                h1.ord == h2.ord ? Integer.compare(h1.doc, h2.doc) : Integer.compare(h1.ord, h2.ord);
+
+        private Scorable scorer;
+
+        private int ord;
+        private NumericDocValues docIdValues;
+        private final DocumentSet docs;
+        private final int limit;
+        private final FacetsCollector chainedCollector;
+
+        /**
+         * The hits with the highest scores, the head is the hit with the lowest score
+         */
+        private final PriorityQueue<RankedHit> top;
+
+        /**
+         * Hits which are not in {@link #top} but have the same score as its head
+         */
+        private final List<RankedHit> ties = new ArrayList<>();
+
+        private RankedHitCollector(DocumentSet docs, int limit, FacetsCollector nextCollector) {
+            this.docs = docs;
+            this.limit = limit;
+            this.chainedCollector = nextCollector;
+            this.top = new PriorityQueue<>(limit, BY_SCORE);
+        }
+
+        @Override
+        public void setScorer(Scorable scorer) throws IOException {
+            this.scorer = scorer;
+            chainedCollector.setScorer(scorer);
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext atomicReaderContext) throws IOException {
+            this.ord = atomicReaderContext.ord;
+            this.docIdValues = atomicReaderContext.reader().getNumericDocValues(FIELD_DOC_ID);
+            chainedCollector.getLeafCollector(atomicReaderContext);
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE;
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (!docIdValues.advanceExact(doc) || docs.getDoc((int) docIdValues.longValue()) == null) {
+                return;
+            }
+            chainedCollector.collect(doc);
+
+            final float score = scorer.score();
+            if (top.size() < limit) {
+                top.add(new RankedHit(score, ord, doc));
+                return;
+            }
+
+            final float minScore = top.peek().score;
+            if (score > minScore) {
+                top.add(new RankedHit(score, ord, doc));
+                final RankedHit removed = top.poll();
+                if (top.peek().score == removed.score) {
+                    ties.add(removed);
+                } else {
+                    // the lowest score of the top hits has risen above the score of the ties
+                    ties.clear();
+                }
+            } else if (score == minScore) {
+                ties.add(new RankedHit(score, ord, doc));
+            }
+        }
+
+        /**
+         * @return the top hits and their ties, in index order
+         */
+        private List<RankedHit> getTopHits() {
+            final List<RankedHit> hits = new ArrayList<>(top.size() + ties.size());
+            hits.addAll(top);
+            hits.addAll(ties);
+            hits.sort(BY_POSITION);
+            return hits;
+        }
+    }
+
     /**
      * Check index configurations for all collection in the given DocumentSet and return
      * a list of QNames, which have indexes defined on them.
@@ -1045,7 +1407,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
     private List<QName> getDefinedIndexesFor(QName qname, final List<QName> indexes) throws IOException {
         return index.withReader(reader -> {
-            for (FieldInfo info: MultiFields.getMergedFieldInfos(reader)) {
+            for (FieldInfo info: FieldInfos.getMergedFieldInfos(reader)) {
                 if (!FIELD_DOC_ID.equals(info.name)) {
                     QName name = LuceneUtil.decodeQName(info.name, index.getBrokerPool().getSymbols());
                     if (name != null && (qname == null || matchQName(qname, name)))
@@ -1213,14 +1575,12 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
     }
 
     private void doScanIndex(DocumentSet docs, NodeSet nodes, String start, String end, long max, TreeMap<String, Occurrences> map, IndexReader reader, String field) throws IOException {
-        List<AtomicReaderContext> leaves = reader.leaves();
-        for (AtomicReaderContext context : leaves) {
-            NumericDocValues docIdValues = context.reader().getNumericDocValues(FIELD_DOC_ID);
-            BinaryDocValues nodeIdValues = context.reader().getBinaryDocValues(LuceneUtil.FIELD_NODE_ID);
+        List<LeafReaderContext> leaves = reader.leaves();
+        for (LeafReaderContext context : leaves) {
             Bits liveDocs = context.reader().getLiveDocs();
             Terms terms = context.reader().terms(field);
             if (terms != null) {
-                TermsEnum termsIter = terms.iterator(null);
+                TermsEnum termsIter = terms.iterator();
                 if (termsIter.next() != null) {
                     do {
                         if (map.size() >= max) {
@@ -1229,17 +1589,26 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                         BytesRef ref = termsIter.term();
                         String term = ref.utf8ToString();
                         if ((end == null || term.compareTo(end) <= 0) && (start == null || term.startsWith(start))) {
-                            DocsEnum docsEnum = termsIter.docs(null, null);
-                            while (docsEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                            // doc values are iterators, the postings of each term start again at the first document
+                            NumericDocValues docIdValues = context.reader().getNumericDocValues(FIELD_DOC_ID);
+                            BinaryDocValues nodeIdValues = context.reader().getBinaryDocValues(LuceneUtil.FIELD_NODE_ID);
+                            PostingsEnum docsEnum = termsIter.postings(null, PostingsEnum.FREQS);
+                            while (docsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
                                 if (liveDocs != null && !liveDocs.get(docsEnum.docID())) {
                                     continue;
                                 }
-                                int docId = (int) docIdValues.get(docsEnum.docID());
+                                if (!docIdValues.advanceExact(docsEnum.docID())) {
+                                    continue;
+                                }
+                                int docId = (int) docIdValues.longValue();
                                 DocumentImpl storedDocument = docs.getDoc(docId);
                                 if (storedDocument == null)
                                     continue;
                                 if (nodes != null) {
-                                    final BytesRef nodeIdRef = nodeIdValues.get(docsEnum.docID());
+                                    if (!nodeIdValues.advanceExact(docsEnum.docID())) {
+                                        continue;
+                                    }
+                                    final BytesRef nodeIdRef = nodeIdValues.binaryValue();
                                     int units = ByteConversion.byteToShort(nodeIdRef.bytes, nodeIdRef.offset);
                                     NodeId nodeId = index.getBrokerPool().getNodeFactory().createFromData(units, nodeIdRef.bytes, nodeIdRef.offset + 2);
                                     if (nodes.get(storedDocument, nodeId) != null) {
@@ -1367,7 +1736,7 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             NumericDocValuesField fDocId = new NumericDocValuesField(FIELD_DOC_ID, 0);
             BinaryDocValuesField fNodeId = new BinaryDocValuesField(LuceneUtil.FIELD_NODE_ID, new BytesRef(8));
             // docId also needs to be indexed
-            IntField fDocIdIdx = new IntField(FIELD_DOC_ID, 0, IntField.TYPE_NOT_STORED);
+            IntPoint fDocIdIdx = new IntPoint(FIELD_DOC_ID, 0);
 
             for (PendingDoc pending : nodesToWrite) {
                 final Document doc = new Document();
@@ -1404,11 +1773,11 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                     else
                         contentField = LuceneUtil.encodeQName(pending.qname, index.getBrokerPool().getSymbols());
 
-                    Field fld = new Field(contentField, pending.text.toString(), Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
+                    Field fld = new Field(contentField, pending.text.toString(), TYPE_CONTENT);
                     if (pending.boost > 0) {
-                        fld.setBoost(pending.boost);
+                        addBoost(doc, pending.boost);
                     } else if (config.getBoost() > 0) {
-                        fld.setBoost(config.getBoost());
+                        addBoost(doc, config.getBoost());
                     }
 
                     doc.add(fld);
@@ -1421,11 +1790,8 @@ public class LuceneIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 final Field fDocNodeId = new StoredField("docNodeId", docNodeId);
                 doc.add(fDocNodeId);
 
-                if (pending.idxConf.getAnalyzer() == null) {
-                    writer.addDocument(config.facetsConfig.build(index.getTaxonomyWriter(), doc));
-                } else {
-                    writer.addDocument(config.facetsConfig.build(index.getTaxonomyWriter(), doc), pending.idxConf.getAnalyzer());
-		        }
+                index.addDocument(writer, config.facetsConfig.build(index.getTaxonomyWriter(), doc),
+                        pending.idxConf.getAnalyzer());
 	        }
         } catch (final IOException e) {
             LOG.warn("An exception was caught while indexing document: " + e.getMessage(), e);
@@ -26,11 +26,10 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.apache.lucene.facet.DrillDownQuery;
-import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.BinaryDocValues;
-import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -68,8 +67,23 @@ public class LuceneUtil {
         return data;
     }
 
-    public static NodeId readNodeId(final int doc, final BinaryDocValues nodeIdValues, final BrokerPool pool) {
-        final BytesRef ref = nodeIdValues.get(doc);
+    /**
+     * Read the node id of a Lucene document from its doc values.
+     *
+     * @param doc the Lucene document, which must not be lower than the documents read before
+     *     from the same doc values
+     * @param nodeIdValues the node id doc values of the segment of the document
+     * @param pool the broker pool
+     *
+     * @return the node id
+     *
+     * @throws IOException if the doc values cannot be read
+     */
+    public static NodeId readNodeId(final int doc, final BinaryDocValues nodeIdValues, final BrokerPool pool) throws IOException {
+        if (!nodeIdValues.advanceExact(doc)) {
+            throw new IOException("No node id stored for lucene document " + doc);
+        }
+        final BytesRef ref = nodeIdValues.binaryValue();
         final int units = ByteConversion.byteToShort(ref.bytes, ref.offset);
         return pool.getNodeFactory().createFromData(units, ref.bytes, ref.offset + 2);
     }
@@ -158,11 +172,15 @@ public class LuceneUtil {
             extractTermsFromTermRange((TermRangeQuery) query, terms, reader, includeFields);
         } else if (query instanceof DrillDownQuery) {
             extractTermsFromDrillDown((DrillDownQuery) query, terms, reader, includeFields);
+        } else if (query instanceof BoostQuery) {
+            extractTerms(((BoostQuery) query).getQuery(), terms, reader, includeFields);
+        } else if (query instanceof ConstantScoreQuery) {
+            extractTerms(((ConstantScoreQuery) query).getQuery(), terms, reader, includeFields);
         } else {
-            // fallback to Lucene's Query.extractTerms if none of the
-            // above matches
+            // fallback to the terms Lucene's query visitor collects if none
+            // of the above matches
             final Set<Term> tempSet = new TreeSet<>();
-            query.extractTerms(tempSet);
+            query.visit(QueryVisitor.termCollector(tempSet));
             for (final Term t : tempSet) {
                 if (includeFields) {
                     terms.put(t, query);
@@ -179,8 +197,7 @@ public class LuceneUtil {
     }
 
     private static void extractTermsFromBoolean(final BooleanQuery query, final Map<Object, Query> terms, final IndexReader reader, final boolean includeFields) throws IOException {
-        final BooleanClause clauses[] = query.getClauses();
-        for (final BooleanClause clause : clauses) {
+        for (final BooleanClause clause : query.clauses()) {
             extractTerms(clause.getQuery(), terms, reader, includeFields);
         }
     }
@@ -224,11 +241,6 @@ public class LuceneUtil {
         TERM_EXTRACTOR.extractTerms(query, terms, reader, includeFields);
     }
 
-    private static Query rewrite(final MultiTermQuery query, final IndexReader reader) throws IOException {
-        query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_AUTO_REWRITE_DEFAULT);
-        return query.rewrite(reader);
-    }
-
     private static void extractTermsFromMultiTerm(final MultiTermQuery query, final Map<Object, Query> termsMap, final IndexReader reader, final boolean includeFields) throws IOException {
         TERM_EXTRACTOR.extractTerms(query, termsMap, reader, includeFields);
     }
@@ -244,14 +256,8 @@ public class LuceneUtil {
 
         public void extractTerms(final MultiTermQuery query, final Map<Object, Query> termsMap, final IndexReader reader, final boolean includeFields) throws IOException {
             final IndexReaderContext topReaderContext = reader.getContext();
-            for (final AtomicReaderContext context : topReaderContext.leaves()) {
-                final Fields fields = context.reader().fields();
-                if (fields == null) {
-                    // reader has no fields
-                    continue;
-                }
-
-                final Terms terms = fields.terms(query.getField());
+            for (final LeafReaderContext context : topReaderContext.leaves()) {
+                final Terms terms = context.reader().terms(query.getField());
                 if (terms == null) {
                     // field does not exist
                     continue;
@@ -22,7 +22,7 @@ package org.exist.indexing.lucene;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -96,7 +96,7 @@ public class XMLToQuery {
         }
 
         if (query != null) {
-            setBoost(root, query);
+            query = setBoost(root, query);
         }
 
         return query;
@@ -105,7 +105,7 @@ public class XMLToQuery {
     private Query phraseQuery(String field, Element node, Analyzer analyzer) throws XPathException {
         NodeList termList = node.getElementsByTagName("term");
         if (termList.getLength() == 0) {
-            PhraseQuery query = new PhraseQuery();
+            PhraseQuery.Builder query = new PhraseQuery.Builder();
             String qstr = getText(node);
             try {
                 TokenStream stream = analyzer.tokenStream(field, new StringReader(qstr));
@@ -122,9 +122,9 @@ public class XMLToQuery {
             int slop = getSlop(node);
             if (slop > -1)
                 query.setSlop(slop);
-            return query;
+            return query.build();
         }
-        MultiPhraseQuery query = new MultiPhraseQuery();
+        MultiPhraseQuery.Builder query = new MultiPhraseQuery.Builder();
         for (int i = 0; i < termList.getLength(); i++) {
             Element elem = (Element) termList.item(i);
             String text = getText(elem);
@@ -145,7 +145,7 @@ public class XMLToQuery {
         int slop = getSlop(node);
         if (slop > -1)
             query.setSlop(slop);
-        return query;
+        return query.build();
     }
 
     private SpanQuery nearQuery(String field, Element node, Analyzer analyzer) throws XPathException {
@@ -171,10 +171,22 @@ public class XMLToQuery {
             } catch (IOException e) {
                 throw new XPathException("Error while parsing phrase query: " + qstr);
             }
-            return new SpanNearQuery(list.toArray(new SpanTermQuery[list.size()]), slop, inOrder);
+            return spanNear(list.toArray(new SpanQuery[list.size()]), slop, inOrder);
         }
         SpanQuery[] children = parseSpanChildren(field, node, analyzer);
-        return new SpanNearQuery(children, slop, inOrder);
+        return spanNear(children, slop, inOrder);
+    }
+
+    /**
+     * Lucene no longer accepts span near queries of less than two clauses: a single
+     * clause is searched by itself, and no clauses match nothing.
+     */
+    private static SpanQuery spanNear(SpanQuery[] clauses, int slop, boolean inOrder) {
+        if (clauses.length == 0)
+            return new SpanOrQuery();
+        if (clauses.length == 1)
+            return clauses[0];
+        return new SpanNearQuery(clauses, slop, inOrder);
     }
 
     private SpanQuery[] parseSpanChildren(String field, Element node, Analyzer analyzer) throws XPathException {
@@ -228,7 +240,7 @@ public class XMLToQuery {
         SpanQuery query = null;
         if (hasElementContent(node)) {
             SpanQuery[] children = parseSpanChildren(field, node, analyzer);
-            query = new SpanNearQuery(children, slop, inOrder);
+            query = spanNear(children, slop, inOrder);
         } else {
         	String termStr = getTerm(field, getText(node), analyzer);
         	if (termStr != null)
@@ -263,7 +275,7 @@ public class XMLToQuery {
             final Automaton automaton = WildcardQuery.toAutomaton(new Term(field, queryStr));
             final CompiledAutomaton compiled = new CompiledAutomaton(automaton);
             final List<Term> termList = new ArrayList<>(8);
-            for (AtomicReaderContext atomic : reader.leaves()) {
+            for (LeafReaderContext atomic : reader.leaves()) {
                 Terms terms = atomic.reader().terms(field);
                 if (terms != null) {
                     TermsEnum termsEnum = compiled.getTermsEnum(terms);
@@ -337,7 +349,7 @@ public class XMLToQuery {
     }
 
     private Query booleanQuery(String field, Element node, Analyzer analyzer, QueryOptions options) throws XPathException {
-        BooleanQuery query = new BooleanQuery();
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
 
         // Specifies a minimum number of the optional BooleanClauses which must be satisfied.
         String minOpt = node.getAttribute("min");
@@ -362,20 +374,13 @@ public class XMLToQuery {
             }
             child = child.getNextSibling();
         }
-        return query;
+        return query.build();
     }
 
     private void setRewriteMethod(MultiTermQuery query, Element node, QueryOptions options) {
-        boolean doFilterRewrite = options.filterRewrite();
-        String option = node.getAttribute("filter-rewrite");
-        if (option != null) {
-            doFilterRewrite = option.equalsIgnoreCase("yes");
-        }
-        if (doFilterRewrite) {
-            query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
-        } else {
-            query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_AUTO_REWRITE_DEFAULT);
-        }
+        // with or without filter-rewrite, the constant score rewrite matches the terms with a
+        // boolean query if there are only a few of them, and with a filter otherwise
+        query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
     }
 
     private BooleanClause.Occur getOccur(Element elem) {
@@ -404,14 +409,18 @@ public class XMLToQuery {
             if (child.getNodeType() == Node.ELEMENT_NODE) {
                 Query childQuery = parse(field, (Element) child, analyzer, options);
                 if (query != null) {
-                    if (query instanceof BooleanQuery)
-                        ((BooleanQuery) query).add(childQuery, BooleanClause.Occur.SHOULD);
-                    else {
-                        BooleanQuery boolQuery = new BooleanQuery();
+                    final BooleanQuery.Builder boolQuery = new BooleanQuery.Builder();
+                    if (query instanceof BooleanQuery) {
+                        final BooleanQuery previous = (BooleanQuery) query;
+                        boolQuery.setMinimumNumberShouldMatch(previous.getMinimumNumberShouldMatch());
+                        for (final BooleanClause clause : previous) {
+                            boolQuery.add(clause);
+                        }
+                    } else {
                         boolQuery.add(query, BooleanClause.Occur.SHOULD);
-                        boolQuery.add(childQuery, BooleanClause.Occur.SHOULD);
-                        query = boolQuery;
                     }
+                    boolQuery.add(childQuery, BooleanClause.Occur.SHOULD);
+                    query = boolQuery.build();
                 } else
                     query = childQuery;
             }
@@ -420,15 +429,16 @@ public class XMLToQuery {
         return query;
     }
 
-    private void setBoost(Element node, Query query) throws XPathException {
+    private Query setBoost(Element node, Query query) throws XPathException {
         String boost = node.getAttribute("boost");
         if (boost != null && boost.length() > 0) {
             try {
-                query.setBoost(Float.parseFloat(boost));
+                return new BoostQuery(query, Float.parseFloat(boost));
             } catch (NumberFormatException e) {
                 throw new XPathException("Bad value for boost in query parameter. Got: " + boost);
             }
         }
+        return query;
     }
 
     private String getText(Element root) {
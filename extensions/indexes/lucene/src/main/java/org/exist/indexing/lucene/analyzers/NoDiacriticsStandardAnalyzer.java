@@ -20,18 +20,9 @@
 package org.exist.indexing.lucene.analyzers;
 
 import org.apache.lucene.analysis.*;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.icu.*;
-import org.apache.lucene.analysis.core.LowerCaseFilter;
-import org.apache.lucene.analysis.core.StopAnalyzer;
-import org.apache.lucene.analysis.core.StopFilter;
-import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
-import org.apache.lucene.analysis.standard.StandardFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
-import org.apache.lucene.analysis.util.CharArraySet;
-import org.apache.lucene.analysis.util.StopwordAnalyzerBase;
-import org.apache.lucene.analysis.util.WordlistLoader;
-import org.apache.lucene.util.Version;
-import org.exist.indexing.lucene.LuceneIndex;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -49,17 +40,11 @@ public class NoDiacriticsStandardAnalyzer extends StopwordAnalyzerBase {
 
     private int maxTokenLength = DEFAULT_MAX_TOKEN_LENGTH;
 
-    /**
-     * Specifies whether deprecated acronyms should be replaced with HOST type.
-     * See {@linkplain "https://issues.apache.org/jira/browse/LUCENE-1068"}
-     */
-    private final boolean replaceInvalidAcronym;
-
     /**
      * An unmodifiable set containing some common English words that are usually not
      * useful for searching.
      */
-    public static final CharArraySet STOP_WORDS_SET = StopAnalyzer.ENGLISH_STOP_WORDS_SET;
+    public static final CharArraySet STOP_WORDS_SET = EnglishAnalyzer.ENGLISH_STOP_WORDS_SET;
 
     /**
      * Builds an analyzer with the given stop words.
@@ -68,54 +53,26 @@ public class NoDiacriticsStandardAnalyzer extends StopwordAnalyzerBase {
      */
     public NoDiacriticsStandardAnalyzer(final CharArraySet stopWords) {
         super(stopWords);
-        replaceInvalidAcronym = true;
-    }
-
-    /**
-     * Builds an analyzer with the given stop words.
-     *
-     * @param matchVersion Lucene version to match, see {@link StopwordAnalyzerBase#version}
-     * @param stopWords stop words
-     *
-     * @deprecated Use {@link #NoDiacriticsStandardAnalyzer(CharArraySet)}
-     */
-    @Deprecated
-    public NoDiacriticsStandardAnalyzer(final Version matchVersion, final CharArraySet stopWords) {
-        super(matchVersion, stopWords);
-        replaceInvalidAcronym = matchVersion.onOrAfter(LuceneIndex.LUCENE_VERSION_IN_USE);
     }
 
      /**
       * Builds an analyzer with the default stop words. ({@link #STOP_WORDS_SET}).
       */
-    protected NoDiacriticsStandardAnalyzer() {
-        this((CharArraySet)null);
-    }
-
-    /**
-     * Builds an analyzer with the default stop words ({@link #STOP_WORDS_SET}).
-     *
-     * @param matchVersion Lucene version to match See {@link StopwordAnalyzerBase#version}.
-     *
-     * @deprecated Use {@link #NoDiacriticsStandardAnalyzer()}
-     */
-    @Deprecated
-    public NoDiacriticsStandardAnalyzer(final Version matchVersion) {
-        this(matchVersion, STOP_WORDS_SET);
+    public NoDiacriticsStandardAnalyzer() {
+        this(STOP_WORDS_SET);
     }
 
     /**
      * Builds an analyzer with the stop words from the given reader.
      *
-     * See {@link WordlistLoader#getWordSet(Reader, Version)}
+     * See {@link WordlistLoader#getWordSet(Reader)}
      *
-     * @param matchVersion Lucene version to match See {@link StopwordAnalyzerBase#version}.
      * @param stopwords Reader to read stop words from
      *
      * @throws IOException if an I/O error occurs
      */
-    public NoDiacriticsStandardAnalyzer(Version matchVersion, Reader stopwords) throws IOException {
-        this(matchVersion, WordlistLoader.getWordSet(stopwords, matchVersion));
+    public NoDiacriticsStandardAnalyzer(final Reader stopwords) throws IOException {
+        this(WordlistLoader.getWordSet(stopwords));
     }
 
     /**
@@ -140,21 +97,17 @@ public class NoDiacriticsStandardAnalyzer extends StopwordAnalyzerBase {
     }
 
     @Override
-    protected TokenStreamComponents createComponents(final String fieldName, final Reader reader) {
-        final StandardTokenizer src = new StandardTokenizer(getVersion(), reader);
+    protected TokenStreamComponents createComponents(final String fieldName) {
+        final StandardTokenizer src = new StandardTokenizer();
         src.setMaxTokenLength(maxTokenLength);
-//        src.setReplaceInvalidAcronym(replaceInvalidAcronym);
-        TokenStream tok = new StandardFilter(getVersion(), src);
-        tok = new ICUFoldingFilter(tok);
-        tok = new LowerCaseFilter(getVersion(), tok);
-        tok = new StopFilter(getVersion(), tok, stopwords);
+        TokenStream tok = new ICUFoldingFilter(src);
+        tok = new LowerCaseFilter(tok);
+        tok = new StopFilter(tok, stopwords);
         return new TokenStreamComponents(src, tok);
-//        {
-//            @Override
-//            protected boolean reset(final Reader reader) throws IOException {
-//                src.setMaxTokenLength(NoDiacriticsStandardAnalyzer.this.maxTokenLength);
-//                return super.reset(reader);
-//            }
-//        };
+    }
+
+    @Override
+    protected TokenStream normalize(final String fieldName, final TokenStream in) {
+        return new LowerCaseFilter(new ICUFoldingFilter(in));
     }
 }
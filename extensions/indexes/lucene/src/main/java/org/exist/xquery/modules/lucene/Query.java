@@ -37,7 +37,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Query extends Function implements Optimizable {
+public class Query extends Function implements Optimizable, Rankable {
 	
 	protected static final Logger logger = LogManager.getLogger(Query.class);
 
@@ -101,6 +101,7 @@ public class Query extends Function implements Optimizable {
     private NodeSet preselectResult = null;
     protected boolean optimizeSelf = false;
     protected boolean optimizeChild = false;
+    private int rankLimit = -1;
 
     public Query(XQueryContext context, FunctionSignature signature) {
         super(context, signature);
@@ -194,6 +195,18 @@ public class Query extends Function implements Optimizable {
         return axis;
     }
 
+    @Override
+    public boolean isScoreFunction(Function function) {
+        // with the context item as first argument, each hit is a node of the result
+        // and ft:score returns the score of its single match
+        return optimizeSelf && function instanceof Score;
+    }
+
+    @Override
+    public void setRankLimit(int limit) {
+        this.rankLimit = limit;
+    }
+
     public NodeSet preSelect(Sequence contextSequence, boolean useContext) throws XPathException {
     	if (contextSequence != null && !contextSequence.isPersistentSet())
     		// in-memory docs won't have an index
@@ -210,6 +223,7 @@ public class Query extends Function implements Optimizable {
         List<QName> qnames = new ArrayList<>(1);
         qnames.add(contextQName);
         QueryOptions options = parseOptions(this, contextSequence, null, 3);
+        options.setRankLimit(rankLimit);
         try {
             if (key != null && Type.subTypeOf(key.getType(), Type.ELEMENT)) {
                 final Element queryXML = key == null ? null : (Element) ((NodeValue) key).getNode();
@@ -226,6 +240,9 @@ public class Query extends Function implements Optimizable {
         LOG.trace("Lucene query took " + (System.currentTimeMillis() - start));
         if( context.getProfiler().traceFunctions() ) {
             context.getProfiler().traceIndexUsage( context, "lucene", this, PerformanceStats.OPTIMIZED_INDEX, System.currentTimeMillis() - start );
+            if (rankLimit > 0) {
+                context.getProfiler().traceOptimization(context, PerformanceStats.OptimizationType.RankLimit, this);
+            }
         }
         return preselectResult;
     }
@@ -257,6 +274,7 @@ public class Query extends Function implements Optimizable {
                     qnames.add(contextQName);
                 }
                 QueryOptions options = parseOptions(this, contextSequence, contextItem, 3);
+                options.setRankLimit(rankLimit);
                 try {
                     if (key != null && Type.subTypeOf(key.getType(), Type.ELEMENT)) {
                         final Element queryXML = (Element) ((NodeValue) key).getNode();
@@ -273,6 +291,9 @@ public class Query extends Function implements Optimizable {
             }
             if( context.getProfiler().traceFunctions() ) {
                 context.getProfiler().traceIndexUsage( context, "lucene", this, PerformanceStats.BASIC_INDEX, System.currentTimeMillis() - start );
+                if (rankLimit > 0) {
+                    context.getProfiler().traceOptimization(context, PerformanceStats.OptimizationType.RankLimit, this);
+                }
             }
         } else {
             // DW: contextSequence can be null
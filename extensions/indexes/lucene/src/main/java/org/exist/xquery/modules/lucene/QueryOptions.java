@@ -68,6 +68,7 @@ public class QueryOptions {
     protected boolean lowercaseExpandedTerms = false;
     protected Optional<Map<String, FacetQuery>> facets = Optional.empty();
     protected Set<String> fields = null;
+    protected int rankLimit = -1;
 
     public QueryOptions() {
         // default options
@@ -203,6 +204,24 @@ public class QueryOptions {
         return fields;
     }
 
+    /**
+     * @return the number of hits with the highest scores to return, or -1 to return all hits
+     */
+    public int getRankLimit() {
+        return rankLimit;
+    }
+
+    /**
+     * Only return the given number of hits with the highest scores, and any other hits
+     * with the same score as the last of them. Set by the query optimizer, see
+     * {@link org.exist.xquery.Rankable}.
+     *
+     * @param rankLimit the number of hits, or -1 to return all hits
+     */
+    public void setRankLimit(int rankLimit) {
+        this.rankLimit = rankLimit;
+    }
+
     public boolean filterRewrite() {
         return filterRewrite;
     }
@@ -255,12 +274,11 @@ public class QueryOptions {
             parser.setPhraseSlop(phraseSlop.get());
         }
         if (filterRewrite)
-            parser.setMultiTermRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+            parser.setMultiTermRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
         else
-            parser.setMultiTermRewriteMethod(MultiTermQuery.CONSTANT_SCORE_BOOLEAN_QUERY_REWRITE);
-        if (lowercaseExpandedTerms) {
-            parser.setLowercaseExpandedTerms(lowercaseExpandedTerms);
-        }
+            parser.setMultiTermRewriteMethod(MultiTermQuery.CONSTANT_SCORE_BOOLEAN_REWRITE);
+        // lowercase-expanded-terms has no effect anymore: the parser normalizes wildcard,
+        // prefix, fuzzy and range terms with the analyzer
     }
 
     public String  getQueryAnalyzerId() { return queryAnalyzerId; }
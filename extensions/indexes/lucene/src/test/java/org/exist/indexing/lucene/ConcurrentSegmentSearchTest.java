@@ -0,0 +1,186 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.indexing.lucene;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.collections.IndexInfo;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that searching the segments of the index concurrently, with query-threads greater
+ * than 1, finds the same hits with the same scores as searching them on the calling thread.
+ */
+public class ConcurrentSegmentSearchTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    private static final String COLLECTION_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "   <index>" +
+            "       <lucene>" +
+            "           <text qname=\"p\"/>" +
+            "       </lucene>" +
+            "   </index>" +
+            "</collection>";
+
+    private static final int DOCS = 24;
+
+    private static final String COLLECTION = "collection('" + TestConstants.TEST_COLLECTION_URI + "')";
+
+    @Test
+    public void hits() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameHits("for $p in " + COLLECTION + "//p[ft:query(., 'apple')] " +
+                "return string-join((document-uri(root($p)), util:node-id($p), ft:score($p)), ' ')");
+    }
+
+    @Test
+    public void hitsInContext() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameHits("for $p in " + COLLECTION + "//section[@n mod 2 = 0]/p[ft:query(., 'apple OR banana')] " +
+                "return string-join((document-uri(root($p)), util:node-id($p), ft:score($p)), ' ')");
+    }
+
+    @Test
+    public void ancestorHits() throws EXistException, PermissionDeniedException, XPathException {
+        assertSameHits("for $s in " + COLLECTION + "//section[ft:query(p, 'banana')] " +
+                "return string-join((document-uri(root($s)), util:node-id($s), ft:score($s)), ' ')");
+    }
+
+    private static void assertSameHits(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final LuceneIndex index = getIndex();
+        final List<String> expected;
+        final List<String> actual;
+        try {
+            index.setQueryThreads(1);
+            expected = execute(query);
+
+            index.setQueryThreads(4);
+            assertEquals(4, index.getQueryThreads());
+            actual = execute(query);
+        } finally {
+            index.setQueryThreads(1);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private static List<String> execute(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker, query, null);
+            final List<String> values = new ArrayList<>(result.getItemCount());
+            for (final SequenceIterator i = result.iterate(); i.hasNext(); ) {
+                values.add(i.nextItem().getStringValue());
+            }
+            return values;
+        }
+    }
+
+    private static LuceneIndex getIndex() {
+        return (LuceneIndex) existEmbeddedServer.getBrokerPool().getIndexManager().getIndexById(LuceneIndex.ID);
+    }
+
+    /**
+     * The terms occur a different number of times in every paragraph, so that the hits have different scores.
+     */
+    private static String generateXml(final int doc) {
+        final StringBuilder builder = new StringBuilder("<doc>");
+        for (int i = 0; i < 10; i++) {
+            builder.append("<section n='").append(i).append("'><p>");
+            for (int j = 0; j < (doc + i) % 5; j++) {
+                builder.append("apple ");
+            }
+            for (int j = 0; j < (doc * i) % 3; j++) {
+                builder.append("banana ");
+            }
+            builder.append("cherry</p><p>apple pie</p></section>");
+        }
+        return builder.append("</doc>").toString();
+    }
+
+    @BeforeClass
+    public static void storeDocuments() throws EXistException, PermissionDeniedException, IOException, SAXException,
+            LockException, CollectionConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        for (int i = 0; i < DOCS; i++) {
+            try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                 final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+                final Collection root = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI);
+                assertNotNull(root);
+                if (i == 0) {
+                    broker.saveCollection(transaction, root);
+                    pool.getConfigurationManager().addConfiguration(transaction, broker, root, COLLECTION_CONFIG);
+                }
+
+                final String xml = generateXml(i);
+                final IndexInfo info = root.validateXMLResource(transaction, broker, XmldbURI.create("doc" + i + ".xml"), xml);
+                root.store(transaction, broker, info, xml);
+                transaction.commit();
+            }
+
+            // refreshing the reader after every document flushes it into a segment of its own
+            getIndex().withReader(reader -> reader.leaves().size());
+        }
+
+        final int segments = getIndex().withReader(reader -> reader.leaves().size());
+        assertTrue("expected several index segments, found " + segments, segments > 1);
+    }
+
+    @AfterClass
+    public static void removeDocuments() throws EXistException, PermissionDeniedException, IOException, TriggerException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection root = broker.getCollection(TestConstants.TEST_COLLECTION_URI);
+            if (root != null) {
+                broker.removeCollection(transaction, root);
+            }
+            transaction.commit();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * eXist Open Source Native XML Database
+ * Copyright (C) 2001-2019 The eXist Project
+ * http://exist-db.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.indexing.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.exist.storage.btree.DBException;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.xquery.XPathException;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the background refresh of the near-real-time readers of {@link LuceneIndex},
+ * configured by its refresh-interval attribute.
+ */
+public class LuceneRefreshTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void backgroundRefresh() throws DatabaseConfigurationException, ParserConfigurationException,
+            IOException, XPathException, DBException, InterruptedException {
+        final LuceneIndex index = openIndex("100");
+        try {
+            addDocument(index, "1");
+
+            // refreshed without any query
+            final long timeout = System.currentTimeMillis() + 10000;
+            while (!index.isSearcherCurrent() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+            }
+            assertTrue(index.isSearcherCurrent());
+            assertEquals(1, numDocs(index));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void backgroundRefreshDisabled() throws DatabaseConfigurationException, ParserConfigurationException,
+            IOException, XPathException, DBException, InterruptedException {
+        final LuceneIndex index = openIndex("0");
+        try {
+            addDocument(index, "1");
+            Thread.sleep(500);
+            assertFalse(index.isSearcherCurrent());
+
+            // the query refreshes the searcher itself
+            assertEquals(1, numDocs(index));
+            assertTrue(index.isSearcherCurrent());
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void querySeesEarlierWrites() throws DatabaseConfigurationException, ParserConfigurationException,
+            IOException, XPathException, DBException {
+        final LuceneIndex index = openIndex("3600000");
+        try {
+            assertEquals(0, numDocs(index));
+            for (int i = 1; i <= 10; i++) {
+                addDocument(index, String.valueOf(i));
+                // a query sees everything written before it started
+                assertEquals(i, numDocs(index));
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    private LuceneIndex openIndex(final String refreshInterval) throws DatabaseConfigurationException,
+            ParserConfigurationException, IOException {
+        final Element config = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()
+                .createElement("module");
+        config.setAttribute("id", "lucene-refresh-test");
+        config.setAttribute(LuceneIndex.REFRESH_INTERVAL_ATTRIBUTE, refreshInterval);
+
+        final LuceneIndex index = new LuceneIndex();
+        index.configure(existEmbeddedServer.getBrokerPool(), temporaryFolder.newFolder().toPath(), config);
+        index.open();
+        return index;
+    }
+
+    private static void addDocument(final LuceneIndex index, final String id) throws IOException {
+        final IndexWriter writer = index.getWriter();
+        try {
+            final Document doc = new Document();
+            doc.add(new StringField("id", id, Field.Store.YES));
+            writer.addDocument(doc);
+        } finally {
+            index.releaseWriter(writer);
+        }
+    }
+
+    private static int numDocs(final LuceneIndex index) throws IOException, XPathException {
+        return index.withSearcher(searcher -> searcher.searcher.getIndexReader().numDocs());
+    }
+}
@@ -1012,7 +1012,7 @@ public class NGramIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                         context.proceed();
                     }
                 }
-                return false;
+                return true;
             } catch (final IOException e) {
                 LOG.error(e.getMessage(), e);
                 return true;
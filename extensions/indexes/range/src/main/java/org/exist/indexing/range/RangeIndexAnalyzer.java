@@ -13,7 +13,6 @@ import org.exist.util.DatabaseConfigurationException;
 import org.exist.xquery.XPathException;
 import org.w3c.dom.Element;
 
-import java.io.Reader;
 import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
@@ -82,12 +81,12 @@ public class RangeIndexAnalyzer extends Analyzer {
     }
 
     @Override
-    protected TokenStreamComponents createComponents(final String fieldName, final Reader reader) {
+    protected TokenStreamComponents createComponents(final String fieldName) {
         AttributeFactory factory = AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY;
         if (collator != null) {
             factory = new ICUCollationAttributeFactory(collator);
         }
-        final Tokenizer src = new KeywordTokenizer(factory, reader, 256);
+        final Tokenizer src = new KeywordTokenizer(factory, 256);
         TokenStream tok = src;
         for (final FilterConfig filter: filterConfigs) {
             tok = filter.constructor.apply(tok);
@@ -4,8 +4,6 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.collation.CollationKeyAnalyzer;
 import org.apache.lucene.document.*;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.BytesRefBuilder;
-import org.apache.lucene.util.NumericUtils;
 import org.exist.dom.QName;
 import org.exist.indexing.lucene.LuceneIndexConfig;
 import org.exist.storage.NodePath;
@@ -130,28 +128,28 @@ public class RangeIndexConfigElement {
                 case Type.LONG:
                 case Type.UNSIGNED_LONG:
                     long lvalue = Long.parseLong(content);
-                    return new LongField(fieldName, lvalue, LongField.TYPE_NOT_STORED);
+                    return new LongPoint(fieldName, lvalue);
                 case Type.INT:
                 case Type.UNSIGNED_INT:
                 case Type.SHORT:
                 case Type.UNSIGNED_SHORT:
                     int ivalue = Integer.parseInt(content);
-                    return new IntField(fieldName, ivalue, IntField.TYPE_NOT_STORED);
+                    return new IntPoint(fieldName, ivalue);
                 case Type.DECIMAL:
                 case Type.DOUBLE:
                     double dvalue = Double.parseDouble(content);
-                    return new DoubleField(fieldName, dvalue, DoubleField.TYPE_NOT_STORED);
+                    return new DoublePoint(fieldName, dvalue);
                 case Type.FLOAT:
                     float fvalue = Float.parseFloat(content);
-                    return new FloatField(fieldName, fvalue, FloatField.TYPE_NOT_STORED);
+                    return new FloatPoint(fieldName, fvalue);
                 case Type.DATE:
                     DateValue dv = new DateValue(content);
                     long dl = dateToLong(dv);
-                    return new LongField(fieldName, dl, LongField.TYPE_NOT_STORED);
+                    return new LongPoint(fieldName, dl);
                 case Type.TIME:
                     TimeValue tv = new TimeValue(content);
                     long tl = timeToLong(tv);
-                    return new LongField(fieldName, tl, LongField.TYPE_NOT_STORED);
+                    return new LongPoint(fieldName, tl);
                 case Type.DATE_TIME:
                     DateTimeValue dtv = new DateTimeValue(content);
                     String dateStr = dateTimeToString(dtv);
@@ -167,56 +165,16 @@ public class RangeIndexConfigElement {
         return null;
     }
 
+    /**
+     * Convert a value to the term it is indexed with. Only dateTimes and strings are
+     * indexed as terms, numbers, dates and times are indexed as points, see
+     * {@link #convertToField(String, String)}.
+     */
     public static BytesRef convertToBytes(final AtomicValue content) throws XPathException {
-        final BytesRefBuilder bytes = new BytesRefBuilder();
-        switch(content.getType()) {
-            case Type.INTEGER:
-            case Type.LONG:
-            case Type.UNSIGNED_LONG:
-                NumericUtils.longToPrefixCoded(((IntegerValue)content).getLong(), 0, bytes);
-                break;
-
-            case Type.SHORT:
-            case Type.UNSIGNED_SHORT:
-            case Type.INT:
-            case Type.UNSIGNED_INT:
-                NumericUtils.intToPrefixCoded(((IntegerValue)content).getInt(), 0, bytes);
-                break;
-
-            case Type.DECIMAL:
-                final long dv = NumericUtils.doubleToSortableLong(((DecimalValue)content).getDouble());
-                NumericUtils.longToPrefixCoded(dv, 0, bytes);
-                break;
-
-            case Type.DOUBLE:
-                final long lv = NumericUtils.doubleToSortableLong(((DoubleValue)content).getDouble());
-                NumericUtils.longToPrefixCoded(lv, 0, bytes);
-                break;
-
-            case Type.FLOAT:
-                final int iv = NumericUtils.floatToSortableInt(((FloatValue)content).getValue());
-                NumericUtils.longToPrefixCoded(iv, 0, bytes);
-                break;
-
-            case Type.DATE:
-                final long dl = dateToLong((DateValue)content);
-                NumericUtils.longToPrefixCoded(dl, 0, bytes);
-                break;
-
-            case Type.TIME:
-                final long tl = timeToLong((TimeValue) content);
-                NumericUtils.longToPrefixCoded(tl, 0, bytes);
-                break;
-
-            case Type.DATE_TIME:
-                final String dt = dateTimeToString((DateTimeValue) content);
-                bytes.copyChars(dt);
-                break;
-
-            default:
-                bytes.copyChars(content.getStringValue());
+        if (content.getType() == Type.DATE_TIME) {
+            return new BytesRef(dateTimeToString((DateTimeValue) content));
         }
-        return bytes.toBytesRef();
+        return new BytesRef(content.getStringValue());
     }
 
     public static long dateToLong(DateValue date) {
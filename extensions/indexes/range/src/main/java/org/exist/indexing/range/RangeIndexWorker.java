@@ -43,7 +43,6 @@ import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.NumericUtils;
 import org.exist.collections.Collection;
 import org.exist.indexing.*;
 import org.exist.indexing.StreamListener.ReindexMode;
@@ -125,12 +124,12 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 case EQ:
                     return new TermQuery(new Term(field, key));
                 case NE:
-                    final BooleanQuery qnot = new BooleanQuery();
+                    final BooleanQuery.Builder qnot = new BooleanQuery.Builder();
                     query = new WildcardQuery(new Term(field, new BytesRef("*")));
-                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
                     qnot.add(query, BooleanClause.Occur.MUST);
                     qnot.add(new TermQuery(new Term(field, key)), BooleanClause.Occur.MUST_NOT);
-                    return qnot;
+                    return qnot.build();
                 case STARTS_WITH:
                     return new PrefixQuery(new Term(field, key));
                 case ENDS_WITH:
@@ -138,7 +137,7 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                     bytes.append((byte)'*');
                     bytes.append(key);
                     query = new WildcardQuery(new Term(field, bytes.toBytesRef()));
-                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
                     return query;
                 case CONTAINS:
                     bytes = new BytesRefBuilder();
@@ -146,80 +145,129 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                     bytes.append(key);
                     bytes.append((byte)'*');
                     query = new WildcardQuery(new Term(field, bytes.toBytesRef()));
-                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+                    query.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
                     return query;
                 case MATCH:
                     RegexpQuery regexQuery = new RegexpQuery(new Term(field, content.getStringValue()));
-                    regexQuery.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+                    regexQuery.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_REWRITE);
                     return regexQuery;
             }
         }
-        if (operator == RangeIndex.Operator.EQ) {
-            return new TermQuery(new Term(field, RangeIndexConfigElement.convertToBytes(content)));
-        }
-        if (operator == RangeIndex.Operator.NE) {
-            final BooleanQuery nq = new BooleanQuery();
-            nq.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
-            nq.add(new TermQuery(new Term(field, RangeIndexConfigElement.convertToBytes(content))), BooleanClause.Occur.MUST_NOT);
-            return nq;
-        }
-        final boolean includeUpper = operator == RangeIndex.Operator.LE;
-        final boolean includeLower = operator == RangeIndex.Operator.GE;
+        // numbers, dates and times are indexed as points, see RangeIndexConfigElement#convertToField
         switch (type) {
             case Type.INTEGER:
             case Type.LONG:
             case Type.UNSIGNED_LONG:
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newLongRange(field, null, ((NumericValue)content).getLong(), includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newLongRange(field, ((NumericValue)content).getLong(), null, includeLower, includeUpper);
-                }
+                return longQuery(field, ((NumericValue) content).getLong(), operator);
             case Type.INT:
             case Type.UNSIGNED_INT:
             case Type.SHORT:
             case Type.UNSIGNED_SHORT:
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newIntRange(field, null, ((NumericValue) content).getInt(), includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newIntRange(field, ((NumericValue) content).getInt(), null, includeLower, includeUpper);
-                }
+                return intQuery(field, ((NumericValue) content).getInt(), operator);
             case Type.DECIMAL:
             case Type.DOUBLE:
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newDoubleRange(field, null, ((NumericValue) content).getDouble(), includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newDoubleRange(field, ((NumericValue) content).getDouble(), null, includeLower, includeUpper);
-                }
+                return doubleQuery(field, ((NumericValue) content).getDouble(), operator);
             case Type.FLOAT:
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newFloatRange(field, null, (float) ((NumericValue) content).getDouble(), includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newFloatRange(field, (float) ((NumericValue) content).getDouble(), null, includeLower, includeUpper);
-                }
+                return floatQuery(field, (float) ((NumericValue) content).getDouble(), operator);
             case Type.DATE:
-                long dl = RangeIndexConfigElement.dateToLong((DateValue) content);
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newLongRange(field, null, dl, includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newLongRange(field, dl, null, includeLower, includeUpper);
-                }
+                return longQuery(field, RangeIndexConfigElement.dateToLong((DateValue) content), operator);
             case Type.TIME:
-                long tl = RangeIndexConfigElement.timeToLong((TimeValue) content);
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return NumericRangeQuery.newLongRange(field, null, tl, includeLower, includeUpper);
-                } else {
-                    return NumericRangeQuery.newLongRange(field, tl, null, includeLower, includeUpper);
-                }
-            case Type.DATE_TIME:
+                return longQuery(field, RangeIndexConfigElement.timeToLong((TimeValue) content), operator);
+        }
+        if (operator == RangeIndex.Operator.EQ) {
+            return new TermQuery(new Term(field, RangeIndexConfigElement.convertToBytes(content)));
+        }
+        if (operator == RangeIndex.Operator.NE) {
+            return notQuery(new TermQuery(new Term(field, RangeIndexConfigElement.convertToBytes(content))));
+        }
+        final boolean includeUpper = operator == RangeIndex.Operator.LE;
+        final boolean includeLower = operator == RangeIndex.Operator.GE;
+        if (type == Type.DATE_TIME) {
+            key = RangeIndexConfigElement.convertToBytes(content);
+        }
+        if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
+            return new TermRangeQuery(field, null, key, includeLower, includeUpper);
+        } else {
+            return new TermRangeQuery(field, key, null, includeLower, includeUpper);
+        }
+    }
+
+    private static Query notQuery(final Query query) {
+        final BooleanQuery.Builder nq = new BooleanQuery.Builder();
+        nq.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        nq.add(query, BooleanClause.Occur.MUST_NOT);
+        return nq.build();
+    }
+
+    private static Query longQuery(final String field, final long value, final RangeIndex.Operator operator) {
+        switch (operator) {
+            case EQ:
+                return LongPoint.newExactQuery(field, value);
+            case NE:
+                return notQuery(LongPoint.newExactQuery(field, value));
+            case LT:
+                return value == Long.MIN_VALUE ? new MatchNoDocsQuery() : LongPoint.newRangeQuery(field, Long.MIN_VALUE, value - 1);
+            case LE:
+                return LongPoint.newRangeQuery(field, Long.MIN_VALUE, value);
+            case GE:
+                return LongPoint.newRangeQuery(field, value, Long.MAX_VALUE);
             default:
-                if (type == Type.DATE_TIME) {
-                    key = RangeIndexConfigElement.convertToBytes(content);
-                }
-                if (operator == RangeIndex.Operator.LT || operator == RangeIndex.Operator.LE) {
-                    return new TermRangeQuery(field, null, key, includeLower, includeUpper);
-                } else {
-                    return new TermRangeQuery(field, key, null, includeLower, includeUpper);
-                }
+                return value == Long.MAX_VALUE ? new MatchNoDocsQuery() : LongPoint.newRangeQuery(field, value + 1, Long.MAX_VALUE);
+        }
+    }
+
+    private static Query intQuery(final String field, final int value, final RangeIndex.Operator operator) {
+        switch (operator) {
+            case EQ:
+                return IntPoint.newExactQuery(field, value);
+            case NE:
+                return notQuery(IntPoint.newExactQuery(field, value));
+            case LT:
+                return value == Integer.MIN_VALUE ? new MatchNoDocsQuery() : IntPoint.newRangeQuery(field, Integer.MIN_VALUE, value - 1);
+            case LE:
+                return IntPoint.newRangeQuery(field, Integer.MIN_VALUE, value);
+            case GE:
+                return IntPoint.newRangeQuery(field, value, Integer.MAX_VALUE);
+            default:
+                return value == Integer.MAX_VALUE ? new MatchNoDocsQuery() : IntPoint.newRangeQuery(field, value + 1, Integer.MAX_VALUE);
+        }
+    }
+
+    private static Query doubleQuery(final String field, final double value, final RangeIndex.Operator operator) {
+        switch (operator) {
+            case EQ:
+                return DoublePoint.newExactQuery(field, value);
+            case NE:
+                return notQuery(DoublePoint.newExactQuery(field, value));
+            case LT:
+                return value == Double.NEGATIVE_INFINITY ? new MatchNoDocsQuery() :
+                        DoublePoint.newRangeQuery(field, Double.NEGATIVE_INFINITY, DoublePoint.nextDown(value));
+            case LE:
+                return DoublePoint.newRangeQuery(field, Double.NEGATIVE_INFINITY, value);
+            case GE:
+                return DoublePoint.newRangeQuery(field, value, Double.POSITIVE_INFINITY);
+            default:
+                return value == Double.POSITIVE_INFINITY ? new MatchNoDocsQuery() :
+                        DoublePoint.newRangeQuery(field, DoublePoint.nextUp(value), Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private static Query floatQuery(final String field, final float value, final RangeIndex.Operator operator) {
+        switch (operator) {
+            case EQ:
+                return FloatPoint.newExactQuery(field, value);
+            case NE:
+                return notQuery(FloatPoint.newExactQuery(field, value));
+            case LT:
+                return value == Float.NEGATIVE_INFINITY ? new MatchNoDocsQuery() :
+                        FloatPoint.newRangeQuery(field, Float.NEGATIVE_INFINITY, FloatPoint.nextDown(value));
+            case LE:
+                return FloatPoint.newRangeQuery(field, Float.NEGATIVE_INFINITY, value);
+            case GE:
+                return FloatPoint.newRangeQuery(field, value, Float.POSITIVE_INFINITY);
+            default:
+                return value == Float.POSITIVE_INFINITY ? new MatchNoDocsQuery() :
+                        FloatPoint.newRangeQuery(field, FloatPoint.nextUp(value), Float.POSITIVE_INFINITY);
         }
     }
 
@@ -363,10 +411,7 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             writer = index.getWriter();
             for (Iterator<DocumentImpl> i = collection.iterator(broker); i.hasNext(); ) {
                 DocumentImpl doc = i.next();
-                final BytesRefBuilder bytes = new BytesRefBuilder();
-                NumericUtils.intToPrefixCoded(doc.getDocId(), 0, bytes);
-                Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
-                writer.deleteDocuments(dt);
+                writer.deleteDocuments(IntPoint.newExactQuery(FIELD_DOC_ID, doc.getDocId()));
             }
         } catch (IOException | PermissionDeniedException | LockException e) {
             LOG.error("Error while removing lucene index: " + e.getMessage(), e);
@@ -389,10 +434,7 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         IndexWriter writer = null;
         try {
             writer = index.getWriter();
-            final BytesRefBuilder bytes = new BytesRefBuilder();
-            NumericUtils.intToPrefixCoded(docId, 0, bytes);
-            Term dt = new Term(FIELD_DOC_ID, bytes.toBytesRef());
-            writer.deleteDocuments(dt);
+            writer.deleteDocuments(IntPoint.newExactQuery(FIELD_DOC_ID, docId));
         } catch (IOException e) {
             LOG.warn("Error while removing lucene index: " + e.getMessage(), e);
         } finally {
@@ -454,15 +496,15 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             writer = index.getWriter();
 
             // docId and nodeId are stored as doc value
-            IntDocValuesField fDocId = new IntDocValuesField(FIELD_DOC_ID, 0);
+            NumericDocValuesField fDocId = new NumericDocValuesField(FIELD_DOC_ID, 0);
             BinaryDocValuesField fNodeId = new BinaryDocValuesField(FIELD_NODE_ID, new BytesRef(8));
             BinaryDocValuesField fAddress = new BinaryDocValuesField(FIELD_ADDRESS, new BytesRef(8));
             // docId also needs to be indexed
-            IntField fDocIdIdx = new IntField(FIELD_DOC_ID, 0, IntField.TYPE_NOT_STORED);
+            IntPoint fDocIdIdx = new IntPoint(FIELD_DOC_ID, 0);
             for (RangeIndexDoc pending : nodesToWrite) {
                 Document doc = new Document();
 
-                fDocId.setIntValue(currentDoc.getDocId());
+                fDocId.setLongValue(currentDoc.getDocId());
                 doc.add(fDocId);
 
                 // store the node id
@@ -504,7 +546,13 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 if (analyzer == null) {
                     analyzer = config.getDefaultAnalyzer();
                 }
-                writer.addDocument(doc, analyzer);
+                try {
+                    index.addDocument(writer, doc, analyzer);
+                } catch (IllegalArgumentException e) {
+                    // e.g. a field indexed with different types in different collections
+                    LOG.warn("Failed to index node " + pending.getNodeId() + " of document " + currentDoc.getURI() +
+                            ": " + e.getMessage(), e);
+                }
             }
         } catch (IOException e) {
             LOG.warn("An exception was caught while indexing document: " + e.getMessage(), e);
@@ -523,18 +571,18 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 Query query;
                 String field = LuceneUtil.encodeQName(qname, index.getBrokerPool().getSymbols());
                 if (keys.length > 1) {
-                    BooleanQuery bool = new BooleanQuery();
+                    BooleanQuery.Builder bool = new BooleanQuery.Builder();
                     for (AtomicValue key : keys) {
                         bool.add(toQuery(field, qname, key, operator, docs), BooleanClause.Occur.SHOULD);
                     }
-                    query = bool;
+                    query = bool.build();
                 } else {
                     query = toQuery(field, qname, keys[0], operator, docs);
                 }
                 final short nodeType = qname.getNameType() == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node
                         .ELEMENT_NODE;
 
-                resultSet.addAll(doQuery(contextId, docs, contextSet, axis, searcher.searcher, nodeType, query, null));
+                resultSet.addAll(doQuery(contextId, docs, contextSet, axis, searcher.searcher, nodeType, query));
             }
             return resultSet;
         });
@@ -542,31 +590,32 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
     public NodeSet queryField(int contextId, DocumentSet docs, NodeSet contextSet, Sequence fields, Sequence[] keys, RangeIndex.Operator[] operators, int axis) throws IOException, XPathException {
         return index.withSearcher(searcher -> {
-            BooleanQuery query = new BooleanQuery();
+            BooleanQuery.Builder query = new BooleanQuery.Builder();
             int j = 0;
             for (SequenceIterator i = fields.iterate(); i.hasNext(); j++) {
                 String field = i.nextItem().getStringValue();
                 if (keys[j].getItemCount() > 1) {
-                    BooleanQuery bool = new BooleanQuery();
+                    BooleanQuery.Builder bool = new BooleanQuery.Builder();
                     bool.setMinimumNumberShouldMatch(1);
                     for (SequenceIterator ki = keys[j].iterate(); ki.hasNext(); ) {
                         Item key = ki.nextItem();
                         Query q = toQuery(field, null, key.atomize(), operators[j], docs);
                         bool.add(q, BooleanClause.Occur.SHOULD);
                     }
-                    query.add(bool, BooleanClause.Occur.MUST);
+                    query.add(bool.build(), BooleanClause.Occur.MUST);
                 } else {
                     Query q = toQuery(field, null, keys[j].itemAt(0).atomize(), operators[j], docs);
                     query.add(q, BooleanClause.Occur.MUST);
                 }
             }
-            Query qu = query;
-            BooleanClause[] clauses = query.getClauses();
-            if (clauses.length == 1) {
-                qu = clauses[0].getQuery();
+            final BooleanQuery bq = query.build();
+            Query qu = bq;
+            List<BooleanClause> clauses = bq.clauses();
+            if (clauses.size() == 1) {
+                qu = clauses.get(0).getQuery();
             }
             final NodeSet resultSet = new NewArrayNodeSet();
-            resultSet.addAll(doQuery(contextId, docs, contextSet, axis, searcher.searcher, Node.ELEMENT_NODE, qu, null));
+            resultSet.addAll(doQuery(contextId, docs, contextSet, axis, searcher.searcher, Node.ELEMENT_NODE, qu));
             return resultSet;
         });
     }
@@ -586,21 +635,21 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 //    }
 
     private NodeSet doQuery(final int contextId, final DocumentSet docs, final NodeSet contextSet, final int axis,
-                            IndexSearcher searcher, final short nodeType, Query query, Filter filter) throws
+                            IndexSearcher searcher, final short nodeType, Query query) throws
             IOException {
         SearchCollector collector = new SearchCollector(docs, contextSet, nodeType, axis, contextId);
-        searcher.search(query, filter, collector);
+        searcher.search(query, collector);
         return collector.getResultSet();
     }
 
-    private class SearchCollector extends Collector {
+    private class SearchCollector extends SimpleCollector {
         private final NodeSet resultSet;
         private final NodeSet contextSet;
         private final short nodeType;
         private final int axis;
         private final int contextId;
         private final DocumentSet docs;
-        private AtomicReader reader;
+        private LeafReader reader;
         private NumericDocValues docIdValues;
         private BinaryDocValues nodeIdValues;
         private BinaryDocValues addressValues;
@@ -620,18 +669,21 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         }
 
         @Override
-        public void setScorer(Scorer scorer) throws IOException {
-            // ignore
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
         }
 
         @Override
         public void collect(int doc) throws IOException {
-            int docId = (int) this.docIdValues.get(doc);
+            if (!this.docIdValues.advanceExact(doc) || !this.nodeIdValues.advanceExact(doc)) {
+                return;
+            }
+            int docId = (int) this.docIdValues.longValue();
             DocumentImpl storedDocument = docs.getDoc(docId);
             if (storedDocument == null) {
                 return;
             }
-            final BytesRef ref = this.nodeIdValues.get(doc);
+            final BytesRef ref = this.nodeIdValues.binaryValue();
 
             int units = ByteConversion.byteToShort(ref.bytes, ref.offset);
             NodeId nodeId = index.getBrokerPool().getNodeFactory().createFromData(units, ref.bytes, ref.offset + 2);
@@ -664,10 +716,10 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             }
         }
 
-        private void getAddress(int doc, NodeHandle storedNode) {
-            if (addressValues != null) {
-                final BytesRef ref = addressValues.get(doc);
-                if (ref.offset < ref.bytes.length) {
+        private void getAddress(int doc, NodeHandle storedNode) throws IOException {
+            if (addressValues != null && addressValues.advanceExact(doc)) {
+                final BytesRef ref = addressValues.binaryValue();
+                if (ref.length > 0) {
                     final long address = ByteConversion.byteToLong(ref.bytes, ref.offset);
                     storedNode.setInternalAddress(address);
                 }
@@ -675,17 +727,12 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
         }
 
         @Override
-        public void setNextReader(AtomicReaderContext atomicReaderContext) throws IOException {
-            this.reader = atomicReaderContext.reader();
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            this.reader = context.reader();
             this.docIdValues = this.reader.getNumericDocValues(FIELD_DOC_ID);
             this.nodeIdValues = this.reader.getBinaryDocValues(FIELD_NODE_ID);
             this.addressValues = this.reader.getBinaryDocValues(FIELD_ADDRESS);
         }
-
-        @Override
-        public boolean acceptsDocsOutOfOrder() {
-            return true;
-        }
     }
 
     /**
@@ -710,7 +757,7 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
 
     private List<QName> getDefinedIndexesFor(QName qname, final List<QName> indexes) throws IOException {
         return index.withReader(reader -> {
-            for (FieldInfo info: MultiFields.getMergedFieldInfos(reader)) {
+            for (FieldInfo info: FieldInfos.getMergedFieldInfos(reader)) {
                 if (!FIELD_DOC_ID.equals(info.name)) {
                     QName name = LuceneUtil.decodeQName(info.name, index.getBrokerPool().getSymbols());
                     if (name != null && (qname == null || matchQName(qname, name)))
@@ -736,7 +783,6 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
             try {
                 stream.reset();
                 if (stream.incrementToken()) {
-                    termAttr.fillBytesRef();
                     token = BytesRef.deepCopyOf(termAttr.getBytesRef());
                 }
                 stream.end();
@@ -982,15 +1028,13 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
     }
 
     private void scan(DocumentSet docs, NodeSet nodes, String start, String end, long max, TreeMap<String, Occurrences> map, IndexReader reader, String field) throws IOException {
-        List<AtomicReaderContext> leaves = reader.leaves();
-        for (AtomicReaderContext context : leaves) {
-            NumericDocValues docIdValues = context.reader().getNumericDocValues(FIELD_DOC_ID);
-            BinaryDocValues nodeIdValues = context.reader().getBinaryDocValues(FIELD_NODE_ID);
+        List<LeafReaderContext> leaves = reader.leaves();
+        for (LeafReaderContext context : leaves) {
             Bits liveDocs = context.reader().getLiveDocs();
             Terms terms = context.reader().terms(field);
             if (terms == null)
                 continue;
-            TermsEnum termsIter = terms.iterator(null);
+            TermsEnum termsIter = terms.iterator();
             if (termsIter.next() == null) {
                 continue;
             }
@@ -1007,18 +1051,27 @@ public class RangeIndexWorker implements OrderedValuesIndex, QNamedKeysIndex {
                 } else if (start != null && !term.startsWith(start))
                     include = false;
                 if (include) {
-                    DocsEnum docsEnum = termsIter.docs(null, null);
-                    while (docsEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                    // doc values are iterators, the postings of each term start again at the first document
+                    NumericDocValues docIdValues = context.reader().getNumericDocValues(FIELD_DOC_ID);
+                    BinaryDocValues nodeIdValues = context.reader().getBinaryDocValues(FIELD_NODE_ID);
+                    PostingsEnum docsEnum = termsIter.postings(null, PostingsEnum.FREQS);
+                    while (docsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
                         if (liveDocs != null && !liveDocs.get(docsEnum.docID())) {
                             continue;
                         }
-                        int docId = (int) docIdValues.get(docsEnum.docID());
+                        if (!docIdValues.advanceExact(docsEnum.docID())) {
+                            continue;
+                        }
+                        int docId = (int) docIdValues.longValue();
                         DocumentImpl storedDocument = docs.getDoc(docId);
                         if (storedDocument == null)
                             continue;
                         NodeId nodeId = null;
                         if (nodes != null) {
-                            final BytesRef nodeIdRef = nodeIdValues.get(docsEnum.docID());
+                            if (!nodeIdValues.advanceExact(docsEnum.docID())) {
+                                continue;
+                            }
+                            final BytesRef nodeIdRef = nodeIdValues.binaryValue();
                             int units = ByteConversion.byteToShort(nodeIdRef.bytes, nodeIdRef.offset);
                             nodeId = index.getBrokerPool().getNodeFactory().createFromData(units, nodeIdRef.bytes, nodeIdRef.offset + 2);
                         }
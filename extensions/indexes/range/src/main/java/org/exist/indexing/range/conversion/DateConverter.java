@@ -24,7 +24,7 @@ package org.exist.indexing.range.conversion;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.LongPoint;
 import org.exist.indexing.range.RangeIndexConfigElement;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.value.DateValue;
@@ -70,7 +70,7 @@ public class DateConverter implements TypeConverter {
                 dv = new DateValue(content);
             }
             final long dl = RangeIndexConfigElement.dateToLong(dv);
-            return new LongField(fieldName, dl, LongField.TYPE_NOT_STORED);
+            return new LongPoint(fieldName, dl);
         } catch (XPathException e) {
             // wrong type: ignore
             LOG.debug("Invalid date format: " + content, e);